@@ -0,0 +1,24 @@
+package com.planetaryexodus.benchmark;
+
+import com.planetaryexodus.PlanetaryExodusMod;
+import com.planetaryexodus.core.ModConfig;
+
+/**
+ * 基准测试的公共准备工作
+ */
+final class BenchmarkSupport {
+    
+    private BenchmarkSupport() {
+    }
+    
+    /**
+     * 以默认配置无头初始化模组，同一个JVM中只初始化一次
+     */
+    static synchronized ModConfig init() {
+        PlanetaryExodusMod mod = PlanetaryExodusMod.getInstance();
+        if (mod == null) {
+            mod = PlanetaryExodusMod.initHeadless(ModConfig.defaults());
+        }
+        return mod.getConfig();
+    }
+}
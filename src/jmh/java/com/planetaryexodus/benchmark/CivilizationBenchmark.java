@@ -0,0 +1,75 @@
+package com.planetaryexodus.benchmark;
+
+import com.planetaryexodus.civilization.CivilizationManager;
+import com.planetaryexodus.core.EventBus;
+import com.planetaryexodus.simulation.InMemoryServerPort;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文明进度推进和里程碑检查
+ * 每次调用把进度从0逐点推进到100，途中达成所有里程碑，与服务器上一样在tick批处理中发布事件
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CivilizationBenchmark {
+    
+    private static final int STEPS = 100;
+    
+    private CivilizationManager manager;
+    private InMemoryServerPort port;
+    private EventBus eventBus;
+    
+    @Setup
+    public void setup() {
+        BenchmarkSupport.init();
+        eventBus = EventBus.getInstance();
+        manager = new CivilizationManager();
+        port = new InMemoryServerPort();
+        port.addPlayer("Benchmark");
+    }
+    
+    /**
+     * 增加进度，跨过里程碑时由 addProgress 直接检查
+     */
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public int addProgress() {
+        manager.reset();
+        eventBus.beginTickBatch();
+        for (int i = 0; i < STEPS; i++) {
+            manager.addProgress(1, null, "benchmark");
+        }
+        eventBus.flushTickBatch();
+        return manager.getProgress();
+    }
+    
+    /**
+     * 增加进度后再由调度器的分片逐个检查里程碑
+     */
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public int addProgressAndCheckMilestones() {
+        manager.reset();
+        eventBus.beginTickBatch();
+        for (int i = 0; i < STEPS; i++) {
+            manager.addProgress(1, null, "benchmark");
+            int slice = 0;
+            while (manager.checkMilestones(port, slice)) {
+                slice++;
+            }
+        }
+        eventBus.flushTickBatch();
+        port.clearBroadcasts();
+        return manager.getAchievedMilestones().size();
+    }
+}
@@ -0,0 +1,77 @@
+package com.planetaryexodus.benchmark;
+
+import com.planetaryexodus.core.ModClock;
+import com.planetaryexodus.disaster.DisasterManager;
+import com.planetaryexodus.disaster.DisasterType;
+import com.planetaryexodus.planet.PlanetStatus;
+import com.planetaryexodus.simulation.InMemoryServerPort;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 灾难系统的一次完整更新：采集快照、计算决策、应用状态变化并执行所有活动灾难的效果
+ * 在当前线程上同步完成，与服务器上工作线程计算加分片应用的结果相同
+ *
+ * 模组时钟在测试期间固定不动，活动灾难不会结束；tick每次调用推进一个，伤害等按tick间隔的效果照常到期
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DisasterBenchmark {
+    
+    @Param({"1", "16", "128"})
+    public int activeDisasters;
+    
+    @Param({"20"})
+    public int players;
+    
+    private DisasterManager manager;
+    private InMemoryServerPort port;
+    
+    @Setup
+    public void setup() {
+        BenchmarkSupport.init();
+        ModClock.setSource(new ModClock.ManualSource(System.currentTimeMillis()));
+        
+        port = new InMemoryServerPort();
+        port.addWorld("minecraft:overworld");
+        for (int i = 0; i < players; i++) {
+            port.addPlayer("Player" + i).setSkyVisible(i % 2 == 0);
+        }
+        
+        manager = new DisasterManager();
+        DisasterType[] types = DisasterType.values();
+        for (int i = 0; manager.getDisasterCount() < activeDisasters && i < activeDisasters * types.length; i++) {
+            manager.forceDisaster(port, types[i % types.length]);
+        }
+        port.clearBroadcasts();
+    }
+    
+    @TearDown
+    public void tearDown() {
+        manager.cleanup();
+        ModClock.useSystemTime();
+    }
+    
+    @TearDown(Level.Iteration)
+    public void clearBroadcasts() {
+        port.clearBroadcasts();
+    }
+    
+    @Benchmark
+    public int update() {
+        port.tick();
+        manager.update(port, PlanetStatus.COLLAPSING);
+        return manager.getDisasterCount();
+    }
+}
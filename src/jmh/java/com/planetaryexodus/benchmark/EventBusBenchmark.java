@@ -0,0 +1,102 @@
+package com.planetaryexodus.benchmark;
+
+import com.planetaryexodus.api.events.CivilizationProgressEvent;
+import com.planetaryexodus.api.events.DisasterTriggeredEvent;
+import com.planetaryexodus.api.interfaces.IEventSubscriber;
+import com.planetaryexodus.core.EventBus;
+import com.planetaryexodus.disaster.DisasterType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 事件总线发布的吞吐量
+ * - publish：服务器线程之外的直接分发
+ * - publishContended：多个线程同时发布同一类型的事件
+ * - publishKeyed：按路由键分发，只有一个键上有订阅者
+ * - publishBatched：tick批处理，排队后统一投递并合并进度事件
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EventBusBenchmark {
+    
+    private static final int BATCH_SIZE = 64;
+    
+    @Param({"1", "8"})
+    public int subscribers;
+    
+    private EventBus eventBus;
+    private final List<IEventSubscriber<CivilizationProgressEvent>> progressSubscribers = new ArrayList<>();
+    private final List<IEventSubscriber<DisasterTriggeredEvent>> disasterSubscribers = new ArrayList<>();
+    private CivilizationProgressEvent progressEvent;
+    private DisasterTriggeredEvent disasterEvent;
+    
+    // 订阅者写入的字段，避免投递被优化掉
+    private int delivered;
+    
+    @Setup
+    public void setup() {
+        BenchmarkSupport.init();
+        eventBus = EventBus.getInstance();
+        Consumer<CivilizationProgressEvent> onProgress = event -> delivered += event.getProgressChange();
+        Consumer<DisasterTriggeredEvent> onDisaster = event -> delivered++;
+        for (int i = 0; i < subscribers; i++) {
+            progressSubscribers.add(eventBus.subscribe(CivilizationProgressEvent.class, onProgress));
+            disasterSubscribers.add(eventBus.subscribe(DisasterTriggeredEvent.class, DisasterType.RADIATION, onDisaster));
+        }
+        progressEvent = new CivilizationProgressEvent(10, 11, 1, "benchmark", null);
+        disasterEvent = new DisasterTriggeredEvent(DisasterType.RADIATION, 30);
+    }
+    
+    @TearDown
+    public void tearDown() {
+        for (IEventSubscriber<CivilizationProgressEvent> subscriber : progressSubscribers) {
+            eventBus.unsubscribe(CivilizationProgressEvent.class, subscriber);
+        }
+        for (IEventSubscriber<DisasterTriggeredEvent> subscriber : disasterSubscribers) {
+            eventBus.unsubscribe(DisasterTriggeredEvent.class, DisasterType.RADIATION, subscriber);
+        }
+        progressSubscribers.clear();
+        disasterSubscribers.clear();
+    }
+    
+    @Benchmark
+    public void publish() {
+        eventBus.publish(progressEvent);
+    }
+    
+    @Benchmark
+    @Threads(4)
+    public void publishContended() {
+        eventBus.publish(progressEvent);
+    }
+    
+    @Benchmark
+    public void publishKeyed() {
+        eventBus.publish(disasterEvent);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void publishBatched() {
+        eventBus.beginTickBatch();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            eventBus.publish(progressEvent);
+        }
+        eventBus.flushTickBatch();
+    }
+}
@@ -0,0 +1,68 @@
+package com.planetaryexodus.benchmark;
+
+import com.planetaryexodus.core.ModConfig;
+import com.planetaryexodus.planet.PlanetEffects;
+import com.planetaryexodus.planet.PlanetStatus;
+import com.planetaryexodus.simulation.InMemoryServerPort;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按行星状态应用所有阶段的效果，作用于模拟的世界和玩家
+ * 每次调用推进一个tick，辐射、酸雨和警告广播按各自的tick间隔到期
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PlanetEffectsBenchmark {
+    
+    @Param({"STABLE", "COLLAPSING"})
+    public PlanetStatus status;
+    
+    @Param({"3"})
+    public int worlds;
+    
+    @Param({"10", "100"})
+    public int players;
+    
+    private PlanetEffects effects;
+    private ModConfig.PlanetConfig config;
+    private InMemoryServerPort port;
+    
+    @Setup
+    public void setup() {
+        config = BenchmarkSupport.init().getPlanet();
+        effects = new PlanetEffects();
+        
+        port = new InMemoryServerPort();
+        for (int i = 0; i < worlds; i++) {
+            port.addWorld("benchmark:world_" + i).setRaining(i == 0);
+        }
+        for (int i = 0; i < players; i++) {
+            // 一半玩家在下雨的室外
+            port.addPlayer("Player" + i).setRaining(i % 2 == 0).setSkyVisible(true);
+        }
+    }
+    
+    @TearDown(Level.Iteration)
+    public void clearBroadcasts() {
+        port.clearBroadcasts();
+    }
+    
+    @Benchmark
+    public int applyEffects() {
+        int tick = port.tick();
+        effects.applyEffects(port, status, config);
+        return tick;
+    }
+}
@@ -0,0 +1,131 @@
+package com.planetaryexodus.benchmark;
+
+import com.planetaryexodus.civilization.CivilizationManager;
+import com.planetaryexodus.core.ModClock;
+import com.planetaryexodus.core.ModConfig;
+import com.planetaryexodus.core.ModExecutors;
+import com.planetaryexodus.disaster.DisasterManager;
+import com.planetaryexodus.disaster.DisasterType;
+import com.planetaryexodus.planet.PlanetStatusManager;
+import com.planetaryexodus.server.TickScheduler;
+import com.planetaryexodus.simulation.InMemoryServerPort;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 各子系统稳态下平均每个服务器tick的耗时和分配量
+ * 与服务器上一样把子系统交给调度器按配置的周期和时间片运行，每次调用推进一个tick，
+ * gc分析器测得的每次操作分配量（gc.alloc.rate.norm）即该子系统平均每tick的分配量，
+ * checkAllocationBudgets 任务据此检查分配是否超出预算
+ *
+ * 模组时钟每tick前进50ms；灾难子系统的时钟固定不动，预先触发的灾难在整个测试期间保持活动
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SubsystemTickBenchmark {
+    
+    private static final long MILLIS_PER_TICK = 50;
+    
+    @Param({"civilization", "planet", "disaster", "milestones"})
+    public String subsystem;
+    
+    // 文明进度，决定行星状态（默认配置下10为稳定，80为崩溃边缘）
+    @Param({"10", "80"})
+    public int progress;
+    
+    @Param({"20"})
+    public int players;
+    
+    private InMemoryServerPort port;
+    private TickScheduler scheduler;
+    private ModClock.ManualSource clock;
+    private boolean advanceClock;
+    private CivilizationManager civilizationManager;
+    private PlanetStatusManager planetStatusManager;
+    private DisasterManager disasterManager;
+    
+    @Setup
+    public void setup() {
+        ModConfig.PerformanceConfig performance = BenchmarkSupport.init().getPerformance();
+        clock = new ModClock.ManualSource(System.currentTimeMillis());
+        ModClock.setSource(clock);
+        ModExecutors.start();
+        
+        port = new InMemoryServerPort();
+        port.addWorld("minecraft:overworld").setRaining(true);
+        port.addWorld("minecraft:the_nether");
+        for (int i = 0; i < players; i++) {
+            port.addPlayer("Player" + i).setRaining(true).setSkyVisible(i % 2 == 0);
+        }
+        
+        civilizationManager = new CivilizationManager();
+        planetStatusManager = new PlanetStatusManager();
+        disasterManager = new DisasterManager();
+        civilizationManager.addProgress(progress, null, "benchmark");
+        
+        scheduler = new TickScheduler();
+        int period = performance.getTickPeriod(subsystem, 20);
+        advanceClock = true;
+        switch (subsystem) {
+            case "civilization":
+                scheduler.schedule(subsystem, period, (server, slice) -> {
+                    civilizationManager.update(server);
+                    return false;
+                });
+                break;
+            case "planet":
+                scheduler.schedule(subsystem, period, (server, slice) ->
+                    planetStatusManager.update(server, civilizationManager.getProgress(), slice));
+                break;
+            case "disaster":
+                advanceClock = false;
+                planetStatusManager.update(port, civilizationManager.getProgress());
+                for (DisasterType type : DisasterType.values()) {
+                    disasterManager.forceDisaster(port, type);
+                }
+                scheduler.schedule(subsystem, period, (server, slice) ->
+                    disasterManager.update(server, planetStatusManager.getCurrentStatus(), slice));
+                break;
+            case "milestones":
+                scheduler.schedule(subsystem, period, (server, slice) ->
+                    civilizationManager.checkMilestones(server, slice));
+                break;
+            default:
+                throw new IllegalArgumentException("unknown subsystem: " + subsystem);
+        }
+        scheduler.setBudget(subsystem, performance.getSubsystemBudgetMicros(subsystem, 0) * 1000);
+    }
+    
+    @TearDown
+    public void tearDown() {
+        disasterManager.cleanup();
+        ModExecutors.shutdown();
+        ModClock.useSystemTime();
+    }
+    
+    @TearDown(Level.Iteration)
+    public void clearBroadcasts() {
+        port.clearBroadcasts();
+    }
+    
+    @Benchmark
+    public long tick() {
+        if (advanceClock) {
+            clock.advance(MILLIS_PER_TICK);
+        }
+        port.tick();
+        scheduler.tick(port);
+        return scheduler.getLastTickNanos();
+    }
+}
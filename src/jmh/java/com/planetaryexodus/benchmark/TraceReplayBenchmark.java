@@ -0,0 +1,140 @@
+package com.planetaryexodus.benchmark;
+
+import com.planetaryexodus.civilization.CivilizationManager;
+import com.planetaryexodus.core.EventBus;
+import com.planetaryexodus.core.ModClock;
+import com.planetaryexodus.core.ModExecutors;
+import com.planetaryexodus.simulation.InMemoryServerPort;
+import com.planetaryexodus.simulation.TraceRecorder;
+import com.planetaryexodus.simulation.TraceReplayer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按输入轨迹重放服务器负载，每次操作重放一个tick
+ * 吞吐量模式给出每秒重放的tick数，SampleTime 模式给出每tick耗时的分位数
+ *
+ * tracePath 指定服务器上记录的轨迹文件（JMH 参数 -p tracePath=...），
+ * 为空时用固定种子生成一小时的合成轨迹。轨迹放完后从头重新开始
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TraceReplayBenchmark {
+    
+    private static final int SYNTHETIC_TICKS = 72000;
+    private static final int SYNTHETIC_PLAYERS = 20;
+    
+    @Param({""})
+    public String tracePath;
+    
+    private TraceReplayer replayer;
+    private Path syntheticTrace;
+    
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkSupport.init();
+        Path path;
+        if (tracePath == null || tracePath.isEmpty()) {
+            syntheticTrace = Files.createTempFile("planetaryexodus-trace", ".bin");
+            writeSyntheticTrace(syntheticTrace, 42L);
+            path = syntheticTrace;
+        } else {
+            path = Paths.get(tracePath);
+        }
+        replayer = TraceReplayer.load(path);
+        replayer.start();
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        replayer.finish();
+        if (syntheticTrace != null) {
+            Files.deleteIfExists(syntheticTrace);
+        }
+    }
+    
+    @TearDown(Level.Iteration)
+    public void clearBroadcasts() {
+        replayer.getPort().clearBroadcasts();
+    }
+    
+    @Benchmark
+    public boolean replayTick() {
+        if (!replayer.step()) {
+            replayer.start();
+            return replayer.step();
+        }
+        return true;
+    }
+    
+    /**
+     * 生成合成轨迹：玩家陆续加入和离开、随机移动，定期增加进度，tick耗时在2到60ms之间
+     */
+    private static void writeSyntheticTrace(Path path, long seed) throws IOException {
+        ModExecutors.start();
+        ModClock.ManualSource clock = new ModClock.ManualSource(1_700_000_000_000L);
+        ModClock.setSource(clock);
+        Random random = new Random(seed);
+        InMemoryServerPort port = new InMemoryServerPort();
+        port.addWorld("minecraft:overworld");
+        CivilizationManager civilization = new CivilizationManager();
+        List<UUID> online = new ArrayList<>();
+        
+        TraceRecorder recorder = TraceRecorder.open(path, 20, seed);
+        EventBus.getInstance().register(recorder);
+        try {
+            for (int tick = 0; tick < SYNTHETIC_TICKS; tick++) {
+                clock.advance(50);
+                recorder.onTickStart(port, 2_000_000L + random.nextInt(58_000_000));
+                EventBus.getInstance().beginTickBatch();
+                if (tick % 500 == 0 && online.size() < SYNTHETIC_PLAYERS) {
+                    InMemoryServerPort.SimulatedPlayer player = port.addPlayer("Player" + tick);
+                    online.add(player.getId());
+                    recorder.onPlayerJoin(player.getId(), player.getName());
+                }
+                if (tick % 3000 == 1 && !online.isEmpty()) {
+                    UUID leaving = online.remove(0);
+                    port.removePlayer(leaving);
+                    recorder.onPlayerLeave(leaving);
+                }
+                for (UUID id : online) {
+                    port.getSimulatedPlayer(id)
+                        .setPosition(random.nextInt(256), 64, random.nextInt(256))
+                        .setSkyVisible(random.nextBoolean());
+                }
+                if (tick % 1000 == 0) {
+                    port.getSimulatedWorld("minecraft:overworld").setRaining(random.nextBoolean());
+                }
+                if (tick % 900 == 0) {
+                    civilization.addProgress(1, online.isEmpty() ? null : online.get(0), "Player", "synthetic");
+                }
+                EventBus.getInstance().flushTickBatch();
+                port.tick();
+            }
+        } finally {
+            EventBus.getInstance().unregister(recorder);
+            recorder.close();
+            ModExecutors.shutdown();
+            ModClock.useSystemTime();
+        }
+    }
+}
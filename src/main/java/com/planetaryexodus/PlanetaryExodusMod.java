@@ -2,6 +2,8 @@ package com.planetaryexodus;
 
 import com.planetaryexodus.core.EventBus;
 import com.planetaryexodus.core.ModConfig;
+import com.planetaryexodus.core.ServerThreadBridge;
+import com.planetaryexodus.server.AdaptiveQualityController;
 import com.planetaryexodus.server.ServerModInitializer;
 import com.planetaryexodus.command.CommandRegistry;
 import com.planetaryexodus.network.ModPackets;
@@ -14,7 +16,7 @@ import net.fabricmc.api.ModInitializer;
  * 采用混合架构：模块化 + 事件驱动
  */
 public class PlanetaryExodusMod implements ModInitializer {
-
+    
     public static final String MOD_ID = "planetaryexodus";
     public static final Logger LOGGER = LoggerFactory.getLogger(MOD_ID);
     
@@ -36,6 +38,7 @@ public class PlanetaryExodusMod implements ModInitializer {
         
         // 加载配置
         config = ModConfig.load();
+        applyPerformanceConfig();
         
         // 初始化网络数据包
         ModPackets.register();
@@ -58,6 +61,19 @@ public class PlanetaryExodusMod implements ModInitializer {
         return INSTANCE;
     }
     
+    /**
+     * 在没有 Fabric 加载器和 Minecraft 服务器的环境中初始化（基准测试、离线模拟）
+     * 只准备事件总线和配置，不注册网络包、命令和服务器事件
+     */
+    public static PlanetaryExodusMod initHeadless(ModConfig config) {
+        PlanetaryExodusMod mod = new PlanetaryExodusMod();
+        mod.eventBus = EventBus.getInstance();
+        mod.config = config;
+        mod.applyPerformanceConfig();
+        INSTANCE = mod;
+        return mod;
+    }
+    
     /**
      * 获取事件总线
      */
@@ -77,6 +93,17 @@ public class PlanetaryExodusMod implements ModInitializer {
      */
     public void reloadConfig() {
         config = ModConfig.load();
+        applyPerformanceConfig();
         LOGGER.info("配置已重新加载");
     }
+    
+    /**
+     * 将性能配置应用到事件总线、服务器线程桥和自适应降级控制器
+     */
+    private void applyPerformanceConfig() {
+        ModConfig.PerformanceConfig performance = config.getPerformance();
+        eventBus.setSubscriberBudgetNanos(performance.subscriberBudgetMicros * 1000);
+        ServerThreadBridge.getInstance().setDrainBudgetNanos(performance.bridgeDrainBudgetMicros * 1000);
+        AdaptiveQualityController.getInstance().configure(performance);
+    }
 }
@@ -0,0 +1,40 @@
+package com.planetaryexodus.api.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 事件订阅注解
+ * 标注在只有一个参数的实例方法上，参数类型即订阅的事件类型，
+ * 通过 EventBus.register(listener) 一次性注册对象上的所有订阅方法
+ * 
+ * 例如只处理辐射灾难：
+ * <pre>
+ * &#64;Subscribe(key = "RADIATION")
+ * void onRadiation(DisasterTriggeredEvent event) { ... }
+ * </pre>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Subscribe {
+    
+    /**
+     * 是否在工作线程上异步执行（使用默认异步设置）
+     */
+    boolean async() default false;
+    
+    /**
+     * 批处理模式下是否逐个接收可合并事件
+     */
+    boolean receiveEveryEvent() default false;
+    
+    /**
+     * 路由键（枚举常量名），只接收该键的事件
+     * 仅适用于实现了 IKeyedEvent 的事件类型，为空时接收所有事件
+     */
+    String key() default "";
+}
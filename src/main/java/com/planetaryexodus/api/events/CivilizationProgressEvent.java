@@ -1,19 +1,32 @@
 package com.planetaryexodus.api.events;
 
+import com.planetaryexodus.api.interfaces.ICoalescableEvent;
+import com.planetaryexodus.core.ModClock;
 import net.minecraft.server.network.ServerPlayerEntity;
 
+import java.util.Objects;
+import java.util.UUID;
+
 /**
  * 文明进度事件
  * 当文明进度发生变化时触发
+ * 批处理模式下同一tick内的多次进度变化会合并为一个事件
  */
-public class CivilizationProgressEvent {
+public class CivilizationProgressEvent implements ICoalescableEvent<CivilizationProgressEvent> {
+    
+    /** 合并了不同来源的进度时使用的来源名 */
+    public static final String MIXED_SOURCE = "mixed";
     
     private final int oldProgress;
     private final int newProgress;
     private final int progressChange;
     private final String source;
     private final ServerPlayerEntity contributor;
+    // 贡献者的ID和名称，离线模拟和重放时没有玩家实体也会设置
+    private final UUID contributorId;
+    private final String contributorName;
     private final long timestamp;
+    private final int mergedCount;
     
     /**
      * 创建文明进度事件
@@ -25,12 +38,54 @@ public class CivilizationProgressEvent {
      */
     public CivilizationProgressEvent(int oldProgress, int newProgress, int progressChange, 
                                     String source, ServerPlayerEntity contributor) {
+        this(oldProgress, newProgress, progressChange, source, contributor,
+            contributor != null ? contributor.getUuid() : null,
+            contributor != null ? contributor.getName().getString() : null, ModClock.currentTimeMillis(), 1);
+    }
+    
+    /**
+     * 创建没有玩家实体的文明进度事件（离线模拟和重放）
+     * @param contributorId 贡献的玩家ID（可为null）
+     * @param contributorName 贡献的玩家名称
+     */
+    public CivilizationProgressEvent(int oldProgress, int newProgress, int progressChange,
+                                     String source, UUID contributorId, String contributorName) {
+        this(oldProgress, newProgress, progressChange, source, null, contributorId,
+            contributorId != null ? contributorName : null, ModClock.currentTimeMillis(), 1);
+    }
+    
+    private CivilizationProgressEvent(int oldProgress, int newProgress, int progressChange, String source,
+                                      ServerPlayerEntity contributor, UUID contributorId, String contributorName,
+                                      long timestamp, int mergedCount) {
         this.oldProgress = oldProgress;
         this.newProgress = newProgress;
         this.progressChange = progressChange;
         this.source = source;
         this.contributor = contributor;
-        this.timestamp = System.currentTimeMillis();
+        this.contributorId = contributorId;
+        this.contributorName = contributorName;
+        this.timestamp = timestamp;
+        this.mergedCount = mergedCount;
+    }
+    
+    /**
+     * 合并随后的进度事件：保留最早的旧进度和最新的新进度，变化量累加
+     * 来源或贡献者不一致时分别记为 {@link #MIXED_SOURCE} 和 null
+     */
+    @Override
+    public CivilizationProgressEvent coalesceWith(CivilizationProgressEvent next) {
+        boolean sameContributor = Objects.equals(contributorId, next.contributorId);
+        return new CivilizationProgressEvent(
+            oldProgress,
+            next.newProgress,
+            progressChange + next.progressChange,
+            Objects.equals(source, next.source) ? source : MIXED_SOURCE,
+            sameContributor && contributor == next.contributor ? contributor : null,
+            sameContributor ? contributorId : null,
+            sameContributor ? contributorName : null,
+            next.timestamp,
+            mergedCount + next.mergedCount
+        );
     }
     
     /**
@@ -62,12 +117,19 @@ public class CivilizationProgressEvent {
     }
     
     /**
-     * 获取贡献的玩家
+     * 获取贡献的玩家，离线模拟和重放时为null
      */
     public ServerPlayerEntity getContributor() {
         return contributor;
     }
     
+    /**
+     * 获取贡献的玩家ID，没有贡献者时为null
+     */
+    public UUID getContributorId() {
+        return contributorId;
+    }
+    
     /**
      * 获取事件时间戳
      */
@@ -75,6 +137,13 @@ public class CivilizationProgressEvent {
         return timestamp;
     }
     
+    /**
+     * 获取合并的原始事件数量（未合并时为1）
+     */
+    public int getMergedCount() {
+        return mergedCount;
+    }
+    
     /**
      * 判断是否为进度增加
      */
@@ -101,7 +170,7 @@ public class CivilizationProgressEvent {
      * 获取贡献者名称（如果存在）
      */
     public String getContributorName() {
-        return contributor != null ? contributor.getName().getString() : "未知";
+        return contributorName != null ? contributorName : "未知";
     }
     
     /**
@@ -109,7 +178,7 @@ public class CivilizationProgressEvent {
      */
     public String getDescription() {
         String changeSymbol = isProgressIncrease() ? "+" : "";
-        String contributorInfo = contributor != null ? 
+        String contributorInfo = contributorId != null ? 
             " (贡献者: " + getContributorName() + ")" : "";
         
         return String.format("文明进度: %d%% → %d%% (%s%d%%) [来源: %s]%s",
@@ -123,8 +192,9 @@ public class CivilizationProgressEvent {
                ", newProgress=" + newProgress +
                ", progressChange=" + progressChange +
                ", source='" + source + '\'' +
-               ", contributor=" + (contributor != null ? contributor.getName().getString() : "null") +
+               ", contributor=" + (contributorId != null ? getContributorName() : "null") +
                ", timestamp=" + timestamp +
+               ", mergedCount=" + mergedCount +
                '}';
     }
 }
\ No newline at end of file
@@ -1,12 +1,14 @@
 package com.planetaryexodus.api.events;
 
+import com.planetaryexodus.api.interfaces.IKeyedEvent;
 import com.planetaryexodus.disaster.DisasterType;
 
 /**
  * 灾难触发事件
  * 当灾难被触发时发布
+ * 以灾难类型作为路由键，可以只订阅某一种灾难
  */
-public class DisasterTriggeredEvent {
+public class DisasterTriggeredEvent implements IKeyedEvent<DisasterType> {
     
     private final DisasterType disasterType;
     private final int durationMinutes;
@@ -23,6 +25,14 @@ public class DisasterTriggeredEvent {
         return disasterType;
     }
     
+    /**
+     * 路由键：灾难类型
+     */
+    @Override
+    public DisasterType getRoutingKey() {
+        return disasterType;
+    }
+    
     /**
      * 获取灾难持续时间（分钟）
      */
@@ -1,12 +1,15 @@
 package com.planetaryexodus.api.events;
 
+import com.planetaryexodus.api.interfaces.IKeyedEvent;
+import com.planetaryexodus.core.ModClock;
 import com.planetaryexodus.planet.PlanetStatus;
 
 /**
  * 行星状态改变事件
  * 当行星状态发生变化时触发
+ * 以新状态作为路由键，可以只订阅进入某个状态的变化
  */
-public class PlanetStatusChangedEvent {
+public class PlanetStatusChangedEvent implements IKeyedEvent<PlanetStatus> {
     
     private final PlanetStatus oldStatus;
     private final PlanetStatus newStatus;
@@ -23,7 +26,7 @@ public class PlanetStatusChangedEvent {
         this.oldStatus = oldStatus;
         this.newStatus = newStatus;
         this.progress = progress;
-        this.timestamp = System.currentTimeMillis();
+        this.timestamp = ModClock.currentTimeMillis();
     }
     
     /**
@@ -40,6 +43,14 @@ public class PlanetStatusChangedEvent {
         return newStatus;
     }
     
+    /**
+     * 路由键：新的行星状态
+     */
+    @Override
+    public PlanetStatus getRoutingKey() {
+        return newStatus;
+    }
+    
     /**
      * 获取当前的文明进度
      */
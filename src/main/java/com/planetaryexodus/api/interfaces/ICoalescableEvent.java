@@ -0,0 +1,16 @@
+package com.planetaryexodus.api.interfaces;
+
+/**
+ * 可合并事件接口
+ * 实现此接口的事件在tick批处理模式下，同一tick内发布的多个实例会合并为一个聚合事件
+ * @param <T> 事件类型
+ */
+public interface ICoalescableEvent<T> {
+    
+    /**
+     * 将本事件与随后发布的同类事件合并
+     * @param next 随后发布的事件
+     * @return 合并后的聚合事件
+     */
+    T coalesceWith(T next);
+}
@@ -20,4 +20,13 @@ public interface IEventSubscriber<T> {
     default Class<T> getEventType() {
         return null; // 默认实现，可由子类覆盖
     }
+    
+    /**
+     * 是否需要逐个接收事件
+     * 批处理模式下可合并事件默认只投递合并后的聚合事件，返回true时改为逐个投递原始事件
+     * @return 是否逐个接收
+     */
+    default boolean receivesEveryEvent() {
+        return false;
+    }
 }
\ No newline at end of file
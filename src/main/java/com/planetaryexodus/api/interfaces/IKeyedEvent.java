@@ -0,0 +1,16 @@
+package com.planetaryexodus.api.interfaces;
+
+/**
+ * 带路由键的事件接口
+ * 订阅者可以只订阅某个键值（例如某一种灾难类型），事件总线按键索引分发，
+ * 不匹配的订阅者不会被调用
+ * @param <K> 路由键的枚举类型
+ */
+public interface IKeyedEvent<K extends Enum<K>> {
+    
+    /**
+     * 获取事件的路由键
+     * @return 路由键，不能为null
+     */
+    K getRoutingKey();
+}
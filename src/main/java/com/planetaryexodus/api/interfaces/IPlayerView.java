@@ -0,0 +1,34 @@
+package com.planetaryexodus.api.interfaces;
+
+import java.util.UUID;
+
+/**
+ * 通过服务器端口看到的玩家
+ */
+public interface IPlayerView {
+    
+    UUID getId();
+    
+    String getName();
+    
+    double getX();
+    
+    double getY();
+    
+    double getZ();
+    
+    /**
+     * 玩家头顶是否能看到天空（在室外）
+     */
+    boolean isSkyVisible();
+    
+    /**
+     * 玩家是否浸没在水中
+     */
+    boolean isSubmergedInWater();
+    
+    /**
+     * 玩家所在的世界是否在下雨
+     */
+    boolean isRaining();
+}
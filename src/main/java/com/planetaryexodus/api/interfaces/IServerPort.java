@@ -0,0 +1,40 @@
+package com.planetaryexodus.api.interfaces;
+
+import net.minecraft.text.Text;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 服务器端口
+ * 管理器通过它访问玩家、世界和tick计数，而不直接依赖 MinecraftServer，
+ * 因此同一套逻辑既可以运行在真实服务器上，也可以运行在内存中的模拟环境里
+ */
+public interface IServerPort {
+    
+    /**
+     * 获取服务器已运行的tick数
+     */
+    int getTicks();
+    
+    /**
+     * 获取在线玩家
+     */
+    List<IPlayerView> getPlayers();
+    
+    /**
+     * 获取在线玩家
+     * @return 玩家不在线时返回null
+     */
+    IPlayerView getPlayer(UUID id);
+    
+    /**
+     * 获取所有世界
+     */
+    List<IWorldView> getWorlds();
+    
+    /**
+     * 向所有玩家广播消息
+     */
+    void broadcast(Text message);
+}
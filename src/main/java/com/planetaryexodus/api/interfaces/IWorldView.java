@@ -0,0 +1,24 @@
+package com.planetaryexodus.api.interfaces;
+
+/**
+ * 通过服务器端口看到的世界
+ */
+public interface IWorldView {
+    
+    /**
+     * 获取世界标识，例如 minecraft:overworld
+     */
+    String getName();
+    
+    boolean isRaining();
+    
+    /**
+     * 获取随机刻速度游戏规则
+     */
+    int getRandomTickSpeed();
+    
+    /**
+     * 设置随机刻速度游戏规则
+     */
+    void setRandomTickSpeed(int speed);
+}
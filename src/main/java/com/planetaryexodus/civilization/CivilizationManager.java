@@ -1,10 +1,13 @@
 package com.planetaryexodus.civilization;
 
 import com.planetaryexodus.PlanetaryExodusMod;
+import com.planetaryexodus.api.interfaces.IServerPort;
+import com.planetaryexodus.core.ModClock;
 import com.planetaryexodus.core.ModConfig;
 import com.planetaryexodus.api.events.CivilizationProgressEvent;
 import com.planetaryexodus.api.events.MilestoneAchievedEvent;
-import net.minecraft.server.MinecraftServer;
+import com.planetaryexodus.persistence.JournalReplayHandler;
+import com.planetaryexodus.persistence.PlayerContributionStore;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.text.Text;
 import net.minecraft.util.Identifier;
@@ -12,22 +15,32 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.function.LongSupplier;
 
 /**
  * 文明进度管理器
  * 负责管理整个文明的迁移进度、阶段和里程碑
  */
-public class CivilizationManager {
+public class CivilizationManager implements JournalReplayHandler {
     
     private static final Logger LOGGER = LoggerFactory.getLogger("PlanetaryExodus/Civilization");
-    private static final Identifier DATA_ID = new Identifier("planetaryexodus", "civilization_data");
+    public static final Identifier DATA_ID = new Identifier("planetaryexodus", "civilization_data");
     
     // 文明数据
     private int progress = 0;
     private int currentStageIndex = 0;
-    private long lastUpdateTime = System.currentTimeMillis();
+    private long lastUpdateTime = ModClock.currentTimeMillis();
     private final Set<String> achievedMilestones = new HashSet<>();
-    private final Map<UUID, PlayerContribution> playerContributions = new HashMap<>();
+    // 需要持久化的状态（进度、里程碑和玩家贡献）的修改计数
+    private int modCount;
+    // 玩家贡献：没有磁盘存储时全部在内存中，有存储时只缓存在线和最近用到的玩家
+    private ContributionCache playerContributions = new ContributionCache(null, Integer.MAX_VALUE);
+    // 写回玩家贡献时事件日志的最后序号，未启用日志时返回负数
+    private LongSupplier journalSequence = () -> -1;
+    // 重放到的最后一条日志记录，未启用日志时作为写回记录的序号
+    private long replayedSequence;
+    // 正在重放的日志记录的序号
+    private long replaySequence;
     
     // 配置
     private ModConfig.CivilizationConfig config;
@@ -37,6 +50,9 @@ public class CivilizationManager {
     // 迁移阶段
     private MigrationStage currentStage;
     
+    // 尚未达成的里程碑中最低的进度要求，进度未到达时无需逐个检查里程碑
+    private int nextMilestoneProgress = Integer.MAX_VALUE;
+    
     public CivilizationManager() {
         reloadConfig();
         updateCurrentStage();
@@ -59,6 +75,7 @@ public class CivilizationManager {
             this.milestones.add(new Milestone(configMilestone.name, configMilestone.progressReward));
         }
         updateCurrentStage();
+        updateNextMilestoneProgress();
         LOGGER.info("文明配置已重新加载，共 {} 个阶段，{} 个里程碑", stages.size(), milestones.size());
     }
     
@@ -84,16 +101,33 @@ public class CivilizationManager {
      * @param source 进度来源（如"milestone", "construction", "research"等）
      */
     public void addProgress(int amount, ServerPlayerEntity player, String source) {
+        if (player == null) {
+            addProgress(amount, null, null, null, source);
+        } else {
+            addProgress(amount, player.getUuid(), player.getName().getString(), player, source);
+        }
+    }
+    
+    /**
+     * 增加文明进度（按玩家ID记录贡献，用于离线模拟和重放）
+     * 发布的进度事件中没有玩家实体，只有玩家ID和名称
+     * @param playerId 贡献的玩家ID（可为null）
+     * @param playerName 贡献的玩家名称
+     */
+    public void addProgress(int amount, UUID playerId, String playerName, String source) {
+        addProgress(amount, playerId, playerName, null, source);
+    }
+    
+    private void addProgress(int amount, UUID playerId, String playerName, ServerPlayerEntity player, String source) {
         if (amount <= 0) return;
         
         int oldProgress = progress;
         progress = Math.min(100, progress + amount);
+        modCount++;
         
         // 记录玩家贡献
-        if (player != null) {
-            PlayerContribution contribution = playerContributions.computeIfAbsent(
-                player.getUuid(), uuid -> new PlayerContribution(player.getName().getString())
-            );
+        if (playerId != null) {
+            PlayerContribution contribution = playerContributions.getOrCreate(playerId, playerName);
             contribution.addContribution(amount, source);
         }
         
@@ -108,12 +142,15 @@ public class CivilizationManager {
         }
         
         // 发布进度事件
-        PlanetaryExodusMod.getInstance().getEventBus().publish(
-            new CivilizationProgressEvent(oldProgress, progress, amount, source, player)
+        PlanetaryExodusMod.getInstance().getEventBus().publish(player != null
+            ? new CivilizationProgressEvent(oldProgress, progress, amount, source, player)
+            : new CivilizationProgressEvent(oldProgress, progress, amount, source, playerId, playerName)
         );
         
-        // 检查里程碑
-        checkMilestones(null);
+        // 检查里程碑（只有跨过下一个里程碑的进度要求时才需要）
+        if (progress >= nextMilestoneProgress) {
+            checkMilestones(null);
+        }
         
         LOGGER.debug("文明进度增加: {} (+{})，当前: {}%，阶段: {}", 
             oldProgress, amount, progress, currentStage.name);
@@ -122,36 +159,81 @@ public class CivilizationManager {
     /**
      * 检查里程碑
      */
-    public void checkMilestones(MinecraftServer server) {
+    public void checkMilestones(IServerPort server) {
+        if (progress < nextMilestoneProgress) {
+            return;
+        }
         for (Milestone milestone : milestones) {
-            String milestoneId = milestone.name;
+            checkMilestone(server, milestone);
+        }
+        updateNextMilestoneProgress();
+    }
+    
+    /**
+     * 分片检查里程碑，每片检查一个，供调度器在时间片内逐步完成
+     * @param slice 分片序号，即里程碑下标
+     * @return 还有里程碑需要检查时返回true
+     */
+    public boolean checkMilestones(IServerPort server, int slice) {
+        if (slice == 0 && progress < nextMilestoneProgress) {
+            return false;
+        }
+        // 重新加载配置可能使里程碑列表变短
+        if (slice < milestones.size()) {
+            checkMilestone(server, milestones.get(slice));
+        }
+        if (slice + 1 < milestones.size()) {
+            return true;
+        }
+        updateNextMilestoneProgress();
+        return false;
+    }
+    
+    /**
+     * 检查单个里程碑是否达成
+     */
+    private void checkMilestone(IServerPort server, Milestone milestone) {
+        String milestoneId = milestone.name;
+        
+        if (!achievedMilestones.contains(milestoneId) && progress >= milestone.progressReward) {
+            // 达到里程碑
+            achievedMilestones.add(milestoneId);
+            modCount++;
             
-            if (!achievedMilestones.contains(milestoneId) && progress >= milestone.progressReward) {
-                // 达到里程碑
-                achievedMilestones.add(milestoneId);
-                
-                // 发布里程碑事件
-                PlanetaryExodusMod.getInstance().getEventBus().publish(
-                    new MilestoneAchievedEvent(milestone, progress)
-                );
-                
-                // 通知所有玩家
-                if (server != null) {
-                    Text message = Text.translatable("civilization.milestone.achieved", 
-                        Text.translatable("milestone." + milestoneId));
-                    server.getPlayerManager().broadcast(message, false);
-                }
-                
-                LOGGER.info("🎉 达到里程碑: {} (进度奖励: {})", milestoneId, milestone.progressReward);
+            // 发布里程碑事件
+            PlanetaryExodusMod.getInstance().getEventBus().publish(
+                new MilestoneAchievedEvent(milestone, progress)
+            );
+            
+            // 通知所有玩家
+            if (server != null) {
+                Text message = Text.translatable("civilization.milestone.achieved", 
+                    Text.translatable("milestone." + milestoneId));
+                server.broadcast(message);
+            }
+            
+            LOGGER.info("🎉 达到里程碑: {} (进度奖励: {})", milestoneId, milestone.progressReward);
+        }
+    }
+    
+    /**
+     * 重新计算尚未达成的里程碑中最低的进度要求
+     */
+    private void updateNextMilestoneProgress() {
+        int next = Integer.MAX_VALUE;
+        for (Milestone milestone : milestones) {
+            if (!achievedMilestones.contains(milestone.name)) {
+                next = Math.min(next, milestone.progressReward);
             }
         }
+        nextMilestoneProgress = next;
     }
     
     /**
      * 服务器更新
      */
-    public void update(MinecraftServer server) {
-        long currentTime = System.currentTimeMillis();
+    public void update(IServerPort server) {
+        long currentTime = ModClock.currentTimeMillis();
         long elapsed = currentTime - lastUpdateTime;
         
         // 每秒检查一次
@@ -192,19 +274,47 @@ public class CivilizationManager {
     }
     
     /**
-     * 获取玩家贡献
+     * 逐个遍历所有玩家的贡献，不会一次把所有历史玩家读入内存
+     * 有磁盘存储时，不在缓存中的玩家在遍历到时才从磁盘读取，得到的是只读副本；
+     * 遍历会读取磁盘，不应在每tick的逻辑中使用
      */
-    public Map<UUID, PlayerContribution> getPlayerContributions() {
-        return Collections.unmodifiableMap(playerContributions);
+    public Iterator<PlayerContribution> getPlayerContributions() {
+        return playerContributions.iterator();
     }
     
     /**
-     * 获取指定玩家的贡献
+     * 获取指定玩家的贡献，不在缓存中时从磁盘读取
      */
     public PlayerContribution getPlayerContribution(UUID playerId) {
         return playerContributions.get(playerId);
     }
     
+    /**
+     * 使用磁盘存储保存玩家贡献，内存中只缓存在线和最近用到的玩家
+     * 在加载数据之前调用；store 为null时恢复为全部保存在内存和快照中
+     * @param cacheSize 缓存的玩家数上限（在线玩家不计入淘汰）
+     * @param journalSequence 返回事件日志的最后序号，未启用日志时返回负数
+     */
+    public void setPlayerStore(PlayerContributionStore store, int cacheSize, LongSupplier journalSequence) {
+        this.playerContributions = store != null
+            ? new ContributionCache(store, cacheSize) : new ContributionCache(null, Integer.MAX_VALUE);
+        this.journalSequence = journalSequence;
+    }
+    
+    /**
+     * 获取玩家贡献的磁盘存储，没有时为null
+     */
+    public PlayerContributionStore getPlayerStore() {
+        return playerContributions.getStore();
+    }
+    
+    /**
+     * 加载玩家数据：玩家加入时读入缓存，离开前不会被淘汰
+     */
+    public void loadPlayerData(ServerPlayerEntity player) {
+        playerContributions.pin(player.getUuid());
+    }
+    
     /**
      * 同步玩家数据
      */
@@ -213,26 +323,128 @@ public class CivilizationManager {
     }
     
     /**
-     * 保存玩家数据
+     * 保存玩家数据：玩家离开后，修改在下一次 writeBackPlayerData 时写回磁盘
      */
     public void savePlayerData(ServerPlayerEntity player) {
-        // TODO: 实现数据保存
+        playerContributions.release(player.getUuid());
+    }
+    
+    /**
+     * 写回已离线玩家的修改，并把缓存淘汰到容量以内
+     * 在本tick的事件都已投递（写入日志）之后调用，写回的记录才不会在重放时重复计算
+     */
+    public void writeBackPlayerData() {
+        long sequence = journalSequence.getAsLong();
+        playerContributions.writeBack(sequence >= 0 ? sequence : replayedSequence);
     }
     
     /**
      * 加载数据
+     * 重置为初始状态，随后由世界存档中的快照和事件日志重放恢复
      */
     public void load() {
-        // TODO: 实现数据加载
         LOGGER.info("加载文明进度数据...");
+        progress = 0;
+        achievedMilestones.clear();
+        playerContributions.clear();
+        updateCurrentStage();
+        modCount++;
+        updateNextMilestoneProgress();
+    }
+    
+    @Override
+    public void beginRecord(long sequence) {
+        replaySequence = sequence;
+    }
+    
+    /**
+     * 重放进度记录：直接恢复进度和玩家贡献，不发布事件
+     * 磁盘上的玩家记录已包含的日志记录跳过
+     */
+    @Override
+    public void onCivilizationProgress(long timestamp, int oldProgress, int newProgress, int progressChange,
+                                       String source, UUID contributorId, String contributorName) {
+        progress = newProgress;
+        modCount++;
+        if (contributorId != null) {
+            PlayerContribution contribution = playerContributions.getOrCreate(contributorId, contributorName);
+            if (replaySequence > contribution.storedSequence) {
+                contribution.replayContribution(progressChange, source, timestamp);
+            }
+        }
     }
     
     /**
-     * 保存数据
+     * 重放里程碑记录
      */
-    public void save() {
-        // TODO: 实现数据保存
-        LOGGER.info("保存文明进度数据...");
+    @Override
+    public void onMilestoneAchieved(long timestamp, String milestoneName, int progressReward, int progress) {
+        achievedMilestones.add(milestoneName);
+        modCount++;
+    }
+    
+    /**
+     * 重放结束后重新计算阶段和下一个里程碑
+     */
+    @Override
+    public void onReplayFinished(long lastSequence) {
+        replayedSequence = lastSequence;
+        updateCurrentStage();
+        updateNextMilestoneProgress();
+        LOGGER.info("文明进度已恢复: {}%，阶段: {}，里程碑 {} 个，缓存中的贡献玩家 {} 名",
+            progress, currentStage.name, achievedMilestones.size(), playerContributions.size());
+    }
+    
+    /**
+     * 获取修改计数：需要持久化的状态每次变化时递增，检查点据此跳过没有变化的部分
+     */
+    public int getModCount() {
+        return modCount;
+    }
+    
+    /**
+     * 采集需要持久化的状态，在服务器线程上调用
+     * 返回的对象之后不再修改，可以交给其他线程编码和写入；
+     * 玩家贡献的副本只在变化后重新创建，未变化的玩家直接复用上次的副本。
+     * 通常只包含上次采集之后有修改的玩家，之后视为已保存（有磁盘存储时由调用方写回存储）
+     * @param includeAllContributions 包含所有玩家（没有磁盘存储时的完整检查点）
+     */
+    public SavedState createSavedState(boolean includeAllContributions) {
+        List<SavedContribution> contributions = includeAllContributions
+            ? playerContributions.collectAll() : playerContributions.collectDirty();
+        return new SavedState(progress, lastUpdateTime, new ArrayList<>(achievedMilestones), contributions);
+    }
+    
+    /**
+     * 采集全部状态的副本，不改变玩家贡献的修改标记，在服务器线程上调用
+     * @param includeContributions 包含内存中所有玩家的贡献
+     */
+    public SavedState copySavedState(boolean includeContributions) {
+        List<SavedContribution> contributions = includeContributions
+            ? playerContributions.copyAll() : new ArrayList<>();
+        return new SavedState(progress, lastUpdateTime, new ArrayList<>(achievedMilestones), contributions);
+    }
+    
+    /**
+     * 从保存的状态恢复，不发布事件
+     * 有磁盘存储时，快照中的玩家贡献（旧版本的存档）标记为有修改，随之后的写回迁移到存储中
+     */
+    public void restore(SavedState state) {
+        progress = Math.max(0, Math.min(100, state.progress));
+        lastUpdateTime = state.lastUpdateTime;
+        achievedMilestones.clear();
+        achievedMilestones.addAll(state.achievedMilestones);
+        playerContributions.clear();
+        for (SavedContribution saved : state.contributions) {
+            PlayerContribution contribution = new PlayerContribution(saved, 0);
+            if (playerContributions.getStore() != null) {
+                contribution.markDirty();
+            }
+            playerContributions.put(contribution);
+        }
+        updateCurrentStage();
+        modCount++;
+        updateNextMilestoneProgress();
     }
     
     /**
@@ -240,28 +452,114 @@ public class CivilizationManager {
      */
     public void cleanup() {
         playerContributions.clear();
+        if (playerContributions.getStore() != null) {
+            playerContributions.getStore().awaitPendingWrites();
+            setPlayerStore(null, 0, () -> -1);
+        }
         achievedMilestones.clear();
+        modCount++;
+        updateNextMilestoneProgress();
         LOGGER.info("文明进度管理器资源已清理");
     }
     
+    /**
+     * 重置进度、阶段、里程碑和玩家贡献，不发布事件
+     * 用于离线模拟和基准测试，在同一个管理器上重复推进进度
+     */
+    public void reset() {
+        progress = 0;
+        achievedMilestones.clear();
+        playerContributions.clear();
+        lastUpdateTime = ModClock.currentTimeMillis();
+        updateCurrentStage();
+        modCount++;
+        updateNextMilestoneProgress();
+    }
+    
     /**
      * 玩家贡献记录
      */
     public static class PlayerContribution {
+        private final UUID playerId;
         private final String playerName;
         private int totalContribution = 0;
         private final Map<String, Integer> contributionsBySource = new HashMap<>();
-        private long firstContributionTime = System.currentTimeMillis();
-        private long lastContributionTime = System.currentTimeMillis();
+        private long firstContributionTime = ModClock.currentTimeMillis();
+        private long lastContributionTime = ModClock.currentTimeMillis();
+        // 上次保存时创建的副本，贡献变化后失效；为null表示有未保存的修改
+        private SavedContribution saved;
+        // 读取的磁盘记录已包含的最后一条日志记录的序号
+        final long storedSequence;
         
-        public PlayerContribution(String playerName) {
+        public PlayerContribution(UUID playerId, String playerName) {
+            this.playerId = playerId;
             this.playerName = playerName;
+            this.storedSequence = 0;
+        }
+        
+        PlayerContribution(SavedContribution saved, long storedSequence) {
+            this.playerId = saved.playerId;
+            this.playerName = saved.playerName;
+            this.totalContribution = saved.totalContribution;
+            this.contributionsBySource.putAll(saved.contributionsBySource);
+            this.firstContributionTime = saved.firstContributionTime;
+            this.lastContributionTime = saved.lastContributionTime;
+            this.saved = saved;
+            this.storedSequence = storedSequence;
         }
         
         public void addContribution(int amount, String source) {
             totalContribution += amount;
             contributionsBySource.merge(source, amount, Integer::sum);
-            lastContributionTime = System.currentTimeMillis();
+            lastContributionTime = ModClock.currentTimeMillis();
+            saved = null;
+        }
+        
+        /**
+         * 按日志中记录的时间恢复一次贡献
+         */
+        void replayContribution(int amount, String source, long timestamp) {
+            if (contributionsBySource.isEmpty()) {
+                firstContributionTime = timestamp;
+            }
+            totalContribution += amount;
+            contributionsBySource.merge(source, amount, Integer::sum);
+            lastContributionTime = timestamp;
+            saved = null;
+        }
+        
+        boolean isDirty() {
+            return saved == null;
+        }
+        
+        void markDirty() {
+            saved = null;
+        }
+        
+        /**
+         * 获取不可变的副本，没有变化时返回上次的副本；之后视为已保存
+         */
+        SavedContribution toSaved() {
+            if (saved == null) {
+                saved = copySaved();
+            }
+            return saved;
+        }
+        
+        /**
+         * 获取不可变的副本，不改变修改标记
+         */
+        SavedContribution copySaved() {
+            SavedContribution current = saved;
+            if (current == null) {
+                current = new SavedContribution(playerId, playerName, totalContribution,
+                    new HashMap<>(contributionsBySource), firstContributionTime, lastContributionTime);
+            }
+            return current;
+        }
+        
+        public UUID getPlayerId() {
+            return playerId;
         }
         
         public String getPlayerName() {
@@ -290,6 +588,47 @@ public class CivilizationManager {
         }
     }
     
+    /**
+     * 需要持久化的文明状态
+     */
+    public static final class SavedState {
+        public final int progress;
+        public final long lastUpdateTime;
+        public final List<String> achievedMilestones;
+        public final List<SavedContribution> contributions;
+        
+        public SavedState(int progress, long lastUpdateTime, List<String> achievedMilestones,
+                          List<SavedContribution> contributions) {
+            this.progress = progress;
+            this.lastUpdateTime = lastUpdateTime;
+            this.achievedMilestones = Collections.unmodifiableList(achievedMilestones);
+            this.contributions = Collections.unmodifiableList(contributions);
+        }
+    }
+    
+    /**
+     * 单个玩家贡献的不可变副本
+     */
+    public static final class SavedContribution {
+        public final UUID playerId;
+        public final String playerName;
+        public final int totalContribution;
+        public final Map<String, Integer> contributionsBySource;
+        public final long firstContributionTime;
+        public final long lastContributionTime;
+        
+        public SavedContribution(UUID playerId, String playerName, int totalContribution,
+                                 Map<String, Integer> contributionsBySource,
+                                 long firstContributionTime, long lastContributionTime) {
+            this.playerId = playerId;
+            this.playerName = playerName;
+            this.totalContribution = totalContribution;
+            this.contributionsBySource = Collections.unmodifiableMap(contributionsBySource);
+            this.firstContributionTime = firstContributionTime;
+            this.lastContributionTime = lastContributionTime;
+        }
+    }
+    
     /**
      * 迁移阶段数据类
      */
@@ -0,0 +1,239 @@
+package com.planetaryexodus.civilization;
+
+import com.planetaryexodus.persistence.PlayerContributionStore;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 玩家贡献的LRU缓存，只在服务器线程上访问
+ * 有磁盘存储时只保留在线玩家和最近用到的玩家，其余按需从存储读取；
+ * 没有存储时（离线模拟、重放）所有玩家都留在内存中
+ *
+ * 离线玩家的修改和超出容量被淘汰的修改不立即写出，而是在 writeBack 中统一写回，
+ * 由调用方保证此时本tick的事件都已写入日志，写回的记录才能标记正确的日志序号
+ */
+final class ContributionCache {
+    
+    private final PlayerContributionStore store;
+    private final int capacity;
+    // 按访问顺序排列，最久未用的在最前面
+    private final LinkedHashMap<UUID, CivilizationManager.PlayerContribution> entries =
+        new LinkedHashMap<>(16, 0.75f, true);
+    // 在线玩家不会被淘汰
+    private final Set<UUID> online = new HashSet<>();
+    // 已离线、等待写回的玩家
+    private final Set<UUID> released = new HashSet<>();
+    
+    ContributionCache(PlayerContributionStore store, int capacity) {
+        this.store = store;
+        this.capacity = Math.max(1, capacity);
+    }
+    
+    PlayerContributionStore getStore() {
+        return store;
+    }
+    
+    /**
+     * 获取玩家的贡献，缓存中没有时从存储读取
+     * @return 没有记录时返回null
+     */
+    CivilizationManager.PlayerContribution get(UUID playerId) {
+        CivilizationManager.PlayerContribution contribution = entries.get(playerId);
+        if (contribution != null || store == null) {
+            return contribution;
+        }
+        PlayerContributionStore.StoredContribution stored = store.load(playerId);
+        if (stored == null) {
+            return null;
+        }
+        contribution = new CivilizationManager.PlayerContribution(stored.contribution, stored.journalSequence);
+        entries.put(playerId, contribution);
+        return contribution;
+    }
+    
+    /**
+     * 获取玩家的贡献，没有记录时创建
+     */
+    CivilizationManager.PlayerContribution getOrCreate(UUID playerId, String playerName) {
+        CivilizationManager.PlayerContribution contribution = get(playerId);
+        if (contribution == null) {
+            contribution = new CivilizationManager.PlayerContribution(playerId, playerName);
+            entries.put(playerId, contribution);
+        }
+        return contribution;
+    }
+    
+    /**
+     * 放入从快照恢复的贡献
+     */
+    void put(CivilizationManager.PlayerContribution contribution) {
+        entries.put(contribution.getPlayerId(), contribution);
+    }
+    
+    /**
+     * 玩家加入：读入缓存并在离线前保留
+     */
+    void pin(UUID playerId) {
+        online.add(playerId);
+        released.remove(playerId);
+        get(playerId);
+    }
+    
+    /**
+     * 玩家离开：下一次写回时写出修改，之后可以被淘汰
+     */
+    void release(UUID playerId) {
+        if (online.remove(playerId)) {
+            released.add(playerId);
+        }
+    }
+    
+    /**
+     * 取出所有有修改的贡献，取出后视为已保存
+     */
+    List<CivilizationManager.SavedContribution> collectDirty() {
+        List<CivilizationManager.SavedContribution> dirty = new ArrayList<>();
+        for (CivilizationManager.PlayerContribution contribution : entries.values()) {
+            if (contribution.isDirty()) {
+                dirty.add(contribution.toSaved());
+            }
+        }
+        return dirty;
+    }
+    
+    /**
+     * 取出所有贡献（没有存储时的完整检查点），取出后视为已保存
+     */
+    List<CivilizationManager.SavedContribution> collectAll() {
+        List<CivilizationManager.SavedContribution> all = new ArrayList<>(entries.size());
+        for (CivilizationManager.PlayerContribution contribution : entries.values()) {
+            all.add(contribution.toSaved());
+        }
+        return all;
+    }
+    
+    /**
+     * 复制所有贡献，不改变修改标记
+     */
+    List<CivilizationManager.SavedContribution> copyAll() {
+        List<CivilizationManager.SavedContribution> all = new ArrayList<>(entries.size());
+        for (CivilizationManager.PlayerContribution contribution : entries.values()) {
+            all.add(contribution.copySaved());
+        }
+        return all;
+    }
+    
+    /**
+     * 写回离线玩家的修改，并把缓存淘汰到容量以内
+     * @param journalSequence 写回的记录中已包含的最后一条日志记录的序号
+     */
+    void writeBack(long journalSequence) {
+        if (store == null || (released.isEmpty() && entries.size() <= capacity)) {
+            return;
+        }
+        List<CivilizationManager.SavedContribution> dirty = new ArrayList<>();
+        for (UUID playerId : released) {
+            CivilizationManager.PlayerContribution contribution = entries.get(playerId);
+            if (contribution != null && contribution.isDirty()) {
+                dirty.add(contribution.toSaved());
+            }
+        }
+        released.clear();
+        
+        Iterator<Map.Entry<UUID, CivilizationManager.PlayerContribution>> iterator = entries.entrySet().iterator();
+        int excess = entries.size() - capacity;
+        while (excess > 0 && iterator.hasNext()) {
+            Map.Entry<UUID, CivilizationManager.PlayerContribution> entry = iterator.next();
+            if (online.contains(entry.getKey())) {
+                continue;
+            }
+            if (entry.getValue().isDirty()) {
+                dirty.add(entry.getValue().toSaved());
+            }
+            iterator.remove();
+            excess--;
+        }
+        if (!dirty.isEmpty()) {
+            store.write(dirty, journalSequence);
+        }
+    }
+    
+    /**
+     * 遍历所有玩家的贡献：先是缓存中的，再从存储中逐个读取其余的
+     * 从存储读取的是只读副本，不会放入缓存，修改它们不会被保存
+     */
+    Iterator<CivilizationManager.PlayerContribution> iterator() {
+        List<CivilizationManager.PlayerContribution> cached = new ArrayList<>(entries.values());
+        if (store == null) {
+            return cached.iterator();
+        }
+        return new MergedIterator(cached, new HashSet<>(entries.keySet()), store.iterator());
+    }
+    
+    /**
+     * 缓存中的玩家数
+     */
+    int size() {
+        return entries.size();
+    }
+    
+    void clear() {
+        entries.clear();
+        online.clear();
+        released.clear();
+    }
+    
+    /**
+     * 缓存中的贡献之后接上存储中不在缓存里的记录
+     */
+    private static final class MergedIterator implements Iterator<CivilizationManager.PlayerContribution> {
+        private final Iterator<CivilizationManager.PlayerContribution> cached;
+        private final Set<UUID> cachedIds;
+        private final Iterator<PlayerContributionStore.StoredContribution> stored;
+        private CivilizationManager.PlayerContribution next;
+        
+        MergedIterator(List<CivilizationManager.PlayerContribution> cached, Set<UUID> cachedIds,
+                       Iterator<PlayerContributionStore.StoredContribution> stored) {
+            this.cached = cached.iterator();
+            this.cachedIds = cachedIds;
+            this.stored = stored;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+            if (cached.hasNext()) {
+                next = cached.next();
+                return true;
+            }
+            while (stored.hasNext()) {
+                PlayerContributionStore.StoredContribution candidate = stored.next();
+                if (!cachedIds.contains(candidate.contribution.playerId)) {
+                    next = new CivilizationManager.PlayerContribution(candidate.contribution, candidate.journalSequence);
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        @Override
+        public CivilizationManager.PlayerContribution next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            CivilizationManager.PlayerContribution result = next;
+            next = null;
+            return result;
+        }
+    }
+}
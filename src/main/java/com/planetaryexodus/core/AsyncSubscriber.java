@@ -0,0 +1,341 @@
+package com.planetaryexodus.core;
+
+import com.planetaryexodus.api.interfaces.IEventSubscriber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * 异步订阅者
+ * 在发布线程上只做入队，真正的处理在工作线程上进行，避免慢订阅者拖慢服务器tick
+ *
+ * 每个异步订阅者拥有独立的有界队列，同一时刻最多只有一个工作线程在处理它，
+ * 因此同一订阅者收到事件的顺序与发布顺序一致
+ * @param <T> 事件类型
+ */
+public final class AsyncSubscriber<T> implements IEventSubscriber<T> {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger("PlanetaryExodus/EventBus");
+    
+    // 单次调度最多处理的事件数，处理完后重新提交以便与其他订阅者公平共享线程池
+    private static final int MAX_EVENTS_PER_RUN = 64;
+    // BLOCK策略下发布线程最多等待的时间，超时后丢弃新事件，避免处理线程失效时卡住服务器tick
+    private static final long BLOCK_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    
+    /**
+     * 队列满时的处理策略
+     */
+    public enum OverflowPolicy {
+        /** 阻塞发布线程直到队列有空位，等待超时后丢弃新事件 */
+        BLOCK,
+        /** 丢弃队列中最旧的事件 */
+        DROP_OLDEST,
+        /** 用新事件替换队列中合并键相同的旧事件，找不到时丢弃最旧的事件 */
+        COALESCE
+    }
+    
+    /**
+     * 执行方式
+     */
+    public enum ExecutionMode {
+        /** 每次调度使用一个虚拟线程，适合I/O型订阅者 */
+        VIRTUAL_THREAD,
+        /** 使用有界的平台线程池，适合计算型订阅者 */
+        BOUNDED_POOL
+    }
+    
+    private final Class<T> eventType;
+    private final IEventSubscriber<T> delegate;
+    private final Settings settings;
+    private final Executor executor;
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final ArrayDeque<T> queue;
+    private boolean scheduled = false;
+    private volatile Thread drainThread;
+    
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final SubscriberMetrics executionMetrics;
+    
+    AsyncSubscriber(Class<T> eventType, IEventSubscriber<T> delegate, Settings settings, Executor executor) {
+        this.eventType = eventType;
+        this.delegate = Objects.requireNonNull(delegate, "delegate");
+        this.settings = settings;
+        this.executor = executor;
+        this.queue = new ArrayDeque<>(Math.min(settings.capacity, 256));
+        this.executionMetrics = new SubscriberMetrics(eventType, null, "worker:" + SubscriberMetrics.describe(delegate));
+    }
+    
+    @Override
+    public void onEvent(T event) {
+        lock.lock();
+        try {
+            if (queue.size() >= settings.capacity && !handleOverflow(event)) {
+                return;
+            }
+            queue.addLast(event);
+            if (!scheduled) {
+                scheduled = true;
+                schedule();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * 处理队列已满的情况（持有锁时调用）
+     * @return 是否仍需将新事件加入队尾
+     */
+    private boolean handleOverflow(T event) {
+        switch (settings.overflowPolicy) {
+            case BLOCK:
+                // 处理线程自己向自己发布时不能阻塞，否则会死锁
+                if (Thread.currentThread() != drainThread) {
+                    try {
+                        long remaining = BLOCK_TIMEOUT_NANOS;
+                        while (queue.size() >= settings.capacity) {
+                            if (remaining <= 0) {
+                                droppedCount.incrementAndGet();
+                                return false;
+                            }
+                            remaining = notFull.awaitNanos(remaining);
+                        }
+                        return true;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        droppedCount.incrementAndGet();
+                        return false;
+                    }
+                }
+                break;
+            case COALESCE:
+                if (replaceSameKey(event)) {
+                    coalescedCount.incrementAndGet();
+                    return false;
+                }
+                break;
+            default:
+                break;
+        }
+        queue.pollFirst();
+        droppedCount.incrementAndGet();
+        return true;
+    }
+    
+    /**
+     * 在队列中查找合并键相同的事件并原位替换，保持其原有的投递位置
+     */
+    private boolean replaceSameKey(T event) {
+        Object key = settings.coalesceKey.apply(event);
+        boolean replaced = false;
+        // 整体轮转一遍队列，顺序不变
+        for (int i = queue.size(); i > 0; i--) {
+            T queued = queue.pollFirst();
+            if (!replaced && Objects.equals(settings.coalesceKey.apply(queued), key)) {
+                queued = event;
+                replaced = true;
+            }
+            queue.addLast(queued);
+        }
+        return replaced;
+    }
+    
+    /**
+     * 提交处理任务（持有锁时调用）
+     */
+    private void schedule() {
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            // 执行器已关闭（服务器停止中），直接丢弃积压事件
+            scheduled = false;
+            droppedCount.addAndGet(queue.size());
+            queue.clear();
+            notFull.signalAll();
+        }
+    }
+    
+    /**
+     * 在工作线程上按顺序处理积压的事件
+     * 订阅者抛出的 Error 在记录后重新抛出，但在此之前总会重新调度或清除调度标记，
+     * 否则之后的事件不会再被处理，队列只增不减
+     */
+    private void drain() {
+        drainThread = Thread.currentThread();
+        boolean idle = false;
+        try {
+            for (int processed = 0; processed < MAX_EVENTS_PER_RUN; processed++) {
+                T event;
+                lock.lock();
+                try {
+                    event = queue.pollFirst();
+                    if (event == null) {
+                        scheduled = false;
+                        idle = true;
+                        return;
+                    }
+                    notFull.signal();
+                } finally {
+                    lock.unlock();
+                }
+                
+                long start = System.nanoTime();
+                Throwable error = null;
+                try {
+                    delegate.onEvent(event);
+                } catch (Throwable t) {
+                    error = t;
+                    LOGGER.error("异步订阅者处理事件 {} 时出错", eventType.getSimpleName(), t);
+                }
+                // 工作线程不占用tick时间，不做预算检查
+                executionMetrics.record(System.nanoTime() - start, error != null, 0);
+                if (error instanceof Error) {
+                    throw (Error) error;
+                }
+            }
+        } finally {
+            drainThread = null;
+            if (!idle) {
+                // 本轮配额用完或处理中抛出了 Error，重新排队让出线程
+                rescheduleIfPending();
+            }
+        }
+    }
+    
+    private void rescheduleIfPending() {
+        lock.lock();
+        try {
+            if (queue.isEmpty()) {
+                scheduled = false;
+            } else {
+                schedule();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * 获取被包装的订阅者
+     */
+    public IEventSubscriber<T> getDelegate() {
+        return delegate;
+    }
+    
+    /**
+     * 获取异步设置
+     */
+    public Settings getSettings() {
+        return settings;
+    }
+    
+    /**
+     * 获取当前排队的事件数
+     */
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * 获取因队列溢出被丢弃的事件数
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+    
+    /**
+     * 获取被合并的事件数
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+    
+    /**
+     * 获取工作线程上实际处理事件的统计数据
+     */
+    public SubscriberMetrics getExecutionMetrics() {
+        return executionMetrics;
+    }
+    
+    @Override
+    public Class<T> getEventType() {
+        return eventType;
+    }
+    
+    @Override
+    public boolean receivesEveryEvent() {
+        return delegate.receivesEveryEvent();
+    }
+    
+    /**
+     * 异步订阅设置（不可变）
+     */
+    public static final class Settings {
+        
+        private static final int DEFAULT_CAPACITY = 1024;
+        
+        public final ExecutionMode executionMode;
+        public final int capacity;
+        public final OverflowPolicy overflowPolicy;
+        final Function<Object, Object> coalesceKey;
+        
+        private Settings(ExecutionMode executionMode, int capacity, OverflowPolicy overflowPolicy,
+                         Function<Object, Object> coalesceKey) {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("capacity must be positive: " + capacity);
+            }
+            this.executionMode = Objects.requireNonNull(executionMode, "executionMode");
+            this.capacity = capacity;
+            this.overflowPolicy = Objects.requireNonNull(overflowPolicy, "overflowPolicy");
+            this.coalesceKey = coalesceKey;
+        }
+        
+        /**
+         * 默认设置：虚拟线程、容量1024、溢出时丢弃最旧事件
+         */
+        public static Settings defaults() {
+            return new Settings(ExecutionMode.VIRTUAL_THREAD, DEFAULT_CAPACITY,
+                OverflowPolicy.DROP_OLDEST, Object::getClass);
+        }
+        
+        public Settings executionMode(ExecutionMode mode) {
+            return new Settings(mode, capacity, overflowPolicy, coalesceKey);
+        }
+        
+        public Settings capacity(int capacity) {
+            return new Settings(executionMode, capacity, overflowPolicy, coalesceKey);
+        }
+        
+        public Settings overflowPolicy(OverflowPolicy policy) {
+            return new Settings(executionMode, capacity, policy, coalesceKey);
+        }
+        
+        /**
+         * 使用合并策略，键相同的排队事件只保留最新的一个
+         * @param key 合并键提取函数，例如灾难事件按灾难类型合并
+         */
+        @SuppressWarnings("unchecked")
+        public <E> Settings coalesceBy(Function<? super E, ?> key) {
+            Objects.requireNonNull(key, "key");
+            return new Settings(executionMode, capacity, OverflowPolicy.COALESCE,
+                (Function<Object, Object>) (Function<?, ?>) key);
+        }
+    }
+}
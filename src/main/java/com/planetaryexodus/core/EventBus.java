@@ -1,22 +1,75 @@
 package com.planetaryexodus.core;
 
+import com.planetaryexodus.api.interfaces.ICoalescableEvent;
 import com.planetaryexodus.api.interfaces.IEventSubscriber;
+import com.planetaryexodus.api.interfaces.IKeyedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 /**
  * 事件总线系统 - 负责模块间的松耦合通信
  * 使用泛型支持不同类型的事件，确保线程安全
+ * 
+ * 每个事件类型对应一张不可变的数组分发表，订阅/取消订阅时整体替换（写时复制），
+ * 发布时只需无锁地遍历数组，不产生任何包装对象
+ * 
+ * 具体事件类的完整匹配列表（自身、父类及所有接口）在首次发布时展开并缓存，
+ * 注册表变化时通过代数失效，多态订阅与精确类型订阅的发布开销相同
+ * 
+ * 通过 subscribeAsync 注册的订阅者在工作线程上执行（见 {@link AsyncSubscriber}），
+ * 发布线程只负责入队；工作线程来自 {@link ModExecutors} 的 io/compute 执行器，随服务器停止而关闭
+ * 
+ * tick批处理模式：服务器线程在 beginTickBatch 与 flushTickBatch 之间发布的事件先排队，
+ * 在tick结束时统一投递；实现了 {@link ICoalescableEvent} 的事件合并为一个聚合事件，
+ * 声明了 receivesEveryEvent 的订阅者仍会逐个收到原始事件
+ * 
+ * 也可以用 register(listener) 一次性注册对象上所有标注了
+ * {@link com.planetaryexodus.api.annotations.Subscribe} 的方法
+ * 
+ * 实现了 {@link IKeyedEvent} 的事件支持按路由键订阅，按键订阅的分发表以 EnumMap 索引，
+ * 发布时只调用键匹配的订阅者
+ * 
+ * 每个订阅都带有常开的统计（调用次数、耗时直方图、最大耗时、异常次数），
+ * 单次调用超过预算的订阅者会被记录并告警，可通过 getSubscriberMetrics 查询
  */
 public class EventBus {
     
+    private static final Logger LOGGER = LoggerFactory.getLogger("PlanetaryExodus/EventBus");
     private static final EventBus INSTANCE = new EventBus();
+    private static final Subscription[] EMPTY = new Subscription[0];
+    
+    // 事件类型到分发表的映射（分发表数组创建后不再修改）
+    private final Map<Class<?>, Subscription[]> subscribers = new ConcurrentHashMap<>();
+    // 按路由键订阅的分发表：事件类型 -> (路由键 -> 订阅者数组)，内层为不可变的EnumMap
+    private final Map<Class<?>, Map<Enum<?>, Subscription[]>> keyedSubscribers = new ConcurrentHashMap<>();
+    // 具体事件类到展开后分发表的缓存
+    private final Map<Class<?>, ResolvedDispatch> resolvedCache = new ConcurrentHashMap<>();
+    // 注册表代数，每次修改注册表后递增，使已缓存的展开结果失效
+    private final AtomicInteger generation = new AtomicInteger();
+    
+    // 通过 register 注册的监听器及其订阅者（按对象身份区分）
+    private final Map<Object, List<RegisteredMethod>> listeners = new IdentityHashMap<>();
+    
+    // tick批处理：当前正在批处理的线程及其排队的事件（仅由该线程访问）
+    private volatile Thread batchThread;
+    private List<Object> pendingBatch = new ArrayList<>();
+    private List<Object> flushingBatch = new ArrayList<>();
     
-    // 事件类型到订阅者列表的映射
-    private final Map<Class<?>, List<IEventSubscriber<?>>> subscribers = new ConcurrentHashMap<>();
-    // 快速查找缓存
-    private final Map<Class<?>, List<Consumer<Object>>> consumerCache = new ConcurrentHashMap<>();
+    // 单个订阅者单次调用的耗时预算（纳秒），0表示不检查
+    private volatile long subscriberBudgetNanos = 0;
+    
+    // 异步订阅者使用的执行器：ModExecutors 运行时使用其 io/compute，否则（无服务器或基准测试）使用本地后备执行器
+    private ExecutorService fallbackExecutor;
+    private final Executor virtualDispatch = task -> getAsyncExecutor(AsyncSubscriber.ExecutionMode.VIRTUAL_THREAD).execute(task);
+    private final Executor pooledDispatch = task -> getAsyncExecutor(AsyncSubscriber.ExecutionMode.BOUNDED_POOL).execute(task);
     
     private EventBus() {
         // 私有构造函数，单例模式
@@ -33,9 +86,53 @@ public class EventBus {
      * @param <T> 事件类型
      */
     public <T> void subscribe(Class<T> eventType, IEventSubscriber<T> subscriber) {
-        subscribers.computeIfAbsent(eventType, k -> new ArrayList<>()).add(subscriber);
-        // 清空缓存
-        consumerCache.remove(eventType);
+        Objects.requireNonNull(subscriber, "subscriber");
+        // compute 对同一个键是原子的，工作线程并发订阅也不会丢失更新
+        Subscription subscription = new Subscription(eventType, null, subscriber);
+        subscribers.compute(eventType, (type, table) -> append(table, subscription));
+        generation.incrementAndGet();
+    }
+    
+    /**
+     * 按路由键订阅事件，只有路由键等于 key 的事件才会投递给该订阅者
+     * @param eventType 事件类型类
+     * @param key 路由键
+     * @param subscriber 事件订阅者
+     * @param <K> 路由键类型
+     * @param <T> 事件类型
+     */
+    public <K extends Enum<K>, T extends IKeyedEvent<K>> void subscribe(Class<T> eventType, K key,
+                                                                       IEventSubscriber<T> subscriber) {
+        subscribeKeyed(eventType, key, subscriber);
+    }
+    
+    /**
+     * 按路由键订阅事件（使用Consumer接口简化）
+     * @param eventType 事件类型类
+     * @param key 路由键
+     * @param consumer 事件处理器
+     * @param <K> 路由键类型
+     * @param <T> 事件类型
+     * @return 实际注册的订阅者，可用于取消订阅
+     */
+    public <K extends Enum<K>, T extends IKeyedEvent<K>> IEventSubscriber<T> subscribe(Class<T> eventType, K key,
+                                                                                      Consumer<T> consumer) {
+        IEventSubscriber<T> subscriber = new ConsumerSubscriber<>(eventType, consumer);
+        subscribeKeyed(eventType, key, subscriber);
+        return subscriber;
+    }
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void subscribeKeyed(Class<?> eventType, Enum<?> key, IEventSubscriber<?> subscriber) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(subscriber, "subscriber");
+        Subscription subscription = new Subscription(eventType, key, subscriber);
+        keyedSubscribers.compute(eventType, (type, index) -> {
+            EnumMap copy = index == null ? new EnumMap(key.getDeclaringClass()) : new EnumMap((EnumMap) index);
+            copy.put(key, append((Subscription[]) copy.get(key), subscription));
+            return copy;
+        });
+        generation.incrementAndGet();
     }
     
     /**
@@ -43,19 +140,100 @@ public class EventBus {
      * @param eventType 事件类型类
      * @param consumer 事件处理器
      * @param <T> 事件类型
+     * @return 实际注册的订阅者，可用于取消订阅
+     */
+    public <T> IEventSubscriber<T> subscribe(Class<T> eventType, Consumer<T> consumer) {
+        IEventSubscriber<T> subscriber = new ConsumerSubscriber<>(eventType, consumer);
+        subscribe(eventType, subscriber);
+        return subscriber;
+    }
+    
+    /**
+     * 异步订阅事件（默认设置：虚拟线程、有界队列、溢出时丢弃最旧事件）
+     * @param eventType 事件类型类
+     * @param subscriber 事件订阅者，将在工作线程上被调用
+     * @param <T> 事件类型
+     * @return 异步订阅句柄，取消订阅时需传入该句柄
      */
-    public <T> void subscribe(Class<T> eventType, Consumer<T> consumer) {
-        subscribe(eventType, new IEventSubscriber<T>() {
-            @Override
-            public void onEvent(T event) {
-                consumer.accept(event);
+    public <T> AsyncSubscriber<T> subscribeAsync(Class<T> eventType, IEventSubscriber<T> subscriber) {
+        return subscribeAsync(eventType, subscriber, AsyncSubscriber.Settings.defaults());
+    }
+    
+    /**
+     * 异步订阅事件
+     * @param eventType 事件类型类
+     * @param subscriber 事件订阅者，将在工作线程上被调用
+     * @param settings 执行方式、队列容量和溢出策略
+     * @param <T> 事件类型
+     * @return 异步订阅句柄，取消订阅时需传入该句柄
+     */
+    public <T> AsyncSubscriber<T> subscribeAsync(Class<T> eventType, IEventSubscriber<T> subscriber,
+                                                 AsyncSubscriber.Settings settings) {
+        AsyncSubscriber<T> async = newAsync(eventType, subscriber, settings);
+        subscribe(eventType, async);
+        return async;
+    }
+    
+    private <T> AsyncSubscriber<T> newAsync(Class<T> eventType, IEventSubscriber<T> subscriber,
+                                            AsyncSubscriber.Settings settings) {
+        Executor executor = settings.executionMode == AsyncSubscriber.ExecutionMode.VIRTUAL_THREAD
+            ? virtualDispatch : pooledDispatch;
+        return new AsyncSubscriber<>(eventType, subscriber, settings, executor);
+    }
+    
+    /**
+     * 注册监听器对象上所有标注了 @Subscribe 的方法
+     * 方法的发现和绑定按类缓存，同一个对象重复注册会被忽略
+     * @param listener 监听器对象
+     * @throws IllegalArgumentException 订阅方法签名不合法时
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void register(Object listener) {
+        Objects.requireNonNull(listener, "listener");
+        List<SubscriberMethods.Binding> bindings = SubscriberMethods.forClass(listener.getClass());
+        
+        synchronized (listeners) {
+            if (listeners.containsKey(listener)) {
+                return;
             }
-            
-            @Override
-            public Class<T> getEventType() {
-                return eventType;
+            List<RegisteredMethod> registered = new ArrayList<>(bindings.size());
+            for (SubscriberMethods.Binding binding : bindings) {
+                IEventSubscriber<Object> subscriber = binding.bind(listener);
+                Class eventType = binding.eventType;
+                if (binding.async) {
+                    subscriber = newAsync(eventType, subscriber, AsyncSubscriber.Settings.defaults());
+                }
+                if (binding.key != null) {
+                    subscribeKeyed(eventType, binding.key, subscriber);
+                } else {
+                    subscribe(eventType, subscriber);
+                }
+                registered.add(new RegisteredMethod(eventType, binding.key, subscriber));
             }
-        });
+            listeners.put(listener, registered);
+        }
+    }
+    
+    /**
+     * 取消注册监听器对象上的所有订阅方法
+     * @param listener 监听器对象
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void unregister(Object listener) {
+        List<RegisteredMethod> registered;
+        synchronized (listeners) {
+            registered = listeners.remove(listener);
+        }
+        if (registered == null) {
+            return;
+        }
+        for (RegisteredMethod method : registered) {
+            if (method.key != null) {
+                unsubscribeKeyed(method.eventType, method.key, method.subscriber);
+            } else {
+                unsubscribe((Class) method.eventType, (IEventSubscriber) method.subscriber);
+            }
+        }
     }
     
     /**
@@ -65,15 +243,41 @@ public class EventBus {
      * @param <T> 事件类型
      */
     public <T> void unsubscribe(Class<T> eventType, IEventSubscriber<T> subscriber) {
-        List<IEventSubscriber<?>> list = subscribers.get(eventType);
-        if (list != null) {
-            list.remove(subscriber);
-            if (list.isEmpty()) {
-                subscribers.remove(eventType);
+        // 返回null会移除该事件类型
+        subscribers.computeIfPresent(eventType, (type, table) -> remove(table, subscriber));
+        generation.incrementAndGet();
+    }
+    
+    /**
+     * 取消按路由键的订阅
+     * @param eventType 事件类型类
+     * @param key 订阅时使用的路由键
+     * @param subscriber 事件订阅者
+     * @param <K> 路由键类型
+     * @param <T> 事件类型
+     */
+    public <K extends Enum<K>, T extends IKeyedEvent<K>> void unsubscribe(Class<T> eventType, K key,
+                                                                         IEventSubscriber<T> subscriber) {
+        unsubscribeKeyed(eventType, key, subscriber);
+    }
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void unsubscribeKeyed(Class<?> eventType, Enum<?> key, IEventSubscriber<?> subscriber) {
+        keyedSubscribers.computeIfPresent(eventType, (type, index) -> {
+            Subscription[] table = index.get(key);
+            if (table == null) {
+                return index;
             }
-            // 清空缓存
-            consumerCache.remove(eventType);
-        }
+            EnumMap copy = new EnumMap((EnumMap) index);
+            Subscription[] remaining = remove(table, subscriber);
+            if (remaining == null) {
+                copy.remove(key);
+            } else {
+                copy.put(key, remaining);
+            }
+            return copy.isEmpty() ? null : copy;
+        });
+        generation.incrementAndGet();
     }
     
     /**
@@ -81,59 +285,283 @@ public class EventBus {
      * @param event 事件对象
      * @param <T> 事件类型
      */
-    @SuppressWarnings("unchecked")
     public <T> void publish(T event) {
-        Class<T> eventType = (Class<T>) event.getClass();
-        
-        // 首先尝试从缓存获取消费者
-        List<Consumer<Object>> consumers = consumerCache.get(eventType);
-        if (consumers == null) {
-            consumers = new ArrayList<>();
-            List<IEventSubscriber<?>> subs = subscribers.get(eventType);
-            if (subs != null) {
-                for (IEventSubscriber<?> sub : subs) {
-                    consumers.add(e -> ((IEventSubscriber<T>) sub).onEvent((T) e));
+        if (batchThread == Thread.currentThread()) {
+            pendingBatch.add(event);
+            return;
+        }
+        
+        Class<?> eventType = event.getClass();
+        
+        // 自身、父类和接口的订阅者已展开在同一张表中
+        deliver(resolve(eventType), event, eventType, Delivery.ALL);
+    }
+    
+    /**
+     * 将事件投递给展开后的分发表：先投递不区分键的订阅者，再投递路由键匹配的订阅者
+     */
+    private void deliver(ResolvedDispatch resolved, Object event, Class<?> eventType, Delivery delivery) {
+        dispatch(resolved.unkeyed.select(delivery), event, eventType);
+        if (resolved.keyed != null) {
+            Targets targets = resolved.keyed.get(((IKeyedEvent<?>) event).getRoutingKey());
+            if (targets != null) {
+                dispatch(targets.select(delivery), event, eventType);
+            }
+        }
+    }
+    
+    /**
+     * 开始tick批处理，之后当前线程发布的事件会排队到 flushTickBatch 时统一投递
+     * 其他线程发布的事件不受影响
+     */
+    public void beginTickBatch() {
+        batchThread = Thread.currentThread();
+    }
+    
+    /**
+     * 判断当前线程是否处于tick批处理中
+     */
+    public boolean isInTickBatch() {
+        return batchThread == Thread.currentThread();
+    }
+    
+    /**
+     * 结束tick批处理并投递本tick排队的事件
+     * 普通事件按发布顺序投递；可合并事件先逐个投递给需要每个事件的订阅者，
+     * 最后按事件类型合并，将聚合事件投递给其余订阅者
+     */
+    @SuppressWarnings("unchecked")
+    public void flushTickBatch() {
+        if (batchThread != Thread.currentThread()) {
+            return;
+        }
+        // 投递过程中订阅者再次发布的事件直接分发
+        batchThread = null;
+        if (pendingBatch.isEmpty()) {
+            return;
+        }
+        
+        List<Object> batch = pendingBatch;
+        pendingBatch = flushingBatch;
+        flushingBatch = batch;
+        
+        Map<Class<?>, Object> aggregated = null;
+        try {
+            for (Object event : batch) {
+                Class<?> eventType = event.getClass();
+                ResolvedDispatch resolved = resolve(eventType);
+                if (event instanceof ICoalescableEvent) {
+                    deliver(resolved, event, eventType, Delivery.PER_EVENT);
+                    if (aggregated == null) {
+                        aggregated = new LinkedHashMap<>();
+                    }
+                    aggregated.merge(eventType, event,
+                        (merged, next) -> ((ICoalescableEvent<Object>) merged).coalesceWith(next));
+                } else {
+                    deliver(resolved, event, eventType, Delivery.ALL);
                 }
             }
-            consumerCache.put(eventType, consumers);
+            
+            if (aggregated != null) {
+                for (Map.Entry<Class<?>, Object> entry : aggregated.entrySet()) {
+                    deliver(resolve(entry.getKey()), entry.getValue(), entry.getKey(), Delivery.AGGREGATED);
+                }
+            }
+        } finally {
+            batch.clear();
+        }
+    }
+    
+    /**
+     * 获取具体事件类展开后的分发表，缓存过期时重新计算
+     * 先读取代数再读取注册表，保证缓存中的结果不会比其代数更旧
+     */
+    private ResolvedDispatch resolve(Class<?> eventType) {
+        ResolvedDispatch cached = resolvedCache.get(eventType);
+        int currentGeneration = generation.get();
+        if (cached != null && cached.generation == currentGeneration) {
+            return cached;
         }
         
-        // 执行所有消费者
-        for (Consumer<Object> consumer : consumers) {
-            try {
-                consumer.accept(event);
-            } catch (Exception e) {
-                System.err.println("Error processing event: " + eventType.getSimpleName());
-                e.printStackTrace();
+        List<Subscription> matched = new ArrayList<>();
+        Map<Enum<?>, List<Subscription>> matchedByKey = null;
+        boolean keyed = IKeyedEvent.class.isAssignableFrom(eventType);
+        for (Class<?> type : collectHierarchy(eventType)) {
+            Subscription[] table = subscribers.get(type);
+            if (table != null) {
+                Collections.addAll(matched, table);
+            }
+            Map<Enum<?>, Subscription[]> index = keyed ? keyedSubscribers.get(type) : null;
+            if (index != null) {
+                if (matchedByKey == null) {
+                    matchedByKey = new LinkedHashMap<>();
+                }
+                for (Map.Entry<Enum<?>, Subscription[]> entry : index.entrySet()) {
+                    Collections.addAll(matchedByKey.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()), entry.getValue());
+                }
             }
         }
         
-        // 同时处理父类事件
-        publishToSuperClasses(event);
+        ResolvedDispatch resolved = new ResolvedDispatch(currentGeneration, matched, matchedByKey);
+        resolvedCache.put(eventType, resolved);
+        return resolved;
     }
     
     /**
-     * 向父类事件类型发布
-     * @param event 事件对象
+     * 收集事件类自身、所有父类（不含Object）及所有接口，按此顺序排列且不重复
      */
-    private void publishToSuperClasses(Object event) {
-        Class<?> clazz = event.getClass().getSuperclass();
-        while (clazz != null && clazz != Object.class) {
-            if (subscribers.containsKey(clazz)) {
-                List<IEventSubscriber<?>> subs = subscribers.get(clazz);
-                for (IEventSubscriber<?> sub : subs) {
-                    try {
-                        @SuppressWarnings("unchecked")
-                        IEventSubscriber<Object> subscriber = (IEventSubscriber<Object>) sub;
-                        subscriber.onEvent(event);
-                    } catch (Exception e) {
-                        System.err.println("Error processing parent event: " + clazz.getSimpleName());
-                        e.printStackTrace();
-                    }
+    private static Set<Class<?>> collectHierarchy(Class<?> eventType) {
+        Set<Class<?>> classes = new LinkedHashSet<>();
+        for (Class<?> clazz = eventType; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            classes.add(clazz);
+        }
+        
+        Set<Class<?>> interfaces = new LinkedHashSet<>();
+        Deque<Class<?>> pending = new ArrayDeque<>(classes);
+        while (!pending.isEmpty()) {
+            for (Class<?> iface : pending.poll().getInterfaces()) {
+                if (interfaces.add(iface)) {
+                    pending.add(iface);
                 }
             }
-            clazz = clazz.getSuperclass();
         }
+        
+        classes.addAll(interfaces);
+        return classes;
+    }
+    
+    /**
+     * 遍历分发表调用订阅者并记录耗时，单个订阅者出错不影响其他订阅者
+     */
+    private void dispatch(Subscription[] table, Object event, Class<?> eventType) {
+        long budget = subscriberBudgetNanos;
+        for (Subscription sub : table) {
+            long start = System.nanoTime();
+            boolean failed = false;
+            try {
+                sub.subscriber.onEvent(event);
+            } catch (Exception e) {
+                failed = true;
+                LOGGER.error("订阅者 {} 处理事件 {} 时出错", sub.metrics.getSubscriberName(), eventType.getSimpleName(), e);
+            }
+            long elapsed = System.nanoTime() - start;
+            if (sub.metrics.record(elapsed, failed, budget)) {
+                LOGGER.warn("订阅者 {} 处理事件 {} 耗时 {}μs，超过预算 {}μs",
+                    sub.metrics.getSubscriberName(), eventType.getSimpleName(), elapsed / 1000, budget / 1000);
+            }
+        }
+    }
+    
+    /**
+     * 复制分发表并在末尾追加订阅者
+     */
+    private static Subscription[] append(Subscription[] table, Subscription subscription) {
+        if (table == null) {
+            return new Subscription[] { subscription };
+        }
+        Subscription[] copy = Arrays.copyOf(table, table.length + 1);
+        copy[table.length] = subscription;
+        return copy;
+    }
+    
+    /**
+     * 复制分发表并移除订阅者，移除后为空时返回null
+     */
+    private static Subscription[] remove(Subscription[] table, IEventSubscriber<?> subscriber) {
+        int index = indexOf(table, subscriber);
+        if (index < 0) {
+            return table;
+        }
+        if (table.length == 1) {
+            return null;
+        }
+        Subscription[] copy = new Subscription[table.length - 1];
+        System.arraycopy(table, 0, copy, 0, index);
+        System.arraycopy(table, index + 1, copy, index, table.length - index - 1);
+        return copy;
+    }
+    
+    private static int indexOf(Subscription[] table, IEventSubscriber<?> subscriber) {
+        for (int i = 0; i < table.length; i++) {
+            if (table[i].subscriber == subscriber || table[i].subscriber.equals(subscriber)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * 获取异步执行器
+     * ModExecutors 在运行时使用其共享执行器，服务器停止后提交的任务会被拒绝，积压的异步事件随之丢弃；
+     * 未运行时使用按需创建的虚拟线程后备执行器，不需要单独关闭
+     */
+    private Executor getAsyncExecutor(AsyncSubscriber.ExecutionMode mode) {
+        if (ModExecutors.isRunning()) {
+            return mode == AsyncSubscriber.ExecutionMode.VIRTUAL_THREAD ? ModExecutors.io() : ModExecutors.compute();
+        }
+        synchronized (this) {
+            if (fallbackExecutor == null) {
+                fallbackExecutor = Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("PlanetaryExodus-EventBus-", 0).factory());
+            }
+            return fallbackExecutor;
+        }
+    }
+    
+    /**
+     * 设置单个订阅者单次调用的耗时预算，超过预算时计数并输出警告
+     * @param budgetNanos 预算（纳秒），0表示不检查
+     */
+    public void setSubscriberBudgetNanos(long budgetNanos) {
+        this.subscriberBudgetNanos = Math.max(0, budgetNanos);
+    }
+    
+    /**
+     * 获取单个订阅者单次调用的耗时预算（纳秒）
+     */
+    public long getSubscriberBudgetNanos() {
+        return subscriberBudgetNanos;
+    }
+    
+    /**
+     * 获取当前所有订阅的统计数据，按累计耗时从高到低排序
+     * 可供管理命令或其他模组定位拖慢TPS的订阅者
+     */
+    public List<SubscriberMetrics> getSubscriberMetrics() {
+        List<SubscriberMetrics> result = new ArrayList<>();
+        for (Subscription[] table : subscribers.values()) {
+            collectMetrics(table, result);
+        }
+        for (Map<Enum<?>, Subscription[]> index : keyedSubscribers.values()) {
+            for (Subscription[] table : index.values()) {
+                collectMetrics(table, result);
+            }
+        }
+        result.sort(Comparator.comparingLong(SubscriberMetrics::getTotalNanos).reversed());
+        return result;
+    }
+    
+    private static void collectMetrics(Subscription[] table, List<SubscriberMetrics> result) {
+        for (Subscription sub : table) {
+            result.add(sub.metrics);
+            // 异步订阅者在发布线程上只统计入队耗时，另外附上工作线程上的实际处理耗时
+            if (sub.subscriber instanceof AsyncSubscriber<?> async) {
+                result.add(async.getExecutionMetrics());
+            }
+        }
+    }
+    
+    /**
+     * 获取订阅了指定事件类型（精确类型）的订阅统计
+     */
+    public List<SubscriberMetrics> getSubscriberMetrics(Class<?> eventType) {
+        List<SubscriberMetrics> result = new ArrayList<>();
+        for (SubscriberMetrics metrics : getSubscriberMetrics()) {
+            if (metrics.getEventType() == eventType) {
+                result.add(metrics);
+            }
+        }
+        return result;
     }
     
     /**
@@ -142,16 +570,28 @@ public class EventBus {
      * @return 订阅者数量
      */
     public int getSubscriberCount(Class<?> eventType) {
-        List<IEventSubscriber<?>> list = subscribers.get(eventType);
-        return list != null ? list.size() : 0;
+        Subscription[] table = subscribers.get(eventType);
+        int count = table != null ? table.length : 0;
+        Map<Enum<?>, Subscription[]> index = keyedSubscribers.get(eventType);
+        if (index != null) {
+            for (Subscription[] keyedTable : index.values()) {
+                count += keyedTable.length;
+            }
+        }
+        return count;
     }
     
     /**
      * 清空所有订阅
      */
     public void clear() {
+        synchronized (listeners) {
+            listeners.clear();
+        }
         subscribers.clear();
-        consumerCache.clear();
+        keyedSubscribers.clear();
+        resolvedCache.clear();
+        generation.incrementAndGet();
     }
     
     /**
@@ -159,6 +599,144 @@ public class EventBus {
      * @return 事件类型集合
      */
     public Set<Class<?>> getRegisteredEventTypes() {
-        return Collections.unmodifiableSet(subscribers.keySet());
+        Set<Class<?>> types = new HashSet<>(subscribers.keySet());
+        types.addAll(keyedSubscribers.keySet());
+        return Collections.unmodifiableSet(types);
+    }
+    
+    /**
+     * register 注册的单个订阅方法，用于 unregister 时逐个取消
+     */
+    private static final class RegisteredMethod {
+        final Class<?> eventType;
+        final Enum<?> key;
+        final IEventSubscriber<?> subscriber;
+        
+        RegisteredMethod(Class<?> eventType, Enum<?> key, IEventSubscriber<?> subscriber) {
+            this.eventType = eventType;
+            this.key = key;
+            this.subscriber = subscriber;
+        }
+    }
+    
+    /**
+     * 分发表中的一项订阅，订阅时创建，携带该订阅的统计数据
+     */
+    private static final class Subscription {
+        final IEventSubscriber<Object> subscriber;
+        final SubscriberMetrics metrics;
+        
+        @SuppressWarnings("unchecked")
+        Subscription(Class<?> eventType, Enum<?> key, IEventSubscriber<?> subscriber) {
+            this.subscriber = (IEventSubscriber<Object>) subscriber;
+            this.metrics = new SubscriberMetrics(eventType, key, SubscriberMetrics.describe(subscriber));
+        }
+    }
+    
+    /**
+     * 投递方式：普通发布投递给全部订阅者，批处理时区分逐个投递与聚合投递
+     */
+    private enum Delivery {
+        ALL, PER_EVENT, AGGREGATED
+    }
+    
+    /**
+     * 一组订阅者按投递方式预先拆分好的数组
+     */
+    private static final class Targets {
+        final Subscription[] all;
+        // 批处理时逐个接收可合并事件的订阅者
+        final Subscription[] perEvent;
+        // 批处理时只接收聚合事件的订阅者
+        final Subscription[] aggregated;
+        
+        Targets(List<Subscription> matched) {
+            this.all = matched.isEmpty() ? EMPTY : matched.toArray(EMPTY);
+            
+            List<Subscription> every = new ArrayList<>();
+            List<Subscription> rest = new ArrayList<>();
+            for (Subscription sub : matched) {
+                (sub.subscriber.receivesEveryEvent() ? every : rest).add(sub);
+            }
+            this.perEvent = every.isEmpty() ? EMPTY : every.toArray(EMPTY);
+            this.aggregated = rest.isEmpty() ? EMPTY : rest.toArray(EMPTY);
+        }
+        
+        Subscription[] select(Delivery delivery) {
+            switch (delivery) {
+                case PER_EVENT:
+                    return perEvent;
+                case AGGREGATED:
+                    return aggregated;
+                default:
+                    return all;
+            }
+        }
+    }
+    
+    /**
+     * 展开后的分发表，记录计算时的注册表代数
+     */
+    private static final class ResolvedDispatch {
+        final int generation;
+        // 不区分路由键的订阅者
+        final Targets unkeyed;
+        // 按路由键索引的订阅者，事件类型没有按键订阅时为null
+        final Map<Enum<?>, Targets> keyed;
+        
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ResolvedDispatch(int generation, List<Subscription> matched,
+                         Map<Enum<?>, List<Subscription>> matchedByKey) {
+            this.generation = generation;
+            this.unkeyed = new Targets(matched);
+            
+            if (matchedByKey == null || matchedByKey.isEmpty()) {
+                this.keyed = null;
+                return;
+            }
+            // 同一事件的路由键只有一种枚举类型，正常情况下使用EnumMap按序号直接索引
+            Class<?> keyType = null;
+            boolean singleKeyType = true;
+            for (Enum<?> key : matchedByKey.keySet()) {
+                if (keyType == null) {
+                    keyType = key.getDeclaringClass();
+                } else if (keyType != key.getDeclaringClass()) {
+                    singleKeyType = false;
+                }
+            }
+            Map index = singleKeyType ? new EnumMap(keyType) : new HashMap<>();
+            for (Map.Entry<Enum<?>, List<Subscription>> entry : matchedByKey.entrySet()) {
+                index.put(entry.getKey(), new Targets(entry.getValue()));
+            }
+            this.keyed = index;
+        }
+    }
+    
+    /**
+     * Consumer适配订阅者，仅在订阅时创建一次
+     */
+    private static final class ConsumerSubscriber<T> implements IEventSubscriber<T> {
+        private final Class<T> eventType;
+        private final Consumer<T> consumer;
+        
+        ConsumerSubscriber(Class<T> eventType, Consumer<T> consumer) {
+            this.eventType = eventType;
+            this.consumer = consumer;
+        }
+        
+        @Override
+        public void onEvent(T event) {
+            consumer.accept(event);
+        }
+        
+        @Override
+        public Class<T> getEventType() {
+            return eventType;
+        }
+        
+        @Override
+        public String toString() {
+            return consumer.getClass().getName();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,151 @@
+package com.planetaryexodus.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 模组时钟
+ * 所有基于时间的逻辑（灾难持续时间和冷却、状态天数、事件时间戳）都从这里取当前时间，
+ * 默认使用系统时间，也可以换成按tick推进的时钟：每tick前进固定的模拟时间，
+ * 加速倍率设得很高时可以在较短的真实时间内模拟数周的游戏进程
+ */
+public final class ModClock {
+    
+    /**
+     * 时间来源
+     */
+    @FunctionalInterface
+    public interface Source {
+        /**
+         * 当前时间（毫秒，与 System.currentTimeMillis 同一纪元）
+         */
+        long currentTimeMillis();
+    }
+    
+    /**
+     * 系统时间
+     */
+    public static final Source SYSTEM = System::currentTimeMillis;
+    
+    private static volatile Source source = SYSTEM;
+    
+    private ModClock() {
+    }
+    
+    /**
+     * 获取当前时间（毫秒）
+     */
+    public static long currentTimeMillis() {
+        return source.currentTimeMillis();
+    }
+    
+    /**
+     * 获取当前时间来源
+     */
+    public static Source getSource() {
+        return source;
+    }
+    
+    /**
+     * 替换时间来源
+     */
+    public static void setSource(Source newSource) {
+        source = newSource == null ? SYSTEM : newSource;
+    }
+    
+    /**
+     * 恢复使用系统时间
+     */
+    public static void useSystemTime() {
+        source = SYSTEM;
+    }
+    
+    /**
+     * 服务器tick时调用，推进按tick计时的时钟
+     */
+    public static void onServerTick() {
+        Source current = source;
+        if (current instanceof TickSource) {
+            ((TickSource) current).tick();
+        }
+    }
+    
+    /**
+     * 按tick推进的时钟：每tick前进 50ms × 加速倍率
+     * 服务器卡顿时模拟时间随tick一起变慢，与游戏进程保持一致
+     */
+    public static final class TickSource implements Source {
+        private static final long MILLIS_PER_TICK = 50;
+        
+        private final AtomicLong millis;
+        private volatile double speed;
+        // 不足1毫秒的部分累积到下一个tick，只在服务器线程上访问
+        private double fraction;
+        
+        /**
+         * @param startMillis 起始时间
+         * @param speed 加速倍率，1为正常速度
+         */
+        public TickSource(long startMillis, double speed) {
+            this.millis = new AtomicLong(startMillis);
+            setSpeed(speed);
+        }
+        
+        /**
+         * 把时钟推进到指定时间，已经超过时不变（时钟不会倒退）
+         * 用于从存档中记录的模拟时间继续运行
+         */
+        public void advanceTo(long targetMillis) {
+            millis.accumulateAndGet(targetMillis, Math::max);
+        }
+        
+        void tick() {
+            double advance = MILLIS_PER_TICK * speed + fraction;
+            long whole = (long) advance;
+            fraction = advance - whole;
+            millis.addAndGet(whole);
+        }
+        
+        @Override
+        public long currentTimeMillis() {
+            return millis.get();
+        }
+        
+        public double getSpeed() {
+            return speed;
+        }
+        
+        public void setSpeed(double speed) {
+            if (!(speed > 0)) {
+                throw new IllegalArgumentException("speed must be positive: " + speed);
+            }
+            this.speed = speed;
+        }
+    }
+    
+    /**
+     * 手动推进的时钟，用于无服务器的模拟和测试
+     */
+    public static final class ManualSource implements Source {
+        private final AtomicLong millis;
+        
+        public ManualSource(long startMillis) {
+            this.millis = new AtomicLong(startMillis);
+        }
+        
+        /**
+         * 前进指定的时间
+         * @return 前进后的时间
+         */
+        public long advance(long deltaMillis) {
+            if (deltaMillis < 0) {
+                throw new IllegalArgumentException("time cannot go backwards: " + deltaMillis);
+            }
+            return millis.addAndGet(deltaMillis);
+        }
+        
+        @Override
+        public long currentTimeMillis() {
+            return millis.get();
+        }
+    }
+}
@@ -18,15 +18,16 @@ public class ModConfig {
     private static final Logger LOGGER = LoggerFactory.getLogger("PlanetaryExodus/Config");
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
     
-    // 配置目录
-    private static final Path CONFIG_DIR = FabricLoader.getInstance().getConfigDir().resolve("planetary-exodus");
-    
     // 配置文件
-    private static final Path PLANET_CONFIG = CONFIG_DIR.resolve("planet.json");
-    private static final Path CIVILIZATION_CONFIG = CONFIG_DIR.resolve("civilization.json");
-    private static final Path DISASTER_CONFIG = CONFIG_DIR.resolve("disasters.json");
-    private static final Path ROCKET_CONFIG = CONFIG_DIR.resolve("rockets.json");
-    private static final Path PLAYER_CONFIG = CONFIG_DIR.resolve("player.json");
+    private static final String PLANET_CONFIG = "planet.json";
+    private static final String CIVILIZATION_CONFIG = "civilization.json";
+    private static final String DISASTER_CONFIG = "disasters.json";
+    private static final String ROCKET_CONFIG = "rockets.json";
+    private static final String PLAYER_CONFIG = "player.json";
+    private static final String PERFORMANCE_CONFIG = "performance.json";
+    
+    // 配置目录，只使用默认配置时为null
+    private final Path configDir;
     
     // 配置数据
     private final JsonObject planetConfig;
@@ -34,6 +35,7 @@ public class ModConfig {
     private final JsonObject disasterConfig;
     private final JsonObject rocketConfig;
     private final JsonObject playerConfig;
+    private final JsonObject performanceConfig;
     
     // 缓存配置对象
     private PlanetConfig planet;
@@ -41,8 +43,11 @@ public class ModConfig {
     private DisasterConfig disaster;
     private RocketConfig rocket;
     private PlayerConfig player;
+    private PerformanceConfig performance;
     
-    private ModConfig() {
+    private ModConfig(Path configDir) {
+        this.configDir = configDir;
+        
         // 确保配置目录存在
         ensureConfigDirectory();
         
@@ -52,6 +57,7 @@ public class ModConfig {
         this.disasterConfig = loadOrCreateConfig(DISASTER_CONFIG, getDefaultDisasterConfig());
         this.rocketConfig = loadOrCreateConfig(ROCKET_CONFIG, getDefaultRocketConfig());
         this.playerConfig = loadOrCreateConfig(PLAYER_CONFIG, getDefaultPlayerConfig());
+        this.performanceConfig = loadOrCreateConfig(PERFORMANCE_CONFIG, getDefaultPerformanceConfig());
         
         // 解析配置对象
         this.planet = parsePlanetConfig();
@@ -59,15 +65,24 @@ public class ModConfig {
         this.disaster = parseDisasterConfig();
         this.rocket = parseRocketConfig();
         this.player = parsePlayerConfig();
+        this.performance = parsePerformanceConfig();
         
-        LOGGER.info("配置加载完成，共 {} 个配置文件", 5);
+        LOGGER.info("配置加载完成，共 {} 个配置文件", 6);
     }
     
     /**
      * 加载配置
      */
     public static ModConfig load() {
-        return new ModConfig();
+        return new ModConfig(FabricLoader.getInstance().getConfigDir().resolve("planetary-exodus"));
+    }
+    
+    /**
+     * 使用默认配置，不读写配置文件，也不需要 Fabric 加载器
+     * 用于基准测试和离线模拟
+     */
+    public static ModConfig defaults() {
+        return new ModConfig(null);
     }
     
     /**
@@ -105,16 +120,27 @@ public class ModConfig {
         return player;
     }
     
+    /**
+     * 获取性能配置
+     */
+    public PerformanceConfig getPerformance() {
+        return performance;
+    }
+    
     /**
      * 保存所有配置到文件
      */
     public void save() {
+        if (configDir == null) {
+            return;
+        }
         try {
-            Files.writeString(PLANET_CONFIG, GSON.toJson(planetConfig));
-            Files.writeString(CIVILIZATION_CONFIG, GSON.toJson(civilizationConfig));
-            Files.writeString(DISASTER_CONFIG, GSON.toJson(disasterConfig));
-            Files.writeString(ROCKET_CONFIG, GSON.toJson(rocketConfig));
-            Files.writeString(PLAYER_CONFIG, GSON.toJson(playerConfig));
+            Files.writeString(configDir.resolve(PLANET_CONFIG), GSON.toJson(planetConfig));
+            Files.writeString(configDir.resolve(CIVILIZATION_CONFIG), GSON.toJson(civilizationConfig));
+            Files.writeString(configDir.resolve(DISASTER_CONFIG), GSON.toJson(disasterConfig));
+            Files.writeString(configDir.resolve(ROCKET_CONFIG), GSON.toJson(rocketConfig));
+            Files.writeString(configDir.resolve(PLAYER_CONFIG), GSON.toJson(playerConfig));
+            Files.writeString(configDir.resolve(PERFORMANCE_CONFIG), GSON.toJson(performanceConfig));
             LOGGER.info("配置已保存到文件");
         } catch (IOException e) {
             LOGGER.error("保存配置时出错", e);
@@ -124,14 +150,21 @@ public class ModConfig {
     // ========== 私有方法 ==========
     
     private void ensureConfigDirectory() {
+        if (configDir == null) {
+            return;
+        }
         try {
-            Files.createDirectories(CONFIG_DIR);
+            Files.createDirectories(configDir);
         } catch (IOException e) {
             LOGGER.error("创建配置目录失败", e);
         }
     }
     
-    private JsonObject loadOrCreateConfig(Path path, JsonObject defaultConfig) {
+    private JsonObject loadOrCreateConfig(String fileName, JsonObject defaultConfig) {
+        if (configDir == null) {
+            return defaultConfig;
+        }
+        Path path = configDir.resolve(fileName);
         try {
             if (Files.exists(path)) {
                 String content = Files.readString(path);
@@ -379,6 +412,114 @@ public class ModConfig {
         return config;
     }
     
+    private JsonObject getDefaultPerformanceConfig() {
+        JsonObject config = new JsonObject();
+        
+        // 事件总线
+        JsonObject eventBus = new JsonObject();
+        eventBus.addProperty("subscriber_budget_micros", 2000);    // 单个订阅者单次调用预算，0为不检查
+        config.add("event_bus", eventBus);
+        
+        // 后台线程投递到服务器线程的操作
+        JsonObject bridge = new JsonObject();
+        bridge.addProperty("drain_budget_micros", 2000);          // 每tick执行投递操作的预算
+        config.add("server_bridge", bridge);
+        
+        // 各子系统的运行周期（tick），调度器会把它们错开到不同的tick上
+        JsonObject periods = new JsonObject();
+        periods.addProperty("civilization", 20);
+        periods.addProperty("planet", 20);
+        periods.addProperty("disaster", 20);
+        periods.addProperty("milestones", 20);
+        periods.addProperty("history", 20);
+        config.add("tick_periods", periods);
+        
+        // 每tick的时间预算，用不完的分片工作留到下一个tick继续
+        JsonObject tickBudget = new JsonObject();
+        tickBudget.addProperty("total_micros", 5000);             // 所有子系统合计，0为不限制
+        JsonObject subsystemBudgets = new JsonObject();
+        subsystemBudgets.addProperty("civilization", 1000);
+        subsystemBudgets.addProperty("planet", 1000);
+        subsystemBudgets.addProperty("disaster", 2000);
+        subsystemBudgets.addProperty("milestones", 1000);
+        subsystemBudgets.addProperty("history", 200);
+        tickBudget.add("subsystems", subsystemBudgets);
+        config.add("tick_budget", tickBudget);
+        
+        // 每tick的分配预算（字节），子系统在一个tick内分配超过预算时记录并警告，0为不限制
+        JsonObject allocationBudget = new JsonObject();
+        allocationBudget.addProperty("tracking_enabled", true);
+        JsonObject subsystemAllocations = new JsonObject();
+        subsystemAllocations.addProperty("civilization", 4096);
+        subsystemAllocations.addProperty("planet", 16384);
+        subsystemAllocations.addProperty("disaster", 65536);
+        subsystemAllocations.addProperty("milestones", 4096);
+        subsystemAllocations.addProperty("history", 1024);
+        allocationBudget.add("subsystems", subsystemAllocations);
+        config.add("allocation_budget", allocationBudget);
+        
+        // 自适应降级：服务器平均MSPT达到阈值时降低模组效果的检查频率
+        JsonObject adaptive = new JsonObject();
+        adaptive.addProperty("enabled", true);
+        adaptive.addProperty("evaluation_interval_ticks", 20);    // 多久评估一次tick耗时
+        adaptive.addProperty("recovery_ticks", 200);              // 持续有余量多久后恢复一级
+        adaptive.addProperty("recovery_margin_mspt", 5.0);        // 低于当前级别阈值多少才算有余量
+        JsonArray tiers = new JsonArray();
+        tiers.add(createQualityTier("normal", 0.0, 1.0, 1.0));
+        tiers.add(createQualityTier("reduced", 40.0, 2.0, 0.5));
+        tiers.add(createQualityTier("minimal", 47.0, 4.0, 0.25));
+        adaptive.add("tiers", tiers);
+        config.add("adaptive_quality", adaptive);
+        
+        // 模组时钟：wall 使用系统时间；tick 每tick前进 50ms × speed，可用于加速模拟
+        JsonObject clock = new JsonObject();
+        clock.addProperty("mode", "wall");
+        clock.addProperty("speed", 1.0);
+        config.add("clock", clock);
+        
+        // 事件日志
+        JsonObject journal = new JsonObject();
+        journal.addProperty("enabled", true);
+        journal.addProperty("segment_size_mb", 16);                // 单个分段文件大小
+        journal.addProperty("commit_interval_millis", 5);          // 组提交间隔，期间的记录一起刷盘
+        journal.addProperty("truncate_on_checkpoint", true);       // 存档快照保存后删除已包含在快照中的分段
+        config.add("journal", journal);
+        
+        // 玩家贡献存储
+        JsonObject playerStore = new JsonObject();
+        playerStore.addProperty("enabled", true);                  // 按玩家分文件保存贡献，关闭时全部保存在快照中
+        playerStore.addProperty("cache_size", 2048);               // 内存中缓存的离线玩家数上限
+        config.add("player_store", playerStore);
+        
+        // 存档检查点
+        JsonObject checkpoint = new JsonObject();
+        checkpoint.addProperty("compact_after_deltas", 16);        // 积累多少个增量文件后合并到基础快照
+        config.add("checkpoint", checkpoint);
+        
+        // 每分钟的历史数据（进度、状态、灾难数、贡献）
+        JsonObject history = new JsonObject();
+        history.addProperty("enabled", true);
+        history.addProperty("segment_size_kb", 1024);             // 单个分段文件大小，约可保存一年的样本
+        config.add("history", history);
+        
+        // 输入轨迹：记录tick耗时、进度增加和玩家状态，供离线重放基准测试使用
+        JsonObject trace = new JsonObject();
+        trace.addProperty("enabled", false);
+        trace.addProperty("sample_interval_ticks", 20);            // 玩家和世界状态的采样间隔
+        config.add("trace", trace);
+        
+        return config;
+    }
+    
+    private JsonObject createQualityTier(String name, double msptThreshold, double intervalMultiplier, double samplingRate) {
+        JsonObject tier = new JsonObject();
+        tier.addProperty("name", name);
+        tier.addProperty("mspt_threshold", msptThreshold);           // 平均MSPT达到该值时进入此级别
+        tier.addProperty("interval_multiplier", intervalMultiplier); // 效果检查间隔的倍数
+        tier.addProperty("sampling_rate", samplingRate);             // 腐蚀、破坏等检查的采样率
+        return tier;
+    }
+    
     // ========== 配置对象解析 ==========
     
     private PlanetConfig parsePlanetConfig() {
@@ -401,6 +542,10 @@ public class ModConfig {
         return new PlayerConfig(playerConfig);
     }
     
+    private PerformanceConfig parsePerformanceConfig() {
+        return new PerformanceConfig(performanceConfig);
+    }
+    
     // ========== 配置对象类 ==========
     
     public static class PlanetConfig {
@@ -604,4 +749,187 @@ public class ModConfig {
             }
         }
     }
+    
+    public static class PerformanceConfig {
+        public final long subscriberBudgetMicros;
+        public final long bridgeDrainBudgetMicros;
+        public final Map<String, Integer> tickPeriods;
+        public final long tickBudgetMicros;
+        public final Map<String, Long> subsystemBudgetMicros;
+        public final boolean allocationTrackingEnabled;
+        public final Map<String, Long> subsystemAllocationBudgetBytes;
+        public final boolean adaptiveQualityEnabled;
+        public final int adaptiveEvaluationIntervalTicks;
+        public final int adaptiveRecoveryTicks;
+        public final double adaptiveRecoveryMarginMspt;
+        public final List<QualityTier> qualityTiers;
+        public final boolean tickClock;
+        public final double clockSpeed;
+        public final boolean journalEnabled;
+        public final int journalSegmentSizeMb;
+        public final long journalCommitIntervalMillis;
+        public final boolean journalTruncateOnCheckpoint;
+        public final boolean playerStoreEnabled;
+        public final int playerStoreCacheSize;
+        public final int checkpointCompactAfterDeltas;
+        public final boolean historyEnabled;
+        public final int historySegmentSizeKb;
+        public final boolean traceEnabled;
+        public final int traceSampleIntervalTicks;
+        
+        PerformanceConfig(JsonObject json) {
+            // 旧版本生成的配置文件可能缺少某些项，缺失时使用默认值
+            JsonObject eventBus = json.has("event_bus") ? json.getAsJsonObject("event_bus") : new JsonObject();
+            this.subscriberBudgetMicros = eventBus.has("subscriber_budget_micros")
+                ? eventBus.get("subscriber_budget_micros").getAsLong() : 2000;
+            
+            JsonObject bridge = json.has("server_bridge") ? json.getAsJsonObject("server_bridge") : new JsonObject();
+            this.bridgeDrainBudgetMicros = bridge.has("drain_budget_micros")
+                ? bridge.get("drain_budget_micros").getAsLong() : 2000;
+            
+            this.tickPeriods = new HashMap<>();
+            if (json.has("tick_periods")) {
+                for (Map.Entry<String, JsonElement> entry : json.getAsJsonObject("tick_periods").entrySet()) {
+                    tickPeriods.put(entry.getKey(), Math.max(1, entry.getValue().getAsInt()));
+                }
+            }
+            
+            JsonObject tickBudget = json.has("tick_budget") ? json.getAsJsonObject("tick_budget") : new JsonObject();
+            this.tickBudgetMicros = tickBudget.has("total_micros")
+                ? Math.max(0, tickBudget.get("total_micros").getAsLong()) : 5000;
+            this.subsystemBudgetMicros = new HashMap<>();
+            if (tickBudget.has("subsystems")) {
+                for (Map.Entry<String, JsonElement> entry : tickBudget.getAsJsonObject("subsystems").entrySet()) {
+                    subsystemBudgetMicros.put(entry.getKey(), Math.max(0, entry.getValue().getAsLong()));
+                }
+            }
+            
+            JsonObject allocationBudget = json.has("allocation_budget")
+                ? json.getAsJsonObject("allocation_budget") : new JsonObject();
+            this.allocationTrackingEnabled = !allocationBudget.has("tracking_enabled")
+                || allocationBudget.get("tracking_enabled").getAsBoolean();
+            this.subsystemAllocationBudgetBytes = new HashMap<>();
+            if (allocationBudget.has("subsystems")) {
+                for (Map.Entry<String, JsonElement> entry : allocationBudget.getAsJsonObject("subsystems").entrySet()) {
+                    subsystemAllocationBudgetBytes.put(entry.getKey(), Math.max(0, entry.getValue().getAsLong()));
+                }
+            }
+            
+            JsonObject adaptive = json.has("adaptive_quality") ? json.getAsJsonObject("adaptive_quality") : new JsonObject();
+            this.adaptiveQualityEnabled = !adaptive.has("enabled") || adaptive.get("enabled").getAsBoolean();
+            this.adaptiveEvaluationIntervalTicks = adaptive.has("evaluation_interval_ticks")
+                ? Math.max(1, adaptive.get("evaluation_interval_ticks").getAsInt()) : 20;
+            this.adaptiveRecoveryTicks = adaptive.has("recovery_ticks")
+                ? Math.max(0, adaptive.get("recovery_ticks").getAsInt()) : 200;
+            this.adaptiveRecoveryMarginMspt = adaptive.has("recovery_margin_mspt")
+                ? Math.max(0, adaptive.get("recovery_margin_mspt").getAsDouble()) : 5.0;
+            this.qualityTiers = new ArrayList<>();
+            if (adaptive.has("tiers")) {
+                for (JsonElement element : adaptive.getAsJsonArray("tiers")) {
+                    qualityTiers.add(new QualityTier(element.getAsJsonObject()));
+                }
+            }
+            if (qualityTiers.isEmpty()) {
+                qualityTiers.add(QualityTier.normal());
+            }
+            // 按阈值从低到高排列，第一级是正常质量
+            qualityTiers.sort((a, b) -> Double.compare(a.msptThreshold, b.msptThreshold));
+            
+            JsonObject clock = json.has("clock") ? json.getAsJsonObject("clock") : new JsonObject();
+            this.tickClock = clock.has("mode") && "tick".equalsIgnoreCase(clock.get("mode").getAsString());
+            this.clockSpeed = clock.has("speed") ? Math.max(0.001, clock.get("speed").getAsDouble()) : 1.0;
+            
+            JsonObject journal = json.has("journal") ? json.getAsJsonObject("journal") : new JsonObject();
+            this.journalEnabled = !journal.has("enabled") || journal.get("enabled").getAsBoolean();
+            this.journalSegmentSizeMb = journal.has("segment_size_mb")
+                ? Math.max(1, Math.min(1024, journal.get("segment_size_mb").getAsInt())) : 16;
+            this.journalCommitIntervalMillis = journal.has("commit_interval_millis")
+                ? Math.max(0, Math.min(1000, journal.get("commit_interval_millis").getAsLong())) : 5;
+            this.journalTruncateOnCheckpoint = !journal.has("truncate_on_checkpoint")
+                || journal.get("truncate_on_checkpoint").getAsBoolean();
+            
+            JsonObject playerStore = json.has("player_store") ? json.getAsJsonObject("player_store") : new JsonObject();
+            this.playerStoreEnabled = !playerStore.has("enabled") || playerStore.get("enabled").getAsBoolean();
+            this.playerStoreCacheSize = playerStore.has("cache_size")
+                ? Math.max(1, playerStore.get("cache_size").getAsInt()) : 2048;
+            
+            JsonObject checkpoint = json.has("checkpoint") ? json.getAsJsonObject("checkpoint") : new JsonObject();
+            this.checkpointCompactAfterDeltas = checkpoint.has("compact_after_deltas")
+                ? Math.max(1, Math.min(1024, checkpoint.get("compact_after_deltas").getAsInt())) : 16;
+            
+            JsonObject history = json.has("history") ? json.getAsJsonObject("history") : new JsonObject();
+            this.historyEnabled = !history.has("enabled") || history.get("enabled").getAsBoolean();
+            this.historySegmentSizeKb = history.has("segment_size_kb")
+                ? Math.max(16, Math.min(1024 * 1024, history.get("segment_size_kb").getAsInt())) : 1024;
+            
+            JsonObject trace = json.has("trace") ? json.getAsJsonObject("trace") : new JsonObject();
+            this.traceEnabled = trace.has("enabled") && trace.get("enabled").getAsBoolean();
+            this.traceSampleIntervalTicks = trace.has("sample_interval_ticks")
+                ? Math.max(1, trace.get("sample_interval_ticks").getAsInt()) : 20;
+        }
+        
+        /**
+         * 获取子系统的运行周期，未配置时使用默认值
+         */
+        public int getTickPeriod(String subsystem, int defaultPeriod) {
+            return tickPeriods.getOrDefault(subsystem, defaultPeriod);
+        }
+        
+        /**
+         * 获取子系统每tick的时间片（微秒），未配置时使用默认值
+         */
+        public long getSubsystemBudgetMicros(String subsystem, long defaultMicros) {
+            return subsystemBudgetMicros.getOrDefault(subsystem, defaultMicros);
+        }
+        
+        /**
+         * 获取子系统每tick的分配预算（字节），未配置时使用默认值
+         */
+        public long getSubsystemAllocationBudgetBytes(String subsystem, long defaultBytes) {
+            return subsystemAllocationBudgetBytes.getOrDefault(subsystem, defaultBytes);
+        }
+        
+        public static class QualityTier {
+            public final String name;
+            public final double msptThreshold;
+            public final double intervalMultiplier;
+            public final double samplingRate;
+            
+            QualityTier(JsonObject json) {
+                this(json.get("name").getAsString(),
+                    json.has("mspt_threshold") ? json.get("mspt_threshold").getAsDouble() : 0.0,
+                    json.has("interval_multiplier") ? json.get("interval_multiplier").getAsDouble() : 1.0,
+                    json.has("sampling_rate") ? json.get("sampling_rate").getAsDouble() : 1.0);
+            }
+            
+            /**
+             * 正常质量：不拉长间隔，不降低采样
+             */
+            public static QualityTier normal() {
+                return new QualityTier("normal", 0.0, 1.0, 1.0);
+            }
+            
+            QualityTier(String name, double msptThreshold, double intervalMultiplier, double samplingRate) {
+                this.name = name;
+                this.msptThreshold = msptThreshold;
+                this.intervalMultiplier = Math.max(1.0, intervalMultiplier);
+                this.samplingRate = Math.max(0.0, Math.min(1.0, samplingRate));
+            }
+            
+            /**
+             * 按本级别拉长检查间隔
+             * @param baseTicks 正常质量下的间隔（tick）
+             */
+            public int scaleInterval(int baseTicks) {
+                return (int) Math.ceil(baseTicks * intervalMultiplier);
+            }
+            
+            /**
+             * 按本级别的采样率决定本次检查是否执行
+             */
+            public boolean sample() {
+                return samplingRate >= 1.0 || ModRandom.nextDouble() < samplingRate;
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,145 @@
+package com.planetaryexodus.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 模组共享的后台执行服务，随服务器启动和停止
+ * - io：每个任务一个虚拟线程，用于文件、网络等会阻塞的工作
+ * - compute：有界线程池，用于纯计算（如根据快照计算灾难决策），结果交回服务器线程应用
+ * - scheduler：单线程定时执行器，用于周期性的后台检查
+ *
+ * 服务器停止时取消所有任务并关闭执行器，之后提交的任务会被拒绝，直到下一次启动
+ */
+public final class ModExecutors {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger("PlanetaryExodus/Executors");
+    
+    // 关闭时等待正在执行的任务结束的时间
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+    
+    private static ExecutorService io;
+    private static ExecutorService compute;
+    private static ScheduledExecutorService scheduler;
+    private static volatile boolean running;
+    
+    private ModExecutors() {
+    }
+    
+    /**
+     * 创建执行器（服务器启动时调用）
+     */
+    public static synchronized void start() {
+        if (running) {
+            return;
+        }
+        io = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("PlanetaryExodus-IO-", 0).factory());
+        
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), daemonFactory("PlanetaryExodus-Compute-"));
+        pool.allowCoreThreadTimeOut(true);
+        compute = pool;
+        
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, daemonFactory("PlanetaryExodus-Scheduler-"));
+        timer.setRemoveOnCancelPolicy(true);
+        scheduler = timer;
+        
+        running = true;
+        LOGGER.debug("后台执行服务已启动，计算线程 {} 个", threads);
+    }
+    
+    /**
+     * 获取I/O执行器，每个任务运行在独立的虚拟线程上
+     */
+    public static synchronized ExecutorService io() {
+        checkRunning();
+        return io;
+    }
+    
+    /**
+     * 获取计算执行器，线程数不超过可用处理器数减一
+     */
+    public static synchronized ExecutorService compute() {
+        checkRunning();
+        return compute;
+    }
+    
+    /**
+     * 获取定时执行器，周期任务应尽快返回，耗时工作转交 io 或 compute
+     */
+    public static synchronized ScheduledExecutorService scheduler() {
+        checkRunning();
+        return scheduler;
+    }
+    
+    /**
+     * 打开在虚拟线程上运行子任务的结构化并发作用域
+     */
+    public static <T> TaskScope<T> openScope() {
+        return new TaskScope<>(io());
+    }
+    
+    /**
+     * 判断执行服务是否在运行
+     */
+    public static boolean isRunning() {
+        return running;
+    }
+    
+    /**
+     * 取消所有任务并关闭执行器，等待正在执行的任务结束（服务器停止时调用）
+     */
+    public static void shutdown() {
+        ExecutorService[] executors;
+        synchronized (ModExecutors.class) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            executors = new ExecutorService[] { scheduler, compute, io };
+            scheduler = null;
+            compute = null;
+            io = null;
+        }
+        
+        for (ExecutorService executor : executors) {
+            executor.shutdownNow();
+        }
+        try {
+            for (ExecutorService executor : executors) {
+                if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    LOGGER.warn("后台任务未能在 {} 秒内停止", SHUTDOWN_TIMEOUT_SECONDS);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        LOGGER.debug("后台执行服务已关闭");
+    }
+    
+    private static void checkRunning() {
+        if (!running) {
+            throw new RejectedExecutionException("ModExecutors is not running");
+        }
+    }
+    
+    private static java.util.concurrent.ThreadFactory daemonFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
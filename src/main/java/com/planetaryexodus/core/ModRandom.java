@@ -0,0 +1,48 @@
+package com.planetaryexodus.core;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * 模组随机数来源
+ * 灾难触发、效果概率和降级采样都从这里取随机数，默认使用 ThreadLocalRandom；
+ * 离线重放时换成固定种子的随机数，配合同步计算使每次重放的结果完全相同
+ */
+public final class ModRandom {
+    
+    // 固定种子的随机数，为null时使用 ThreadLocalRandom
+    private static volatile RandomGenerator seeded;
+    
+    private ModRandom() {
+    }
+    
+    /**
+     * 获取当前线程应使用的随机数生成器
+     */
+    public static RandomGenerator current() {
+        RandomGenerator generator = seeded;
+        return generator != null ? generator : ThreadLocalRandom.current();
+    }
+    
+    /**
+     * 返回 [0, 1) 之间的随机数
+     */
+    public static double nextDouble() {
+        return current().nextDouble();
+    }
+    
+    /**
+     * 使用固定种子，之后的随机数序列可以重现（调用顺序也必须相同）
+     */
+    public static void setSeed(long seed) {
+        seeded = new Random(seed);
+    }
+    
+    /**
+     * 恢复使用 ThreadLocalRandom
+     */
+    public static void useDefault() {
+        seeded = null;
+    }
+}
@@ -0,0 +1,82 @@
+package com.planetaryexodus.core;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁多生产者单消费者队列
+ * 生产者只做一次原子交换即可入队，不会互相阻塞；只允许一个线程出队
+ *
+ * 生产者交换尾指针后、链接前一节点之前的短暂窗口内，消费者可能看不到该元素，
+ * 此时 poll 返回null，元素会在下一次 poll 时取出
+ * @param <T> 元素类型
+ */
+public final class MpscQueue<T> {
+    
+    // 生产者竞争的尾节点
+    private final AtomicReference<Node<T>> tail;
+    // 消费者持有的哨兵节点，其后才是第一个元素（只在消费线程上访问）
+    private Node<T> head;
+    
+    private final LongAdder offered = new LongAdder();
+    private volatile long polled;
+    
+    public MpscQueue() {
+        Node<T> stub = new Node<>(null);
+        this.head = stub;
+        this.tail = new AtomicReference<>(stub);
+    }
+    
+    /**
+     * 入队，任何线程都可以调用
+     */
+    public void offer(T value) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        Node<T> node = new Node<>(value);
+        Node<T> previous = tail.getAndSet(node);
+        previous.next = node;
+        offered.increment();
+    }
+    
+    /**
+     * 出队，只能在消费线程上调用
+     * @return 队首元素，队列为空时返回null
+     */
+    public T poll() {
+        Node<T> next = head.next;
+        if (next == null) {
+            return null;
+        }
+        T value = next.value;
+        // 取出的节点成为新的哨兵，清空引用以便回收元素
+        next.value = null;
+        head = next;
+        polled++;
+        return value;
+    }
+    
+    /**
+     * 判断队列是否为空，只能在消费线程上调用
+     */
+    public boolean isEmpty() {
+        return head.next == null;
+    }
+    
+    /**
+     * 获取队列中元素数量的近似值，任何线程都可以调用
+     */
+    public long size() {
+        return Math.max(0, offered.sum() - polled);
+    }
+    
+    private static final class Node<T> {
+        T value;
+        volatile Node<T> next;
+        
+        Node(T value) {
+            this.value = value;
+        }
+    }
+}
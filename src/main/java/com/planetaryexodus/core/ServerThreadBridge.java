@@ -0,0 +1,149 @@
+package com.planetaryexodus.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+
+/**
+ * 服务器线程桥
+ * 后台线程（如行星监控线程）不能直接发布事件或修改游戏状态，
+ * 而是把事件或操作投递到这里，由服务器线程在每个tick开始时按预算统一执行
+ *
+ * 投递使用无锁多生产者单消费者队列，后台线程不会因服务器线程而阻塞
+ */
+public final class ServerThreadBridge {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger("PlanetaryExodus/Bridge");
+    private static final ServerThreadBridge INSTANCE = new ServerThreadBridge();
+    
+    private final MpscQueue<Runnable> queue = new MpscQueue<>();
+    
+    // 每tick执行投递操作的时间预算，超出后剩余操作留到下一个tick
+    private volatile long drainBudgetNanos = 2_000_000;
+    
+    // 以下统计只在服务器线程上更新
+    private volatile long executedCount;
+    private volatile long failedCount;
+    private volatile long deferredTicks;
+    
+    private ServerThreadBridge() {
+    }
+    
+    /**
+     * 获取服务器线程桥实例
+     */
+    public static ServerThreadBridge getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * 投递一个事件，由服务器线程在下一个tick发布到事件总线
+     * @param event 事件对象
+     */
+    public void post(Object event) {
+        Objects.requireNonNull(event, "event");
+        queue.offer(() -> EventBus.getInstance().publish(event));
+    }
+    
+    /**
+     * 投递一个操作，由服务器线程在下一个tick执行
+     * @param action 需要读写游戏状态的操作
+     */
+    public void execute(Runnable action) {
+        queue.offer(Objects.requireNonNull(action, "action"));
+    }
+    
+    /**
+     * 在服务器线程上按预算执行积压的操作，至少执行一个以保证前进
+     * @return 本次执行的操作数
+     */
+    public int drain() {
+        long budget = drainBudgetNanos;
+        long start = System.nanoTime();
+        int executed = 0;
+        long failed = 0;
+        
+        Runnable action;
+        while ((action = queue.poll()) != null) {
+            try {
+                action.run();
+            } catch (Exception e) {
+                failed++;
+                LOGGER.error("执行后台线程投递的操作时出错", e);
+            }
+            executed++;
+            if (System.nanoTime() - start >= budget) {
+                if (!queue.isEmpty()) {
+                    deferredTicks++;
+                    LOGGER.debug("本tick投递操作已用完预算，剩余 {} 个留到下一tick", queue.size());
+                }
+                break;
+            }
+        }
+        
+        if (executed > 0) {
+            executedCount += executed;
+            failedCount += failed;
+        }
+        return executed;
+    }
+    
+    /**
+     * 丢弃所有尚未执行的操作（服务器停止时调用，避免带入下一个世界）
+     * @return 丢弃的操作数
+     */
+    public int discardPending() {
+        int discarded = 0;
+        while (queue.poll() != null) {
+            discarded++;
+        }
+        if (discarded > 0) {
+            LOGGER.info("服务器停止，丢弃 {} 个未执行的投递操作", discarded);
+        }
+        return discarded;
+    }
+    
+    /**
+     * 设置每tick执行投递操作的时间预算
+     * @param budgetNanos 预算（纳秒）
+     */
+    public void setDrainBudgetNanos(long budgetNanos) {
+        this.drainBudgetNanos = Math.max(0, budgetNanos);
+    }
+    
+    /**
+     * 获取每tick执行投递操作的时间预算（纳秒）
+     */
+    public long getDrainBudgetNanos() {
+        return drainBudgetNanos;
+    }
+    
+    /**
+     * 获取等待执行的操作数（近似值）
+     */
+    public long getPendingCount() {
+        return queue.size();
+    }
+    
+    /**
+     * 获取已执行的操作数
+     */
+    public long getExecutedCount() {
+        return executedCount;
+    }
+    
+    /**
+     * 获取执行时抛出异常的操作数
+     */
+    public long getFailedCount() {
+        return failedCount;
+    }
+    
+    /**
+     * 获取因预算用完而有操作被推迟的tick数
+     */
+    public long getDeferredTicks() {
+        return deferredTicks;
+    }
+}
@@ -0,0 +1,239 @@
+package com.planetaryexodus.core;
+
+import com.planetaryexodus.api.annotations.Subscribe;
+import com.planetaryexodus.api.interfaces.IEventSubscriber;
+import com.planetaryexodus.api.interfaces.IKeyedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * 注解订阅方法的发现与绑定
+ * 每个监听器类只扫描一次，订阅方法通过 LambdaMetafactory 编译为直接调用，
+ * 发布事件时没有任何反射开销，JIT可以像普通方法调用一样内联
+ */
+final class SubscriberMethods {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger("PlanetaryExodus/EventBus");
+    
+    // 每个监听器类的订阅方法绑定结果
+    private static final ClassValue<List<Binding>> BINDINGS = new ClassValue<>() {
+        @Override
+        protected List<Binding> computeValue(Class<?> type) {
+            return discover(type);
+        }
+    };
+    
+    private SubscriberMethods() {
+    }
+    
+    /**
+     * 获取监听器类上所有已绑定的订阅方法
+     */
+    static List<Binding> forClass(Class<?> listenerClass) {
+        return BINDINGS.get(listenerClass);
+    }
+    
+    /**
+     * 扫描类及其父类中标注了 @Subscribe 的方法，子类重写的方法只绑定一次
+     */
+    private static List<Binding> discover(Class<?> listenerClass) {
+        List<Binding> bindings = new ArrayList<>();
+        Set<String> seenSignatures = new HashSet<>();
+        
+        for (Class<?> clazz = listenerClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Method method : clazz.getDeclaredMethods()) {
+                if (method.isBridge() || method.isSynthetic()) {
+                    continue;
+                }
+                String signature = method.getName() + Arrays.toString(method.getParameterTypes());
+                Subscribe annotation = method.getAnnotation(Subscribe.class);
+                if (annotation == null) {
+                    // 子类未标注的重写方法会屏蔽父类的订阅
+                    seenSignatures.add(signature);
+                    continue;
+                }
+                if (!seenSignatures.add(signature)) {
+                    continue;
+                }
+                
+                validate(method);
+                Class<?> eventType = method.getParameterTypes()[0];
+                bindings.add(new Binding(eventType, annotation, resolveKey(method, eventType, annotation.key()),
+                    compile(method)));
+            }
+        }
+        return List.copyOf(bindings);
+    }
+    
+    private static void validate(Method method) {
+        if (Modifier.isStatic(method.getModifiers())) {
+            throw new IllegalArgumentException("@Subscribe 方法不能是静态方法: " + method);
+        }
+        if (method.getParameterCount() != 1) {
+            throw new IllegalArgumentException("@Subscribe 方法必须有且只有一个参数: " + method);
+        }
+        if (method.getParameterTypes()[0].isPrimitive()) {
+            throw new IllegalArgumentException("@Subscribe 方法的参数不能是基本类型: " + method);
+        }
+    }
+    
+    /**
+     * 将注解中的键名解析为事件路由键类型的枚举常量
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Enum<?> resolveKey(Method method, Class<?> eventType, String key) {
+        if (key.isEmpty()) {
+            return null;
+        }
+        Class<?> keyType = routingKeyType(eventType);
+        if (keyType == null || !keyType.isEnum()) {
+            throw new IllegalArgumentException("@Subscribe(key) 要求事件类型实现 IKeyedEvent 并指定具体的枚举类型: " + method);
+        }
+        try {
+            return Enum.valueOf((Class) keyType, key);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("@Subscribe(key) 不是 " + keyType.getSimpleName() + " 的常量: " + method, e);
+        }
+    }
+    
+    /**
+     * 从事件类的泛型声明中找出 IKeyedEvent 的路由键类型
+     */
+    static Class<?> routingKeyType(Class<?> eventType) {
+        for (Class<?> clazz = eventType; clazz != null; clazz = clazz.getSuperclass()) {
+            for (Type type : clazz.getGenericInterfaces()) {
+                if (type instanceof ParameterizedType parameterized) {
+                    if (parameterized.getRawType() == IKeyedEvent.class) {
+                        Type argument = parameterized.getActualTypeArguments()[0];
+                        return argument instanceof Class<?> keyType ? keyType : null;
+                    }
+                    type = parameterized.getRawType();
+                }
+                // 间接继承 IKeyedEvent 的接口
+                if (type instanceof Class<?> iface && IKeyedEvent.class.isAssignableFrom(iface)) {
+                    Class<?> found = routingKeyType(iface);
+                    if (found != null) {
+                        return found;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * 将订阅方法编译为 (listener, event) -> listener.method(event) 的直接调用
+     * LambdaMetafactory 不可用时（例如模块未开放）退回到 MethodHandle 调用
+     */
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object> compile(Method method) {
+        Class<?> owner = method.getDeclaringClass();
+        MethodHandle target;
+        MethodHandles.Lookup lookup;
+        try {
+            lookup = MethodHandles.privateLookupIn(owner, MethodHandles.lookup());
+            target = lookup.unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("无法访问 @Subscribe 方法: " + method, e);
+        }
+        
+        try {
+            CallSite site = LambdaMetafactory.metafactory(
+                lookup,
+                "accept",
+                MethodType.methodType(BiConsumer.class),
+                MethodType.methodType(void.class, Object.class, Object.class),
+                target,
+                MethodType.methodType(void.class, owner, method.getParameterTypes()[0])
+            );
+            return (BiConsumer<Object, Object>) site.getTarget().invokeExact();
+        } catch (Throwable t) {
+            LOGGER.debug("无法为 {} 生成直接调用，改用 MethodHandle", method, t);
+            MethodHandle generic = target.asType(MethodType.methodType(void.class, Object.class, Object.class));
+            return (listener, event) -> {
+                try {
+                    generic.invokeExact(listener, event);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new RuntimeException(e);
+                }
+            };
+        }
+    }
+    
+    /**
+     * 监听器类上的一个订阅方法
+     */
+    static final class Binding {
+        final Class<?> eventType;
+        final boolean async;
+        final boolean receiveEveryEvent;
+        // 路由键，null表示不按键过滤
+        final Enum<?> key;
+        final BiConsumer<Object, Object> invoker;
+        
+        Binding(Class<?> eventType, Subscribe annotation, Enum<?> key, BiConsumer<Object, Object> invoker) {
+            this.eventType = eventType;
+            this.async = annotation.async();
+            this.receiveEveryEvent = annotation.receiveEveryEvent();
+            this.key = key;
+            this.invoker = invoker;
+        }
+        
+        /**
+         * 为具体的监听器实例创建订阅者
+         */
+        IEventSubscriber<Object> bind(Object listener) {
+            return new MethodSubscriber(listener, this);
+        }
+    }
+    
+    /**
+     * 调用监听器实例上订阅方法的订阅者
+     */
+    private static final class MethodSubscriber implements IEventSubscriber<Object> {
+        private final Object listener;
+        private final Binding binding;
+        private final BiConsumer<Object, Object> invoker;
+        
+        MethodSubscriber(Object listener, Binding binding) {
+            this.listener = listener;
+            this.binding = binding;
+            this.invoker = binding.invoker;
+        }
+        
+        @Override
+        public void onEvent(Object event) {
+            invoker.accept(listener, event);
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        public Class<Object> getEventType() {
+            return (Class<Object>) binding.eventType;
+        }
+        
+        @Override
+        public boolean receivesEveryEvent() {
+            return binding.receiveEveryEvent;
+        }
+        
+        @Override
+        public String toString() {
+            return listener.getClass().getName() + "#" + binding.eventType.getSimpleName();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.planetaryexodus.core;
+
+import com.planetaryexodus.api.interfaces.IEventSubscriber;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 订阅者统计数据
+ * 记录单个订阅（订阅者 + 事件类型 + 路由键）的调用次数、累计耗时、耗时直方图、
+ * 最大耗时、异常次数和超出预算次数
+ *
+ * 所有计数都是无锁的，发布线程上每次调用只增加两次 nanoTime 和几次原子累加的开销
+ */
+public final class SubscriberMetrics {
+    
+    /** 直方图桶数量，第 i 个桶统计耗时在 [2^i, 2^(i+1)) 纳秒之间的调用，最后一个桶包含更长的调用 */
+    public static final int HISTOGRAM_BUCKETS = 32;
+    
+    // 同一订阅的超预算警告最短间隔，避免每tick刷屏
+    private static final long WARN_INTERVAL_NANOS = 60_000_000_000L;
+    
+    private final Class<?> eventType;
+    private final Enum<?> key;
+    private final String subscriberName;
+    
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder budgetOverruns = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLongArray histogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+    private final AtomicLong lastWarnNanos = new AtomicLong(System.nanoTime() - WARN_INTERVAL_NANOS);
+    
+    SubscriberMetrics(Class<?> eventType, Enum<?> key, String subscriberName) {
+        this.eventType = eventType;
+        this.key = key;
+        this.subscriberName = subscriberName;
+    }
+    
+    /**
+     * 记录一次调用
+     * @param nanos 本次调用耗时
+     * @param failed 是否抛出了异常
+     * @param budgetNanos 单次调用预算，0表示不检查
+     * @return 本次调用超出预算且距上次警告已超过间隔时返回true，调用方据此输出警告
+     */
+    boolean record(long nanos, boolean failed, long budgetNanos) {
+        invocations.increment();
+        totalNanos.add(nanos);
+        histogram.incrementAndGet(bucketOf(nanos));
+        if (failed) {
+            errors.increment();
+        }
+        
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+        
+        if (budgetNanos > 0 && nanos > budgetNanos) {
+            budgetOverruns.increment();
+            long now = System.nanoTime();
+            long last = lastWarnNanos.get();
+            return now - last >= WARN_INTERVAL_NANOS && lastWarnNanos.compareAndSet(last, now);
+        }
+        return false;
+    }
+    
+    /**
+     * 生成订阅者的可读名称，没有重写toString的订阅者使用类名
+     */
+    static String describe(IEventSubscriber<?> subscriber) {
+        if (subscriber instanceof AsyncSubscriber<?> async) {
+            return "async:" + describe(async.getDelegate());
+        }
+        String text = subscriber.toString();
+        return text.startsWith(subscriber.getClass().getName() + "@") ? subscriber.getClass().getName() : text;
+    }
+    
+    private static int bucketOf(long nanos) {
+        int bucket = 63 - Long.numberOfLeadingZeros(Math.max(1, nanos));
+        return Math.min(bucket, HISTOGRAM_BUCKETS - 1);
+    }
+    
+    /**
+     * 获取订阅的事件类型
+     */
+    public Class<?> getEventType() {
+        return eventType;
+    }
+    
+    /**
+     * 获取订阅的路由键，未按键订阅时为null
+     */
+    public Enum<?> getKey() {
+        return key;
+    }
+    
+    /**
+     * 获取订阅者名称
+     */
+    public String getSubscriberName() {
+        return subscriberName;
+    }
+    
+    /**
+     * 获取调用次数
+     */
+    public long getInvocations() {
+        return invocations.sum();
+    }
+    
+    /**
+     * 获取抛出异常的次数
+     */
+    public long getErrors() {
+        return errors.sum();
+    }
+    
+    /**
+     * 获取累计耗时（纳秒）
+     */
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+    
+    /**
+     * 获取单次调用的最大耗时（纳秒）
+     */
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+    
+    /**
+     * 获取平均耗时（纳秒）
+     */
+    public double getAverageNanos() {
+        long count = getInvocations();
+        return count == 0 ? 0 : (double) getTotalNanos() / count;
+    }
+    
+    /**
+     * 获取超出单次调用预算的次数
+     */
+    public long getBudgetOverruns() {
+        return budgetOverruns.sum();
+    }
+    
+    /**
+     * 获取耗时直方图的副本
+     */
+    public long[] getHistogram() {
+        long[] copy = new long[HISTOGRAM_BUCKETS];
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            copy[i] = histogram.get(i);
+        }
+        return copy;
+    }
+    
+    /**
+     * 根据直方图估算耗时分位数（返回所在桶的上界，单位纳秒）
+     * @param quantile 分位数，取值 0-1
+     */
+    public long estimatePercentileNanos(double quantile) {
+        long[] buckets = getHistogram();
+        long count = 0;
+        for (long bucket : buckets) {
+            count += bucket;
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(count * Math.min(1.0, Math.max(0.0, quantile)));
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= target) {
+                return i == HISTOGRAM_BUCKETS - 1 ? getMaxNanos() : (1L << (i + 1)) - 1;
+            }
+        }
+        return getMaxNanos();
+    }
+    
+    /**
+     * 清零所有统计
+     */
+    public void reset() {
+        invocations.reset();
+        errors.reset();
+        totalNanos.reset();
+        budgetOverruns.reset();
+        maxNanos.set(0);
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            histogram.set(i, 0);
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("SubscriberMetrics{event=%s%s, subscriber=%s, calls=%d, errors=%d, avg=%.1fμs, max=%dμs, overruns=%d}",
+            eventType.getSimpleName(), key != null ? "[" + key + "]" : "", subscriberName,
+            getInvocations(), getErrors(), getAverageNanos() / 1000, getMaxNanos() / 1000, getBudgetOverruns());
+    }
+}
@@ -0,0 +1,290 @@
+package com.planetaryexodus.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 结构化并发作用域
+ * 在作用域内派生的子任务必须在作用域关闭前完成，任一子任务失败时取消其余子任务，
+ * 关闭作用域时取消所有未完成的子任务并等待它们真正结束，子任务不会比创建它的代码活得更久
+ *
+ * 用法：
+ * <pre>
+ * try (TaskScope&lt;Result&gt; scope = ModExecutors.openScope()) {
+ *     Future&lt;Result&gt; a = scope.fork(() -&gt; ...);
+ *     Future&lt;Result&gt; b = scope.fork(() -&gt; ...);
+ *     scope.join().throwIfFailed();
+ *     ...
+ * }
+ * </pre>
+ * 只有创建作用域的线程可以派生子任务、等待和关闭
+ * @param <T> 子任务的结果类型
+ */
+public final class TaskScope<T> implements AutoCloseable {
+    
+    private final ExecutorService executor;
+    private final Thread owner = Thread.currentThread();
+    // 由所有者线程添加，失败时由完成的子任务所在线程遍历
+    private final List<Subtask> subtasks = new CopyOnWriteArrayList<>();
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    // 尚未结束的子任务数，子任务的代码真正退出后（或从未开始就被取消）才递减
+    private int running;
+    private Throwable failure;
+    private boolean closed;
+    
+    TaskScope(ExecutorService executor) {
+        this.executor = executor;
+    }
+    
+    /**
+     * 派生子任务
+     * 作用域已有子任务失败时，新的子任务直接取消
+     */
+    public Future<T> fork(Callable<? extends T> task) {
+        checkOwner();
+        if (closed) {
+            throw new IllegalStateException("scope is closed");
+        }
+        Subtask subtask = new Subtask(task);
+        subtasks.add(subtask);
+        
+        boolean failed;
+        lock.lock();
+        try {
+            running++;
+            failed = failure != null;
+        } finally {
+            lock.unlock();
+        }
+        if (failed) {
+            subtask.cancel(true);
+            return subtask;
+        }
+        try {
+            executor.execute(subtask);
+        } catch (RuntimeException e) {
+            // 执行器已关闭，子任务直接以失败结束
+            subtask.fail(e);
+        }
+        return subtask;
+    }
+    
+    /**
+     * 等待所有子任务完成，或任一子任务失败
+     */
+    public TaskScope<T> join() throws InterruptedException {
+        checkOwner();
+        lock.lock();
+        try {
+            while (running > 0 && failure == null) {
+                changed.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+    
+    /**
+     * 在超时时间内等待所有子任务完成，或任一子任务失败
+     * @throws TimeoutException 超时仍有子任务在运行，此时取消所有子任务
+     */
+    public TaskScope<T> join(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        checkOwner();
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (running > 0 && failure == null) {
+                if (remaining <= 0) {
+                    cancelAll();
+                    throw new TimeoutException("subtasks did not complete in time");
+                }
+                remaining = changed.awaitNanos(remaining);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+    
+    /**
+     * 有子任务失败时抛出它的异常
+     */
+    public TaskScope<T> throwIfFailed() throws ExecutionException {
+        Throwable cause = getFailure();
+        if (cause != null) {
+            throw new ExecutionException(cause);
+        }
+        return this;
+    }
+    
+    /**
+     * 获取已成功完成的子任务结果，按派生顺序
+     */
+    public List<T> results() {
+        List<T> results = new ArrayList<>(subtasks.size());
+        for (Subtask subtask : subtasks) {
+            if (subtask.isDone() && !subtask.isCancelled()) {
+                try {
+                    results.add(subtask.get());
+                } catch (ExecutionException | InterruptedException | CancellationException ignored) {
+                    // 失败的子任务没有结果
+                }
+            }
+        }
+        return Collections.unmodifiableList(results);
+    }
+    
+    /**
+     * 获取第一个失败子任务的异常，没有失败时返回null
+     */
+    public Throwable getFailure() {
+        lock.lock();
+        try {
+            return failure;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * 关闭作用域，取消所有未完成的子任务，并等待正在运行的子任务退出
+     * 被中断时仍会继续等待，返回前恢复中断状态
+     */
+    @Override
+    public void close() {
+        checkOwner();
+        if (closed) {
+            return;
+        }
+        closed = true;
+        cancelAll();
+        
+        boolean interrupted = false;
+        lock.lock();
+        try {
+            while (running > 0) {
+                try {
+                    changed.await();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void cancelAll() {
+        for (Subtask subtask : subtasks) {
+            subtask.cancel(true);
+        }
+    }
+    
+    private void checkOwner() {
+        if (Thread.currentThread() != owner) {
+            throw new IllegalStateException("TaskScope can only be used by the thread that opened it");
+        }
+    }
+    
+    /**
+     * 子任务的代码已退出（或从未开始），通知作用域
+     */
+    private void onEnded() {
+        lock.lock();
+        try {
+            running--;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * 子任务失败时记录第一个异常并取消其余子任务
+     */
+    private void onFailed(Subtask subtask, Throwable error) {
+        lock.lock();
+        try {
+            if (failure != null) {
+                return;
+            }
+            failure = error;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (Subtask other : subtasks) {
+            if (other != subtask) {
+                other.cancel(true);
+            }
+        }
+    }
+    
+    private final class Subtask extends FutureTask<T> {
+        
+        private static final int PENDING = 0;
+        private static final int STARTED = 1;
+        private static final int ENDED = 2;
+        
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        
+        Subtask(Callable<? extends T> task) {
+            super(task::call);
+        }
+        
+        void fail(Throwable error) {
+            setException(error);
+        }
+        
+        @Override
+        public void run() {
+            if (!state.compareAndSet(PENDING, STARTED)) {
+                // 开始前已被取消
+                return;
+            }
+            try {
+                super.run();
+            } finally {
+                // 取消只会中断线程，要等代码真正退出才算结束
+                state.set(ENDED);
+                onEnded();
+            }
+        }
+        
+        @Override
+        protected void done() {
+            if (!isCancelled()) {
+                try {
+                    get();
+                } catch (ExecutionException e) {
+                    onFailed(this, e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            // 从未开始运行的子任务（开始前被取消或提交失败）在这里结束
+            if (state.compareAndSet(PENDING, ENDED)) {
+                onEnded();
+            }
+        }
+    }
+}
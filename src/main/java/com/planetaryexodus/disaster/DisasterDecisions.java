@@ -0,0 +1,88 @@
+package com.planetaryexodus.disaster;
+
+import com.planetaryexodus.core.ModConfig;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 根据快照计算出的灾难决策
+ * 由服务器线程应用：触发哪些灾难、哪些灾难结束、每个活动灾难本周期要执行哪些效果
+ */
+public final class DisasterDecisions {
+    public final long generation;
+    public final long computedAt;
+    // 快照采集时的tick
+    public final int tick;
+    // 重新计算的触发概率，本周期不需要更新时为null
+    public final Map<DisasterType, Double> probabilities;
+    // 本周期是否检查了新灾难的触发
+    public final boolean triggerChecked;
+    public final List<Trigger> triggers;
+    public final List<EffectDecision> effects;
+    
+    DisasterDecisions(long generation, long computedAt, int tick, Map<DisasterType, Double> probabilities,
+                      boolean triggerChecked, List<Trigger> triggers, List<EffectDecision> effects) {
+        this.generation = generation;
+        this.computedAt = computedAt;
+        this.tick = tick;
+        this.probabilities = probabilities == null ? null : Collections.unmodifiableMap(probabilities);
+        this.triggerChecked = triggerChecked;
+        this.triggers = Collections.unmodifiableList(triggers);
+        this.effects = Collections.unmodifiableList(effects);
+    }
+    
+    /**
+     * 要触发的新灾难
+     */
+    public static final class Trigger {
+        public final DisasterType type;
+        public final ModConfig.DisasterConfig.DisasterTypeConfig config;
+        public final double chance;
+        
+        Trigger(DisasterType type, ModConfig.DisasterConfig.DisasterTypeConfig config, double chance) {
+            this.type = type;
+            this.config = config;
+            this.chance = chance;
+        }
+    }
+    
+    /**
+     * 单个活动灾难本周期的效果决策
+     */
+    public static final class EffectDecision {
+        public final long disasterId;
+        public final boolean finished;
+        // 本周期到了伤害间隔时为true，affectedPlayers 是受影响的玩家
+        public final boolean damageDue;
+        public final float damage;
+        public final List<UUID> affectedPlayers;
+        // 到了检查间隔时为true，Hit 表示概率判定成功
+        public final boolean corrosionDue;
+        public final boolean corrosionHit;
+        public final boolean blockDamageDue;
+        public final boolean blockDamageHit;
+        
+        EffectDecision(long disasterId, boolean finished, boolean damageDue, float damage, List<UUID> affectedPlayers,
+                       boolean corrosionDue, boolean corrosionHit, boolean blockDamageDue, boolean blockDamageHit) {
+            this.disasterId = disasterId;
+            this.finished = finished;
+            this.damageDue = damageDue;
+            this.damage = damage;
+            this.affectedPlayers = Collections.unmodifiableList(affectedPlayers);
+            this.corrosionDue = corrosionDue;
+            this.corrosionHit = corrosionHit;
+            this.blockDamageDue = blockDamageDue;
+            this.blockDamageHit = blockDamageHit;
+        }
+        
+        /**
+         * 判断是否有需要在服务器线程上执行的效果
+         */
+        public boolean hasWork() {
+            return (damageDue && !affectedPlayers.isEmpty()) || corrosionHit || blockDamageHit;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.planetaryexodus.disaster;
+
+import com.planetaryexodus.core.ModConfig;
+import com.planetaryexodus.core.ModRandom;
+import com.planetaryexodus.planet.PlanetStatus;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 灾难决策计算
+ * 只读取快照，不访问世界和管理器状态，可以在工作线程上执行
+ */
+public final class DisasterEvaluator {
+    
+    // 概率缓存的刷新间隔
+    private static final long PROBABILITY_REFRESH_MILLIS = 30000;
+    // 新灾难的检查间隔
+    private static final long TRIGGER_CHECK_MILLIS = 60000;
+    
+    // 正常质量下各效果的间隔（tick）
+    private static final int DAMAGE_INTERVAL_TICKS = 100;
+    private static final int CORROSION_INTERVAL_TICKS = 200;
+    private static final int BLOCK_DAMAGE_INTERVAL_TICKS = 200;
+    
+    private DisasterEvaluator() {
+    }
+    
+    /**
+     * 根据快照计算本周期的灾难决策
+     */
+    public static DisasterDecisions evaluate(DisasterSnapshot snapshot) {
+        Map<DisasterType, Double> probabilities = null;
+        if (snapshot.currentTime - snapshot.lastProbabilityUpdate > PROBABILITY_REFRESH_MILLIS) {
+            probabilities = computeProbabilities(snapshot.config);
+        }
+        
+        List<DisasterDecisions.EffectDecision> effects = new ArrayList<>(snapshot.activeDisasters.size());
+        for (DisasterSnapshot.DisasterState disaster : snapshot.activeDisasters) {
+            effects.add(evaluateEffects(snapshot, disaster));
+        }
+        
+        boolean triggerChecked = shouldCheckDisaster(snapshot);
+        List<DisasterDecisions.Trigger> triggers = triggerChecked
+            ? evaluateTriggers(snapshot) : new ArrayList<DisasterDecisions.Trigger>();
+        return new DisasterDecisions(snapshot.generation, snapshot.currentTime, snapshot.tick, probabilities,
+            triggerChecked, triggers, effects);
+    }
+    
+    /**
+     * 检查是否应该触发新灾难
+     */
+    private static List<DisasterDecisions.Trigger> evaluateTriggers(DisasterSnapshot snapshot) {
+        List<DisasterDecisions.Trigger> triggers = new ArrayList<>();
+        
+        // 计算基础触发概率
+        double baseChanceMultiplier = calculateBaseChanceMultiplier(snapshot.planetStatus, snapshot.config);
+        Set<DisasterType> triggered = EnumSet.noneOf(DisasterType.class);
+        
+        // 检查每种灾难类型的触发条件
+        for (ModConfig.DisasterConfig.DisasterTypeConfig disasterConfig : snapshot.config.disasters) {
+            DisasterType type = DisasterType.fromId(disasterConfig.type);
+            if (type == null || triggered.contains(type)) continue;
+            
+            // 检查冷却时间
+            if (!canTriggerDisaster(snapshot, type)) {
+                continue;
+            }
+            
+            // 计算实际触发概率
+            double actualChance = disasterConfig.chancePerDay * baseChanceMultiplier;
+            if (ModRandom.nextDouble() < actualChance) {
+                triggers.add(new DisasterDecisions.Trigger(type, disasterConfig, actualChance));
+                triggered.add(type);
+            }
+        }
+        return triggers;
+    }
+    
+    /**
+     * 计算单个活动灾难本周期要执行的效果
+     */
+    private static DisasterDecisions.EffectDecision evaluateEffects(DisasterSnapshot snapshot,
+                                                                    DisasterSnapshot.DisasterState disaster) {
+        if (snapshot.currentTime >= disaster.endTime) {
+            return new DisasterDecisions.EffectDecision(disaster.id, true, false, 0, new ArrayList<>(),
+                false, false, false, false);
+        }
+        ModConfig.DisasterConfig.DisasterTypeConfig config = disaster.config;
+        ModConfig.PerformanceConfig.QualityTier quality = snapshot.quality;
+        
+        // 伤害：正常每5秒一次，服务器繁忙时间隔拉长并只抽查一部分玩家，
+        // 按实际间隔和采样率计算伤害使每秒的期望伤害不变
+        boolean damageDue = false;
+        float damage = 0;
+        List<UUID> affected = new ArrayList<>();
+        int damageInterval = quality.scaleInterval(DAMAGE_INTERVAL_TICKS);
+        if (config.damagePerSecond > 0 && quality.samplingRate > 0
+            && snapshot.tick - disaster.lastDamageTick >= damageInterval) {
+            damageDue = true;
+            damage = (float) (config.damagePerSecond * damageInterval / 20.0 / quality.samplingRate);
+            for (DisasterSnapshot.PlayerState player : snapshot.players) {
+                if (quality.sample() && isPlayerAffected(disaster.type, player)) {
+                    affected.add(player.id);
+                }
+            }
+        }
+        
+        // 方块腐蚀和破坏：服务器繁忙时间隔拉长，并按采样率跳过部分检查
+        boolean corrosionDue = config.blockCorrosionChance > 0
+            && snapshot.tick - disaster.lastCorrosionTick >= quality.scaleInterval(CORROSION_INTERVAL_TICKS);
+        boolean corrosionHit = corrosionDue && quality.sample()
+            && ModRandom.nextDouble() < config.blockCorrosionChance;
+        boolean blockDamageDue = config.blockDamageChance > 0
+            && snapshot.tick - disaster.lastBlockDamageTick >= quality.scaleInterval(BLOCK_DAMAGE_INTERVAL_TICKS);
+        boolean blockDamageHit = blockDamageDue && quality.sample()
+            && ModRandom.nextDouble() < config.blockDamageChance;
+        
+        return new DisasterDecisions.EffectDecision(disaster.id, false, damageDue, damage, affected,
+            corrosionDue, corrosionHit, blockDamageDue, blockDamageHit);
+    }
+    
+    /**
+     * 检查玩家是否受影响
+     */
+    private static boolean isPlayerAffected(DisasterType type, DisasterSnapshot.PlayerState player) {
+        // 简化实现：检查玩家是否在室外
+        switch (type) {
+            case RADIATION:
+            case ACID_RAIN:
+            case SUPER_STORM:
+                return player.skyVisible;
+            case EARTHQUAKE:
+                return true; // 地震影响所有玩家
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * 计算各类灾难的触发概率
+     */
+    static Map<DisasterType, Double> computeProbabilities(ModConfig.DisasterConfig config) {
+        Map<DisasterType, Double> probabilities = new EnumMap<>(DisasterType.class);
+        for (ModConfig.DisasterConfig.DisasterTypeConfig disasterConfig : config.disasters) {
+            DisasterType type = DisasterType.fromId(disasterConfig.type);
+            if (type != null) {
+                probabilities.put(type, disasterConfig.chancePerDay);
+            }
+        }
+        return probabilities;
+    }
+    
+    /**
+     * 计算基础触发概率倍率
+     */
+    private static double calculateBaseChanceMultiplier(PlanetStatus status, ModConfig.DisasterConfig config) {
+        // 根据行星状态调整触发概率
+        double multiplier = 1.0;
+        
+        switch (status) {
+            case STRAINED:
+                multiplier *= 1.5;
+                break;
+            case DEGRADED:
+                multiplier *= 3.0;
+                break;
+            case COLLAPSING:
+                multiplier *= 5.0;
+                break;
+        }
+        
+        // 考虑最小灾难间隔
+        multiplier *= config.chanceMultiplierPerStatusLevel;
+        
+        return multiplier;
+    }
+    
+    /**
+     * 检查是否可以触发灾难
+     */
+    private static boolean canTriggerDisaster(DisasterSnapshot snapshot, DisasterType type) {
+        Long lastTime = snapshot.lastDisasterTimes.get(type);
+        if (lastTime == null) {
+            return true;
+        }
+        
+        long hoursSinceLastDisaster = (snapshot.currentTime - lastTime) / (1000 * 60 * 60);
+        return hoursSinceLastDisaster >= snapshot.config.minDaysBetweenDisasters * 24;
+    }
+    
+    /**
+     * 检查是否应该检查灾难触发
+     * 按距上次检查的时间判断，时钟加速时每个周期跨越的时间很长，不能依赖对齐到整分钟
+     */
+    private static boolean shouldCheckDisaster(DisasterSnapshot snapshot) {
+        // 每分钟检查一次
+        return snapshot.currentTime - snapshot.lastTriggerCheck >= TRIGGER_CHECK_MILLIS;
+    }
+}
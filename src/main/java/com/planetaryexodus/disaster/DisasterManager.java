@@ -2,23 +2,35 @@ package com.planetaryexodus.disaster;
 
 import com.planetaryexodus.PlanetaryExodusMod;
 import com.planetaryexodus.api.events.DisasterTriggeredEvent;
+import com.planetaryexodus.api.interfaces.IPlayerView;
+import com.planetaryexodus.api.interfaces.IServerPort;
+import com.planetaryexodus.core.ModClock;
 import com.planetaryexodus.core.ModConfig;
+import com.planetaryexodus.core.ModExecutors;
+import com.planetaryexodus.persistence.JournalReplayHandler;
 import com.planetaryexodus.planet.PlanetStatus;
-import net.minecraft.server.MinecraftServer;
+import com.planetaryexodus.server.AdaptiveQualityController;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.text.Text;
+import net.minecraft.util.Identifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 灾难管理器
  * 负责管理灾难的触发、执行和效果应用
  */
-public class DisasterManager {
+public class DisasterManager implements JournalReplayHandler {
     
     private static final Logger LOGGER = LoggerFactory.getLogger("PlanetaryExodus/Disaster");
+    public static final Identifier DATA_ID = new Identifier("planetaryexodus", "disaster_data");
     
     // 配置
     private ModConfig.DisasterConfig config;
@@ -26,10 +38,25 @@ public class DisasterManager {
     // 活动灾难
     private final List<ActiveDisaster> activeDisasters = new ArrayList<>();
     private final Map<DisasterType, Long> lastDisasterTimes = new HashMap<>();
+    // 需要持久化的状态（活动灾难和冷却时间）的修改计数
+    private int modCount;
     
     // 灾难触发概率缓存
     private final Map<DisasterType, Double> cachedProbabilities = new HashMap<>();
     private long lastProbabilityUpdate = 0;
+    // 上次检查新灾难触发的时间
+    private long lastTriggerCheck = ModClock.currentTimeMillis();
+    
+    // 计算阶段：工作线程上正在根据快照计算的决策
+    private CompletableFuture<DisasterDecisions> pendingEvaluation;
+    // 配置重新加载或清理后递增，丢弃基于旧状态计算出的决策
+    private long generation = 0;
+    // 执行计算的执行器，为null时使用模组的计算线程池
+    private Executor evaluationExecutor;
+    
+    // 应用阶段：本周期需要执行效果的活动灾难，每个分片执行一个
+    private final List<ActiveDisaster> effectTargets = new ArrayList<>();
+    private final List<DisasterDecisions.EffectDecision> effectDecisions = new ArrayList<>();
     
     public DisasterManager() {
         reloadConfig();
@@ -42,85 +69,171 @@ public class DisasterManager {
     public void reloadConfig() {
         this.config = PlanetaryExodusMod.getInstance().getConfig().getDisaster();
         updateCachedProbabilities();
+        discardPendingEvaluation();
         LOGGER.info("灾难配置已重新加载，共 {} 种配置灾难", config.disasters.size());
     }
     
     /**
-     * 更新灾难系统
-     * @param server 服务器实例
+     * 在当前线程上计算并应用灾难决策（一次完成所有分片）
+     * @param server 服务器端口
      * @param planetStatus 当前行星状态
      */
-    public void update(MinecraftServer server, PlanetStatus planetStatus) {
+    public void update(IServerPort server, PlanetStatus planetStatus) {
         if (server == null) return;
         
-        long currentTime = System.currentTimeMillis();
+        applyDecisions(server, DisasterEvaluator.evaluate(createSnapshot(server, planetStatus)));
+        for (int i = 0; i < effectTargets.size(); i++) {
+            effectTargets.get(i).executeEffects(server, effectDecisions.get(i));
+        }
+        clearEffects();
+    }
+    
+    /**
+     * 分片更新灾难系统
+     * 第0片取回工作线程算好的决策并应用其中的状态变化，然后提交新的快照；
+     * 之后每一片执行一个活动灾难的效果
+     * @param slice 本周期内的分片序号
+     * @return 还有活动灾难的效果尚未执行时返回true
+     */
+    public boolean update(IServerPort server, PlanetStatus planetStatus, int slice) {
+        if (server == null) return false;
         
-        // 每30秒更新一次概率缓存
-        if (currentTime - lastProbabilityUpdate > 30000) {
-            updateCachedProbabilities();
-            lastProbabilityUpdate = currentTime;
+        if (slice == 0) {
+            clearEffects();
+            
+            // 上一周期提交的计算已完成时应用它的决策，仍在计算时本周期跳过
+            if (pendingEvaluation != null && pendingEvaluation.isDone()) {
+                DisasterDecisions decisions = takeEvaluation();
+                if (decisions != null) {
+                    applyDecisions(server, decisions);
+                }
+            }
+            
+            // 决策中的状态变化已经应用，此时的快照不会重复触发同一灾难
+            if (pendingEvaluation == null) {
+                DisasterSnapshot snapshot = createSnapshot(server, planetStatus);
+                pendingEvaluation = CompletableFuture.supplyAsync(() -> DisasterEvaluator.evaluate(snapshot),
+                    evaluationExecutor != null ? evaluationExecutor : ModExecutors.compute());
+            }
+            return !effectTargets.isEmpty();
         }
         
-        // 更新活动灾难
-        updateActiveDisasters(server);
+        int index = slice - 1;
+        if (index < effectTargets.size()) {
+            effectTargets.get(index).executeEffects(server, effectDecisions.get(index));
+        }
+        return slice < effectTargets.size();
+    }
+    
+    /**
+     * 采集计算所需的输入快照
+     */
+    private DisasterSnapshot createSnapshot(IServerPort server, PlanetStatus planetStatus) {
+        List<DisasterSnapshot.DisasterState> disasters = new ArrayList<>(activeDisasters.size());
+        for (ActiveDisaster disaster : activeDisasters) {
+            disasters.add(disaster.snapshot());
+        }
         
-        // 检查是否应该触发新灾难
-        checkForNewDisasters(server, planetStatus, currentTime);
+        // 只有存在活动灾难时才需要玩家状态
+        List<DisasterSnapshot.PlayerState> players = new ArrayList<>();
+        if (!activeDisasters.isEmpty()) {
+            for (IPlayerView player : server.getPlayers()) {
+                players.add(new DisasterSnapshot.PlayerState(player.getId(), player.getName(), player.isSkyVisible()));
+            }
+        }
         
-        // 应用灾难效果
-        applyDisasterEffects(server);
+        return new DisasterSnapshot(generation, ModClock.currentTimeMillis(), server.getTicks(), planetStatus, config,
+            AdaptiveQualityController.getInstance().getCurrentTier(), lastProbabilityUpdate, lastTriggerCheck,
+            new HashMap<>(lastDisasterTimes), disasters, players);
     }
     
     /**
-     * 更新活动灾难
+     * 取回已完成的计算结果，计算出错或基于旧状态时返回null
      */
-    private void updateActiveDisasters(MinecraftServer server) {
-        Iterator<ActiveDisaster> iterator = activeDisasters.iterator();
-        while (iterator.hasNext()) {
-            ActiveDisaster disaster = iterator.next();
-            disaster.update(server);
-            
-            if (disaster.isFinished()) {
-                LOGGER.info("灾难 {} 已结束", disaster.getType().getFormattedString());
-                iterator.remove();
-            }
+    private DisasterDecisions takeEvaluation() {
+        CompletableFuture<DisasterDecisions> evaluation = pendingEvaluation;
+        pendingEvaluation = null;
+        try {
+            DisasterDecisions decisions = evaluation.join();
+            return decisions.generation == generation ? decisions : null;
+        } catch (CompletionException | CancellationException e) {
+            LOGGER.error("计算灾难决策时出错", e);
+            return null;
         }
     }
     
     /**
-     * 检查是否应该触发新灾难
+     * 应用决策中的状态变化：更新概率缓存、结束到期的灾难、记录效果时间并触发新灾难
+     * 需要逐个执行的效果记入 effectTargets，由后续分片执行
      */
-    private void checkForNewDisasters(MinecraftServer server, PlanetStatus planetStatus, long currentTime) {
-        // 计算基础触发概率
-        double baseChanceMultiplier = calculateBaseChanceMultiplier(planetStatus);
+    private void applyDecisions(IServerPort server, DisasterDecisions decisions) {
+        if (decisions.probabilities != null) {
+            cachedProbabilities.clear();
+            cachedProbabilities.putAll(decisions.probabilities);
+            lastProbabilityUpdate = decisions.computedAt;
+        }
+        if (decisions.triggerChecked) {
+            lastTriggerCheck = decisions.computedAt;
+        }
         
-        // 检查每种灾难类型的触发条件
-        for (ModConfig.DisasterConfig.DisasterTypeConfig disasterConfig : config.disasters) {
-            DisasterType type = DisasterType.fromId(disasterConfig.type);
-            if (type == null) continue;
-            
-            // 检查冷却时间
-            if (!canTriggerDisaster(type, currentTime)) {
+        for (DisasterDecisions.EffectDecision decision : decisions.effects) {
+            ActiveDisaster disaster = findActiveDisaster(decision.disasterId);
+            if (disaster == null) {
                 continue;
             }
-            
-            // 计算实际触发概率
-            double actualChance = disasterConfig.chancePerDay * baseChanceMultiplier;
-            
-            // 每天检查一次（现实时间）
-            if (shouldCheckDisaster(currentTime) && Math.random() < actualChance) {
-                triggerDisaster(server, type, disasterConfig);
-                lastDisasterTimes.put(type, currentTime);
-                LOGGER.info("触发灾难: {} (概率: {}%)", 
-                    type.getFormattedString(), actualChance * 100);
+            if (decision.finished) {
+                disaster.finish(server);
+                activeDisasters.remove(disaster);
+                modCount++;
+                LOGGER.info("灾难 {} 已结束", disaster.getType().getFormattedString());
+                continue;
+            }
+            disaster.recordEffects(decision, decisions.tick);
+            if (decision.hasWork()) {
+                effectTargets.add(disaster);
+                effectDecisions.add(decision);
+            }
+        }
+        
+        for (DisasterDecisions.Trigger trigger : decisions.triggers) {
+            triggerDisaster(server, trigger.type, trigger.config);
+            lastDisasterTimes.put(trigger.type, decisions.computedAt);
+            modCount++;
+            LOGGER.info("触发灾难: {} (概率: {}%)", 
+                trigger.type.getFormattedString(), trigger.chance * 100);
+        }
+    }
+    
+    private ActiveDisaster findActiveDisaster(long id) {
+        for (ActiveDisaster disaster : activeDisasters) {
+            if (disaster.id == id) {
+                return disaster;
             }
         }
+        return null;
+    }
+    
+    private void clearEffects() {
+        effectTargets.clear();
+        effectDecisions.clear();
+    }
+    
+    /**
+     * 放弃正在计算的决策
+     */
+    private void discardPendingEvaluation() {
+        generation++;
+        if (pendingEvaluation != null) {
+            pendingEvaluation.cancel(false);
+            pendingEvaluation = null;
+        }
+        clearEffects();
     }
     
     /**
      * 触发灾难
      */
-    private void triggerDisaster(MinecraftServer server, DisasterType type, 
+    private void triggerDisaster(IServerPort server, DisasterType type, 
                                 ModConfig.DisasterConfig.DisasterTypeConfig config) {
         // 创建活动灾难
         ActiveDisaster disaster = new ActiveDisaster(type, config);
@@ -136,84 +249,24 @@ public class DisasterManager {
             type.getDisplayName(),
             Text.translatable("disaster.countermeasure." + type.asString())
         );
-        server.getPlayerManager().broadcast(warning, false);
+        server.broadcast(warning);
         
         // 播放警告音效和视觉效果
         playDisasterEffects(server, type);
     }
     
-    /**
-     * 应用灾难效果
-     */
-    private void applyDisasterEffects(MinecraftServer server) {
-        for (ActiveDisaster disaster : activeDisasters) {
-            disaster.applyEffects(server);
-        }
-    }
-    
-    /**
-     * 计算基础触发概率倍率
-     */
-    private double calculateBaseChanceMultiplier(PlanetStatus status) {
-        // 根据行星状态调整触发概率
-        double multiplier = 1.0;
-        
-        switch (status) {
-            case STRAINED:
-                multiplier *= 1.5;
-                break;
-            case DEGRADED:
-                multiplier *= 3.0;
-                break;
-            case COLLAPSING:
-                multiplier *= 5.0;
-                break;
-        }
-        
-        // 考虑最小灾难间隔
-        multiplier *= config.chanceMultiplierPerStatusLevel;
-        
-        return multiplier;
-    }
-    
-    /**
-     * 检查是否可以触发灾难
-     */
-    private boolean canTriggerDisaster(DisasterType type, long currentTime) {
-        Long lastTime = lastDisasterTimes.get(type);
-        if (lastTime == null) {
-            return true;
-        }
-        
-        long hoursSinceLastDisaster = (currentTime - lastTime) / (1000 * 60 * 60);
-        return hoursSinceLastDisaster >= config.minDaysBetweenDisasters * 24;
-    }
-    
-    /**
-     * 检查是否应该检查灾难触发
-     */
-    private boolean shouldCheckDisaster(long currentTime) {
-        // 每分钟检查一次
-        return currentTime % (1000 * 60) < 1000;
-    }
-    
     /**
      * 更新缓存的概率
      */
     private void updateCachedProbabilities() {
         cachedProbabilities.clear();
-        for (ModConfig.DisasterConfig.DisasterTypeConfig disasterConfig : config.disasters) {
-            DisasterType type = DisasterType.fromId(disasterConfig.type);
-            if (type != null) {
-                cachedProbabilities.put(type, disasterConfig.chancePerDay);
-            }
-        }
+        cachedProbabilities.putAll(DisasterEvaluator.computeProbabilities(config));
     }
     
     /**
      * 播放灾难效果
      */
-    private void playDisasterEffects(MinecraftServer server, DisasterType type) {
+    private void playDisasterEffects(IServerPort server, DisasterType type) {
         // 在实际实现中，这里会：
         // 1. 播放音效
         // 2. 显示粒子效果
@@ -238,6 +291,30 @@ public class DisasterManager {
         }
     }
     
+    /**
+     * 设置计算决策的执行器
+     * 离线重放时传入在当前线程直接执行的执行器，决策总是在下一周期应用，结果可以重现
+     * @param executor 执行器，null表示使用模组的计算线程池
+     */
+    public void setEvaluationExecutor(Executor executor) {
+        this.evaluationExecutor = executor;
+    }
+    
+    /**
+     * 立即触发指定类型的灾难，不检查概率和冷却时间
+     * @return 新的活动灾难，该类型没有配置时返回null
+     */
+    public ActiveDisaster forceDisaster(IServerPort server, DisasterType type) {
+        ModConfig.DisasterConfig.DisasterTypeConfig disasterConfig = findConfig(type);
+        if (disasterConfig == null) {
+            return null;
+        }
+        triggerDisaster(server, type, disasterConfig);
+        lastDisasterTimes.put(type, ModClock.currentTimeMillis());
+        modCount++;
+        return activeDisasters.get(activeDisasters.size() - 1);
+    }
+    
     /**
      * 获取活动灾难列表
      */
@@ -272,12 +349,73 @@ public class DisasterManager {
         return activeDisasters.size();
     }
     
+    /**
+     * 重放灾难记录：恢复各类灾难的上次触发时间，重启后冷却时间继续生效
+     */
+    @Override
+    public void onDisasterTriggered(long timestamp, DisasterType type, int durationMinutes) {
+        lastDisasterTimes.merge(type, timestamp, Math::max);
+        modCount++;
+    }
+    
+    /**
+     * 获取修改计数：需要持久化的状态每次变化时递增，检查点据此跳过没有变化的部分
+     */
+    public int getModCount() {
+        return modCount;
+    }
+    
+    /**
+     * 采集需要持久化的状态（活动灾难和各类灾难的上次触发时间），在服务器线程上调用
+     */
+    public SavedState createSavedState() {
+        List<SavedDisaster> disasters = new ArrayList<>(activeDisasters.size());
+        for (ActiveDisaster disaster : activeDisasters) {
+            if (!disaster.isFinished()) {
+                disasters.add(new SavedDisaster(disaster.type, disaster.startTime, disaster.endTime));
+            }
+        }
+        return new SavedState(new HashMap<>(lastDisasterTimes), disasters);
+    }
+    
+    /**
+     * 从保存的状态恢复，不发布事件也不通知玩家
+     * 已经结束或当前配置中没有的灾难类型被丢弃
+     */
+    public void restore(SavedState state) {
+        discardPendingEvaluation();
+        activeDisasters.clear();
+        lastDisasterTimes.clear();
+        lastDisasterTimes.putAll(state.lastDisasterTimes);
+        long now = ModClock.currentTimeMillis();
+        for (SavedDisaster saved : state.activeDisasters) {
+            ModConfig.DisasterConfig.DisasterTypeConfig disasterConfig = findConfig(saved.type);
+            if (disasterConfig != null && saved.endTime > now) {
+                activeDisasters.add(new ActiveDisaster(saved.type, disasterConfig, saved.startTime, saved.endTime));
+            }
+        }
+        modCount++;
+        LOGGER.info("灾难状态已恢复: {} 个活动灾难", activeDisasters.size());
+    }
+    
+    private ModConfig.DisasterConfig.DisasterTypeConfig findConfig(DisasterType type) {
+        for (ModConfig.DisasterConfig.DisasterTypeConfig disasterConfig : config.disasters) {
+            if (DisasterType.fromId(disasterConfig.type) == type) {
+                return disasterConfig;
+            }
+        }
+        return null;
+    }
+    
     /**
      * 清理资源
      */
     public void cleanup() {
+        discardPendingEvaluation();
         activeDisasters.clear();
         lastDisasterTimes.clear();
+        modCount++;
+        lastTriggerCheck = ModClock.currentTimeMillis();
         cachedProbabilities.clear();
         LOGGER.info("灾难管理器资源已清理");
     }
@@ -286,109 +424,102 @@ public class DisasterManager {
      * 活动灾难类
      */
     public static class ActiveDisaster {
+        private static final AtomicLong NEXT_ID = new AtomicLong();
+        
+        private final long id = NEXT_ID.incrementAndGet();
         private final DisasterType type;
         private final ModConfig.DisasterConfig.DisasterTypeConfig config;
         private final long startTime;
         private long endTime;
         private boolean isFinished = false;
         
+        // 各效果上次应用的tick，效果按间隔应用而不依赖调用时的tick对齐
+        private int lastDamageTick = 0;
+        private int lastCorrosionTick = 0;
+        private int lastBlockDamageTick = 0;
+        
         public ActiveDisaster(DisasterType type, ModConfig.DisasterConfig.DisasterTypeConfig config) {
             this.type = type;
             this.config = config;
-            this.startTime = System.currentTimeMillis();
+            this.startTime = ModClock.currentTimeMillis();
             this.endTime = startTime + config.durationMinutes * 60 * 1000L;
         }
         
         /**
-         * 更新灾难状态
+         * 恢复保存的灾难
          */
-        public void update(MinecraftServer server) {
-            if (System.currentTimeMillis() >= endTime) {
-                isFinished = true;
-                
-                // 通知玩家灾难结束
-                Text endMessage = Text.translatable("disaster.ended", type.getDisplayName());
-                server.getPlayerManager().broadcast(endMessage, false);
-            }
+        ActiveDisaster(DisasterType type, ModConfig.DisasterConfig.DisasterTypeConfig config, long startTime, long endTime) {
+            this.type = type;
+            this.config = config;
+            this.startTime = startTime;
+            this.endTime = endTime;
         }
         
         /**
-         * 应用灾难效果
+         * 采集计算所需的灾难状态
          */
-        public void applyEffects(MinecraftServer server) {
-            if (isFinished) return;
-            
-            // 应用伤害效果
-            if (config.damagePerSecond > 0) {
-                applyDamage(server, config.damagePerSecond);
-            }
-            
-            // 应用方块腐蚀效果
-            if (config.blockCorrosionChance > 0) {
-                applyBlockCorrosion(server, config.blockCorrosionChance);
-            }
-            
-            // 应用方块破坏效果
-            if (config.blockDamageChance > 0) {
-                applyBlockDamage(server, config.blockDamageChance);
-            }
+        DisasterSnapshot.DisasterState snapshot() {
+            return new DisasterSnapshot.DisasterState(id, type, config, endTime,
+                lastDamageTick, lastCorrosionTick, lastBlockDamageTick);
         }
         
         /**
-         * 应用伤害效果
+         * 结束灾难并通知玩家
          */
-        private void applyDamage(MinecraftServer server, double damagePerSecond) {
-            server.getPlayerManager().getPlayerList().forEach(player -> {
-                if (isPlayerAffected(player)) {
-                    // 每5秒应用一次伤害
-                    if (server.getTicks() % 100 == 0) {
-                        float damage = (float) (damagePerSecond * 5);
-                        // player.damage(player.getDamageSources().magic(), damage);
-                        LOGGER.debug("玩家 {} 受到 {} 伤害: {}", 
-                            player.getName().getString(), type.getDisplayName().getString(), damage);
-                    }
-                }
-            });
+        void finish(IServerPort server) {
+            isFinished = true;
+            
+            // 通知玩家灾难结束
+            Text endMessage = Text.translatable("disaster.ended", type.getDisplayName());
+            server.broadcast(endMessage);
         }
         
         /**
-         * 应用方块腐蚀效果
+         * 记录本周期检查过的效果，下一次快照据此计算间隔
          */
-        private void applyBlockCorrosion(MinecraftServer server, double chance) {
-            // 在实际实现中，这里会腐蚀特定类型的方块
-            // 例如：酸雨腐蚀非石质/金属方块
-            if (server.getTicks() % 200 == 0 && Math.random() < chance) {
-                LOGGER.debug("应用方块腐蚀效果: {}", type.getFormattedString());
+        void recordEffects(DisasterDecisions.EffectDecision decision, int tick) {
+            if (decision.damageDue) {
+                lastDamageTick = tick;
+            }
+            if (decision.corrosionDue) {
+                lastCorrosionTick = tick;
+            }
+            if (decision.blockDamageDue) {
+                lastBlockDamageTick = tick;
             }
         }
         
         /**
-         * 应用方块破坏效果
+         * 执行计算阶段决定的效果
          */
-        private void applyBlockDamage(MinecraftServer server, double chance) {
-            // 在实际实现中，这里会破坏特定类型的方块
-            // 例如：地震破坏非基岩方块
-            if (server.getTicks() % 200 == 0 && Math.random() < chance) {
+        void executeEffects(IServerPort server, DisasterDecisions.EffectDecision decision) {
+            if (isFinished) return;
+            
+            // 应用伤害效果，计算之后下线的玩家直接跳过
+            if (decision.damageDue) {
+                for (UUID playerId : decision.affectedPlayers) {
+                    IPlayerView player = server.getPlayer(playerId);
+                    if (player != null) {
+                        // player.damage(player.getDamageSources().magic(), decision.damage);
+                        LOGGER.debug("玩家 {} 受到 {} 伤害: {}", 
+                            player.getName(), type.getDisplayName().getString(), decision.damage);
+                    }
+                }
+            }
+            
+            // 应用方块腐蚀效果
+            // 在实际实现中，这里会腐蚀特定类型的方块，例如：酸雨腐蚀非石质/金属方块
+            if (decision.corrosionHit) {
+                LOGGER.debug("应用方块腐蚀效果: {}", type.getFormattedString());
+            }
+            
+            // 应用方块破坏效果
+            // 在实际实现中，这里会破坏特定类型的方块，例如：地震破坏非基岩方块
+            if (decision.blockDamageHit) {
                 LOGGER.debug("应用方块破坏效果: {}", type.getFormattedString());
             }
         }
         
-        /**
-         * 检查玩家是否受影响
-         */
-        private boolean isPlayerAffected(net.minecraft.entity.player.PlayerEntity player) {
-            // 简化实现：检查玩家是否在室外
-            switch (type) {
-                case RADIATION:
-                case ACID_RAIN:
-                case SUPER_STORM:
-                    return player.getWorld().isSkyVisible(player.getBlockPos());
-                case EARTHQUAKE:
-                    return true; // 地震影响所有玩家
-                default:
-                    return false;
-            }
-        }
         
         public DisasterType getType() {
             return type;
@@ -403,7 +534,7 @@ public class DisasterManager {
         }
         
         public long getRemainingTime() {
-            return Math.max(0, endTime - System.currentTimeMillis());
+            return Math.max(0, endTime - ModClock.currentTimeMillis());
         }
         
         public boolean isFinished() {
@@ -420,4 +551,32 @@ public class DisasterManager {
                 type, new java.util.Date(startTime), getRemainingTime());
         }
     }
+    
+    /**
+     * 需要持久化的灾难状态
+     */
+    public static final class SavedState {
+        public final Map<DisasterType, Long> lastDisasterTimes;
+        public final List<SavedDisaster> activeDisasters;
+        
+        public SavedState(Map<DisasterType, Long> lastDisasterTimes, List<SavedDisaster> activeDisasters) {
+            this.lastDisasterTimes = Collections.unmodifiableMap(lastDisasterTimes);
+            this.activeDisasters = Collections.unmodifiableList(activeDisasters);
+        }
+    }
+    
+    /**
+     * 保存的活动灾难
+     */
+    public static final class SavedDisaster {
+        public final DisasterType type;
+        public final long startTime;
+        public final long endTime;
+        
+        public SavedDisaster(DisasterType type, long startTime, long endTime) {
+            this.type = type;
+            this.startTime = startTime;
+            this.endTime = endTime;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+package com.planetaryexodus.disaster;
+
+import com.planetaryexodus.core.ModConfig;
+import com.planetaryexodus.planet.PlanetStatus;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 灾难计算的输入快照
+ * 在服务器线程上采集，之后不再修改，可以安全地交给工作线程计算
+ */
+public final class DisasterSnapshot {
+    public final long generation;
+    public final long currentTime;
+    public final int tick;
+    public final PlanetStatus planetStatus;
+    public final ModConfig.DisasterConfig config;
+    public final ModConfig.PerformanceConfig.QualityTier quality;
+    public final long lastProbabilityUpdate;
+    public final long lastTriggerCheck;
+    public final Map<DisasterType, Long> lastDisasterTimes;
+    public final List<DisasterState> activeDisasters;
+    public final List<PlayerState> players;
+    
+    DisasterSnapshot(long generation, long currentTime, int tick, PlanetStatus planetStatus,
+                     ModConfig.DisasterConfig config, ModConfig.PerformanceConfig.QualityTier quality,
+                     long lastProbabilityUpdate, long lastTriggerCheck, Map<DisasterType, Long> lastDisasterTimes,
+                     List<DisasterState> activeDisasters, List<PlayerState> players) {
+        this.generation = generation;
+        this.currentTime = currentTime;
+        this.tick = tick;
+        this.planetStatus = planetStatus;
+        this.config = config;
+        this.quality = quality;
+        this.lastProbabilityUpdate = lastProbabilityUpdate;
+        this.lastTriggerCheck = lastTriggerCheck;
+        this.lastDisasterTimes = Collections.unmodifiableMap(lastDisasterTimes);
+        this.activeDisasters = Collections.unmodifiableList(activeDisasters);
+        this.players = Collections.unmodifiableList(players);
+    }
+    
+    /**
+     * 活动灾难的状态
+     */
+    public static final class DisasterState {
+        public final long id;
+        public final DisasterType type;
+        public final ModConfig.DisasterConfig.DisasterTypeConfig config;
+        public final long endTime;
+        public final int lastDamageTick;
+        public final int lastCorrosionTick;
+        public final int lastBlockDamageTick;
+        
+        DisasterState(long id, DisasterType type, ModConfig.DisasterConfig.DisasterTypeConfig config, long endTime,
+                      int lastDamageTick, int lastCorrosionTick, int lastBlockDamageTick) {
+            this.id = id;
+            this.type = type;
+            this.config = config;
+            this.endTime = endTime;
+            this.lastDamageTick = lastDamageTick;
+            this.lastCorrosionTick = lastCorrosionTick;
+            this.lastBlockDamageTick = lastBlockDamageTick;
+        }
+    }
+    
+    /**
+     * 判断玩家是否受灾难影响所需的玩家状态
+     */
+    public static final class PlayerState {
+        public final UUID id;
+        public final String name;
+        public final boolean skyVisible;
+        
+        PlayerState(UUID id, String name, boolean skyVisible) {
+            this.id = id;
+            this.name = name;
+            this.skyVisible = skyVisible;
+        }
+    }
+}
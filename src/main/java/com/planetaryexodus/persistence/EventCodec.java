@@ -0,0 +1,186 @@
+package com.planetaryexodus.persistence;
+
+import com.planetaryexodus.api.events.CivilizationProgressEvent;
+import com.planetaryexodus.api.events.DisasterTriggeredEvent;
+import com.planetaryexodus.api.events.MilestoneAchievedEvent;
+import com.planetaryexodus.api.events.PlanetStatusChangedEvent;
+import com.planetaryexodus.disaster.DisasterType;
+import com.planetaryexodus.planet.PlanetStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * 事件编码器
+ * 把 api.events 中的事件编码为日志记录的负载，并在重放时解码
+ *
+ * 枚举按名称写入，调整枚举常量顺序不会影响旧日志
+ */
+public final class EventCodec {
+    
+    private EventCodec() {
+    }
+    
+    /**
+     * 编码行星状态改变事件：旧状态、新状态、文明进度
+     */
+    public static byte[] encode(PlanetStatusChangedEvent event) {
+        return write(out -> {
+            out.writeUTF(event.getOldStatus().name());
+            out.writeUTF(event.getNewStatus().name());
+            out.writeInt(event.getProgress());
+        });
+    }
+    
+    /**
+     * 编码文明进度事件：旧进度、新进度、变化量、来源、贡献者、合并数量
+     */
+    public static byte[] encode(CivilizationProgressEvent event) {
+        return write(out -> {
+            out.writeInt(event.getOldProgress());
+            out.writeInt(event.getNewProgress());
+            out.writeInt(event.getProgressChange());
+            out.writeUTF(event.getSource() != null ? event.getSource() : "");
+            UUID contributorId = event.getContributorId();
+            out.writeBoolean(contributorId != null);
+            if (contributorId != null) {
+                out.writeLong(contributorId.getMostSignificantBits());
+                out.writeLong(contributorId.getLeastSignificantBits());
+                out.writeUTF(event.getContributorName());
+            }
+            out.writeInt(event.getMergedCount());
+        });
+    }
+    
+    /**
+     * 编码灾难触发事件：灾难类型、持续时间
+     */
+    public static byte[] encode(DisasterTriggeredEvent event) {
+        return write(out -> {
+            out.writeUTF(event.getDisasterType().name());
+            out.writeInt(event.getDurationMinutes());
+        });
+    }
+    
+    /**
+     * 编码里程碑达成事件：里程碑名称、进度奖励、当前进度
+     */
+    public static byte[] encode(MilestoneAchievedEvent event) {
+        return write(out -> {
+            out.writeUTF(event.getMilestone().name);
+            out.writeInt(event.getProgressReward());
+            out.writeInt(event.getCurrentProgress());
+        });
+    }
+    
+    /**
+     * 解码一条记录并交给重放处理器
+     * @return 记录中的枚举名称无法识别时返回false，该记录被忽略
+     */
+    public static boolean decode(JournalRecordType type, long timestamp, ByteBuffer payload, JournalReplayHandler handler) {
+        switch (type) {
+            case PLANET_STATUS_CHANGED: {
+                PlanetStatus oldStatus = parseEnum(PlanetStatus.class, readUTF(payload));
+                PlanetStatus newStatus = parseEnum(PlanetStatus.class, readUTF(payload));
+                int progress = payload.getInt();
+                if (oldStatus == null || newStatus == null) {
+                    return false;
+                }
+                handler.onPlanetStatusChanged(timestamp, oldStatus, newStatus, progress);
+                return true;
+            }
+            case CIVILIZATION_PROGRESS: {
+                int oldProgress = payload.getInt();
+                int newProgress = payload.getInt();
+                int progressChange = payload.getInt();
+                String source = readUTF(payload);
+                UUID contributorId = null;
+                String contributorName = null;
+                if (payload.get() != 0) {
+                    contributorId = new UUID(payload.getLong(), payload.getLong());
+                    contributorName = readUTF(payload);
+                }
+                handler.onCivilizationProgress(timestamp, oldProgress, newProgress, progressChange,
+                    source, contributorId, contributorName);
+                return true;
+            }
+            case DISASTER_TRIGGERED: {
+                DisasterType disasterType = parseEnum(DisasterType.class, readUTF(payload));
+                int durationMinutes = payload.getInt();
+                if (disasterType == null) {
+                    return false;
+                }
+                handler.onDisasterTriggered(timestamp, disasterType, durationMinutes);
+                return true;
+            }
+            case MILESTONE_ACHIEVED: {
+                String milestoneName = readUTF(payload);
+                int progressReward = payload.getInt();
+                int progress = payload.getInt();
+                handler.onMilestoneAchieved(timestamp, milestoneName, progressReward, progress);
+                return true;
+            }
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * 读取 DataOutput.writeUTF 写入的字符串
+     */
+    private static String readUTF(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        for (byte b : bytes) {
+            // 空字符和增补字符的编码与标准UTF-8不同，交给DataInputStream处理
+            if (b == (byte) 0xC0 || b == (byte) 0xED) {
+                return readModifiedUTF(bytes);
+            }
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private static String readModifiedUTF(byte[] bytes) {
+        byte[] framed = new byte[bytes.length + 2];
+        framed[0] = (byte) (bytes.length >>> 8);
+        framed[1] = (byte) bytes.length;
+        System.arraycopy(bytes, 0, framed, 2, bytes.length);
+        try {
+            return new DataInputStream(new ByteArrayInputStream(framed)).readUTF();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String name) {
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+    
+    private static byte[] write(Writer writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writer.write(out);
+        } catch (IOException e) {
+            // 写入内存流不会出现I/O错误
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+    
+    @FunctionalInterface
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
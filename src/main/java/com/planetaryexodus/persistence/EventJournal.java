@@ -0,0 +1,448 @@
+package com.planetaryexodus.persistence;
+
+import com.planetaryexodus.api.annotations.Subscribe;
+import com.planetaryexodus.api.events.CivilizationProgressEvent;
+import com.planetaryexodus.api.events.DisasterTriggeredEvent;
+import com.planetaryexodus.api.events.MilestoneAchievedEvent;
+import com.planetaryexodus.api.events.PlanetStatusChangedEvent;
+import com.planetaryexodus.core.ModClock;
+import com.planetaryexodus.core.ModExecutors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 事件日志
+ * 把 api.events 中的事件追加写入世界存档下的内存映射二进制日志，作为长期运行服务器的审计记录，
+ * 同时作为存档快照之间的预写日志：进度和里程碑变化在两次自动保存之间也不会丢失
+ *
+ * 发布线程上只做编码和入队，写入在专用线程上进行：收到记录后再等待一个提交间隔，
+ * 把这段时间内积压的全部记录一起写入，再统一刷盘（组提交）。分段写满后切换到新的分段文件；
+ * 快照保存成功后可以删除已完全包含在快照中的旧分段
+ *
+ * 写入失败的记录不会丢弃：保留这一批记录按退避间隔重试，已追加到分段中的记录不会重复写入。
+ * 连续多次失败、或积压的记录超过上限时，把日志标记为失败并通知监听器（请求一次完整检查点），
+ * 失败期间不再接收新记录（它们的状态由完整检查点覆盖，积压不会无限增长），已入队的记录继续重试；
+ * 写入恢复后再次通知监听器，用完整检查点覆盖失败期间没有记录的变化
+ *
+ * 写入任务运行在 {@link ModExecutors} 的I/O执行器上，打开日志前执行服务必须已启动，
+ * 执行服务关闭前应先关闭日志
+ *
+ * 通过 EventBus.register(journal) 注册，进度事件在批处理模式下也会逐个记录
+ */
+public class EventJournal implements AutoCloseable {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger("PlanetaryExodus/Journal");
+    
+    // 单次组提交最多写入的记录数
+    private static final int MAX_BATCH = 1024;
+    // 最多积压的记录数，超过后标记为失败
+    private static final int MAX_PENDING = 64 * MAX_BATCH;
+    // 写入失败后的重试间隔，每次翻倍直到上限
+    private static final long RETRY_DELAY_MILLIS = 50;
+    private static final long MAX_RETRY_DELAY_MILLIS = 5000;
+    // 连续失败这么多次后标记为失败
+    private static final int ATTEMPTS_BEFORE_FAILED = 5;
+    
+    private final Path directory;
+    private final int segmentSize;
+    private final long commitIntervalMillis;
+    private final LinkedBlockingQueue<PendingRecord> queue = new LinkedBlockingQueue<>(MAX_PENDING);
+    // 写入任务结束时计数归零
+    private final CountDownLatch writerDone = new CountDownLatch(1);
+    private Future<?> writerTask;
+    
+    // 下一条记录的序号，由发布线程在入队时分配
+    private long nextSequence;
+    private volatile long lastCommittedSequence;
+    // 与序号分配一样在 queue 锁内修改，保证关闭后不会再有记录入队
+    private volatile boolean running = true;
+    private volatile boolean failed;
+    // 标记为失败和恢复时调用
+    private volatile Runnable failureListener;
+    
+    // 以下字段只在写入线程上访问，写入线程结束后由 close() 接管
+    private final List<PendingRecord> batch = new ArrayList<>();
+    private JournalSegment activeSegment;
+    // 切换分段时关闭失败、尚未确认落盘的上一个分段
+    private JournalSegment closingSegment;
+    // 当前这一批中已追加到分段中的记录数，重试时跳过
+    private int batchWritten;
+    
+    private EventJournal(Path directory, int segmentSize, long commitIntervalMillis, JournalSegment activeSegment) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.commitIntervalMillis = commitIntervalMillis;
+        this.activeSegment = activeSegment;
+        this.nextSequence = activeSegment.getLastSequence() + 1;
+        this.lastCommittedSequence = activeSegment.getLastSequence();
+    }
+    
+    /**
+     * 打开日志目录，继续追加到最后一个分段，目录为空时创建第一个分段
+     * @param directory 日志目录
+     * @param segmentSize 分段大小（字节）
+     */
+    public static EventJournal open(Path directory, int segmentSize) throws IOException {
+        return open(directory, segmentSize, 0);
+    }
+    
+    /**
+     * 打开日志目录，继续追加到最后一个分段，目录为空时创建第一个分段
+     * @param directory 日志目录
+     * @param segmentSize 分段大小（字节）
+     * @param commitIntervalMillis 组提交间隔（毫秒），0表示收到记录后立即写入
+     */
+    public static EventJournal open(Path directory, int segmentSize, long commitIntervalMillis) throws IOException {
+        Files.createDirectories(directory);
+        List<Path> segments = JournalSegment.listSegments(directory);
+        JournalSegment active = segments.isEmpty()
+            ? JournalSegment.create(directory, 1, segmentSize)
+            : JournalSegment.openForAppend(segments.get(segments.size() - 1));
+        
+        EventJournal journal = new EventJournal(directory, segmentSize, Math.max(0, commitIntervalMillis), active);
+        try {
+            journal.writerTask = ModExecutors.io().submit(journal::runWriter);
+        } catch (RejectedExecutionException e) {
+            active.close();
+            throw new IOException("background executors are not running", e);
+        }
+        LOGGER.info("事件日志已打开: {}，{} 个分段，下一条序号 {}", directory,
+            Math.max(1, segments.size()), journal.nextSequence);
+        return journal;
+    }
+    
+    @Subscribe(receiveEveryEvent = true)
+    private void onPlanetStatusChanged(PlanetStatusChangedEvent event) {
+        append(JournalRecordType.PLANET_STATUS_CHANGED, event.getTimestamp(), EventCodec.encode(event));
+    }
+    
+    @Subscribe(receiveEveryEvent = true)
+    private void onCivilizationProgress(CivilizationProgressEvent event) {
+        append(JournalRecordType.CIVILIZATION_PROGRESS, event.getTimestamp(), EventCodec.encode(event));
+    }
+    
+    @Subscribe(receiveEveryEvent = true)
+    private void onDisasterTriggered(DisasterTriggeredEvent event) {
+        append(JournalRecordType.DISASTER_TRIGGERED, ModClock.currentTimeMillis(), EventCodec.encode(event));
+    }
+    
+    @Subscribe(receiveEveryEvent = true)
+    private void onMilestoneAchieved(MilestoneAchievedEvent event) {
+        append(JournalRecordType.MILESTONE_ACHIEVED, ModClock.currentTimeMillis(), EventCodec.encode(event));
+    }
+    
+    /**
+     * 追加一条记录，只入队不等待写入
+     * @return 分配给该记录的序号，日志已关闭或处于失败状态时返回-1
+     */
+    public long append(JournalRecordType type, long timestamp, byte[] payload) {
+        // 序号分配与入队必须原子进行，保证队列顺序与序号顺序一致；
+        // 关闭检查也在锁内进行，否则记录可能在写入线程退出后才入队而被丢失
+        synchronized (queue) {
+            if (!running || failed) {
+                return -1;
+            }
+            if (queue.offer(new PendingRecord(type, nextSequence, timestamp, payload))) {
+                return nextSequence++;
+            }
+            failed = true;
+        }
+        LOGGER.error("事件日志积压超过 {} 条记录，停止接收新记录并请求完整检查点", MAX_PENDING);
+        notifyListener();
+        return -1;
+    }
+    
+    private void runWriter() {
+        try {
+            writeLoop();
+        } finally {
+            writerDone.countDown();
+        }
+    }
+    
+    private void writeLoop() {
+        int attempts = 0;
+        while (running || !queue.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    PendingRecord first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    if (commitIntervalMillis > 0 && queue.size() < MAX_BATCH - 1) {
+                        // 等待一个提交间隔，让这段时间内的记录一起写入，只刷盘一次
+                        Thread.sleep(commitIntervalMillis);
+                    }
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                }
+                writeBatch(batch);
+                if (attempts > 0) {
+                    LOGGER.info("事件日志重试 {} 次后写入成功，最后序号 {}", attempts, lastCommittedSequence);
+                }
+                if (failed) {
+                    failed = false;
+                    LOGGER.info("事件日志已恢复写入，请求完整检查点覆盖失败期间没有记录的变化");
+                    notifyListener();
+                }
+                attempts = 0;
+                batch.clear();
+                batchWritten = 0;
+            } catch (InterruptedException e) {
+                // 被 close() 中断，剩余记录由 close() 在写入线程结束后写入
+                break;
+            } catch (Exception e) {
+                attempts++;
+                onWriteFailed(e, attempts, batch.size() - batchWritten + queue.size());
+                try {
+                    Thread.sleep(Math.min(MAX_RETRY_DELAY_MILLIS, RETRY_DELAY_MILLIS << Math.min(attempts - 1, 16)));
+                } catch (InterruptedException interrupted) {
+                    break;
+                }
+            }
+        }
+    }
+    
+    /**
+     * 写入一批记录并刷盘，失败后用同一批记录再次调用时从上次中断的位置继续
+     */
+    private void writeBatch(List<PendingRecord> batch) throws IOException {
+        while (batchWritten < batch.size()) {
+            PendingRecord record = batch.get(batchWritten);
+            if (!activeSegment.hasRoom(record.payload.length)) {
+                rotate(record);
+            }
+            activeSegment.append(record.type, record.sequence, record.timestamp, record.payload);
+            batchWritten++;
+        }
+        closePreviousSegment();
+        activeSegment.force();
+        lastCommittedSequence = batch.get(batch.size() - 1).sequence;
+    }
+    
+    /**
+     * 当前分段已满，以该记录的序号创建新分段并关闭当前分段
+     * 先创建新分段，创建失败时当前分段保持不变，可以直接重试
+     */
+    private void rotate(PendingRecord record) throws IOException {
+        closePreviousSegment();
+        int size = Math.max(segmentSize, JournalSegment.HEADER_SIZE + record.payload.length);
+        JournalSegment next = JournalSegment.create(directory, record.sequence, size);
+        closingSegment = activeSegment;
+        activeSegment = next;
+        LOGGER.debug("事件日志切换到新分段: {}", activeSegment.getPath().getFileName());
+        closePreviousSegment();
+    }
+    
+    /**
+     * 关闭上一个分段（刷盘），失败时保留下来，提交这一批记录之前再次尝试
+     */
+    private void closePreviousSegment() throws IOException {
+        if (closingSegment != null) {
+            closingSegment.close();
+            closingSegment = null;
+        }
+    }
+    
+    private void onWriteFailed(Exception error, int attempts, int unwritten) {
+        if (attempts < ATTEMPTS_BEFORE_FAILED) {
+            LOGGER.warn("写入事件日志失败（第 {} 次），{} 条记录等待重试", attempts, unwritten, error);
+            return;
+        }
+        if (attempts == ATTEMPTS_BEFORE_FAILED) {
+            failed = true;
+            LOGGER.error("事件日志连续 {} 次写入失败，{} 条记录尚未写入，停止接收新记录，请求完整检查点并继续重试",
+                attempts, unwritten, error);
+            notifyListener();
+        } else if (attempts % 60 == 0) {
+            LOGGER.error("事件日志仍无法写入（已重试 {} 次），{} 条记录尚未写入", attempts, unwritten, error);
+        }
+    }
+    
+    private void notifyListener() {
+        Runnable listener = failureListener;
+        if (listener != null) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                LOGGER.error("事件日志失败回调出错", e);
+            }
+        }
+    }
+    
+    /**
+     * 设置日志标记为失败以及之后恢复写入时的回调，在写入线程或发布线程上调用
+     * 失败期间的变化没有记录到日志中，回调应尽快保存一次完整的检查点
+     */
+    public void setFailureListener(Runnable listener) {
+        this.failureListener = listener;
+    }
+    
+    /**
+     * 判断日志是否处于失败状态（连续多次写入失败或积压过多，之后的写入成功时恢复）
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+    
+    /**
+     * 获取最后一条已入队记录的序号（可能尚未写入）
+     * 在发布线程上调用时，返回值覆盖了此前发布的所有事件
+     */
+    public long getLastAppendedSequence() {
+        synchronized (queue) {
+            return nextSequence - 1;
+        }
+    }
+    
+    /**
+     * 保证之后分配的序号大于指定序号
+     * 快照记录的序号可能比日志中已写入的更大（崩溃时日志尾部未落盘），
+     * 跳过这些序号，避免新记录与快照已包含的记录序号重复
+     */
+    public void skipSequencesThrough(long sequence) {
+        synchronized (queue) {
+            if (nextSequence <= sequence) {
+                LOGGER.warn("事件日志最后序号 {} 落后于快照序号 {}，跳过中间的序号", nextSequence - 1, sequence);
+                nextSequence = sequence + 1;
+            }
+        }
+    }
+    
+    /**
+     * 获取已刷盘的最后一条记录的序号
+     */
+    public long getLastCommittedSequence() {
+        return lastCommittedSequence;
+    }
+    
+    /**
+     * 删除所有记录都已包含在快照中的分段，快照写入成功后调用
+     * 正在写入的最后一个分段总是保留，可以在任意线程上调用
+     * @param sequence 快照包含的最后一条记录的序号
+     * @return 删除的分段数
+     */
+    public int truncateThrough(long sequence) {
+        int deleted = 0;
+        try {
+            List<Path> segments = JournalSegment.listSegments(directory);
+            for (int i = 0; i + 1 < segments.size(); i++) {
+                // 下一个分段的起始序号不超过 sequence + 1 时，本分段的记录都不晚于 sequence
+                if (JournalSegment.parseFirstSequence(segments.get(i + 1)) > sequence + 1) {
+                    break;
+                }
+                Files.deleteIfExists(segments.get(i));
+                deleted++;
+            }
+        } catch (IOException e) {
+            LOGGER.warn("删除已写入快照的事件日志分段时出错", e);
+        }
+        if (deleted > 0) {
+            LOGGER.debug("已删除 {} 个包含在快照中的事件日志分段（序号不晚于 {}）", deleted, sequence);
+        }
+        return deleted;
+    }
+    
+    /**
+     * 获取等待写入的记录数
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+    
+    /**
+     * 获取日志目录
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+    
+    /**
+     * 停止接收新记录，写完队列中的剩余记录后关闭
+     * 写入线程未能及时结束时中断它，结束后由当前线程写入剩余记录
+     */
+    @Override
+    public void close() {
+        synchronized (queue) {
+            if (!running) {
+                return;
+            }
+            running = false;
+        }
+        boolean stopped = awaitWriter(TimeUnit.SECONDS.toMillis(10));
+        if (!stopped) {
+            LOGGER.warn("事件日志写入线程未能及时结束，中断后写入剩余记录");
+            writerTask.cancel(true);
+            stopped = awaitWriter(TimeUnit.SECONDS.toMillis(1));
+        }
+        
+        if (stopped) {
+            writeRemaining();
+        } else {
+            // 写入线程仍卡在I/O中，不能再碰它的批次，队列中的记录只能丢弃
+            LOGGER.error("事件日志写入线程无法结束，至少 {} 条记录未写入", queue.size());
+        }
+        
+        try {
+            closePreviousSegment();
+            activeSegment.close();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("关闭事件日志分段时出错", e);
+        }
+        LOGGER.info("事件日志已关闭，最后序号 {}", lastCommittedSequence);
+    }
+    
+    private boolean awaitWriter(long timeoutMillis) {
+        try {
+            return writerDone.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return writerDone.getCount() == 0;
+        }
+    }
+    
+    /**
+     * 写入线程结束后，在当前线程上写入未完成的批次和队列中的剩余记录，只尝试一次
+     */
+    private void writeRemaining() {
+        queue.drainTo(batch);
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            writeBatch(batch);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("关闭时写入事件日志失败，{} 条记录未写入", batch.size() - batchWritten, e);
+        }
+        batch.clear();
+        batchWritten = 0;
+    }
+    
+    /**
+     * 等待写入的记录
+     */
+    private static final class PendingRecord {
+        final JournalRecordType type;
+        final long sequence;
+        final long timestamp;
+        final byte[] payload;
+        
+        PendingRecord(JournalRecordType type, long sequence, long timestamp, byte[] payload) {
+            this.type = type;
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.payload = payload;
+        }
+    }
+}
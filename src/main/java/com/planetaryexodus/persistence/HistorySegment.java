@@ -0,0 +1,493 @@
+package com.planetaryexodus.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * 历史数据分段文件
+ * 每个分段预分配固定大小并整体内存映射，样本按块追加，每块独立编码，查询时只解码时间范围重叠的块
+ *
+ * 分段格式（大端）：
+ * <pre>
+ * int  魔数
+ * int  格式版本
+ * 块...（数据字节数为0的位置即为分段末尾）
+ *
+ * 块头：
+ * int  数据字节数
+ * int  校验和（CRC32C，覆盖块头其余字段和数据）
+ * int  样本数
+ * long 第一个样本的分钟数
+ * long 最后一个样本的分钟数
+ * byte[] 按位编码的样本
+ * </pre>
+ * 每追加一个样本都重新计算所在块的校验和。系统崩溃时块头可能已落盘而数据没有，
+ * 读取和重新打开时在第一个校验失败的块处截断
+ *
+ * 样本按位编码，每个字段都相对块内上一个样本编码，块的第一个样本相对全零的初始状态：
+ * 时间（分钟）记录间隔的变化量（delta-of-delta），进度、灾难数和贡献量记录差值，
+ * 状态只在变化时记录。差值经 zigzag 变换后用变长前缀编码，0只占1位，
+ * 每分钟采样且数值不变时一个样本只占5位
+ */
+final class HistorySegment implements AutoCloseable {
+    
+    static final int MAGIC = 0x50585453;
+    static final int VERSION = 2;
+    static final int FILE_HEADER_SIZE = 8;
+    static final int BLOCK_HEADER_SIZE = 4 + 4 + 4 + 8 + 8;
+    /** 单个样本编码后的最大字节数（4个字段各68位，状态5位） */
+    static final int MAX_SAMPLE_BYTES = 40;
+    
+    private static final String FILE_PREFIX = "history-";
+    private static final String FILE_SUFFIX = ".series";
+    
+    private final Path path;
+    private final long firstMinute;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    
+    // 正在写入的块，没有时为-1
+    private int blockStart = -1;
+    private int blockCount;
+    private long blockBits;
+    // 下一个块的起始位置
+    private int end;
+    private final SampleState state = new SampleState();
+    private final CRC32C crc = new CRC32C();
+    
+    private HistorySegment(Path path, long firstMinute, FileChannel channel, MappedByteBuffer buffer) {
+        this.path = path;
+        this.firstMinute = firstMinute;
+        this.channel = channel;
+        this.buffer = buffer;
+        buffer.order(ByteOrder.BIG_ENDIAN);
+    }
+    
+    /**
+     * 创建新分段
+     * @param firstMinute 分段中第一个样本的分钟数，同时用作文件名
+     * @param size 分段大小（字节）
+     */
+    static HistorySegment create(Path directory, long firstMinute, int size) throws IOException {
+        Path path = directory.resolve(fileName(firstMinute));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            HistorySegment segment = new HistorySegment(path, firstMinute, channel,
+                channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            segment.buffer.putInt(0, MAGIC);
+            segment.buffer.putInt(4, VERSION);
+            segment.end = FILE_HEADER_SIZE;
+            return segment;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * 打开已有分段继续追加，之后的样本写入新的块
+     */
+    static HistorySegment openForAppend(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            HistorySegment segment = new HistorySegment(path, parseFirstMinute(path), channel,
+                channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+            checkHeader(segment.buffer, path);
+            segment.end = scanEnd(segment.buffer);
+            segment.clearTail();
+            return segment;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * 只读映射已有分段，用于查询
+     */
+    static ByteBuffer mapReadOnly(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            checkHeader(buffer, path);
+            return buffer;
+        }
+    }
+    
+    private static void checkHeader(ByteBuffer buffer, Path path) throws IOException {
+        if (buffer.limit() < FILE_HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("not a history segment: " + path);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("unsupported history segment version " + buffer.getInt(4) + ": " + path);
+        }
+    }
+    
+    /**
+     * 清除最后一个完整块之后的内容（崩溃时写了一半或校验失败的块），只改写非零字节
+     */
+    private void clearTail() {
+        for (int i = end; i < buffer.limit(); i++) {
+            if (buffer.get(i) != 0) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+    }
+    
+    /**
+     * 找到最后一个完整块之后的位置
+     */
+    private static int scanEnd(ByteBuffer buffer) {
+        CRC32C crc = new CRC32C();
+        int position = FILE_HEADER_SIZE;
+        int next;
+        while ((next = validBlockEnd(buffer, position, crc)) > 0) {
+            position = next;
+        }
+        return position;
+    }
+    
+    /**
+     * @return 块结束位置，块不存在、不完整或校验失败时返回-1
+     */
+    private static int validBlockEnd(ByteBuffer buffer, int position, CRC32C crc) {
+        if (buffer.limit() - position < BLOCK_HEADER_SIZE) {
+            return -1;
+        }
+        int dataBytes = buffer.getInt(position);
+        int count = buffer.getInt(position + 8);
+        if (dataBytes <= 0 || count <= 0 || dataBytes > buffer.limit() - position - BLOCK_HEADER_SIZE) {
+            return -1;
+        }
+        if (checksum(buffer, position, dataBytes, crc) != buffer.getInt(position + 4)) {
+            return -1;
+        }
+        return position + BLOCK_HEADER_SIZE + dataBytes;
+    }
+    
+    private static int checksum(ByteBuffer buffer, int position, int dataBytes, CRC32C crc) {
+        crc.reset();
+        crc.update(buffer.slice(position + 8, BLOCK_HEADER_SIZE - 8 + dataBytes));
+        return (int) crc.getValue();
+    }
+    
+    /**
+     * 能否再写入一个样本（当前块或一个新块）
+     */
+    boolean hasRoomForSample() {
+        int dataStart = (blockStart >= 0 ? blockStart : end) + BLOCK_HEADER_SIZE;
+        int used = blockStart >= 0 ? (int) ((blockBits + 7) / 8) : 0;
+        return buffer.limit() - dataStart - used >= MAX_SAMPLE_BYTES;
+    }
+    
+    /**
+     * 当前块写满后调用，之后的样本写入新的块
+     */
+    void closeBlock() {
+        if (blockStart >= 0) {
+            end = blockStart + BLOCK_HEADER_SIZE + (int) ((blockBits + 7) / 8);
+            blockStart = -1;
+        }
+    }
+    
+    /**
+     * 当前块中的样本数
+     */
+    int getBlockCount() {
+        return blockCount;
+    }
+    
+    /**
+     * 追加一个样本，调用前应确认 hasRoomForSample
+     */
+    void append(long minute, int progress, int status, int disasters, int contribution) {
+        if (blockStart < 0) {
+            blockStart = end;
+            blockCount = 0;
+            blockBits = 0;
+            state.reset(minute);
+            buffer.putLong(blockStart + 12, minute);
+        }
+        BitWriter writer = new BitWriter(buffer, blockStart + BLOCK_HEADER_SIZE, blockBits);
+        state.encode(writer, minute, progress, status, disasters, contribution);
+        blockBits = writer.bitPosition;
+        blockCount++;
+        int dataBytes = (int) ((blockBits + 7) / 8);
+        buffer.putLong(blockStart + 20, minute);
+        buffer.putInt(blockStart + 8, blockCount);
+        buffer.putInt(blockStart, dataBytes);
+        buffer.putInt(blockStart + 4, checksum(buffer, blockStart, dataBytes, crc));
+    }
+    
+    /**
+     * 把映射的内容刷到磁盘
+     */
+    void force() {
+        buffer.force();
+    }
+    
+    /**
+     * 获取写入用的映射（查询正在写入的分段时使用）
+     */
+    ByteBuffer getBuffer() {
+        return buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+    }
+    
+    Path getPath() {
+        return path;
+    }
+    
+    long getFirstMinute() {
+        return firstMinute;
+    }
+    
+    /**
+     * 获取分段中最后一个样本的分钟数，没有样本时返回 Long.MIN_VALUE
+     */
+    long getLastMinute() {
+        long last = Long.MIN_VALUE;
+        int position = FILE_HEADER_SIZE;
+        int next;
+        while ((next = validBlockEnd(buffer, position, crc)) > 0) {
+            last = buffer.getLong(position + 20);
+            position = next;
+        }
+        return last;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        closeBlock();
+        buffer.force();
+        channel.close();
+    }
+    
+    /**
+     * 解码分段中时间范围与 [fromMinute, toMinute] 重叠的块，按顺序输出范围内的样本
+     * 遇到校验失败的块时停止，之后的块不再读取
+     */
+    static void read(ByteBuffer buffer, long fromMinute, long toMinute, SampleConsumer consumer) {
+        int position = FILE_HEADER_SIZE;
+        SampleState state = new SampleState();
+        CRC32C crc = new CRC32C();
+        while (true) {
+            int next = validBlockEnd(buffer, position, crc);
+            if (next < 0) {
+                return;
+            }
+            long first = buffer.getLong(position + 12);
+            long last = buffer.getLong(position + 20);
+            if (first > toMinute) {
+                return;
+            }
+            if (last >= fromMinute) {
+                int count = buffer.getInt(position + 8);
+                BitReader reader = new BitReader(buffer, position + BLOCK_HEADER_SIZE);
+                state.reset(first);
+                for (int i = 0; i < count; i++) {
+                    state.decode(reader);
+                    if (state.minute > toMinute) {
+                        return;
+                    }
+                    if (state.minute >= fromMinute) {
+                        consumer.accept(state.minute, state.progress, state.status, state.disasters, state.contribution);
+                    }
+                }
+            }
+            position = next;
+        }
+    }
+    
+    static String fileName(long firstMinute) {
+        return String.format("%s%016d%s", FILE_PREFIX, firstMinute, FILE_SUFFIX);
+    }
+    
+    static long parseFirstMinute(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+        } catch (RuntimeException e) {
+            throw new IOException("invalid history segment name: " + name, e);
+        }
+    }
+    
+    /**
+     * 按起始时间列出目录中的分段
+     */
+    static List<Path> listSegments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (Stream<Path> stream = Files.list(directory)) {
+            stream.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+            }).sorted().forEach(segments::add);
+        }
+        return segments;
+    }
+    
+    /**
+     * 解码出的样本
+     */
+    @FunctionalInterface
+    interface SampleConsumer {
+        void accept(long minute, int progress, int status, int disasters, int contribution);
+    }
+    
+    /**
+     * 块内上一个样本的状态，编码和解码共用
+     */
+    private static final class SampleState {
+        long minute;
+        long interval;
+        int progress;
+        int status;
+        int disasters;
+        int contribution;
+        
+        /**
+         * 回到块开头的初始状态：假设上一个样本在一分钟之前，数值全为0
+         */
+        void reset(long firstMinute) {
+            minute = firstMinute - 1;
+            interval = 1;
+            progress = 0;
+            status = 0;
+            disasters = 0;
+            contribution = 0;
+        }
+        
+        void encode(BitWriter writer, long newMinute, int newProgress, int newStatus, int newDisasters,
+                    int newContribution) {
+            long newInterval = newMinute - minute;
+            writer.writeVarint(newInterval - interval);
+            writer.writeVarint(newProgress - progress);
+            if (newStatus == status) {
+                writer.writeBits(0, 1);
+            } else {
+                writer.writeBits(1, 1);
+                writer.writeBits(newStatus, 4);
+            }
+            writer.writeVarint(newDisasters - disasters);
+            writer.writeVarint(newContribution - contribution);
+            minute = newMinute;
+            interval = newInterval;
+            progress = newProgress;
+            status = newStatus;
+            disasters = newDisasters;
+            contribution = newContribution;
+        }
+        
+        void decode(BitReader reader) {
+            interval += reader.readVarint();
+            minute += interval;
+            progress += (int) reader.readVarint();
+            if (reader.readBits(1) != 0) {
+                status = (int) reader.readBits(4);
+            }
+            disasters += (int) reader.readVarint();
+            contribution += (int) reader.readVarint();
+        }
+    }
+    
+    /**
+     * 向缓冲区按位写入，高位在前
+     */
+    private static final class BitWriter {
+        private final ByteBuffer buffer;
+        private final int start;
+        long bitPosition;
+        
+        BitWriter(ByteBuffer buffer, int start, long bitPosition) {
+            this.buffer = buffer;
+            this.start = start;
+            this.bitPosition = bitPosition;
+        }
+        
+        void writeBits(long value, int bits) {
+            for (int i = bits - 1; i >= 0; i--) {
+                int index = start + (int) (bitPosition >>> 3);
+                int shift = 7 - (int) (bitPosition & 7);
+                byte current = (shift == 7) ? 0 : buffer.get(index);
+                if (((value >>> i) & 1) != 0) {
+                    current |= (byte) (1 << shift);
+                }
+                buffer.put(index, current);
+                bitPosition++;
+            }
+        }
+        
+        /**
+         * zigzag 变换后按大小选择前缀：0 / 10+4位 / 110+8位 / 1110+16位 / 1111+64位
+         */
+        void writeVarint(long value) {
+            long zigzag = (value << 1) ^ (value >> 63);
+            if (zigzag == 0) {
+                writeBits(0, 1);
+            } else if (zigzag < (1L << 4)) {
+                writeBits(0b10, 2);
+                writeBits(zigzag, 4);
+            } else if (zigzag < (1L << 8)) {
+                writeBits(0b110, 3);
+                writeBits(zigzag, 8);
+            } else if (zigzag < (1L << 16)) {
+                writeBits(0b1110, 4);
+                writeBits(zigzag, 16);
+            } else {
+                writeBits(0b1111, 4);
+                writeBits(zigzag, 64);
+            }
+        }
+    }
+    
+    /**
+     * 从缓冲区按位读取，高位在前
+     */
+    private static final class BitReader {
+        private final ByteBuffer buffer;
+        private final int start;
+        private long bitPosition;
+        
+        BitReader(ByteBuffer buffer, int start) {
+            this.buffer = buffer;
+            this.start = start;
+        }
+        
+        long readBits(int bits) {
+            long value = 0;
+            for (int i = 0; i < bits; i++) {
+                int index = start + (int) (bitPosition >>> 3);
+                int shift = 7 - (int) (bitPosition & 7);
+                value = (value << 1) | ((buffer.get(index) >>> shift) & 1);
+                bitPosition++;
+            }
+            return value;
+        }
+        
+        long readVarint() {
+            long zigzag;
+            if (readBits(1) == 0) {
+                zigzag = 0;
+            } else if (readBits(1) == 0) {
+                zigzag = readBits(4);
+            } else if (readBits(1) == 0) {
+                zigzag = readBits(8);
+            } else if (readBits(1) == 0) {
+                zigzag = readBits(16);
+            } else {
+                zigzag = readBits(64);
+            }
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.planetaryexodus.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * 事件日志读取器
+ * 按序号顺序以只读内存映射方式依次读取各分段，读取过程中不为每条记录分配对象
+ */
+public final class JournalReader {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger("PlanetaryExodus/Journal");
+    
+    /**
+     * 记录访问器
+     */
+    @FunctionalInterface
+    public interface RecordVisitor {
+        /**
+         * @param payload 负载视图，可读范围为 position 到 limit，只在本次调用内有效
+         */
+        void visit(JournalRecordType type, long sequence, long timestamp, ByteBuffer payload);
+    }
+    
+    private JournalReader() {
+    }
+    
+    /**
+     * 读取序号大于 afterSequence 的所有记录
+     * @param directory 日志目录
+     * @param afterSequence 起始序号（不含），0表示从头读取
+     * @return 读到的最后一条记录的序号，没有新记录时返回 afterSequence
+     */
+    public static long read(Path directory, long afterSequence, RecordVisitor visitor) throws IOException {
+        List<Path> segments = JournalSegment.listSegments(directory);
+        long lastSequence = afterSequence;
+        CRC32C crc = new CRC32C();
+        
+        for (int i = 0; i < segments.size(); i++) {
+            // 下一个分段的起始序号不超过起点时，本分段的记录都已包含在快照中
+            if (i + 1 < segments.size() && JournalSegment.parseFirstSequence(segments.get(i + 1)) <= afterSequence + 1) {
+                continue;
+            }
+            lastSequence = Math.max(lastSequence, readSegment(segments.get(i), afterSequence, visitor, crc));
+        }
+        return lastSequence;
+    }
+    
+    private static long readSegment(Path path, long afterSequence, RecordVisitor visitor, CRC32C crc) throws IOException {
+        long lastSequence = afterSequence;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            // 复用两个视图分别用于校验和交给访问器，避免为每条记录创建切片
+            ByteBuffer checked = buffer.duplicate();
+            ByteBuffer payload = buffer.duplicate();
+            int limit = buffer.limit();
+            int position = 0;
+            
+            while (limit - position >= JournalSegment.HEADER_SIZE) {
+                int length = buffer.getInt(position);
+                if (length == 0) {
+                    break;
+                }
+                if (length < 0 || length > limit - position - JournalSegment.HEADER_SIZE) {
+                    LOGGER.warn("事件日志分段 {} 在偏移 {} 处记录长度无效，跳过分段剩余部分", path.getFileName(), position);
+                    break;
+                }
+                
+                int end = position + JournalSegment.HEADER_SIZE + length;
+                crc.reset();
+                checked.limit(end).position(position + 8);
+                crc.update(checked);
+                if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                    LOGGER.warn("事件日志分段 {} 在偏移 {} 处校验失败，跳过分段剩余部分", path.getFileName(), position);
+                    break;
+                }
+                
+                long sequence = buffer.getLong(position + 9);
+                if (sequence > afterSequence) {
+                    JournalRecordType type = JournalRecordType.byId(buffer.get(position + 8) & 0xFF);
+                    // 未知类型来自更新版本的模组，跳过
+                    if (type != null) {
+                        payload.limit(end).position(position + JournalSegment.HEADER_SIZE);
+                        visitor.visit(type, sequence, buffer.getLong(position + 17), payload);
+                    }
+                    lastSequence = sequence;
+                }
+                position = end;
+            }
+        }
+        return lastSequence;
+    }
+}
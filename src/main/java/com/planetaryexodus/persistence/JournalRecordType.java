@@ -0,0 +1,49 @@
+package com.planetaryexodus.persistence;
+
+/**
+ * 事件日志记录类型
+ * 类型编号写入日志文件，已发布的编号不能修改或复用
+ */
+public enum JournalRecordType {
+    
+    /** 行星状态改变 */
+    PLANET_STATUS_CHANGED(1),
+    
+    /** 文明进度变化 */
+    CIVILIZATION_PROGRESS(2),
+    
+    /** 灾难触发 */
+    DISASTER_TRIGGERED(3),
+    
+    /** 里程碑达成 */
+    MILESTONE_ACHIEVED(4);
+    
+    private static final JournalRecordType[] BY_ID = new JournalRecordType[256];
+    
+    static {
+        for (JournalRecordType type : values()) {
+            BY_ID[type.id] = type;
+        }
+    }
+    
+    private final int id;
+    
+    JournalRecordType(int id) {
+        this.id = id;
+    }
+    
+    /**
+     * 获取写入文件的类型编号
+     */
+    public int getId() {
+        return id;
+    }
+    
+    /**
+     * 根据类型编号查找记录类型
+     * @return 未知编号返回null
+     */
+    public static JournalRecordType byId(int id) {
+        return id >= 0 && id < BY_ID.length ? BY_ID[id] : null;
+    }
+}
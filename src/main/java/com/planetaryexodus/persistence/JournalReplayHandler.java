@@ -0,0 +1,54 @@
+package com.planetaryexodus.persistence;
+
+import com.planetaryexodus.disaster.DisasterType;
+import com.planetaryexodus.planet.PlanetStatus;
+
+import java.util.UUID;
+
+/**
+ * 事件日志重放处理器
+ * 重放时按日志顺序收到解码后的记录，直接恢复内存状态，不应再发布事件
+ */
+public interface JournalReplayHandler {
+    
+    /**
+     * 每条记录解码前调用，之后收到的记录回调都属于这条记录
+     * @param sequence 记录的序号
+     */
+    default void beginRecord(long sequence) {
+    }
+    
+    /**
+     * 行星状态改变记录
+     */
+    default void onPlanetStatusChanged(long timestamp, PlanetStatus oldStatus, PlanetStatus newStatus, int progress) {
+    }
+    
+    /**
+     * 文明进度记录
+     * @param contributorId 贡献的玩家，没有时为null
+     * @param contributorName 贡献的玩家名，没有时为null
+     */
+    default void onCivilizationProgress(long timestamp, int oldProgress, int newProgress, int progressChange,
+                                        String source, UUID contributorId, String contributorName) {
+    }
+    
+    /**
+     * 灾难触发记录
+     */
+    default void onDisasterTriggered(long timestamp, DisasterType type, int durationMinutes) {
+    }
+    
+    /**
+     * 里程碑达成记录
+     */
+    default void onMilestoneAchieved(long timestamp, String milestoneName, int progressReward, int progress) {
+    }
+    
+    /**
+     * 重放结束后调用，用于重新计算派生状态
+     * @param lastSequence 重放到的最后一条记录的序号
+     */
+    default void onReplayFinished(long lastSequence) {
+    }
+}
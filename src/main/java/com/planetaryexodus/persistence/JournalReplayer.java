@@ -0,0 +1,139 @@
+package com.planetaryexodus.persistence;
+
+import com.planetaryexodus.disaster.DisasterType;
+import com.planetaryexodus.planet.PlanetStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+/**
+ * 事件日志重放引擎
+ * 从快照之后的第一条记录开始顺序读取日志，把解码后的记录依次交给各个处理器恢复状态
+ */
+public final class JournalReplayer {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger("PlanetaryExodus/Journal");
+    
+    private JournalReplayer() {
+    }
+    
+    /**
+     * 重放日志
+     * @param directory 日志目录
+     * @param afterSequence 快照包含的最后一条记录的序号，0表示没有快照
+     * @param handlers 按顺序接收每条记录的处理器
+     */
+    public static Result replay(Path directory, long afterSequence, JournalReplayHandler... handlers) throws IOException {
+        long start = System.nanoTime();
+        JournalReplayHandler handler = handlers.length == 1 ? handlers[0] : new CompositeHandler(handlers);
+        // 已重放记录数、忽略记录数、最晚的时间戳
+        long[] counts = new long[3];
+        
+        long lastSequence = afterSequence;
+        if (Files.isDirectory(directory)) {
+            lastSequence = JournalReader.read(directory, afterSequence, (type, sequence, timestamp, payload) -> {
+                handler.beginRecord(sequence);
+                counts[2] = Math.max(counts[2], timestamp);
+                if (EventCodec.decode(type, timestamp, payload, handler)) {
+                    counts[0]++;
+                } else {
+                    counts[1]++;
+                }
+            });
+        }
+        handler.onReplayFinished(lastSequence);
+        
+        Result result = new Result(counts[0], counts[1], lastSequence, counts[2],
+            (System.nanoTime() - start) / 1_000_000);
+        if (result.skippedRecords > 0) {
+            LOGGER.warn("事件日志重放时忽略了 {} 条无法识别的记录", result.skippedRecords);
+        }
+        return result;
+    }
+    
+    /**
+     * 重放结果
+     */
+    public static final class Result {
+        public final long replayedRecords;
+        public final long skippedRecords;
+        public final long lastSequence;
+        // 重放记录中最晚的时间戳（模组时钟），没有记录时为0
+        public final long lastTimestamp;
+        public final long elapsedMillis;
+        
+        Result(long replayedRecords, long skippedRecords, long lastSequence, long lastTimestamp, long elapsedMillis) {
+            this.replayedRecords = replayedRecords;
+            this.skippedRecords = skippedRecords;
+            this.lastSequence = lastSequence;
+            this.lastTimestamp = lastTimestamp;
+            this.elapsedMillis = elapsedMillis;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("重放 %d 条记录（忽略 %d 条），最后序号 %d，耗时 %dms",
+                replayedRecords, skippedRecords, lastSequence, elapsedMillis);
+        }
+    }
+    
+    /**
+     * 把每条记录依次转发给多个处理器
+     */
+    private static final class CompositeHandler implements JournalReplayHandler {
+        private final JournalReplayHandler[] handlers;
+        
+        CompositeHandler(JournalReplayHandler[] handlers) {
+            this.handlers = handlers.clone();
+        }
+        
+        @Override
+        public void beginRecord(long sequence) {
+            for (JournalReplayHandler handler : handlers) {
+                handler.beginRecord(sequence);
+                counts[2] = Math.max(counts[2], timestamp);
+            }
+        }
+        
+        @Override
+        public void onPlanetStatusChanged(long timestamp, PlanetStatus oldStatus, PlanetStatus newStatus, int progress) {
+            for (JournalReplayHandler handler : handlers) {
+                handler.onPlanetStatusChanged(timestamp, oldStatus, newStatus, progress);
+            }
+        }
+        
+        @Override
+        public void onCivilizationProgress(long timestamp, int oldProgress, int newProgress, int progressChange,
+                                           String source, UUID contributorId, String contributorName) {
+            for (JournalReplayHandler handler : handlers) {
+                handler.onCivilizationProgress(timestamp, oldProgress, newProgress, progressChange,
+                    source, contributorId, contributorName);
+            }
+        }
+        
+        @Override
+        public void onDisasterTriggered(long timestamp, DisasterType type, int durationMinutes) {
+            for (JournalReplayHandler handler : handlers) {
+                handler.onDisasterTriggered(timestamp, type, durationMinutes);
+            }
+        }
+        
+        @Override
+        public void onMilestoneAchieved(long timestamp, String milestoneName, int progressReward, int progress) {
+            for (JournalReplayHandler handler : handlers) {
+                handler.onMilestoneAchieved(timestamp, milestoneName, progressReward, progress);
+            }
+        }
+        
+        @Override
+        public void onReplayFinished(long lastSequence) {
+            for (JournalReplayHandler handler : handlers) {
+                handler.onReplayFinished(lastSequence);
+            }
+        }
+    }
+}
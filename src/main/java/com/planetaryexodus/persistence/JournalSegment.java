@@ -0,0 +1,211 @@
+package com.planetaryexodus.persistence;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * 事件日志分段文件
+ * 每个分段预分配固定大小并整体内存映射，记录依次追加，长度为0的位置即为分段末尾
+ *
+ * 记录格式（大端）：
+ * <pre>
+ * int  负载长度
+ * int  校验和（CRC32C，覆盖类型、序号、时间戳和负载）
+ * byte 记录类型
+ * long 序号
+ * long 时间戳（毫秒）
+ * byte[] 负载
+ * </pre>
+ */
+final class JournalSegment implements AutoCloseable {
+    
+    /** 记录头长度 */
+    static final int HEADER_SIZE = 4 + 4 + 1 + 8 + 8;
+    
+    private static final String FILE_PREFIX = "events-";
+    private static final String FILE_SUFFIX = ".journal";
+    
+    private final Path path;
+    private final long firstSequence;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final CRC32C crc = new CRC32C();
+    private long lastSequence;
+    
+    private JournalSegment(Path path, long firstSequence, FileChannel channel, MappedByteBuffer buffer) {
+        this.path = path;
+        this.firstSequence = firstSequence;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.lastSequence = firstSequence - 1;
+        buffer.order(ByteOrder.BIG_ENDIAN);
+    }
+    
+    /**
+     * 创建新分段
+     * @param firstSequence 分段中第一条记录的序号，同时用作文件名
+     * @param size 分段大小（字节）
+     */
+    static JournalSegment create(Path directory, long firstSequence, int size) throws IOException {
+        Path path = directory.resolve(fileName(firstSequence));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            return new JournalSegment(path, firstSequence, channel, buffer);
+        } catch (IOException e) {
+            channel.close();
+            // 删除空文件，之后可以用同一个序号重试
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+    
+    /**
+     * 打开已有分段用于继续追加，扫描到最后一条完整记录为止，
+     * 之后可能是崩溃时写了一半的记录，全部清零
+     */
+    static JournalSegment openForAppend(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            JournalSegment segment = new JournalSegment(path, parseFirstSequence(path), channel, buffer);
+            segment.recover();
+            return segment;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    private void recover() {
+        int position = 0;
+        while (true) {
+            int next = validRecordEnd(position);
+            if (next < 0) {
+                break;
+            }
+            lastSequence = buffer.getLong(position + 9);
+            position = next;
+        }
+        buffer.position(position);
+        // 只改写非零字节，避免把整个分段的页面都标记为脏页
+        for (int i = position; i < buffer.limit(); i++) {
+            if (buffer.get(i) != 0) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+    }
+    
+    /**
+     * 校验指定位置的记录
+     * @return 记录结束位置，记录不存在或不完整时返回-1
+     */
+    private int validRecordEnd(int position) {
+        if (buffer.limit() - position < HEADER_SIZE) {
+            return -1;
+        }
+        int length = buffer.getInt(position);
+        if (length <= 0 || length > buffer.limit() - position - HEADER_SIZE) {
+            return -1;
+        }
+        crc.reset();
+        crc.update(buffer.slice(position + 8, HEADER_SIZE - 8 + length));
+        if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+            return -1;
+        }
+        return position + HEADER_SIZE + length;
+    }
+    
+    /**
+     * 判断剩余空间是否能容纳指定负载长度的记录
+     */
+    boolean hasRoom(int payloadLength) {
+        return buffer.remaining() >= HEADER_SIZE + payloadLength;
+    }
+    
+    /**
+     * 追加一条记录（只在日志写入线程上调用）
+     */
+    void append(JournalRecordType type, long sequence, long timestamp, byte[] payload) {
+        int start = buffer.position();
+        buffer.position(start + 8);
+        buffer.put((byte) type.getId());
+        buffer.putLong(sequence);
+        buffer.putLong(timestamp);
+        buffer.put(payload);
+        
+        crc.reset();
+        crc.update(buffer.slice(start + 8, HEADER_SIZE - 8 + payload.length));
+        buffer.putInt(start + 4, (int) crc.getValue());
+        // 长度最后写入，崩溃时未写完的记录长度仍为0
+        buffer.putInt(start, payload.length);
+        lastSequence = sequence;
+    }
+    
+    /**
+     * 将已追加的记录刷到磁盘
+     */
+    void force() {
+        buffer.force();
+    }
+    
+    Path getPath() {
+        return path;
+    }
+    
+    long getFirstSequence() {
+        return firstSequence;
+    }
+    
+    /**
+     * 获取最后一条记录的序号，分段为空时为 firstSequence - 1
+     */
+    long getLastSequence() {
+        return lastSequence;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+    
+    /**
+     * 按序号顺序列出目录中的分段文件
+     */
+    static List<Path> listSegments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (Stream<Path> stream = Files.list(directory)) {
+            stream.filter(JournalSegment::isSegmentFile).sorted().forEach(segments::add);
+        }
+        return segments;
+    }
+    
+    static long parseFirstSequence(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+    }
+    
+    private static boolean isSegmentFile(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+    }
+    
+    private static String fileName(long firstSequence) {
+        // 定长序号保证按文件名排序即按序号排序
+        return String.format("%s%020d%s", FILE_PREFIX, firstSequence, FILE_SUFFIX);
+    }
+}
@@ -0,0 +1,349 @@
+package com.planetaryexodus.persistence;
+
+import com.planetaryexodus.api.annotations.Subscribe;
+import com.planetaryexodus.api.events.CivilizationProgressEvent;
+import com.planetaryexodus.api.events.PlanetStatusChangedEvent;
+import com.planetaryexodus.core.ModClock;
+import com.planetaryexodus.planet.PlanetStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 世界的每分钟历史数据：文明进度、行星状态、进行中的灾难数和每分钟贡献的进度
+ * 样本按位压缩后写入世界存档下的内存映射分段文件，保留整个世界的生命周期，
+ * 稳定运行时每个样本不到一个字节，一个1MB的分段可以保存一年以上的数据
+ *
+ * 状态取一分钟内出现过的最严重状态，贡献为这一分钟内所有进度增加之和（合并前的每个事件）。
+ * 只在服务器线程上访问
+ */
+public class MetricHistory implements AutoCloseable {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger("PlanetaryExodus/History");
+    
+    private static final long MINUTE_MILLIS = 60_000L;
+    // 每块的样本数（6小时），查询时以块为单位解码
+    private static final int BLOCK_SAMPLES = 360;
+    
+    private final Path directory;
+    private final int segmentSize;
+    // 已写满的分段及其第一个样本的分钟数
+    private final List<Path> sealedSegments = new ArrayList<>();
+    private final List<Long> sealedFirstMinutes = new ArrayList<>();
+    // 查询时映射的已写满分段
+    private final Map<Path, ByteBuffer> mappedSegments = new HashMap<>();
+    // 正在写入的分段，还没有样本时为null
+    private HistorySegment active;
+    private long lastMinute = Long.MIN_VALUE;
+    
+    // 当前分钟内累计的贡献和出现过的最严重状态
+    private int pendingContribution;
+    private PlanetStatus pendingWorstStatus;
+    
+    private MetricHistory(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+    
+    /**
+     * 打开历史目录，继续追加到最后一个分段
+     * @param segmentSize 分段大小（字节）
+     */
+    public static MetricHistory open(Path directory, int segmentSize) throws IOException {
+        Files.createDirectories(directory);
+        MetricHistory history = new MetricHistory(directory, segmentSize);
+        List<Path> segments = HistorySegment.listSegments(directory);
+        for (int i = 0; i < segments.size() - 1; i++) {
+            history.sealedSegments.add(segments.get(i));
+            history.sealedFirstMinutes.add(HistorySegment.parseFirstMinute(segments.get(i)));
+        }
+        if (!segments.isEmpty()) {
+            Path last = segments.get(segments.size() - 1);
+            try {
+                history.active = HistorySegment.openForAppend(last);
+                history.lastMinute = history.active.getLastMinute();
+            } catch (IOException e) {
+                // 无法继续追加（旧版本或损坏），保留原文件，之后的样本写入新分段
+                LOGGER.warn("无法继续写入历史数据分段，改为写入新分段: {}", last, e);
+                history.sealedSegments.add(last);
+                history.sealedFirstMinutes.add(HistorySegment.parseFirstMinute(last));
+            }
+        }
+        LOGGER.info("历史数据已打开: {}，{} 个分段", directory, segments.size());
+        return history;
+    }
+    
+    @Subscribe(receiveEveryEvent = true)
+    private void onCivilizationProgress(CivilizationProgressEvent event) {
+        if (event.getProgressChange() > 0) {
+            pendingContribution = (int) Math.min(Integer.MAX_VALUE, (long) pendingContribution + event.getProgressChange());
+        }
+    }
+    
+    @Subscribe(receiveEveryEvent = true)
+    private void onPlanetStatusChanged(PlanetStatusChangedEvent event) {
+        pendingWorstStatus = worse(pendingWorstStatus, event.getNewStatus());
+    }
+    
+    /**
+     * 记录当前分钟的样本，同一分钟内重复调用时忽略
+     * @return 写入了新样本时返回true
+     */
+    public boolean sample(int progress, PlanetStatus status, int activeDisasters) {
+        long minute = Math.floorDiv(ModClock.currentTimeMillis(), MINUTE_MILLIS);
+        if (minute <= lastMinute) {
+            return false;
+        }
+        PlanetStatus recorded = worse(pendingWorstStatus, status);
+        try {
+            if (active == null || !active.hasRoomForSample()) {
+                rollover(minute);
+            }
+            active.append(minute, progress, recorded.getSeverity(), activeDisasters, pendingContribution);
+            if (active.getBlockCount() >= BLOCK_SAMPLES) {
+                active.closeBlock();
+            }
+        } catch (IOException e) {
+            LOGGER.error("写入历史数据失败: {}", directory, e);
+            return false;
+        }
+        lastMinute = minute;
+        pendingContribution = 0;
+        pendingWorstStatus = null;
+        return true;
+    }
+    
+    /**
+     * 当前分段写满时切换到新的分段
+     */
+    private void rollover(long firstMinute) throws IOException {
+        if (active != null) {
+            active.close();
+            sealedSegments.add(active.getPath());
+            sealedFirstMinutes.add(active.getFirstMinute());
+            active = null;
+        }
+        active = HistorySegment.create(directory, firstMinute, segmentSize);
+        LOGGER.debug("创建历史数据分段: {}", active.getPath().getFileName());
+    }
+    
+    /**
+     * 查询时间范围内的样本（包含两端）
+     */
+    public List<Sample> query(long fromMillis, long toMillis) {
+        List<Sample> samples = new ArrayList<>();
+        read(Math.floorDiv(fromMillis, MINUTE_MILLIS), Math.floorDiv(toMillis, MINUTE_MILLIS),
+            (minute, progress, status, disasters, contribution) ->
+                samples.add(new Sample(minute * MINUTE_MILLIS, progress, statusOf(status), disasters, contribution)));
+        return samples;
+    }
+    
+    /**
+     * 按固定长度的时间段汇总时间范围内的样本，没有样本的时间段不输出
+     * @param bucketMillis 时间段长度，按分钟取整，至少一分钟
+     */
+    public List<Rollup> rollup(long fromMillis, long toMillis, long bucketMillis) {
+        long bucketMinutes = Math.max(1, bucketMillis / MINUTE_MILLIS);
+        List<Rollup> rollups = new ArrayList<>();
+        RollupBuilder builder = new RollupBuilder();
+        read(Math.floorDiv(fromMillis, MINUTE_MILLIS), Math.floorDiv(toMillis, MINUTE_MILLIS),
+            (minute, progress, status, disasters, contribution) -> {
+                long bucket = Math.floorDiv(minute, bucketMinutes) * bucketMinutes;
+                if (builder.samples > 0 && bucket != builder.startMinute) {
+                    rollups.add(builder.build());
+                }
+                if (builder.samples == 0) {
+                    builder.start(bucket);
+                }
+                builder.add(progress, status, disasters, contribution);
+            });
+        if (builder.samples > 0) {
+            rollups.add(builder.build());
+        }
+        return rollups;
+    }
+    
+    /**
+     * 获取最后一个样本的时间，没有样本时返回 Long.MIN_VALUE
+     */
+    public long getLastSampleMillis() {
+        return lastMinute == Long.MIN_VALUE ? Long.MIN_VALUE : lastMinute * MINUTE_MILLIS;
+    }
+    
+    /**
+     * 按时间顺序解码与范围重叠的分段
+     */
+    private void read(long fromMinute, long toMinute, HistorySegment.SampleConsumer consumer) {
+        for (int i = 0; i < sealedSegments.size(); i++) {
+            // 下一个分段从范围开始之前就已开始，这个分段中没有范围内的样本
+            if (nextFirstMinute(i) <= fromMinute) {
+                continue;
+            }
+            if (sealedFirstMinutes.get(i) > toMinute) {
+                return;
+            }
+            Path path = sealedSegments.get(i);
+            try {
+                ByteBuffer buffer = mappedSegments.get(path);
+                if (buffer == null) {
+                    buffer = HistorySegment.mapReadOnly(path);
+                    mappedSegments.put(path, buffer);
+                }
+                HistorySegment.read(buffer.duplicate(), fromMinute, toMinute, consumer);
+            } catch (IOException e) {
+                LOGGER.warn("读取历史数据分段失败，跳过: {}", path, e);
+            }
+        }
+        if (active != null && active.getFirstMinute() <= toMinute) {
+            HistorySegment.read(active.getBuffer(), fromMinute, toMinute, consumer);
+        }
+    }
+    
+    private long nextFirstMinute(int sealedIndex) {
+        if (sealedIndex + 1 < sealedFirstMinutes.size()) {
+            return sealedFirstMinutes.get(sealedIndex + 1);
+        }
+        return active != null ? active.getFirstMinute() : Long.MAX_VALUE;
+    }
+    
+    /**
+     * 把已写入的样本刷到磁盘
+     */
+    public void flush() {
+        if (active != null) {
+            active.force();
+        }
+    }
+    
+    @Override
+    public void close() {
+        if (active != null) {
+            try {
+                active.close();
+            } catch (IOException e) {
+                LOGGER.warn("关闭历史数据分段时出错", e);
+            }
+            active = null;
+        }
+        mappedSegments.clear();
+        LOGGER.info("历史数据已关闭: {}", directory);
+    }
+    
+    private static PlanetStatus worse(PlanetStatus a, PlanetStatus b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null || a.getSeverity() >= b.getSeverity() ? a : b;
+    }
+    
+    private static PlanetStatus statusOf(int severity) {
+        PlanetStatus[] values = PlanetStatus.values();
+        return values[Math.max(0, Math.min(values.length - 1, severity))];
+    }
+    
+    /**
+     * 一分钟的样本
+     */
+    public static final class Sample {
+        public final long timeMillis;
+        public final int progress;
+        public final PlanetStatus status;
+        public final int activeDisasters;
+        /** 这一分钟内贡献的进度 */
+        public final int contribution;
+        
+        Sample(long timeMillis, int progress, PlanetStatus status, int activeDisasters, int contribution) {
+            this.timeMillis = timeMillis;
+            this.progress = progress;
+            this.status = status;
+            this.activeDisasters = activeDisasters;
+            this.contribution = contribution;
+        }
+    }
+    
+    /**
+     * 一个时间段内样本的汇总
+     */
+    public static final class Rollup {
+        public final long startMillis;
+        public final int samples;
+        public final int minProgress;
+        public final int maxProgress;
+        public final int lastProgress;
+        public final PlanetStatus worstStatus;
+        public final int maxDisasters;
+        public final double averageDisasters;
+        public final long totalContribution;
+        
+        Rollup(long startMillis, int samples, int minProgress, int maxProgress, int lastProgress,
+               PlanetStatus worstStatus, int maxDisasters, double averageDisasters, long totalContribution) {
+            this.startMillis = startMillis;
+            this.samples = samples;
+            this.minProgress = minProgress;
+            this.maxProgress = maxProgress;
+            this.lastProgress = lastProgress;
+            this.worstStatus = worstStatus;
+            this.maxDisasters = maxDisasters;
+            this.averageDisasters = averageDisasters;
+            this.totalContribution = totalContribution;
+        }
+        
+        /**
+         * 每分钟的平均贡献
+         */
+        public double getContributionRate() {
+            return samples == 0 ? 0 : (double) totalContribution / samples;
+        }
+    }
+    
+    /**
+     * 汇总时累计一个时间段的样本
+     */
+    private static final class RollupBuilder {
+        long startMinute;
+        int samples;
+        int minProgress;
+        int maxProgress;
+        int lastProgress;
+        int worstStatus;
+        int maxDisasters;
+        long disasterSum;
+        long contribution;
+        
+        void start(long startMinute) {
+            this.startMinute = startMinute;
+            minProgress = Integer.MAX_VALUE;
+            maxProgress = Integer.MIN_VALUE;
+            worstStatus = 0;
+            maxDisasters = 0;
+            disasterSum = 0;
+            contribution = 0;
+        }
+        
+        void add(int progress, int status, int disasters, int contributed) {
+            samples++;
+            minProgress = Math.min(minProgress, progress);
+            maxProgress = Math.max(maxProgress, progress);
+            lastProgress = progress;
+            worstStatus = Math.max(worstStatus, status);
+            maxDisasters = Math.max(maxDisasters, disasters);
+            disasterSum += disasters;
+            contribution += contributed;
+        }
+        
+        Rollup build() {
+            Rollup rollup = new Rollup(startMinute * MINUTE_MILLIS, samples, minProgress, maxProgress, lastProgress,
+                statusOf(worstStatus), maxDisasters, (double) disasterSum / samples, contribution);
+            samples = 0;
+            return rollup;
+        }
+    }
+}
@@ -0,0 +1,776 @@
+package com.planetaryexodus.persistence;
+
+import com.planetaryexodus.civilization.CivilizationManager;
+import com.planetaryexodus.core.EventBus;
+import com.planetaryexodus.core.ModClock;
+import com.planetaryexodus.core.ModExecutors;
+import com.planetaryexodus.disaster.DisasterManager;
+import com.planetaryexodus.disaster.DisasterType;
+import com.planetaryexodus.planet.PlanetStatus;
+import com.planetaryexodus.planet.PlanetStatusManager;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtHelper;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.nbt.NbtString;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.world.PersistentState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * 模组的世界存档数据
+ * 把文明进度、行星状态和灾难状态以压缩NBT的形式保存在世界存档中，随世界的自动保存和关闭保存一起写入
+ *
+ * 每次保存是一个增量检查点：各管理器用修改计数标记哪些部分变化过，只把变化的部分
+ * （以及有修改的玩家贡献）写入 planetaryexodus/checkpoints 下新的增量文件，
+ * 检查点的开销只取决于变化量，与存档的总大小无关。增量文件积累到一定数量后在I/O线程上
+ * 合并到主世界的 data/planetaryexodus.dat（基础快照）中，再删除已合并的增量文件。
+ * 加载时先读基础快照，再按顺序应用之后的增量文件。每个增量文件记录它前一个检查点的编号，
+ * 只有接得上已应用的检查点（或本身包含全部状态）的增量文件才会被应用，中间的检查点写入失败时不会跳过它
+ *
+ * 保存时只在服务器线程上向各管理器取不可变的状态副本，编码和写文件在I/O线程上进行，
+ * 先写临时文件再原子替换，写到一半崩溃也不会损坏之前的存档。
+ * 每个检查点同时记录当时事件日志的最后序号，加载后只需重放之后的记录
+ *
+ * 玩家贡献使用磁盘存储时不写入检查点：保存时把有修改的玩家写回存储。
+ * 检查点另外记录存储已全部落盘的日志序号，存储写入失败时这个序号停留在上一次成功的位置，
+ * 加载后从两个序号中较早的一个开始重放，存储中缺少的贡献由日志补回（每个玩家文件的序号避免重复计入）
+ */
+public class ModPersistentState extends PersistentState {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger("PlanetaryExodus/Persistence");
+    
+    /** 存档文件名（不含扩展名） */
+    public static final String ID = "planetaryexodus";
+    
+    // 2：增量检查点，增量文件中只有变化的部分
+    private static final int FORMAT_VERSION = 2;
+    
+    private static final String DELTA_PREFIX = "delta-";
+    private static final String DELTA_SUFFIX = ".dat";
+    
+    private final CivilizationManager civilizationManager;
+    private final PlanetStatusManager planetStatusManager;
+    private final DisasterManager disasterManager;
+    // 快照时事件日志的最后序号，未启用日志时返回负数，沿用加载时的序号
+    private final LongSupplier journalSequence;
+    // 增量文件目录
+    private final Path checkpointDirectory;
+    // 积累多少个增量文件后合并到基础快照
+    private final int compactAfterDeltas;
+    
+    // 加载的快照对应的日志序号，新建时为0
+    private long loadedJournalSequence;
+    // 加载的快照保存时的模组时钟时间，新建时为0
+    private long loadedSavedAt;
+    // 加载的快照中玩家贡献已全部落盘的日志序号，不晚于 loadedJournalSequence
+    private long loadedPlayerStoreSequence;
+    // 玩家贡献已全部落盘的日志序号，在写入链上更新
+    private volatile long durablePlayerSequence;
+    // 快照写入成功后在I/O线程上收到快照包含的日志序号
+    private volatile LongConsumer checkpointListener;
+    // 写入链，保证多次保存按顺序写入；只在服务器线程上访问
+    private CompletableFuture<Void> pendingWrite = CompletableFuture.completedFuture(null);
+    
+    // 下一个检查点的编号，只在服务器线程上访问
+    private long nextCheckpoint = 1;
+    // 上一个采集的检查点编号（加载时为最后应用的检查点），写入增量文件用于检查连续性；只在服务器线程上访问
+    private long capturedCheckpoint;
+    // 上一个检查点时各管理器的修改计数，-1表示下一个检查点需要写入该部分
+    private int savedCivilizationModCount = -1;
+    private int savedPlanetModCount = -1;
+    private int savedDisasterModCount = -1;
+    // 增量文件写入失败后，下一个检查点写入全部状态
+    private volatile boolean fullCheckpointRequired;
+    // 尚未合并的增量文件数，只在写入链上访问
+    private int deltaCount;
+    // 有增量文件写入失败、还没有写入完整的检查点，此时不能截断日志；只在写入链上访问
+    private boolean checkpointGap;
+    
+    private ModPersistentState(CivilizationManager civilizationManager, PlanetStatusManager planetStatusManager,
+                               DisasterManager disasterManager, LongSupplier journalSequence,
+                               Path checkpointDirectory, int compactAfterDeltas) {
+        this.civilizationManager = civilizationManager;
+        this.planetStatusManager = planetStatusManager;
+        this.disasterManager = disasterManager;
+        this.journalSequence = journalSequence;
+        this.checkpointDirectory = checkpointDirectory;
+        this.compactAfterDeltas = Math.max(1, compactAfterDeltas);
+    }
+    
+    /**
+     * 把模组数据挂到主世界上，存档中已有数据时立即恢复到各管理器
+     * 在服务器线程上、世界加载之后调用
+     * @param checkpointDirectory 增量文件目录
+     * @param compactAfterDeltas 积累多少个增量文件后合并到基础快照
+     */
+    public static ModPersistentState attach(ServerWorld overworld, CivilizationManager civilizationManager,
+                                            PlanetStatusManager planetStatusManager, DisasterManager disasterManager,
+                                            LongSupplier journalSequence, Path checkpointDirectory,
+                                            int compactAfterDeltas) {
+        try {
+            Files.createDirectories(checkpointDirectory);
+        } catch (IOException e) {
+            LOGGER.error("创建检查点目录失败: {}", checkpointDirectory, e);
+        }
+        return overworld.getPersistentStateManager().getOrCreate(
+            nbt -> {
+                ModPersistentState state = new ModPersistentState(civilizationManager, planetStatusManager,
+                    disasterManager, journalSequence, checkpointDirectory, compactAfterDeltas);
+                state.restore(nbt);
+                return state;
+            },
+            () -> {
+                // 还没有基础快照，但可能已有增量文件
+                ModPersistentState state = new ModPersistentState(civilizationManager, planetStatusManager,
+                    disasterManager, journalSequence, checkpointDirectory, compactAfterDeltas);
+                state.restore(new NbtCompound());
+                return state;
+            },
+            ID);
+    }
+    
+    /**
+     * 获取加载的快照对应的事件日志序号，新的日志记录从这之后编号
+     */
+    public long getLoadedJournalSequence() {
+        return loadedJournalSequence;
+    }
+    
+    /**
+     * 获取加载的快照保存时的模组时钟时间，没有存档时返回0
+     * 按tick推进的时钟从这里继续，重启后不会回到系统时间
+     */
+    public long getLoadedClockMillis() {
+        return loadedSavedAt;
+    }
+    
+    /**
+     * 获取重放日志的起始序号（不含）：快照序号和玩家贡献落盘序号中较早的一个
+     * 两者之间的进度、状态和灾难记录重放后结果不变，玩家贡献只补上存储中缺少的部分
+     */
+    public long getReplayStartSequence() {
+        return Math.min(loadedJournalSequence, loadedPlayerStoreSequence);
+    }
+    
+    /**
+     * 设置检查点写入成功后的回调，参数为检查点包含的最后一条日志记录的序号
+     * 回调在执行写入的线程上调用
+     */
+    public void setCheckpointListener(LongConsumer listener) {
+        this.checkpointListener = listener;
+    }
+    
+    /**
+     * 下一个检查点写入全部状态，而不只是变化的部分
+     * 事件日志无法写入时调用，使检查点覆盖日志中缺失的记录
+     */
+    public void requestFullCheckpoint() {
+        fullCheckpointRequired = true;
+    }
+    
+    /**
+     * 每次世界保存都交给 save 判断，没有变化时不写入
+     */
+    @Override
+    public boolean isDirty() {
+        return true;
+    }
+    
+    /**
+     * 编码全部状态，不影响增量检查点的修改跟踪，也不写玩家贡献存储
+     */
+    @Override
+    public NbtCompound writeNbt(NbtCompound nbt) {
+        encode(captureAll(), nbt);
+        nbt.putLong("player_store_sequence", durablePlayerSequence);
+        return nbt;
+    }
+    
+    /**
+     * 世界保存时调用：在服务器线程上采集变化的部分，交给I/O线程编码并写入增量文件
+     * @param file 基础快照文件，合并增量文件时写入
+     */
+    @Override
+    public void save(File file) {
+        Snapshot snapshot = capture();
+        if (snapshot == null) {
+            return;
+        }
+        CompletableFuture<Boolean> stored = writePlayerStore(snapshot);
+        long checkpoint = nextCheckpoint++;
+        long previous = capturedCheckpoint;
+        capturedCheckpoint = checkpoint;
+        if (!ModExecutors.isRunning()) {
+            writeCheckpoint(snapshot, checkpoint, previous, file, stored.join());
+            return;
+        }
+        pendingWrite = pendingWrite.thenCompose(ignored -> stored)
+            .thenAcceptAsync(storedAll -> writeCheckpoint(snapshot, checkpoint, previous, file, storedAll),
+                ModExecutors.io());
+    }
+    
+    /**
+     * 把快照中有修改的玩家贡献写回磁盘存储，没有存储时它们随快照一起写入
+     */
+    private CompletableFuture<Boolean> writePlayerStore(Snapshot snapshot) {
+        PlayerContributionStore store = civilizationManager.getPlayerStore();
+        if (store == null || snapshot.civilization == null) {
+            return CompletableFuture.completedFuture(true);
+        }
+        return store.write(snapshot.civilization.contributions, snapshot.journalSequence);
+    }
+    
+    /**
+     * 等待尚未完成的写入（应在后台执行服务关闭之前调用）
+     */
+    public void awaitPendingWrites() {
+        try {
+            pendingWrite.get(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOGGER.error("等待模组数据写入完成时出错", e);
+        }
+    }
+    
+    /**
+     * 采集全部状态，不改变修改计数和玩家贡献的修改标记
+     */
+    private Snapshot captureAll() {
+        flushTickBatch();
+        boolean inlineContributions = civilizationManager.getPlayerStore() == null;
+        long sequence = journalSequence.getAsLong();
+        return new Snapshot(sequence >= 0 ? sequence : loadedJournalSequence, ModClock.currentTimeMillis(),
+            civilizationManager.copySavedState(inlineContributions), planetStatusManager.createSavedState(),
+            disasterManager.createSavedState(), inlineContributions, true);
+    }
+    
+    /**
+     * 采集上一个检查点之后变化过的部分，没有变化时返回null
+     */
+    private Snapshot capture() {
+        flushTickBatch();
+        boolean full = fullCheckpointRequired;
+        fullCheckpointRequired = false;
+        int civilizationModCount = civilizationManager.getModCount();
+        int planetModCount = planetStatusManager.getModCount();
+        int disasterModCount = disasterManager.getModCount();
+        boolean civilizationChanged = full || civilizationModCount != savedCivilizationModCount;
+        boolean planetChanged = full || planetModCount != savedPlanetModCount;
+        boolean disasterChanged = full || disasterModCount != savedDisasterModCount;
+        if (!civilizationChanged && !planetChanged && !disasterChanged) {
+            return null;
+        }
+        savedCivilizationModCount = civilizationModCount;
+        savedPlanetModCount = planetModCount;
+        savedDisasterModCount = disasterModCount;
+        
+        boolean inlineContributions = civilizationManager.getPlayerStore() == null;
+        long sequence = journalSequence.getAsLong();
+        return new Snapshot(sequence >= 0 ? sequence : loadedJournalSequence, ModClock.currentTimeMillis(),
+            civilizationChanged ? civilizationManager.createSavedState(full && inlineContributions) : null,
+            planetChanged ? planetStatusManager.createSavedState() : null,
+            disasterChanged ? disasterManager.createSavedState() : null,
+            inlineContributions, full);
+    }
+    
+    /**
+     * 把检查点写入新的增量文件，增量文件够多时合并到基础快照，在I/O线程上调用
+     * @param previous 前一个采集的检查点编号，它写入失败时本检查点（只含变化的部分）在加载时不会被应用
+     * @param storedPlayers 玩家贡献已全部写入磁盘存储，否则落盘序号不前进，保留重放需要的日志
+     */
+    private void writeCheckpoint(Snapshot snapshot, long checkpoint, long previous, File baseFile,
+                                 boolean storedPlayers) {
+        long start = System.nanoTime();
+        if (storedPlayers) {
+            durablePlayerSequence = snapshot.journalSequence;
+        }
+        long playerSequence = durablePlayerSequence;
+        NbtCompound data = encode(snapshot, new NbtCompound());
+        data.putLong("player_store_sequence", playerSequence);
+        if (storedPlayers && !snapshot.includeContributions) {
+            // 旧版本快照中的玩家贡献已迁移到存储中，合并时从基础快照中删除
+            data.putBoolean("contributions_in_store", true);
+        }
+        data.putLong("checkpoint", checkpoint);
+        data.putLong("previous_checkpoint", previous);
+        data.putBoolean("complete", snapshot.complete);
+        Path target = checkpointDirectory.resolve(deltaFileName(checkpoint));
+        try {
+            writeAtomically(data, target);
+            LOGGER.debug("检查点 {} 已保存: {}，日志序号 {}，用时 {}ms", checkpoint, target.getFileName(),
+                snapshot.journalSequence, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            LOGGER.error("保存检查点失败，下一个检查点写入全部状态: {}", target, e);
+            fullCheckpointRequired = true;
+            checkpointGap = true;
+            return;
+        }
+        deltaCount++;
+        if (snapshot.complete) {
+            checkpointGap = false;
+        }
+        LongConsumer listener = checkpointListener;
+        if (listener != null && !checkpointGap) {
+            // 玩家贡献落盘序号之后的记录重放时还需要
+            listener.accept(Math.min(snapshot.journalSequence, playerSequence));
+        }
+        if (deltaCount >= compactAfterDeltas) {
+            compact(baseFile.toPath());
+        }
+    }
+    
+    /**
+     * 把增量文件按顺序合并到基础快照，写入成功后删除已合并的增量文件，在I/O线程上调用
+     * 只处理文件中的NBT，不访问各管理器
+     */
+    private void compact(Path baseFile) {
+        long start = System.nanoTime();
+        try {
+            NbtCompound merged = Files.isRegularFile(baseFile) ? readData(baseFile) : new NbtCompound();
+            long mergedCheckpoint = merged.getLong("checkpoint");
+            boolean broken = false;
+            for (Path delta : listDeltas()) {
+                long checkpoint = parseCheckpoint(delta);
+                if (checkpoint <= mergedCheckpoint) {
+                    continue;
+                }
+                NbtCompound data = readData(delta);
+                if (!isLinked(data, mergedCheckpoint, broken)) {
+                    // 接不上已合并的检查点，不合并；之后包含全部状态的检查点会把它覆盖
+                    broken = true;
+                    continue;
+                }
+                applyDelta(merged, data);
+                mergedCheckpoint = checkpoint;
+                broken = false;
+            }
+            merged.putLong("checkpoint", mergedCheckpoint);
+            writeAtomically(merged, baseFile);
+            int deleted = deleteDeltasThrough(mergedCheckpoint);
+            deltaCount = 0;
+            LOGGER.debug("已把 {} 个增量文件合并到 {}，用时 {}ms", deleted, baseFile.getFileName(),
+                (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("合并检查点失败，保留增量文件: {}", checkpointDirectory, e);
+        }
+    }
+    
+    /**
+     * 从存档恢复各管理器的状态，在服务器线程上调用
+     * 先按顺序应用基础快照之后的增量文件，删除已经合并过的增量文件。
+     * 某个增量文件无法读取、或接不上最后应用的检查点（中间的检查点写入失败）时，把它改名隔离，
+     * 之后只含变化部分的增量文件同样接不上而被隔离（不能跳过中间的检查点应用更晚的），
+     * 直到出现包含全部状态的检查点；从最后连续的检查点和事件日志恢复，下一个检查点写入全部状态
+     */
+    private void restore(NbtCompound base) {
+        NbtCompound nbt = base.copy();
+        long baseCheckpoint = nbt.getLong("checkpoint");
+        long highestCheckpoint = baseCheckpoint;
+        int applied = 0;
+        List<Path> deltas;
+        try {
+            deltas = listDeltas();
+        } catch (IOException e) {
+            LOGGER.error("列出检查点失败，从基础快照和事件日志恢复: {}", checkpointDirectory, e);
+            deltas = new ArrayList<>();
+            fullCheckpointRequired = true;
+        }
+        long chainEnd = baseCheckpoint;
+        boolean broken = false;
+        for (Path delta : deltas) {
+            long deltaCheckpoint = parseCheckpointOrZero(delta);
+            highestCheckpoint = Math.max(highestCheckpoint, deltaCheckpoint);
+            if (deltaCheckpoint > 0 && deltaCheckpoint <= baseCheckpoint) {
+                // 已合并到基础快照中
+                deleteQuietly(delta);
+                continue;
+            }
+            try {
+                if (deltaCheckpoint <= 0) {
+                    throw new IOException("invalid checkpoint file name: " + delta.getFileName());
+                }
+                NbtCompound data = readData(delta);
+                if (isLinked(data, chainEnd, broken)) {
+                    applyDelta(nbt, data);
+                    applied++;
+                    chainEnd = deltaCheckpoint;
+                    broken = false;
+                    continue;
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("读取检查点失败，隔离它，从最后连续的检查点和事件日志恢复: {}", delta, e);
+                quarantine(delta, ".corrupt");
+                broken = true;
+                fullCheckpointRequired = true;
+                continue;
+            }
+            LOGGER.error("检查点 {} 接不上最后应用的检查点 {}（中间的检查点缺失），隔离它，从事件日志恢复",
+                deltaCheckpoint, chainEnd);
+            quarantine(delta, ".skipped");
+            broken = true;
+            fullCheckpointRequired = true;
+        }
+        capturedCheckpoint = chainEnd;
+        // 新的检查点编号排在所有已有文件之后，不会与隔离或残留的文件重复
+        nextCheckpoint = highestCheckpoint + 1;
+        deltaCount = applied;
+        if (!nbt.contains("format")) {
+            // 新世界，没有任何存档
+            return;
+        }
+        
+        int format = nbt.getInt("format");
+        if (format > FORMAT_VERSION) {
+            LOGGER.warn("模组数据格式 {} 比当前版本支持的 {} 新，尝试按当前格式读取", format, FORMAT_VERSION);
+        }
+        loadedJournalSequence = nbt.getLong("journal_sequence");
+        loadedSavedAt = nbt.getLong("saved_at");
+        // 旧版本的存档没有单独的落盘序号，玩家贡献都在快照中
+        loadedPlayerStoreSequence = nbt.contains("player_store_sequence")
+            ? Math.min(loadedJournalSequence, nbt.getLong("player_store_sequence")) : loadedJournalSequence;
+        durablePlayerSequence = loadedPlayerStoreSequence;
+        civilizationManager.restore(decodeCivilization(nbt.getCompound(CivilizationManager.DATA_ID.toString())));
+        planetStatusManager.restore(decodePlanet(nbt.getCompound(PlanetStatusManager.DATA_ID.toString())));
+        disasterManager.restore(decodeDisasters(nbt.getCompound(DisasterManager.DATA_ID.toString())));
+        LOGGER.info("已从存档恢复模组数据（保存于 {}，日志序号 {}，应用 {} 个增量文件）",
+            new java.util.Date(loadedSavedAt), loadedJournalSequence, applied);
+    }
+    
+    // ========== 增量文件 ==========
+    
+    /**
+     * 把增量文件中的部分合并到目标中：各部分整体替换，玩家贡献按玩家合并，已迁移到存储时删除
+     */
+    private static void applyDelta(NbtCompound target, NbtCompound delta) {
+        String civilizationKey = CivilizationManager.DATA_ID.toString();
+        if (delta.contains(civilizationKey)) {
+            NbtCompound civilization = delta.getCompound(civilizationKey).copy();
+            Map<UUID, NbtCompound> contributions = new LinkedHashMap<>();
+            collectContributions(target.getCompound(civilizationKey), contributions);
+            collectContributions(civilization, contributions);
+            NbtList merged = new NbtList();
+            merged.addAll(contributions.values());
+            civilization.put("contributions", merged);
+            target.put(civilizationKey, civilization);
+        }
+        if (delta.getBoolean("contributions_in_store") && target.contains(civilizationKey)) {
+            target.getCompound(civilizationKey).remove("contributions");
+        }
+        for (String key : new String[] {PlanetStatusManager.DATA_ID.toString(), DisasterManager.DATA_ID.toString()}) {
+            if (delta.contains(key)) {
+                target.put(key, delta.getCompound(key));
+            }
+        }
+        target.putInt("format", delta.getInt("format"));
+        target.putLong("journal_sequence", delta.getLong("journal_sequence"));
+        if (delta.contains("player_store_sequence")) {
+            target.putLong("player_store_sequence", delta.getLong("player_store_sequence"));
+        }
+        target.putLong("saved_at", delta.getLong("saved_at"));
+    }
+    
+    /**
+     * 判断增量文件能否接在已应用的检查点之后：包含全部状态，或记录的前一个检查点就是已应用的最后一个
+     * 旧版本的增量文件没有记录前一个检查点，在没有出现断点时按顺序应用
+     * @param chainEnd 最后应用的检查点编号
+     * @param broken 之前已有增量文件被跳过
+     */
+    private static boolean isLinked(NbtCompound delta, long chainEnd, boolean broken) {
+        if (delta.getBoolean("complete")) {
+            return true;
+        }
+        if (!delta.contains("previous_checkpoint")) {
+            return !broken;
+        }
+        return delta.getLong("previous_checkpoint") == chainEnd;
+    }
+    
+    private static void collectContributions(NbtCompound civilization, Map<UUID, NbtCompound> contributions) {
+        NbtList list = civilization.getList("contributions", NbtElement.COMPOUND_TYPE);
+        for (int i = 0; i < list.size(); i++) {
+            NbtCompound entry = list.getCompound(i);
+            if (entry.containsUuid("id")) {
+                contributions.put(entry.getUuid("id"), entry);
+            }
+        }
+    }
+    
+    private List<Path> listDeltas() throws IOException {
+        List<Path> deltas = new ArrayList<>();
+        if (!Files.isDirectory(checkpointDirectory)) {
+            return deltas;
+        }
+        try (Stream<Path> stream = Files.list(checkpointDirectory)) {
+            stream.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(DELTA_PREFIX) && name.endsWith(DELTA_SUFFIX);
+            }).sorted().forEach(deltas::add);
+        }
+        return deltas;
+    }
+    
+    /**
+     * 删除编号不超过 checkpoint 的增量文件（已合并到基础快照中）
+     */
+    private int deleteDeltasThrough(long checkpoint) throws IOException {
+        int deleted = 0;
+        for (Path delta : listDeltas()) {
+            if (parseCheckpoint(delta) <= checkpoint) {
+                Files.deleteIfExists(delta);
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+    
+    /**
+     * 自动保存发生在tick中间，先投递本tick已排队的事件，使日志序号覆盖快照中已包含的变化
+     */
+    private static void flushTickBatch() {
+        EventBus eventBus = EventBus.getInstance();
+        if (eventBus.isInTickBatch()) {
+            eventBus.flushTickBatch();
+            eventBus.beginTickBatch();
+        }
+    }
+    
+    /**
+     * 改名保留无法应用的增量文件，之后不再被读取
+     */
+    private static void quarantine(Path delta, String suffix) {
+        try {
+            Files.move(delta, delta.resolveSibling(delta.getFileName() + suffix), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.warn("无法改名增量文件，删除: {}", delta, e);
+            deleteQuietly(delta);
+        }
+    }
+    
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOGGER.warn("删除检查点文件失败: {}", path, e);
+        }
+    }
+    
+    private static long parseCheckpointOrZero(Path path) {
+        try {
+            return parseCheckpoint(path);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+    
+    private static String deltaFileName(long checkpoint) {
+        return String.format("%s%016d%s", DELTA_PREFIX, checkpoint, DELTA_SUFFIX);
+    }
+    
+    private static long parseCheckpoint(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(DELTA_PREFIX.length(), name.length() - DELTA_SUFFIX.length()));
+        } catch (RuntimeException e) {
+            throw new IOException("invalid checkpoint file name: " + name, e);
+        }
+    }
+    
+    private static NbtCompound readData(Path path) throws IOException {
+        return NbtIo.readCompressed(path.toFile()).getCompound("data");
+    }
+    
+    /**
+     * 先写临时文件再原子替换
+     */
+    private static void writeAtomically(NbtCompound data, Path target) throws IOException {
+        NbtCompound root = new NbtCompound();
+        root.put("data", data);
+        NbtHelper.putDataVersion(root);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        NbtIo.writeCompressed(root, temp.toFile());
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    // ========== 编码 ==========
+    
+    /**
+     * 编码快照，没有变化的部分不写入
+     */
+    private static NbtCompound encode(Snapshot snapshot, NbtCompound nbt) {
+        nbt.putInt("format", FORMAT_VERSION);
+        nbt.putLong("journal_sequence", snapshot.journalSequence);
+        nbt.putLong("saved_at", snapshot.savedAt);
+        if (snapshot.civilization != null) {
+            nbt.put(CivilizationManager.DATA_ID.toString(),
+                encodeCivilization(snapshot.civilization, snapshot.includeContributions));
+        }
+        if (snapshot.planet != null) {
+            nbt.put(PlanetStatusManager.DATA_ID.toString(), encodePlanet(snapshot.planet));
+        }
+        if (snapshot.disasters != null) {
+            nbt.put(DisasterManager.DATA_ID.toString(), encodeDisasters(snapshot.disasters));
+        }
+        return nbt;
+    }
+    
+    private static NbtCompound encodeCivilization(CivilizationManager.SavedState state, boolean includeContributions) {
+        NbtCompound nbt = new NbtCompound();
+        nbt.putInt("progress", state.progress);
+        nbt.putLong("last_update", state.lastUpdateTime);
+        
+        NbtList milestones = new NbtList();
+        for (String milestone : state.achievedMilestones) {
+            milestones.add(NbtString.of(milestone));
+        }
+        nbt.put("milestones", milestones);
+        
+        // 使用磁盘存储时贡献保存在各玩家的文件中
+        NbtList contributions = new NbtList();
+        if (includeContributions) {
+            for (CivilizationManager.SavedContribution contribution : state.contributions) {
+                contributions.add(PlayerContributionStore.encodeContribution(contribution));
+            }
+        }
+        nbt.put("contributions", contributions);
+        return nbt;
+    }
+    
+    private static NbtCompound encodePlanet(PlanetStatusManager.SavedState state) {
+        NbtCompound nbt = new NbtCompound();
+        nbt.putString("current", state.currentStatus.asString());
+        nbt.putString("previous", state.previousStatus.asString());
+        nbt.putLong("changed_at", state.statusChangeTime);
+        return nbt;
+    }
+    
+    private static NbtCompound encodeDisasters(DisasterManager.SavedState state) {
+        NbtCompound nbt = new NbtCompound();
+        NbtCompound lastTimes = new NbtCompound();
+        for (Map.Entry<DisasterType, Long> entry : state.lastDisasterTimes.entrySet()) {
+            lastTimes.putLong(entry.getKey().asString(), entry.getValue());
+        }
+        nbt.put("last_triggered", lastTimes);
+        
+        NbtList active = new NbtList();
+        for (DisasterManager.SavedDisaster disaster : state.activeDisasters) {
+            NbtCompound entry = new NbtCompound();
+            entry.putString("type", disaster.type.asString());
+            entry.putLong("start", disaster.startTime);
+            entry.putLong("end", disaster.endTime);
+            active.add(entry);
+        }
+        nbt.put("active", active);
+        return nbt;
+    }
+    
+    // ========== 解码 ==========
+    
+    private static CivilizationManager.SavedState decodeCivilization(NbtCompound nbt) {
+        List<String> milestones = new ArrayList<>();
+        NbtList milestoneList = nbt.getList("milestones", NbtElement.STRING_TYPE);
+        for (int i = 0; i < milestoneList.size(); i++) {
+            milestones.add(milestoneList.getString(i));
+        }
+        
+        List<CivilizationManager.SavedContribution> contributions = new ArrayList<>();
+        NbtList contributionList = nbt.getList("contributions", NbtElement.COMPOUND_TYPE);
+        for (int i = 0; i < contributionList.size(); i++) {
+            NbtCompound entry = contributionList.getCompound(i);
+            if (!entry.containsUuid("id")) {
+                continue;
+            }
+            contributions.add(PlayerContributionStore.decodeContribution(entry, entry.getUuid("id")));
+        }
+        return new CivilizationManager.SavedState(nbt.getInt("progress"), nbt.getLong("last_update"),
+            milestones, contributions);
+    }
+    
+    private static PlanetStatusManager.SavedState decodePlanet(NbtCompound nbt) {
+        long changedAt = nbt.contains("changed_at") ? nbt.getLong("changed_at") : ModClock.currentTimeMillis();
+        return new PlanetStatusManager.SavedState(PlanetStatus.fromId(nbt.getString("current")),
+            PlanetStatus.fromId(nbt.getString("previous")), changedAt);
+    }
+    
+    private static DisasterManager.SavedState decodeDisasters(NbtCompound nbt) {
+        Map<DisasterType, Long> lastTimes = new HashMap<>();
+        NbtCompound lastTimesNbt = nbt.getCompound("last_triggered");
+        for (String id : lastTimesNbt.getKeys()) {
+            DisasterType type = parseDisasterType(id);
+            if (type != null) {
+                lastTimes.put(type, lastTimesNbt.getLong(id));
+            }
+        }
+        
+        List<DisasterManager.SavedDisaster> active = new ArrayList<>();
+        NbtList activeList = nbt.getList("active", NbtElement.COMPOUND_TYPE);
+        for (int i = 0; i < activeList.size(); i++) {
+            NbtCompound entry = activeList.getCompound(i);
+            DisasterType type = parseDisasterType(entry.getString("type"));
+            if (type != null) {
+                active.add(new DisasterManager.SavedDisaster(type, entry.getLong("start"), entry.getLong("end")));
+            }
+        }
+        return new DisasterManager.SavedState(lastTimes, active);
+    }
+    
+    /**
+     * 解析灾难类型，未知的ID（来自其他版本）返回null，不按默认类型处理
+     */
+    private static DisasterType parseDisasterType(String id) {
+        DisasterType type = DisasterType.fromId(id);
+        return type.asString().equals(id) ? type : null;
+    }
+    
+    /**
+     * 某一时刻各管理器状态的不可变快照，没有变化的部分为null
+     */
+    private static final class Snapshot {
+        final long journalSequence;
+        final long savedAt;
+        final CivilizationManager.SavedState civilization;
+        final PlanetStatusManager.SavedState planet;
+        final DisasterManager.SavedState disasters;
+        // 没有玩家贡献存储时贡献写入快照
+        final boolean includeContributions;
+        // 包含全部状态，而不只是变化的部分
+        final boolean complete;
+        
+        Snapshot(long journalSequence, long savedAt, CivilizationManager.SavedState civilization,
+                 PlanetStatusManager.SavedState planet, DisasterManager.SavedState disasters,
+                 boolean includeContributions, boolean complete) {
+            this.journalSequence = journalSequence;
+            this.savedAt = savedAt;
+            this.civilization = civilization;
+            this.planet = planet;
+            this.disasters = disasters;
+            this.includeContributions = includeContributions;
+            this.complete = complete;
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package com.planetaryexodus.persistence;
+
+import com.planetaryexodus.civilization.CivilizationManager;
+import com.planetaryexodus.core.ModExecutors;
+import com.planetaryexodus.core.TaskScope;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按玩家分文件保存的贡献记录
+ * 每个玩家一个压缩NBT文件，按UUID的前两个十六进制字符分到256个子目录中（players/ab/&lt;uuid&gt;.dat），
+ * 单个目录中的文件数不会随历史玩家数无限增长
+ *
+ * 写入在I/O线程上按提交顺序进行，同一次写入中不同子目录的文件并行写入，先写临时文件再原子替换。
+ * 已提交但尚未写入的记录读取时优先于文件，写入失败的记录保留下来，在下一次写入时重试。
+ * 每个文件记录写入时事件日志的序号，重放日志时跳过文件中已包含的记录
+ */
+public final class PlayerContributionStore {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger("PlanetaryExodus/Persistence");
+    
+    private static final String EXTENSION = ".dat";
+    
+    private final Path directory;
+    // 等待写入的记录，读取时优先于文件
+    private final Map<UUID, StoredContribution> pending = new ConcurrentHashMap<>();
+    // 写入链，保证多次写入按顺序进行；只在服务器线程上访问
+    private CompletableFuture<Boolean> writeChain = CompletableFuture.completedFuture(true);
+    
+    private PlayerContributionStore(Path directory) {
+        this.directory = directory;
+    }
+    
+    /**
+     * 打开存储目录，不存在时创建
+     */
+    public static PlayerContributionStore open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        return new PlayerContributionStore(directory);
+    }
+    
+    /**
+     * 读取玩家的贡献记录，在服务器线程上调用
+     * @return 没有记录时返回null
+     */
+    public StoredContribution load(UUID playerId) {
+        StoredContribution queued = pending.get(playerId);
+        if (queued != null) {
+            return queued;
+        }
+        Path path = pathOf(playerId);
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        return read(path, playerId);
+    }
+    
+    /**
+     * 提交需要写回的记录，在服务器线程上调用
+     * 没有需要写入的记录时返回之前的写入，调用方可以据此等待之前提交的记录写完
+     * @param journalSequence 记录中已包含的最后一条日志记录的序号
+     * @return 本次及之前提交的记录全部写入成功时完成为true
+     */
+    public CompletableFuture<Boolean> write(List<CivilizationManager.SavedContribution> contributions,
+                                            long journalSequence) {
+        for (CivilizationManager.SavedContribution contribution : contributions) {
+            pending.put(contribution.playerId, new StoredContribution(contribution, journalSequence));
+        }
+        if (pending.isEmpty()) {
+            return writeChain;
+        }
+        if (!ModExecutors.isRunning()) {
+            return CompletableFuture.completedFuture(flushPending());
+        }
+        writeChain = writeChain.thenApplyAsync(ignored -> flushPending(), ModExecutors.io());
+        return writeChain;
+    }
+    
+    /**
+     * 等待已提交的记录写完（应在后台执行服务关闭之前调用）
+     */
+    public void awaitPendingWrites() {
+        try {
+            writeChain.get(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOGGER.error("等待玩家贡献写入完成时出错", e);
+        }
+    }
+    
+    /**
+     * 逐个读取存储中的全部记录，不会一次把所有记录读入内存
+     * 每个子目录只在遍历到时才列出文件，记录在取出时才读取；无法读取的文件跳过
+     */
+    public Iterator<StoredContribution> iterator() {
+        List<Path> shards = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path shard : stream) {
+                shards.add(shard);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("列出玩家贡献目录失败: {}", directory, e);
+        }
+        Collections.sort(shards);
+        return new StoreIterator(shards);
+    }
+    
+    /**
+     * 写入所有等待中的记录，在I/O线程上调用
+     * 不同子目录的记录在各自的虚拟线程上并行写入
+     * @return 全部写入成功时返回true
+     */
+    private boolean flushPending() {
+        Map<String, List<StoredContribution>> shards = new HashMap<>();
+        for (StoredContribution stored : pending.values()) {
+            shards.computeIfAbsent(shardOf(stored.contribution.playerId), key -> new ArrayList<>()).add(stored);
+        }
+        if (shards.size() <= 1 || !ModExecutors.isRunning()) {
+            boolean success = true;
+            for (List<StoredContribution> shard : shards.values()) {
+                success &= writeShard(shard);
+            }
+            return success;
+        }
+        try (TaskScope<Boolean> scope = ModExecutors.openScope()) {
+            for (List<StoredContribution> shard : shards.values()) {
+                scope.fork(() -> writeShard(shard));
+            }
+            scope.join().throwIfFailed();
+            return !scope.results().contains(Boolean.FALSE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            // 未写入的记录留在等待中，下一次写入时重试
+            LOGGER.error("保存玩家贡献失败", e.getCause());
+            return false;
+        }
+    }
+    
+    /**
+     * 写入同一子目录中的记录
+     */
+    private boolean writeShard(List<StoredContribution> shard) {
+        boolean success = true;
+        for (StoredContribution stored : shard) {
+            if (writeFile(stored)) {
+                // 写入期间又提交了更新的记录时保留新记录
+                pending.remove(stored.contribution.playerId, stored);
+            } else {
+                success = false;
+            }
+        }
+        return success;
+    }
+    
+    private boolean writeFile(StoredContribution stored) {
+        Path target = pathOf(stored.contribution.playerId);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        NbtCompound nbt = encodeContribution(stored.contribution);
+        nbt.putLong("journal_sequence", stored.journalSequence);
+        try {
+            Files.createDirectories(target.getParent());
+            NbtIo.writeCompressed(nbt, temp.toFile());
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException e) {
+            LOGGER.error("保存玩家贡献失败: {}", target, e);
+            return false;
+        }
+    }
+    
+    /**
+     * 读取单个文件，损坏的文件改名保留，按没有记录处理
+     */
+    private StoredContribution read(Path path, UUID playerId) {
+        try {
+            NbtCompound nbt = NbtIo.readCompressed(path.toFile());
+            return new StoredContribution(decodeContribution(nbt, playerId), nbt.getLong("journal_sequence"));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("读取玩家贡献失败，已改名为 .corrupt: {}", path, e);
+            try {
+                Files.move(path, path.resolveSibling(path.getFileName() + ".corrupt"),
+                    StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException moveError) {
+                LOGGER.warn("无法改名损坏的玩家贡献文件: {}", path, moveError);
+            }
+            return null;
+        }
+    }
+    
+    private Path pathOf(UUID playerId) {
+        return directory.resolve(shardOf(playerId)).resolve(playerId + EXTENSION);
+    }
+    
+    private static String shardOf(UUID playerId) {
+        return playerId.toString().substring(0, 2);
+    }
+    
+    /**
+     * 编码单个玩家的贡献，世界存档中的快照使用同样的格式
+     */
+    static NbtCompound encodeContribution(CivilizationManager.SavedContribution contribution) {
+        NbtCompound entry = new NbtCompound();
+        entry.putUuid("id", contribution.playerId);
+        entry.putString("name", contribution.playerName != null ? contribution.playerName : "");
+        entry.putInt("total", contribution.totalContribution);
+        entry.putLong("first", contribution.firstContributionTime);
+        entry.putLong("last", contribution.lastContributionTime);
+        NbtCompound sources = new NbtCompound();
+        for (Map.Entry<String, Integer> source : contribution.contributionsBySource.entrySet()) {
+            sources.putInt(source.getKey(), source.getValue());
+        }
+        entry.put("sources", sources);
+        return entry;
+    }
+    
+    /**
+     * 解码单个玩家的贡献
+     * @param playerId 记录中没有玩家ID时使用的ID
+     */
+    static CivilizationManager.SavedContribution decodeContribution(NbtCompound entry, UUID playerId) {
+        Map<String, Integer> sources = new HashMap<>();
+        NbtCompound sourceNbt = entry.getCompound("sources");
+        for (String source : sourceNbt.getKeys()) {
+            sources.put(source, sourceNbt.getInt(source));
+        }
+        return new CivilizationManager.SavedContribution(entry.containsUuid("id") ? entry.getUuid("id") : playerId,
+            entry.getString("name"), entry.getInt("total"), sources, entry.getLong("first"), entry.getLong("last"));
+    }
+    
+    /**
+     * 存储中的一条记录
+     */
+    public static final class StoredContribution {
+        public final CivilizationManager.SavedContribution contribution;
+        /** 记录中已包含的最后一条日志记录的序号 */
+        public final long journalSequence;
+        
+        StoredContribution(CivilizationManager.SavedContribution contribution, long journalSequence) {
+            this.contribution = contribution;
+            this.journalSequence = journalSequence;
+        }
+    }
+    
+    /**
+     * 逐个子目录遍历记录文件，最后补上尚未写出文件的等待中记录
+     */
+    private final class StoreIterator implements Iterator<StoredContribution> {
+        private final Iterator<Path> shards;
+        private Iterator<Path> files = Collections.emptyIterator();
+        private Iterator<StoredContribution> unwritten;
+        private StoredContribution next;
+        
+        StoreIterator(List<Path> shards) {
+            this.shards = shards.iterator();
+        }
+        
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                if (files.hasNext()) {
+                    next = readListed(files.next());
+                } else if (shards.hasNext()) {
+                    files = listFiles(shards.next()).iterator();
+                } else {
+                    if (unwritten == null) {
+                        unwritten = new ArrayList<>(pending.values()).iterator();
+                    }
+                    if (!unwritten.hasNext()) {
+                        return false;
+                    }
+                    StoredContribution candidate = unwritten.next();
+                    if (!Files.exists(pathOf(candidate.contribution.playerId))) {
+                        next = candidate;
+                    }
+                }
+            }
+            return true;
+        }
+        
+        @Override
+        public StoredContribution next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            StoredContribution result = next;
+            next = null;
+            return result;
+        }
+        
+        private StoredContribution readListed(Path path) {
+            String name = path.getFileName().toString();
+            UUID playerId;
+            try {
+                playerId = UUID.fromString(name.substring(0, name.length() - EXTENSION.length()));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            StoredContribution queued = pending.get(playerId);
+            return queued != null ? queued : read(path, playerId);
+        }
+        
+        private List<Path> listFiles(Path shard) {
+            List<Path> result = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(shard, "*" + EXTENSION)) {
+                for (Path path : stream) {
+                    result.add(path);
+                }
+            } catch (IOException e) {
+                LOGGER.warn("列出玩家贡献目录失败: {}", shard, e);
+            }
+            Collections.sort(result);
+            return result;
+        }
+    }
+}
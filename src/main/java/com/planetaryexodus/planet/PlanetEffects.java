@@ -1,9 +1,11 @@
 package com.planetaryexodus.planet;
 
+import com.planetaryexodus.api.interfaces.IPlayerView;
+import com.planetaryexodus.api.interfaces.IServerPort;
+import com.planetaryexodus.api.interfaces.IWorldView;
 import com.planetaryexodus.core.ModConfig;
-import net.minecraft.server.MinecraftServer;
-import net.minecraft.server.world.ServerWorld;
-import net.minecraft.world.GameRules;
+import com.planetaryexodus.core.ModRandom;
+import com.planetaryexodus.server.AdaptiveQualityController;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -17,13 +19,33 @@ public class PlanetEffects {
     
     private static final Logger LOGGER = LoggerFactory.getLogger("PlanetaryExodus/Effects");
     
+    // 各效果上次应用的tick，效果按间隔应用而不依赖调用时的tick对齐
+    private int lastRadiationTick = 0;
+    private int lastAcidRainCheckTick = 0;
+    private int lastCollapseWarningTick = 0;
+    
+    /**
+     * 效果分为几个阶段应用，调度器可以把它们分散到多个tick
+     */
+    public static final int EFFECT_PHASES = 4;
+    
     /**
      * 应用行星状态效果
-     * @param server 服务器实例
+     * @param server 服务器端口
      * @param status 当前行星状态
      * @param config 行星配置
      */
-    public void applyEffects(MinecraftServer server, PlanetStatus status, ModConfig.PlanetConfig config) {
+    public void applyEffects(IServerPort server, PlanetStatus status, ModConfig.PlanetConfig config) {
+        for (int phase = 0; phase < EFFECT_PHASES; phase++) {
+            applyEffects(server, status, config, phase);
+        }
+    }
+    
+    /**
+     * 应用一个阶段的行星状态效果
+     * @param phase 阶段序号，0到 EFFECT_PHASES - 1
+     */
+    public void applyEffects(IServerPort server, PlanetStatus status, ModConfig.PlanetConfig config, int phase) {
         if (server == null) return;
         
         Map<String, Double> effects = getEffectsForStatus(status, config);
@@ -31,19 +53,27 @@ public class PlanetEffects {
             return;
         }
         
-        // 应用作物生长效果
-        applyCropGrowthEffect(server, effects);
-        
-        // 应用能源效率效果
-        applyEnergyEfficiencyEffect(server, effects);
-        
-        // 应用怪物生成效果
-        applyMonsterSpawnEffect(server, effects);
-        
-        // 应用特殊效果（如酸雨、辐射等）
-        applySpecialEffects(server, status, effects);
-        
-        LOGGER.debug("应用行星状态效果: {} ({}个效果)", status.getFormattedString(), effects.size());
+        switch (phase) {
+            case 0:
+                // 应用作物生长效果
+                applyCropGrowthEffect(server, effects);
+                break;
+            case 1:
+                // 应用能源效率效果
+                applyEnergyEfficiencyEffect(server, effects);
+                break;
+            case 2:
+                // 应用怪物生成效果
+                applyMonsterSpawnEffect(server, effects);
+                break;
+            case 3:
+                // 应用特殊效果（如酸雨、辐射等）
+                applySpecialEffects(server, status, effects);
+                LOGGER.debug("应用行星状态效果: {} ({}个效果)", status.getFormattedString(), effects.size());
+                break;
+            default:
+                break;
+        }
     }
     
     /**
@@ -67,13 +97,12 @@ public class PlanetEffects {
     /**
      * 应用作物生长效果
      */
-    private void applyCropGrowthEffect(MinecraftServer server, Map<String, Double> effects) {
+    private void applyCropGrowthEffect(IServerPort server, Map<String, Double> effects) {
         if (effects.containsKey("crop_growth_multiplier")) {
             double multiplier = effects.get("crop_growth_multiplier");
             
-            for (ServerWorld world : server.getWorlds()) {
+            for (IWorldView world : server.getWorlds()) {
                 // 调整随机刻速度来模拟作物生长速度变化
-                GameRules.IntRule randomTickSpeed = world.getGameRules().get(GameRules.RANDOM_TICK_SPEED);
                 int baseSpeed = 3; // 默认值
                 int adjustedSpeed = (int) (baseSpeed * multiplier);
                 
@@ -82,7 +111,7 @@ public class PlanetEffects {
                 
                 // 设置游戏规则（这会影响所有随机刻，不仅仅是作物）
                 // 注意：在实际实现中，可能需要更精细的控制
-                world.getGameRules().get(GameRules.RANDOM_TICK_SPEED).set(adjustedSpeed, server);
+                world.setRandomTickSpeed(adjustedSpeed);
             }
         }
     }
@@ -90,7 +119,7 @@ public class PlanetEffects {
     /**
      * 应用能源效率效果
      */
-    private void applyEnergyEfficiencyEffect(MinecraftServer server, Map<String, Double> effects) {
+    private void applyEnergyEfficiencyEffect(IServerPort server, Map<String, Double> effects) {
         if (effects.containsKey("energy_efficiency")) {
             double efficiency = effects.get("energy_efficiency");
             
@@ -103,14 +132,14 @@ public class PlanetEffects {
     /**
      * 应用怪物生成效果
      */
-    private void applyMonsterSpawnEffect(MinecraftServer server, Map<String, Double> effects) {
+    private void applyMonsterSpawnEffect(IServerPort server, Map<String, Double> effects) {
         if (effects.containsKey("monster_spawn_multiplier")) {
             double multiplier = effects.get("monster_spawn_multiplier");
             
-            for (ServerWorld world : server.getWorlds()) {
+            for (IWorldView world : server.getWorlds()) {
                 // 调整怪物生成限制
                 // 实际实现需要修改怪物生成算法
-                LOGGER.debug("世界 {} 的怪物生成倍率: {}", world.getRegistryKey().getValue(), multiplier);
+                LOGGER.debug("世界 {} 的怪物生成倍率: {}", world.getName(), multiplier);
             }
         }
     }
@@ -118,7 +147,7 @@ public class PlanetEffects {
     /**
      * 应用特殊效果
      */
-    private void applySpecialEffects(MinecraftServer server, PlanetStatus status, Map<String, Double> effects) {
+    private void applySpecialEffects(IServerPort server, PlanetStatus status, Map<String, Double> effects) {
         // 酸雨效果
         if (effects.containsKey("acid_rain_chance")) {
             double chance = effects.get("acid_rain_chance");
@@ -149,10 +178,10 @@ public class PlanetEffects {
     /**
      * 触发酸雨效果
      */
-    private void triggerAcidRain(MinecraftServer server) {
+    private void triggerAcidRain(IServerPort server) {
         LOGGER.info("☔ 触发酸雨效果");
         
-        for (ServerWorld world : server.getWorlds()) {
+        for (IWorldView world : server.getWorlds()) {
             // 在实际实现中，这里会：
             // 1. 改变天气为雨天
             // 2. 添加酸雨效果（腐蚀方块、伤害暴露的玩家等）
@@ -160,7 +189,7 @@ public class PlanetEffects {
             
             // 临时实现：记录日志
             if (world.isRaining()) {
-                LOGGER.debug("世界 {} 正在下酸雨", world.getRegistryKey().getValue());
+                LOGGER.debug("世界 {} 正在下酸雨", world.getName());
             }
         }
     }
@@ -168,7 +197,7 @@ public class PlanetEffects {
     /**
      * 应用辐射伤害
      */
-    private void applyRadiationDamage(MinecraftServer server, double damagePerSecond) {
+    private void applyRadiationDamage(IServerPort server, double damagePerSecond) {
         // 在实际实现中，这里会：
         // 1. 检查暴露在外的玩家
         // 2. 应用辐射伤害
@@ -176,22 +205,29 @@ public class PlanetEffects {
         
         LOGGER.debug("应用辐射伤害: {}/秒", damagePerSecond);
         
-        server.getPlayerManager().getPlayerList().forEach(player -> {
-            if (isPlayerExposed(player)) {
-                // 每5秒应用一次伤害（20tick * 5 = 100tick）
-                if (server.getTicks() % 100 == 0) {
-                    float damage = (float) (damagePerSecond * 5); // 5秒的伤害
-                    // player.damage(player.getDamageSources().magic(), damage);
-                    LOGGER.debug("玩家 {} 受到辐射伤害: {}", player.getName().getString(), damage);
-                }
+        // 正常每5秒检查一次暴露并应用伤害（20tick * 5 = 100tick），服务器繁忙时间隔拉长
+        ModConfig.PerformanceConfig.QualityTier quality = AdaptiveQualityController.getInstance().getCurrentTier();
+        int interval = quality.scaleInterval(100);
+        if (server.getTicks() - lastRadiationTick < interval || quality.samplingRate <= 0) {
+            return;
+        }
+        lastRadiationTick = server.getTicks();
+        // 按实际间隔和采样率计算伤害，降级时每秒的期望伤害不变
+        float damage = (float) (damagePerSecond * interval / 20.0 / quality.samplingRate);
+        
+        for (IPlayerView player : server.getPlayers()) {
+            // 降级时每次只抽查一部分玩家
+            if (quality.sample() && isPlayerExposed(player)) {
+                // player.damage(player.getDamageSources().magic(), damage);
+                LOGGER.debug("玩家 {} 受到辐射伤害: {}", player.getName(), damage);
             }
-        });
+        }
     }
     
     /**
      * 应用恶化状态效果
      */
-    private void applyDegradedEffects(MinecraftServer server) {
+    private void applyDegradedEffects(IServerPort server) {
         // 在实际实现中，这里会：
         // 1. 增加灾难触发概率
         // 2. 降低资源生成率
@@ -203,7 +239,7 @@ public class PlanetEffects {
     /**
      * 应用崩溃边缘状态效果
      */
-    private void applyCollapsingEffects(MinecraftServer server) {
+    private void applyCollapsingEffects(IServerPort server) {
         // 在实际实现中，这里会：
         // 1. 频繁触发灾难
         // 2. 大幅降低所有效率
@@ -213,21 +249,19 @@ public class PlanetEffects {
         LOGGER.debug("应用崩溃边缘状态效果");
         
         // 每10秒广播一次警告
-        if (server.getTicks() % 200 == 0) {
-            server.getPlayerManager().broadcast(
-                net.minecraft.text.Text.literal("⚠️ 行星濒临崩溃！请加快迁移进度！"),
-                false
-            );
+        if (server.getTicks() - lastCollapseWarningTick >= 200) {
+            lastCollapseWarningTick = server.getTicks();
+            server.broadcast(net.minecraft.text.Text.literal("⚠️ 行星濒临崩溃！请加快迁移进度！"));
         }
     }
     
     /**
      * 检查玩家是否暴露在外
      */
-    private boolean isPlayerExposed(net.minecraft.entity.player.PlayerEntity player) {
+    private boolean isPlayerExposed(IPlayerView player) {
         // 简化实现：检查玩家是否在室外且没有遮挡
-        if (player.getWorld().isRaining()) {
-            return !player.isSubmergedInWater() && player.getWorld().isSkyVisible(player.getBlockPos());
+        if (player.isRaining()) {
+            return !player.isSubmergedInWater() && player.isSkyVisible();
         }
         return false;
     }
@@ -235,9 +269,13 @@ public class PlanetEffects {
     /**
      * 检查是否应该触发效果
      */
-    private boolean shouldTriggerEffect(MinecraftServer server, double chance) {
-        // 基于服务器tick的随机检查
-        return server.getTicks() % 100 == 0 && Math.random() < chance;
+    private boolean shouldTriggerEffect(IServerPort server, double chance) {
+        // 正常每5秒随机检查一次，服务器繁忙时间隔拉长
+        if (server.getTicks() - lastAcidRainCheckTick < AdaptiveQualityController.getInstance().scaleInterval(100)) {
+            return false;
+        }
+        lastAcidRainCheckTick = server.getTicks();
+        return ModRandom.nextDouble() < chance;
     }
     
     /**
@@ -2,41 +2,46 @@ package com.planetaryexodus.planet;
 
 import com.planetaryexodus.PlanetaryExodusMod;
 import com.planetaryexodus.api.events.PlanetStatusChangedEvent;
+import com.planetaryexodus.api.interfaces.IServerPort;
+import com.planetaryexodus.core.ModClock;
 import com.planetaryexodus.core.ModConfig;
-import net.minecraft.server.MinecraftServer;
+import com.planetaryexodus.core.ModExecutors;
+import com.planetaryexodus.core.ServerThreadBridge;
+import com.planetaryexodus.persistence.JournalReplayHandler;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.text.Text;
 import net.minecraft.util.Identifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
  * 行星状态管理器
  * 负责管理行星状态的变化、效果应用和状态监控
  */
-public class PlanetStatusManager {
+public class PlanetStatusManager implements JournalReplayHandler {
     
     private static final Logger LOGGER = LoggerFactory.getLogger("PlanetaryExodus/Planet");
-    private static final Identifier DATA_ID = new Identifier("planetaryexodus", "planet_data");
+    public static final Identifier DATA_ID = new Identifier("planetaryexodus", "planet_data");
     
     // 行星状态数据
     private PlanetStatus currentStatus = PlanetStatus.STABLE;
     private PlanetStatus previousStatus = PlanetStatus.STABLE;
     private int daysInCurrentStatus = 0;
-    private long statusChangeTime = System.currentTimeMillis();
-    private long lastUpdateTime = System.currentTimeMillis();
+    private long statusChangeTime = ModClock.currentTimeMillis();
+    // 需要持久化的状态的修改计数
+    private int modCount;
+    private long lastUpdateTime = ModClock.currentTimeMillis();
     
     // 配置
     private ModConfig.PlanetConfig config;
     
     // 状态监控
-    private ScheduledExecutorService monitoringService;
-    private MinecraftServer currentServer;
-    private boolean isMonitoring = false;
+    private ScheduledFuture<?> monitoringTask;
+    private volatile IServerPort currentServer;
+    private volatile boolean isMonitoring = false;
     
     // 效果应用器
     private PlanetEffects effectsApplier;
@@ -58,22 +63,40 @@ public class PlanetStatusManager {
     
     /**
      * 根据文明进度更新行星状态
-     * @param server 服务器实例
+     * @param server 服务器端口
      * @param civilizationProgress 文明进度
      */
-    public void update(MinecraftServer server, int civilizationProgress) {
-        long currentTime = System.currentTimeMillis();
+    public void update(IServerPort server, int civilizationProgress) {
+        int slice = 0;
+        while (update(server, civilizationProgress, slice)) {
+            slice++;
+        }
+    }
+    
+    /**
+     * 分片更新行星状态
+     * 第0片计算状态变化，之后每片应用一个阶段的状态效果
+     * @param slice 分片序号
+     * @return 还有效果阶段需要应用时返回true
+     */
+    public boolean update(IServerPort server, int civilizationProgress, int slice) {
+        if (slice > 0) {
+            applyStatusEffects(server, slice - 1);
+            return slice < PlanetEffects.EFFECT_PHASES;
+        }
+        
+        long currentTime = ModClock.currentTimeMillis();
         
         // 每秒检查一次状态变化
         if (currentTime - lastUpdateTime < 1000) {
-            return;
+            return false;
         }
         
         lastUpdateTime = currentTime;
         this.currentServer = server;
         
         // 根据配置阈值计算新状态
-        PlanetStatus newStatus = calculateStatus(civilizationProgress);
+        PlanetStatus newStatus = calculateStatus(civilizationProgress, config);
         
         // 检查状态是否变化
         if (newStatus != currentStatus) {
@@ -83,14 +106,15 @@ public class PlanetStatusManager {
         // 更新在当前状态的天数
         updateDaysInCurrentStatus();
         
-        // 应用当前状态的效果
-        applyStatusEffects(server);
+        // 接下来的分片应用当前状态的效果
+        return server != null;
     }
     
     /**
      * 计算行星状态
+     * 只依赖参数，任何线程都可以调用
      */
-    private PlanetStatus calculateStatus(int progress) {
+    public static PlanetStatus calculateStatus(int progress, ModConfig.PlanetConfig config) {
         if (progress < config.stableThreshold) {
             return PlanetStatus.STABLE;
         } else if (progress < config.strainedThreshold) {
@@ -108,8 +132,9 @@ public class PlanetStatusManager {
     private void changeStatus(PlanetStatus newStatus, int progress) {
         previousStatus = currentStatus;
         currentStatus = newStatus;
-        statusChangeTime = System.currentTimeMillis();
+        statusChangeTime = ModClock.currentTimeMillis();
         daysInCurrentStatus = 0;
+        modCount++;
         
         // 发布状态改变事件
         PlanetaryExodusMod.getInstance().getEventBus().publish(
@@ -121,7 +146,7 @@ public class PlanetStatusManager {
             Text message = Text.translatable("planet.status.changed", 
                 previousStatus.getDisplayName(),
                 currentStatus.getDisplayName());
-            currentServer.getPlayerManager().broadcast(message, false);
+            currentServer.broadcast(message);
         }
         
         LOGGER.info("🌍 行星状态变化: {} → {} (进度: {}%)",
@@ -137,18 +162,18 @@ public class PlanetStatusManager {
      * 更新在当前状态的天数
      */
     private void updateDaysInCurrentStatus() {
-        long elapsed = System.currentTimeMillis() - statusChangeTime;
+        long elapsed = ModClock.currentTimeMillis() - statusChangeTime;
         daysInCurrentStatus = (int) (elapsed / (1000 * 60 * 60 * 24)); // 转换为天数
     }
     
     /**
      * 应用状态效果
      */
-    private void applyStatusEffects(MinecraftServer server) {
+    private void applyStatusEffects(IServerPort server, int phase) {
         if (server == null) return;
         
         try {
-            effectsApplier.applyEffects(server, currentStatus, config);
+            effectsApplier.applyEffects(server, currentStatus, config, phase);
         } catch (Exception e) {
             LOGGER.error("应用行星状态效果时出错", e);
         }
@@ -157,7 +182,7 @@ public class PlanetStatusManager {
     /**
      * 开始状态监控
      */
-    public void startMonitoring(MinecraftServer server) {
+    public void startMonitoring(IServerPort server) {
         if (isMonitoring) {
             LOGGER.warn("行星状态监控已经在运行");
             return;
@@ -166,14 +191,8 @@ public class PlanetStatusManager {
         this.currentServer = server;
         this.isMonitoring = true;
         
-        monitoringService = Executors.newSingleThreadScheduledExecutor(r -> {
-            Thread thread = new Thread(r, "Planet-Monitoring-Thread");
-            thread.setDaemon(true);
-            return thread;
-        });
-        
-        // 每5秒检查一次状态
-        monitoringService.scheduleAtFixedRate(() -> {
+        // 每5秒检查一次状态，运行在模组共享的定时执行器上
+        monitoringTask = ModExecutors.scheduler().scheduleAtFixedRate(() -> {
             try {
                 performMonitoringTasks();
             } catch (Exception e) {
@@ -186,18 +205,24 @@ public class PlanetStatusManager {
     
     /**
      * 执行监控任务
+     * 运行在监控线程上，监控任务会读写行星状态、发布事件和访问玩家，
+     * 因此投递到服务器线程执行，不在监控线程上直接触碰游戏状态
      */
     private void performMonitoringTasks() {
         if (currentServer == null) return;
         
-        // 检查是否需要自动恶化
-        checkAutoDegradation();
-        
-        // 检查灾难触发条件
-        checkDisasterTriggers();
-        
-        // 更新状态显示
-        updateStatusDisplay();
+        ServerThreadBridge.getInstance().execute(() -> {
+            if (currentServer == null) return;
+            
+            // 检查是否需要自动恶化
+            checkAutoDegradation();
+            
+            // 检查灾难触发条件
+            checkDisasterTriggers();
+            
+            // 更新状态显示
+            updateStatusDisplay();
+        });
     }
     
     /**
@@ -280,41 +305,76 @@ public class PlanetStatusManager {
             new java.util.Date()
         );
         
-        // 这里可以将日志保存到文件或数据库
+        // 持久化的审计记录由事件日志根据 PlanetStatusChangedEvent 写入，
+        // 每分钟的状态历史由 MetricHistory 记录（一分钟内出现过的最严重状态），这里只输出日志
         LOGGER.info(logMessage);
     }
     
     /**
      * 加载数据
+     * 重置为初始状态，随后由世界存档中的快照和事件日志重放恢复
      */
     public void load() {
-        // TODO: 实现数据加载
         LOGGER.info("加载行星状态数据...");
+        currentStatus = PlanetStatus.STABLE;
+        previousStatus = PlanetStatus.STABLE;
+        statusChangeTime = ModClock.currentTimeMillis();
+        daysInCurrentStatus = 0;
+        modCount++;
+    }
+    
+    /**
+     * 重放状态改变记录：直接恢复状态，不发布事件也不通知玩家
+     */
+    @Override
+    public void onPlanetStatusChanged(long timestamp, PlanetStatus oldStatus, PlanetStatus newStatus, int progress) {
+        previousStatus = oldStatus;
+        currentStatus = newStatus;
+        statusChangeTime = timestamp;
+        modCount++;
     }
     
     /**
-     * 保存数据
+     * 重放结束后重新计算在当前状态的天数
      */
-    public void save() {
-        // TODO: 实现数据保存
-        LOGGER.info("保存行星状态数据...");
+    @Override
+    public void onReplayFinished(long lastSequence) {
+        updateDaysInCurrentStatus();
+        LOGGER.info("行星状态已恢复: {}（已持续 {} 天）", currentStatus.getFormattedString(), daysInCurrentStatus);
+    }
+    
+    /**
+     * 获取修改计数：需要持久化的状态每次变化时递增，检查点据此跳过没有变化的部分
+     */
+    public int getModCount() {
+        return modCount;
+    }
+    
+    /**
+     * 采集需要持久化的状态，在服务器线程上调用
+     */
+    public SavedState createSavedState() {
+        return new SavedState(currentStatus, previousStatus, statusChangeTime);
+    }
+    
+    /**
+     * 从保存的状态恢复，不发布事件也不通知玩家
+     */
+    public void restore(SavedState state) {
+        currentStatus = state.currentStatus;
+        previousStatus = state.previousStatus;
+        statusChangeTime = state.statusChangeTime;
+        updateDaysInCurrentStatus();
+        modCount++;
     }
     
     /**
      * 清理资源
      */
     public void cleanup() {
-        if (monitoringService != null) {
-            monitoringService.shutdown();
-            try {
-                if (!monitoringService.awaitTermination(5, TimeUnit.SECONDS)) {
-                    monitoringService.shutdownNow();
-                }
-            } catch (InterruptedException e) {
-                monitoringService.shutdownNow();
-                Thread.currentThread().interrupt();
-            }
-            monitoringService = null;
+        if (monitoringTask != null) {
+            monitoringTask.cancel(false);
+            monitoringTask = null;
         }
         
         isMonitoring = false;
@@ -330,4 +390,19 @@ public class PlanetStatusManager {
             changeStatus(status, progress);
         }
     }
+    
+    /**
+     * 需要持久化的行星状态
+     */
+    public static final class SavedState {
+        public final PlanetStatus currentStatus;
+        public final PlanetStatus previousStatus;
+        public final long statusChangeTime;
+        
+        public SavedState(PlanetStatus currentStatus, PlanetStatus previousStatus, long statusChangeTime) {
+            this.currentStatus = currentStatus;
+            this.previousStatus = previousStatus;
+            this.statusChangeTime = statusChangeTime;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,201 @@
+package com.planetaryexodus.server;
+
+import com.planetaryexodus.core.ModConfig;
+import net.minecraft.server.MinecraftServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 自适应降级控制器
+ * 根据服务器最近的tick耗时选择质量级别，服务器接近50ms的tick上限时
+ * 拉长效果检查的间隔、降低腐蚀和破坏检查的采样率，有余量后再逐级恢复
+ *
+ * 级别只在服务器线程上评估，其他线程可以随时读取
+ */
+public final class AdaptiveQualityController {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger("PlanetaryExodus/Quality");
+    private static final AdaptiveQualityController INSTANCE = new AdaptiveQualityController();
+    // 尚未配置时使用的正常质量级别
+    private static final ModConfig.PerformanceConfig.QualityTier NORMAL = ModConfig.PerformanceConfig.QualityTier.normal();
+    
+    private volatile List<ModConfig.PerformanceConfig.QualityTier> tiers = Collections.emptyList();
+    private volatile boolean enabled = true;
+    private int evaluationIntervalTicks = 20;
+    private int recoveryTicks = 200;
+    private double recoveryMarginMspt = 5.0;
+    
+    private volatile int tierIndex = 0;
+    private volatile double averageMspt;
+    private volatile double peakMspt;
+    // 连续有余量的tick数，达到 recoveryTicks 后恢复一级
+    private int headroomTicks;
+    private volatile long tierChanges;
+    
+    private AdaptiveQualityController() {
+    }
+    
+    /**
+     * 获取自适应降级控制器实例
+     */
+    public static AdaptiveQualityController getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * 应用性能配置中的级别设置，当前级别超出新配置范围时回到最高的可用级别
+     */
+    public void configure(ModConfig.PerformanceConfig config) {
+        this.tiers = Collections.unmodifiableList(new ArrayList<>(config.qualityTiers));
+        this.enabled = config.adaptiveQualityEnabled;
+        this.evaluationIntervalTicks = config.adaptiveEvaluationIntervalTicks;
+        this.recoveryTicks = config.adaptiveRecoveryTicks;
+        this.recoveryMarginMspt = config.adaptiveRecoveryMarginMspt;
+        this.headroomTicks = 0;
+        if (!enabled) {
+            tierIndex = 0;
+        } else if (tierIndex >= tiers.size()) {
+            tierIndex = tiers.size() - 1;
+        }
+    }
+    
+    /**
+     * 每个tick调用一次，按评估间隔读取服务器的tick耗时历史并调整级别
+     */
+    public void update(MinecraftServer server) {
+        update(server.getTicks(), server.lastTickLengths);
+    }
+    
+    /**
+     * 按评估间隔根据tick耗时历史调整级别，离线重放时传入记录的tick耗时
+     * @param ticks 当前tick数
+     * @param tickTimes 最近若干tick的耗时（纳秒），未填充的位置为0
+     */
+    public void update(int ticks, long[] tickTimes) {
+        if (!enabled || tiers.size() <= 1 || ticks % evaluationIntervalTicks != 0) {
+            return;
+        }
+        
+        long total = 0;
+        long peak = 0;
+        int samples = 0;
+        for (long nanos : tickTimes) {
+            // 服务器刚启动时历史还没有填满
+            if (nanos > 0) {
+                total += nanos;
+                peak = Math.max(peak, nanos);
+                samples++;
+            }
+        }
+        if (samples == 0) {
+            return;
+        }
+        averageMspt = total / (double) samples / 1_000_000.0;
+        peakMspt = peak / 1_000_000.0;
+        evaluate(averageMspt);
+    }
+    
+    /**
+     * 根据平均MSPT调整级别：超过阈值立即降级，恢复时每次只升一级
+     */
+    private void evaluate(double mspt) {
+        List<ModConfig.PerformanceConfig.QualityTier> current = tiers;
+        int target = 0;
+        for (int i = current.size() - 1; i > 0; i--) {
+            if (mspt >= current.get(i).msptThreshold) {
+                target = i;
+                break;
+            }
+        }
+        
+        if (target > tierIndex) {
+            headroomTicks = 0;
+            changeTier(target, mspt);
+            return;
+        }
+        
+        if (target < tierIndex && mspt < current.get(tierIndex).msptThreshold - recoveryMarginMspt) {
+            headroomTicks += evaluationIntervalTicks;
+            if (headroomTicks >= recoveryTicks) {
+                headroomTicks = 0;
+                changeTier(tierIndex - 1, mspt);
+            }
+        } else {
+            headroomTicks = 0;
+        }
+    }
+    
+    private void changeTier(int index, double mspt) {
+        ModConfig.PerformanceConfig.QualityTier to = tiers.get(index);
+        boolean degraded = index > tierIndex;
+        tierIndex = index;
+        tierChanges++;
+        if (degraded) {
+            LOGGER.warn("服务器平均tick耗时 {}ms，效果质量降为 {}（检查间隔 ×{}，采样率 {}）",
+                String.format("%.1f", mspt), to.name, to.intervalMultiplier, to.samplingRate);
+        } else {
+            LOGGER.info("服务器平均tick耗时 {}ms，效果质量恢复为 {}", String.format("%.1f", mspt), to.name);
+        }
+    }
+    
+    /**
+     * 按当前级别拉长检查间隔
+     * @param baseTicks 正常质量下的间隔（tick）
+     */
+    public int scaleInterval(int baseTicks) {
+        return getCurrentTier().scaleInterval(baseTicks);
+    }
+    
+    /**
+     * 获取当前质量级别
+     */
+    public ModConfig.PerformanceConfig.QualityTier getCurrentTier() {
+        List<ModConfig.PerformanceConfig.QualityTier> current = tiers;
+        if (current.isEmpty()) {
+            return NORMAL;
+        }
+        return current.get(Math.min(tierIndex, current.size() - 1));
+    }
+    
+    /**
+     * 获取当前级别序号，0为正常质量
+     */
+    public int getTierIndex() {
+        return tierIndex;
+    }
+    
+    /**
+     * 获取最近一次评估时的平均tick耗时（毫秒）
+     */
+    public double getAverageMspt() {
+        return averageMspt;
+    }
+    
+    /**
+     * 获取最近一次评估时历史中最长的tick耗时（毫秒）
+     */
+    public double getPeakMspt() {
+        return peakMspt;
+    }
+    
+    /**
+     * 获取级别变化的次数
+     */
+    public long getTierChanges() {
+        return tierChanges;
+    }
+    
+    /**
+     * 回到正常质量（服务器停止时调用）
+     */
+    public void reset() {
+        tierIndex = 0;
+        headroomTicks = 0;
+        averageMspt = 0;
+        peakMspt = 0;
+    }
+}
@@ -0,0 +1,145 @@
+package com.planetaryexodus.server;
+
+import com.planetaryexodus.api.interfaces.IPlayerView;
+import com.planetaryexodus.api.interfaces.IServerPort;
+import com.planetaryexodus.api.interfaces.IWorldView;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.Text;
+import net.minecraft.world.GameRules;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 基于 MinecraftServer 的服务器端口
+ * 只能在服务器线程上使用
+ */
+public class MinecraftServerPort implements IServerPort {
+    
+    private final MinecraftServer server;
+    
+    public MinecraftServerPort(MinecraftServer server) {
+        this.server = server;
+    }
+    
+    /**
+     * 获取底层的服务器实例
+     */
+    public MinecraftServer getServer() {
+        return server;
+    }
+    
+    @Override
+    public int getTicks() {
+        return server.getTicks();
+    }
+    
+    @Override
+    public List<IPlayerView> getPlayers() {
+        List<ServerPlayerEntity> online = server.getPlayerManager().getPlayerList();
+        List<IPlayerView> players = new ArrayList<>(online.size());
+        for (ServerPlayerEntity player : online) {
+            players.add(new PlayerView(player));
+        }
+        return players;
+    }
+    
+    @Override
+    public IPlayerView getPlayer(UUID id) {
+        ServerPlayerEntity player = server.getPlayerManager().getPlayer(id);
+        return player == null ? null : new PlayerView(player);
+    }
+    
+    @Override
+    public List<IWorldView> getWorlds() {
+        List<IWorldView> worlds = new ArrayList<>();
+        for (ServerWorld world : server.getWorlds()) {
+            worlds.add(new WorldView(world));
+        }
+        return worlds;
+    }
+    
+    @Override
+    public void broadcast(Text message) {
+        server.getPlayerManager().broadcast(message, false);
+    }
+    
+    private static class PlayerView implements IPlayerView {
+        private final ServerPlayerEntity player;
+        
+        PlayerView(ServerPlayerEntity player) {
+            this.player = player;
+        }
+        
+        @Override
+        public UUID getId() {
+            return player.getUuid();
+        }
+        
+        @Override
+        public String getName() {
+            return player.getName().getString();
+        }
+        
+        @Override
+        public double getX() {
+            return player.getX();
+        }
+        
+        @Override
+        public double getY() {
+            return player.getY();
+        }
+        
+        @Override
+        public double getZ() {
+            return player.getZ();
+        }
+        
+        @Override
+        public boolean isSkyVisible() {
+            return player.getWorld().isSkyVisible(player.getBlockPos());
+        }
+        
+        @Override
+        public boolean isSubmergedInWater() {
+            return player.isSubmergedInWater();
+        }
+        
+        @Override
+        public boolean isRaining() {
+            return player.getWorld().isRaining();
+        }
+    }
+    
+    private class WorldView implements IWorldView {
+        private final ServerWorld world;
+        
+        WorldView(ServerWorld world) {
+            this.world = world;
+        }
+        
+        @Override
+        public String getName() {
+            return world.getRegistryKey().getValue().toString();
+        }
+        
+        @Override
+        public boolean isRaining() {
+            return world.isRaining();
+        }
+        
+        @Override
+        public int getRandomTickSpeed() {
+            return world.getGameRules().getInt(GameRules.RANDOM_TICK_SPEED);
+        }
+        
+        @Override
+        public void setRandomTickSpeed(int speed) {
+            world.getGameRules().get(GameRules.RANDOM_TICK_SPEED).set(speed, server);
+        }
+    }
+}
@@ -1,16 +1,34 @@
 package com.planetaryexodus.server;
 
 import com.planetaryexodus.PlanetaryExodusMod;
+import com.planetaryexodus.api.interfaces.IServerPort;
 import com.planetaryexodus.core.EventBus;
+import com.planetaryexodus.core.ModClock;
+import com.planetaryexodus.core.ModConfig;
+import com.planetaryexodus.core.ModExecutors;
+import com.planetaryexodus.core.ServerThreadBridge;
+import com.planetaryexodus.persistence.EventJournal;
+import com.planetaryexodus.persistence.JournalReplayer;
+import com.planetaryexodus.persistence.MetricHistory;
+import com.planetaryexodus.persistence.ModPersistentState;
+import com.planetaryexodus.persistence.PlayerContributionStore;
 import com.planetaryexodus.planet.PlanetStatusManager;
+import com.planetaryexodus.simulation.TraceRecorder;
 import com.planetaryexodus.civilization.CivilizationManager;
 import com.planetaryexodus.disaster.DisasterManager;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.WorldSavePath;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
 /**
  * 服务器端初始化器
  * 负责服务器端的系统初始化和事件监听
@@ -24,6 +42,24 @@ public class ServerModInitializer {
     private static CivilizationManager civilizationManager;
     private static DisasterManager disasterManager;
     
+    // tick相位调度器
+    private static final TickScheduler tickScheduler = new TickScheduler();
+    
+    // 管理器通过端口访问当前服务器（服务器运行期间有效）
+    private static IServerPort serverPort;
+    
+    // 事件日志（随世界打开和关闭）
+    private static EventJournal eventJournal;
+    
+    // 主世界上的模组存档数据（服务器运行期间有效）
+    private static ModPersistentState persistentState;
+    
+    // 每分钟的历史数据（启用时随服务器启动和停止）
+    private static MetricHistory metricHistory;
+    
+    // 输入轨迹记录器（启用时随服务器启动和停止）
+    private static TraceRecorder traceRecorder;
+    
     // 服务器状态
     private static boolean initialized = false;
     
@@ -49,7 +85,8 @@ public class ServerModInitializer {
         // 注册玩家连接事件
         registerPlayerEvents();
         
-        // 注册服务器tick事件
+        // 调度各子系统并注册服务器tick事件
+        scheduleSubsystems();
         registerTickEvents();
         
         initialized = true;
@@ -66,22 +103,31 @@ public class ServerModInitializer {
     private static void registerServerEvents() {
         ServerLifecycleEvents.SERVER_STARTING.register(server -> {
             LOGGER.info("服务器启动中...");
-            // 加载保存的数据
-            civilizationManager.load();
-            planetStatusManager.load();
+            serverPort = new MinecraftServerPort(server);
+            // 选择时钟，加载存档后再从存档中的时间继续
+            applyClock();
+            // 启动后台执行服务，事件日志的写入任务运行在其中
+            ModExecutors.start();
+            // 打开事件日志
+            openJournal(server);
         });
         
         ServerLifecycleEvents.SERVER_STARTED.register(server -> {
             LOGGER.info("服务器已启动，开始行星状态监控");
+            // 世界已加载，从主世界存档和事件日志恢复数据
+            openPlayerStore(server);
+            civilizationManager.load();
+            planetStatusManager.load();
+            loadPersistentState(server);
             // 启动行星状态监控
-            planetStatusManager.startMonitoring(server);
+            planetStatusManager.startMonitoring(serverPort);
+            openHistory(server);
+            openTraceRecorder(server);
         });
         
         ServerLifecycleEvents.SERVER_STOPPING.register(server -> {
             LOGGER.info("服务器停止中...");
-            // 保存数据
-            civilizationManager.save();
-            planetStatusManager.save();
+            // 数据随之后的世界保存写入主世界存档，写入在 SERVER_STOPPED 时等待完成
         });
         
         ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
@@ -96,44 +142,300 @@ public class ServerModInitializer {
     private static void registerPlayerEvents() {
         ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> {
             LOGGER.info("玩家 {} 加入了服务器", handler.player.getName().getString());
-            // 同步玩家数据
+            // 读入并同步玩家数据
+            civilizationManager.loadPlayerData(handler.player);
             civilizationManager.syncPlayerData(handler.player);
             planetStatusManager.syncPlanetStatus(handler.player);
+            if (traceRecorder != null) {
+                traceRecorder.onPlayerJoin(handler.player.getUuid(), handler.player.getName().getString());
+            }
         });
         
         ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
             LOGGER.info("玩家 {} 离开了服务器", handler.player.getName().getString());
-            // 保存玩家数据
+            // 保存玩家数据（在本tick结束时写回）
             civilizationManager.savePlayerData(handler.player);
+            if (traceRecorder != null) {
+                traceRecorder.onPlayerLeave(handler.player.getUuid());
+            }
+        });
+    }
+    
+    /**
+     * 把各子系统的周期性更新注册到调度器，由调度器错开到不同的tick上运行
+     */
+    private static void scheduleSubsystems() {
+        ModConfig.PerformanceConfig config = PlanetaryExodusMod.getInstance().getConfig().getPerformance();
+        scheduleSubsystems(tickScheduler, config, civilizationManager, planetStatusManager, disasterManager);
+        
+        // 记录每分钟的历史样本（同一分钟内的调用直接返回）
+        tickScheduler.schedule("history", config.getTickPeriod("history", 20), (server, slice) -> {
+            if (metricHistory != null) {
+                metricHistory.sample(civilizationManager.getProgress(), planetStatusManager.getCurrentStatus(),
+                    disasterManager.getDisasterCount());
+            }
+            return false;
         });
+        applyTickBudgets(tickScheduler, config);
+    }
+    
+    /**
+     * 按配置的周期把各子系统注册到指定的调度器，离线重放时使用同样的调度方式
+     */
+    public static void scheduleSubsystems(TickScheduler scheduler, ModConfig.PerformanceConfig config,
+                                          CivilizationManager civilization, PlanetStatusManager planet,
+                                          DisasterManager disaster) {
+        // 更新文明进度
+        scheduler.schedule("civilization", config.getTickPeriod("civilization", 20), (server, slice) -> {
+            civilization.update(server);
+            return false;
+        });
+        
+        // 更新行星状态，状态效果分阶段应用
+        scheduler.schedule("planet", config.getTickPeriod("planet", 20), (server, slice) ->
+            planet.update(server, civilization.getProgress(), slice));
+        
+        // 更新灾难系统，灾难效果分片在后续tick中逐个应用
+        scheduler.schedule("disaster", config.getTickPeriod("disaster", 20), (server, slice) ->
+            disaster.update(server, planet.getCurrentStatus(), slice));
+        
+        // 检查里程碑，每片检查一个
+        scheduler.schedule("milestones", config.getTickPeriod("milestones", 20), (server, slice) ->
+            civilization.checkMilestones(server, slice));
+    }
+    
+    /**
+     * 按配置设置调度器的总预算、各子系统的时间片和分配预算
+     */
+    public static void applyTickBudgets(TickScheduler scheduler, ModConfig.PerformanceConfig config) {
+        scheduler.setTotalBudgetNanos(config.tickBudgetMicros * 1000);
+        scheduler.setAllocationTracking(config.allocationTrackingEnabled);
+        for (TickScheduler.ScheduledTask task : scheduler.getTasks()) {
+            long micros = config.getSubsystemBudgetMicros(task.getName(), task.getBudgetNanos() / 1000);
+            scheduler.setBudget(task.getName(), micros * 1000);
+            scheduler.setAllocationBudget(task.getName(),
+                config.getSubsystemAllocationBudgetBytes(task.getName(), task.getAllocationBudgetBytes()));
+        }
     }
     
     /**
      * 注册服务器tick事件
      */
     private static void registerTickEvents() {
+        // tick内发布的事件先排队，tick结束时统一投递并合并进度事件
+        // 后台线程投递的事件和操作在tick开始时执行，同样进入本tick的批处理
+        ServerTickEvents.START_SERVER_TICK.register(server -> {
+            ModClock.onServerTick();
+            if (traceRecorder != null) {
+                // 上一个tick结束时服务器把耗时写在 ticks % 长度 的位置
+                long[] tickTimes = server.lastTickLengths;
+                traceRecorder.onTickStart(serverPort, tickTimes[server.getTicks() % tickTimes.length]);
+            }
+            EventBus.getInstance().beginTickBatch();
+            ServerThreadBridge.getInstance().drain();
+        });
+        
         ServerTickEvents.END_SERVER_TICK.register(server -> {
-            if (server.getTicks() % 20 == 0) { // 每秒执行一次
-                try {
-                    // 更新文明进度
-                    civilizationManager.update(server);
-                    
-                    // 更新行星状态
-                    planetStatusManager.update(server, civilizationManager.getProgress());
-                    
-                    // 更新灾难系统
-                    disasterManager.update(server, planetStatusManager.getCurrentStatus());
-                    
-                    // 检查里程碑
-                    civilizationManager.checkMilestones(server);
-                    
-                } catch (Exception e) {
-                    LOGGER.error("服务器tick更新时出错", e);
-                }
+            try {
+                onEndTick(server);
+            } finally {
+                EventBus.getInstance().flushTickBatch();
             }
+            // 本tick的事件都已写入日志，写回离线玩家的贡献
+            civilizationManager.writeBackPlayerData();
         });
     }
     
+    /**
+     * tick结束时评估质量级别并运行到期的子系统
+     */
+    private static void onEndTick(MinecraftServer server) {
+        AdaptiveQualityController.getInstance().update(server);
+        tickScheduler.tick(serverPort);
+    }
+    
+    /**
+     * 按配置选择模组时钟
+     * 按tick推进的时钟先从系统时间开始，加载存档后由 resumeClock 推进到上次运行达到的模拟时间
+     */
+    private static void applyClock() {
+        ModConfig.PerformanceConfig config = PlanetaryExodusMod.getInstance().getConfig().getPerformance();
+        if (config.tickClock) {
+            ModClock.setSource(new ModClock.TickSource(System.currentTimeMillis(), config.clockSpeed));
+            LOGGER.info("使用按tick推进的时钟，加速倍率 {}", config.clockSpeed);
+        } else {
+            ModClock.useSystemTime();
+        }
+    }
+    
+    /**
+     * 打开世界存档下的事件日志并订阅需要记录的事件
+     */
+    private static void openJournal(MinecraftServer server) {
+        ModConfig.PerformanceConfig config = PlanetaryExodusMod.getInstance().getConfig().getPerformance();
+        if (!config.journalEnabled) {
+            return;
+        }
+        Path directory = getJournalDirectory(server);
+        try {
+            eventJournal = EventJournal.open(directory, config.journalSegmentSizeMb * 1024 * 1024,
+                config.journalCommitIntervalMillis);
+            EventBus.getInstance().register(eventJournal);
+        } catch (IOException e) {
+            LOGGER.error("打开事件日志失败，本次运行不记录事件: {}", directory, e);
+        }
+    }
+    
+    /**
+     * 打开世界存档下的玩家贡献存储，失败时贡献全部保存在快照中
+     */
+    private static void openPlayerStore(MinecraftServer server) {
+        ModConfig.PerformanceConfig config = PlanetaryExodusMod.getInstance().getConfig().getPerformance();
+        if (!config.playerStoreEnabled) {
+            return;
+        }
+        Path directory = server.getSavePath(WorldSavePath.ROOT).resolve("planetaryexodus").resolve("players");
+        try {
+            civilizationManager.setPlayerStore(PlayerContributionStore.open(directory), config.playerStoreCacheSize,
+                () -> eventJournal != null ? eventJournal.getLastAppendedSequence() : -1);
+        } catch (IOException e) {
+            LOGGER.error("打开玩家贡献存储失败，本次运行把贡献保存在快照中: {}", directory, e);
+        }
+    }
+    
+    /**
+     * 把模组数据挂到主世界存档上并恢复快照和增量检查点，再重放之后的事件日志
+     */
+    private static void loadPersistentState(MinecraftServer server) {
+        Path checkpointDirectory = server.getSavePath(WorldSavePath.ROOT).resolve("planetaryexodus")
+            .resolve("checkpoints");
+        persistentState = ModPersistentState.attach(server.getOverworld(),
+            civilizationManager, planetStatusManager, disasterManager,
+            () -> eventJournal != null ? eventJournal.getLastAppendedSequence() : -1, checkpointDirectory,
+            PlanetaryExodusMod.getInstance().getConfig().getPerformance().checkpointCompactAfterDeltas);
+        long snapshotSequence = persistentState.getLoadedJournalSequence();
+        if (eventJournal != null) {
+            eventJournal.skipSequencesThrough(snapshotSequence);
+            // 快照保存成功后，之前的日志记录不再需要用于恢复
+            if (PlanetaryExodusMod.getInstance().getConfig().getPerformance().journalTruncateOnCheckpoint) {
+                persistentState.setCheckpointListener(eventJournal::truncateThrough);
+            }
+            // 日志无法写入时，尚未落盘的记录只存在于内存中，立即保存一次完整的检查点
+            eventJournal.setFailureListener(() -> ServerThreadBridge.getInstance().execute(() -> {
+                if (persistentState != null) {
+                    persistentState.requestFullCheckpoint();
+                    server.getOverworld().getPersistentStateManager().save();
+                }
+            }));
+        }
+        long replayedUntil = replayJournal(server, persistentState.getReplayStartSequence());
+        resumeClock(Math.max(persistentState.getLoadedClockMillis(), replayedUntil));
+    }
+    
+    /**
+     * 按tick推进的时钟从上次运行达到的模拟时间继续，避免存档中的时间戳都落在未来
+     * （状态天数为负、冷却按加速倍率拉长、历史记录在追上之前被丢弃）
+     * @param savedMillis 存档和已重放日志中最晚的模组时间
+     */
+    private static void resumeClock(long savedMillis) {
+        if (ModClock.getSource() instanceof ModClock.TickSource) {
+            ModClock.TickSource clock = (ModClock.TickSource) ModClock.getSource();
+            if (savedMillis > clock.currentTimeMillis()) {
+                clock.advanceTo(savedMillis);
+                LOGGER.info("按tick推进的时钟从存档时间继续: {}", new java.util.Date(savedMillis));
+            }
+        }
+    }
+    
+    /**
+     * 重放事件日志中快照之后的记录，恢复文明进度、行星状态和灾难冷却
+     * @return 重放记录中最晚的时间戳，没有记录或重放失败时返回0
+     */
+    private static long replayJournal(MinecraftServer server, long afterSequence) {
+        Path directory = getJournalDirectory(server);
+        try {
+            JournalReplayer.Result result = JournalReplayer.replay(directory, afterSequence,
+                civilizationManager, planetStatusManager, disasterManager);
+            LOGGER.info("事件日志{}", result);
+            return result.lastTimestamp;
+        } catch (IOException e) {
+            LOGGER.error("重放事件日志失败: {}", directory, e);
+            return 0;
+        }
+    }
+    
+    private static Path getJournalDirectory(MinecraftServer server) {
+        return server.getSavePath(WorldSavePath.ROOT).resolve("planetaryexodus").resolve("journal");
+    }
+    
+    /**
+     * 取消订阅并关闭事件日志，写完尚未落盘的记录
+     */
+    private static void closeJournal() {
+        if (eventJournal != null) {
+            EventBus.getInstance().unregister(eventJournal);
+            eventJournal.close();
+            eventJournal = null;
+        }
+    }
+    
+    /**
+     * 打开世界存档下的历史数据并订阅进度和状态事件
+     */
+    private static void openHistory(MinecraftServer server) {
+        ModConfig.PerformanceConfig config = PlanetaryExodusMod.getInstance().getConfig().getPerformance();
+        if (!config.historyEnabled) {
+            return;
+        }
+        Path directory = server.getSavePath(WorldSavePath.ROOT).resolve("planetaryexodus").resolve("history");
+        try {
+            metricHistory = MetricHistory.open(directory, config.historySegmentSizeKb * 1024);
+            EventBus.getInstance().register(metricHistory);
+        } catch (IOException e) {
+            LOGGER.error("打开历史数据失败，本次运行不记录历史: {}", directory, e);
+        }
+    }
+    
+    /**
+     * 取消订阅并关闭历史数据
+     */
+    private static void closeHistory() {
+        if (metricHistory != null) {
+            EventBus.getInstance().unregister(metricHistory);
+            metricHistory.close();
+            metricHistory = null;
+        }
+    }
+    
+    /**
+     * 在世界存档下创建新的轨迹文件并开始记录输入
+     */
+    private static void openTraceRecorder(MinecraftServer server) {
+        ModConfig.PerformanceConfig config = PlanetaryExodusMod.getInstance().getConfig().getPerformance();
+        if (!config.traceEnabled) {
+            return;
+        }
+        String name = "trace-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".bin";
+        Path path = server.getSavePath(WorldSavePath.ROOT).resolve("planetaryexodus").resolve("traces").resolve(name);
+        try {
+            traceRecorder = TraceRecorder.open(path, config.traceSampleIntervalTicks, System.nanoTime());
+            EventBus.getInstance().register(traceRecorder);
+        } catch (IOException e) {
+            LOGGER.error("创建输入轨迹失败，本次运行不记录: {}", path, e);
+        }
+    }
+    
+    /**
+     * 取消订阅并关闭轨迹记录器，写完缓冲区中的记录
+     */
+    private static void closeTraceRecorder() {
+        if (traceRecorder != null) {
+            EventBus.getInstance().unregister(traceRecorder);
+            traceRecorder.close();
+            traceRecorder = null;
+        }
+    }
+    
     /**
      * 清理资源
      */
@@ -148,6 +450,21 @@ public class ServerModInitializer {
             disasterManager.cleanup();
         }
         
+        closeTraceRecorder();
+        closeHistory();
+        if (persistentState != null) {
+            persistentState.awaitPendingWrites();
+            persistentState = null;
+        }
+        // 关闭事件日志，写入任务运行在后台执行服务中，必须先于执行服务关闭
+        closeJournal();
+        // 停止异步事件分发和后台计算，丢弃后台线程尚未执行的投递
+        ModExecutors.shutdown();
+        ServerThreadBridge.getInstance().discardPending();
+        AdaptiveQualityController.getInstance().reset();
+        ModClock.useSystemTime();
+        serverPort = null;
+        
         initialized = false;
         LOGGER.info("服务器资源已清理");
     }
@@ -173,6 +490,41 @@ public class ServerModInitializer {
         return disasterManager;
     }
     
+    /**
+     * 获取tick相位调度器
+     */
+    public static TickScheduler getTickScheduler() {
+        return tickScheduler;
+    }
+    
+    /**
+     * 获取当前服务器的端口（服务器未运行时为null）
+     */
+    public static IServerPort getServerPort() {
+        return serverPort;
+    }
+    
+    /**
+     * 获取每分钟的历史数据（未启用或未打开时为null）
+     */
+    public static MetricHistory getMetricHistory() {
+        return metricHistory;
+    }
+    
+    /**
+     * 获取事件日志（未启用或未打开时为null）
+     */
+    public static EventJournal getEventJournal() {
+        return eventJournal;
+    }
+    
+    /**
+     * 获取输入轨迹记录器（未启用时为null）
+     */
+    public static TraceRecorder getTraceRecorder() {
+        return traceRecorder;
+    }
+    
     /**
      * 检查服务器系统是否已初始化
      */
@@ -203,6 +555,18 @@ public class ServerModInitializer {
             disasterManager.reloadConfig();
         }
         
+        // 应用新的子系统周期
+        ModConfig.PerformanceConfig performance = PlanetaryExodusMod.getInstance().getConfig().getPerformance();
+        for (TickScheduler.ScheduledTask task : tickScheduler.getTasks()) {
+            tickScheduler.setPeriod(task.getName(), performance.getTickPeriod(task.getName(), task.getPeriod()));
+        }
+        applyTickBudgets(tickScheduler, performance);
+        
+        // 时钟模式在下次启动时生效，运行中只调整加速倍率
+        if (ModClock.getSource() instanceof ModClock.TickSource) {
+            ((ModClock.TickSource) ModClock.getSource()).setSpeed(performance.clockSpeed);
+        }
+        
         LOGGER.info("服务器配置已重新加载");
     }
 }
\ No newline at end of file
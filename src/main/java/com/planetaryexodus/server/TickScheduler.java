@@ -0,0 +1,513 @@
+package com.planetaryexodus.server;
+
+import com.planetaryexodus.api.interfaces.IServerPort;
+import com.planetaryexodus.core.AllocationCounter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * tick相位调度器
+ * 每个子系统按自己的周期运行，并被分配到不同的tick偏移上，
+ * 避免所有子系统挤在同一个tick里造成每秒一次的MSPT尖峰
+ *
+ * 子系统也可以把一个周期的工作拆成多片，返回true表示还有剩余。
+ * 每个tick中调度器在子系统自己的时间片内连续执行分片，时间片用完后剩余分片留到下一个tick；
+ * 整个模组每tick的总预算用完后，本tick到期但尚未开始的任务也推迟到下一个tick
+ *
+ * 调度器同时用线程分配计数器测量每个任务每tick分配的字节数，超过分配预算时记录并警告
+ */
+public class TickScheduler {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger("PlanetaryExodus/Scheduler");
+    
+    /**
+     * 调度任务
+     */
+    @FunctionalInterface
+    public interface TickTask {
+        /**
+         * 执行一片工作
+         * @param server 服务器端口
+         * @param slice 本周期内的分片序号，周期开始时为0
+         * @return 还有剩余工作需要在下一个tick继续时返回true
+         */
+        boolean run(IServerPort server, int slice);
+    }
+    
+    // 同一任务的超预算警告最短间隔（tick）
+    private static final int WARN_INTERVAL_TICKS = 1200;
+    
+    private final List<ScheduledTask> tasks = new ArrayList<>();
+    
+    // 整个调度器每tick的总预算（纳秒），0表示不限制
+    private long totalBudgetNanos = 0;
+    // 因总预算用完而推迟任务时轮换起始位置，避免排在后面的任务一直被推迟
+    private int startIndex = 0;
+    private long budgetExhaustedTicks;
+    private long lastTickNanos;
+    // 是否测量每个任务的分配量
+    private boolean allocationTracking = AllocationCounter.isSupported();
+    private long lastTickAllocatedBytes;
+    
+    /**
+     * 按周期调度任务，自动选择与已有任务冲突最少的偏移
+     * @param name 任务名称
+     * @param period 周期（tick）
+     * @param task 任务
+     */
+    public ScheduledTask schedule(String name, int period, TickTask task) {
+        return schedule(name, period, chooseOffset(checkPeriod(period), null), task);
+    }
+    
+    /**
+     * 按周期和固定偏移调度任务
+     * @param offset 偏移（tick），任务在 ticks % period == offset 时开始新周期
+     */
+    public ScheduledTask schedule(String name, int period, int offset, TickTask task) {
+        ScheduledTask scheduled = new ScheduledTask(name, checkPeriod(period), Math.floorMod(offset, period), task);
+        tasks.add(scheduled);
+        LOGGER.debug("调度任务 {}：周期 {} tick，偏移 {}", name, scheduled.period, scheduled.offset);
+        return scheduled;
+    }
+    
+    /**
+     * 修改任务周期并重新选择偏移
+     * @return 是否找到该任务
+     */
+    public boolean setPeriod(String name, int period) {
+        for (ScheduledTask task : tasks) {
+            if (task.name.equals(name)) {
+                task.period = checkPeriod(period);
+                task.offset = chooseOffset(task.period, task);
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 设置任务每tick的时间片
+     * @param budgetNanos 时间片（纳秒），0表示不限制（每tick只执行一片）
+     * @return 是否找到该任务
+     */
+    public boolean setBudget(String name, long budgetNanos) {
+        for (ScheduledTask task : tasks) {
+            if (task.name.equals(name)) {
+                task.budgetNanos = Math.max(0, budgetNanos);
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 设置任务每tick的分配预算
+     * @param budgetBytes 分配预算（字节），0表示不限制
+     * @return 是否找到该任务
+     */
+    public boolean setAllocationBudget(String name, long budgetBytes) {
+        for (ScheduledTask task : tasks) {
+            if (task.name.equals(name)) {
+                task.allocationBudgetBytes = Math.max(0, budgetBytes);
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 开启或关闭分配测量，JVM不支持线程分配计数时始终关闭
+     */
+    public void setAllocationTracking(boolean enabled) {
+        this.allocationTracking = enabled && AllocationCounter.isSupported();
+    }
+    
+    public boolean isAllocationTracking() {
+        return allocationTracking;
+    }
+    
+    /**
+     * 设置整个调度器每tick的总预算
+     * @param budgetNanos 总预算（纳秒），0表示不限制
+     */
+    public void setTotalBudgetNanos(long budgetNanos) {
+        this.totalBudgetNanos = Math.max(0, budgetNanos);
+    }
+    
+    /**
+     * 获取整个调度器每tick的总预算（纳秒）
+     */
+    public long getTotalBudgetNanos() {
+        return totalBudgetNanos;
+    }
+    
+    /**
+     * 每个tick调用一次，在预算内运行到期的任务和尚未完成的分片
+     */
+    public void tick(IServerPort server) {
+        int ticks = server.getTicks();
+        int count = tasks.size();
+        for (ScheduledTask task : tasks) {
+            if (task.nextSlice < 0 && Math.floorMod(ticks - task.offset, task.period) == 0) {
+                task.nextSlice = 0;
+            }
+        }
+        
+        long tickStart = System.nanoTime();
+        long tickAllocated = 0;
+        boolean deferred = false;
+        for (int i = 0; i < count; i++) {
+            ScheduledTask task = tasks.get((startIndex + i) % count);
+            if (task.nextSlice < 0) {
+                continue;
+            }
+            // 总预算已用完，剩余任务推迟到下一个tick（每tick至少执行一片以保证前进）
+            if (totalBudgetNanos > 0 && i > 0 && System.nanoTime() - tickStart >= totalBudgetNanos) {
+                task.deferredTicks++;
+                deferred = true;
+                continue;
+            }
+            runSlices(server, task, tickStart, ticks);
+            tickAllocated += task.lastTickAllocatedBytes;
+        }
+        
+        lastTickNanos = System.nanoTime() - tickStart;
+        lastTickAllocatedBytes = allocationTracking ? tickAllocated : 0;
+        if (deferred) {
+            budgetExhaustedTicks++;
+            startIndex = (startIndex + 1) % Math.max(1, count);
+        }
+    }
+    
+    /**
+     * 在任务的时间片内连续执行分片
+     */
+    private void runSlices(IServerPort server, ScheduledTask task, long tickStart, int ticks) {
+        long allocatedBefore = allocationTracking ? AllocationCounter.currentThreadAllocatedBytes() : 0;
+        long start = System.nanoTime();
+        while (true) {
+            long sliceStart = System.nanoTime();
+            boolean more;
+            try {
+                more = task.task.run(server, task.nextSlice);
+            } catch (Exception e) {
+                LOGGER.error("调度任务 {} 执行出错", task.name, e);
+                more = false;
+            }
+            long now = System.nanoTime();
+            long sliceNanos = now - sliceStart;
+            task.slicesRun++;
+            task.maxSliceNanos = Math.max(task.maxSliceNanos, sliceNanos);
+            
+            if (!more) {
+                task.nextSlice = -1;
+                task.cyclesCompleted++;
+                break;
+            }
+            task.nextSlice++;
+            
+            // 没有时间片的任务每tick只执行一片；时间片或总预算放不下下一片（按本片耗时估计）时，
+            // 剩余分片留到下一个tick
+            if (task.budgetNanos == 0 || now - start + sliceNanos > task.budgetNanos
+                || (totalBudgetNanos > 0 && now - tickStart + sliceNanos > totalBudgetNanos)) {
+                task.carriedOverTicks++;
+                break;
+            }
+        }
+        
+        long elapsed = System.nanoTime() - start;
+        task.ticksRun++;
+        task.totalNanos += elapsed;
+        task.lastTickNanos = elapsed;
+        if (allocationTracking) {
+            recordAllocation(task, AllocationCounter.currentThreadAllocatedBytes() - allocatedBefore, ticks);
+        }
+        if (task.budgetNanos > 0 && elapsed > task.budgetNanos) {
+            // 单个分片无法被打断，超出时间片只能记录下来
+            task.budgetOverruns++;
+            if (ticks - task.lastWarnTick >= WARN_INTERVAL_TICKS) {
+                task.lastWarnTick = ticks;
+                LOGGER.warn("调度任务 {} 本tick耗时 {}μs，超过时间片 {}μs（累计超出 {} 次）",
+                    task.name, elapsed / 1000, task.budgetNanos / 1000, task.budgetOverruns);
+            }
+        }
+    }
+    
+    /**
+     * 记录任务本tick的分配量，超过分配预算时警告
+     */
+    private void recordAllocation(ScheduledTask task, long bytes, int ticks) {
+        task.lastTickAllocatedBytes = bytes;
+        task.totalAllocatedBytes += bytes;
+        task.allocationTicks++;
+        task.maxTickAllocatedBytes = Math.max(task.maxTickAllocatedBytes, bytes);
+        if (task.allocationBudgetBytes > 0 && bytes > task.allocationBudgetBytes) {
+            task.allocationOverruns++;
+            if (ticks - task.lastAllocationWarnTick >= WARN_INTERVAL_TICKS) {
+                task.lastAllocationWarnTick = ticks;
+                LOGGER.warn("调度任务 {} 本tick分配 {} 字节，超过分配预算 {} 字节（累计超出 {} 次）",
+                    task.name, bytes, task.allocationBudgetBytes, task.allocationOverruns);
+            }
+        }
+    }
+    
+    /**
+     * 获取因总预算用完而推迟了任务的tick数
+     */
+    public long getBudgetExhaustedTicks() {
+        return budgetExhaustedTicks;
+    }
+    
+    /**
+     * 获取上一个tick调度器的总耗时（纳秒）
+     */
+    public long getLastTickNanos() {
+        return lastTickNanos;
+    }
+    
+    /**
+     * 获取上一个tick所有任务合计分配的字节数，未测量时为0
+     */
+    public long getLastTickAllocatedBytes() {
+        return lastTickAllocatedBytes;
+    }
+    
+    /**
+     * 获取所有调度任务
+     */
+    public List<ScheduledTask> getTasks() {
+        return Collections.unmodifiableList(tasks);
+    }
+    
+    /**
+     * 取消所有任务
+     */
+    public void clear() {
+        tasks.clear();
+    }
+    
+    /**
+     * 在 [0, period) 中选择偏移：优先避开与已有任务落在同一tick的偏移，
+     * 其次离最近的已有任务尽量远
+     */
+    private int chooseOffset(int period, ScheduledTask self) {
+        int best = 0;
+        long bestScore = Long.MAX_VALUE;
+        for (int offset = 0; offset < period; offset++) {
+            int collisions = 0;
+            int nearest = period;
+            for (ScheduledTask other : tasks) {
+                if (other == self) {
+                    continue;
+                }
+                // 两个周期任务会在同一tick运行，当且仅当偏移之差能被两周期的最大公约数整除
+                int gcd = gcd(period, other.period);
+                int distance = Math.floorMod(offset - other.offset, gcd);
+                distance = Math.min(distance, gcd - distance);
+                if (distance == 0) {
+                    collisions++;
+                }
+                nearest = Math.min(nearest, distance);
+            }
+            long score = (long) collisions * period * 2 - nearest;
+            if (score < bestScore) {
+                bestScore = score;
+                best = offset;
+            }
+        }
+        return best;
+    }
+    
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+    
+    private static int checkPeriod(int period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("period must be positive: " + period);
+        }
+        return period;
+    }
+    
+    /**
+     * 已调度的任务
+     */
+    public static final class ScheduledTask {
+        private final String name;
+        private final TickTask task;
+        private int period;
+        private int offset;
+        private long budgetNanos;
+        // 下一个要执行的分片序号，-1表示本周期已完成
+        private int nextSlice = -1;
+        private long slicesRun;
+        private long cyclesCompleted;
+        
+        // 预算统计
+        private long totalNanos;
+        private long lastTickNanos;
+        private long maxSliceNanos;
+        private long budgetOverruns;
+        private long carriedOverTicks;
+        private long deferredTicks;
+        private int lastWarnTick = Integer.MIN_VALUE / 2;
+        private long ticksRun;
+        
+        // 分配统计
+        private long allocationBudgetBytes;
+        private long allocationTicks;
+        private long totalAllocatedBytes;
+        private long lastTickAllocatedBytes;
+        private long maxTickAllocatedBytes;
+        private long allocationOverruns;
+        private int lastAllocationWarnTick = Integer.MIN_VALUE / 2;
+        
+        ScheduledTask(String name, int period, int offset, TickTask task) {
+            this.name = name;
+            this.period = period;
+            this.offset = offset;
+            this.task = task;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public int getPeriod() {
+            return period;
+        }
+        
+        public int getOffset() {
+            return offset;
+        }
+        
+        /**
+         * 获取每tick的时间片（纳秒），0表示不限制
+         */
+        public long getBudgetNanos() {
+            return budgetNanos;
+        }
+        
+        /**
+         * 判断任务是否有未完成的分片
+         */
+        public boolean isInProgress() {
+            return nextSlice >= 0;
+        }
+        
+        public long getSlicesRun() {
+            return slicesRun;
+        }
+        
+        public long getCyclesCompleted() {
+            return cyclesCompleted;
+        }
+        
+        /**
+         * 获取累计耗时（纳秒）
+         */
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+        
+        /**
+         * 获取最近一次运行的tick内耗时（纳秒）
+         */
+        public long getLastTickNanos() {
+            return lastTickNanos;
+        }
+        
+        /**
+         * 获取单个分片的最大耗时（纳秒）
+         */
+        public long getMaxSliceNanos() {
+            return maxSliceNanos;
+        }
+        
+        /**
+         * 获取tick内耗时超过时间片的次数
+         */
+        public long getBudgetOverruns() {
+            return budgetOverruns;
+        }
+        
+        /**
+         * 获取时间片用完、剩余分片留到下一个tick的次数
+         */
+        public long getCarriedOverTicks() {
+            return carriedOverTicks;
+        }
+        
+        /**
+         * 获取因总预算用完而整体推迟到下一个tick的次数
+         */
+        public long getDeferredTicks() {
+            return deferredTicks;
+        }
+        
+        /**
+         * 获取任务执行过分片的tick数
+         */
+        public long getTicksRun() {
+            return ticksRun;
+        }
+        
+        /**
+         * 获取每tick的分配预算（字节），0表示不限制
+         */
+        public long getAllocationBudgetBytes() {
+            return allocationBudgetBytes;
+        }
+        
+        /**
+         * 获取累计分配的字节数
+         */
+        public long getTotalAllocatedBytes() {
+            return totalAllocatedBytes;
+        }
+        
+        /**
+         * 获取最近一次运行的tick内分配的字节数
+         */
+        public long getLastTickAllocatedBytes() {
+            return lastTickAllocatedBytes;
+        }
+        
+        /**
+         * 获取单个tick内分配的最大字节数
+         */
+        public long getMaxTickAllocatedBytes() {
+            return maxTickAllocatedBytes;
+        }
+        
+        /**
+         * 获取运行过的tick平均分配的字节数
+         */
+        public long getAverageAllocatedBytes() {
+            return allocationTicks == 0 ? 0 : totalAllocatedBytes / allocationTicks;
+        }
+        
+        /**
+         * 获取tick内分配量超过分配预算的次数
+         */
+        public long getAllocationOverruns() {
+            return allocationOverruns;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("ScheduledTask{name=%s, period=%d, offset=%d, budget=%dμs, overruns=%d, carriedOver=%d, deferred=%d, avgAllocated=%dB, allocationOverruns=%d}",
+                name, period, offset, budgetNanos / 1000, budgetOverruns, carriedOverTicks, deferredTicks,
+                getAverageAllocatedBytes(), allocationOverruns);
+        }
+    }
+}
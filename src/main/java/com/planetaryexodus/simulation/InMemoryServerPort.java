@@ -0,0 +1,277 @@
+package com.planetaryexodus.simulation;
+
+import com.planetaryexodus.api.interfaces.IPlayerView;
+import com.planetaryexodus.api.interfaces.IServerPort;
+import com.planetaryexodus.api.interfaces.IWorldView;
+import com.planetaryexodus.core.ModClock;
+import net.minecraft.text.Text;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 内存中的服务器端口
+ * 不需要 Minecraft 服务器，玩家、世界和tick计数都由调用方控制，
+ * 用于在单元测试、基准测试和离线模拟中以全速驱动各个管理器
+ *
+ * 用法：
+ * <pre>
+ * InMemoryServerPort port = new InMemoryServerPort();
+ * port.addWorld("minecraft:overworld");
+ * port.addPlayer("Steve").setSkyVisible(true);
+ * for (int i = 0; i &lt; 72000; i++) {
+ *     port.tick();
+ *     scheduler.tick(port);
+ * }
+ * </pre>
+ * 不是线程安全的，与服务器端口一样只应在一个线程上使用
+ */
+public class InMemoryServerPort implements IServerPort {
+    
+    private final Map<UUID, SimulatedPlayer> players = new LinkedHashMap<>();
+    private final List<SimulatedWorld> worlds = new ArrayList<>();
+    private final List<Text> broadcasts = new ArrayList<>();
+    private int ticks;
+    
+    /**
+     * 推进一个tick，同时推进按tick计时的模组时钟
+     * @return 推进后的tick数
+     */
+    public int tick() {
+        ModClock.onServerTick();
+        return ++ticks;
+    }
+    
+    /**
+     * 推进多个tick
+     * @return 推进后的tick数
+     */
+    public int advanceTicks(int count) {
+        for (int i = 0; i < count; i++) {
+            tick();
+        }
+        return ticks;
+    }
+    
+    /**
+     * 设置tick数，用于从记录中的tick继续模拟
+     */
+    public void setTicks(int ticks) {
+        this.ticks = ticks;
+    }
+    
+    /**
+     * 获取模拟的玩家
+     * @return 玩家不在线时返回null
+     */
+    public SimulatedPlayer getSimulatedPlayer(UUID id) {
+        return players.get(id);
+    }
+    
+    /**
+     * 获取模拟的世界
+     * @return 没有该世界时返回null
+     */
+    public SimulatedWorld getSimulatedWorld(String name) {
+        for (SimulatedWorld world : worlds) {
+            if (world.getName().equals(name)) {
+                return world;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * 添加一个在线玩家
+     */
+    public SimulatedPlayer addPlayer(String name) {
+        return addPlayer(UUID.nameUUIDFromBytes(("OfflinePlayer:" + name).getBytes()), name);
+    }
+    
+    /**
+     * 添加一个在线玩家
+     */
+    public SimulatedPlayer addPlayer(UUID id, String name) {
+        SimulatedPlayer player = new SimulatedPlayer(id, name);
+        players.put(id, player);
+        return player;
+    }
+    
+    /**
+     * 移除玩家（模拟下线）
+     */
+    public void removePlayer(UUID id) {
+        players.remove(id);
+    }
+    
+    /**
+     * 添加一个世界
+     */
+    public SimulatedWorld addWorld(String name) {
+        SimulatedWorld world = new SimulatedWorld(name);
+        worlds.add(world);
+        return world;
+    }
+    
+    /**
+     * 获取已广播的消息，按广播顺序
+     */
+    public List<Text> getBroadcasts() {
+        return Collections.unmodifiableList(broadcasts);
+    }
+    
+    /**
+     * 清空已记录的广播消息
+     */
+    public void clearBroadcasts() {
+        broadcasts.clear();
+    }
+    
+    @Override
+    public int getTicks() {
+        return ticks;
+    }
+    
+    @Override
+    public List<IPlayerView> getPlayers() {
+        return new ArrayList<>(players.values());
+    }
+    
+    @Override
+    public IPlayerView getPlayer(UUID id) {
+        return players.get(id);
+    }
+    
+    @Override
+    public List<IWorldView> getWorlds() {
+        return new ArrayList<>(worlds);
+    }
+    
+    @Override
+    public void broadcast(Text message) {
+        broadcasts.add(message);
+    }
+    
+    /**
+     * 模拟的玩家，状态由调用方设置
+     */
+    public static class SimulatedPlayer implements IPlayerView {
+        private final UUID id;
+        private final String name;
+        private double x;
+        private double y = 64;
+        private double z;
+        private boolean skyVisible = true;
+        private boolean submergedInWater;
+        private boolean raining;
+        
+        SimulatedPlayer(UUID id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+        
+        @Override
+        public UUID getId() {
+            return id;
+        }
+        
+        @Override
+        public String getName() {
+            return name;
+        }
+        
+        @Override
+        public double getX() {
+            return x;
+        }
+        
+        @Override
+        public double getY() {
+            return y;
+        }
+        
+        @Override
+        public double getZ() {
+            return z;
+        }
+        
+        @Override
+        public boolean isSkyVisible() {
+            return skyVisible;
+        }
+        
+        @Override
+        public boolean isSubmergedInWater() {
+            return submergedInWater;
+        }
+        
+        @Override
+        public boolean isRaining() {
+            return raining;
+        }
+        
+        public SimulatedPlayer setPosition(double x, double y, double z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            return this;
+        }
+        
+        public SimulatedPlayer setSkyVisible(boolean skyVisible) {
+            this.skyVisible = skyVisible;
+            return this;
+        }
+        
+        public SimulatedPlayer setSubmergedInWater(boolean submergedInWater) {
+            this.submergedInWater = submergedInWater;
+            return this;
+        }
+        
+        public SimulatedPlayer setRaining(boolean raining) {
+            this.raining = raining;
+            return this;
+        }
+    }
+    
+    /**
+     * 模拟的世界
+     */
+    public static class SimulatedWorld implements IWorldView {
+        private final String name;
+        private boolean raining;
+        private int randomTickSpeed = 3;
+        
+        SimulatedWorld(String name) {
+            this.name = name;
+        }
+        
+        @Override
+        public String getName() {
+            return name;
+        }
+        
+        @Override
+        public boolean isRaining() {
+            return raining;
+        }
+        
+        @Override
+        public int getRandomTickSpeed() {
+            return randomTickSpeed;
+        }
+        
+        @Override
+        public void setRandomTickSpeed(int speed) {
+            this.randomTickSpeed = speed;
+        }
+        
+        public SimulatedWorld setRaining(boolean raining) {
+            this.raining = raining;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.planetaryexodus.simulation;
+
+import java.util.UUID;
+
+/**
+ * 输入轨迹处理器
+ * 读取轨迹时按记录顺序收到解码后的输入
+ */
+public interface TraceHandler {
+    
+    /**
+     * tick开始，之后到下一个tick之前的记录都属于这个tick
+     * @param tick tick开始时服务器的tick数
+     * @param millis 模组时钟的当前时间
+     * @param lastTickNanos 上一个tick的耗时
+     */
+    default void onTick(int tick, long millis, long lastTickNanos) {
+    }
+    
+    /**
+     * 文明进度增加
+     * @param playerId 贡献的玩家，没有时为null
+     * @param playerName 贡献的玩家名，没有时为null
+     */
+    default void onProgress(int amount, String source, UUID playerId, String playerName) {
+    }
+    
+    /**
+     * 玩家加入
+     */
+    default void onPlayerJoin(UUID playerId, String playerName) {
+    }
+    
+    /**
+     * 玩家离开
+     */
+    default void onPlayerLeave(UUID playerId) {
+    }
+    
+    /**
+     * 玩家位置和暴露状态（只在采样时发生变化才记录）
+     */
+    default void onPlayerState(UUID playerId, double x, double y, double z,
+                               boolean skyVisible, boolean submergedInWater, boolean raining) {
+    }
+    
+    /**
+     * 世界天气（只在采样时发生变化才记录）
+     */
+    default void onWorldState(String worldName, boolean raining) {
+    }
+}
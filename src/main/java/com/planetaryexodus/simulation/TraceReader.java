@@ -0,0 +1,126 @@
+package com.planetaryexodus.simulation;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 输入轨迹读取器
+ *
+ * 文件格式：未压缩的文件头（魔数、版本、重放种子、开始时间），之后是GZIP压缩的记录流，
+ * 每条记录以一个字节的类型编号开头，负载由类型决定
+ */
+public final class TraceReader {
+    
+    // "PXTR"
+    static final int MAGIC = 0x50585452;
+    static final short VERSION = 1;
+    
+    static final int FLAG_SKY_VISIBLE = 1;
+    static final int FLAG_SUBMERGED = 2;
+    static final int FLAG_RAINING = 4;
+    
+    /**
+     * 轨迹文件头
+     */
+    public static final class Header {
+        public final int version;
+        // 重放时使用的随机数种子
+        public final long seed;
+        // 开始记录时的模组时间
+        public final long startMillis;
+        
+        Header(int version, long seed, long startMillis) {
+            this.version = version;
+            this.seed = seed;
+            this.startMillis = startMillis;
+        }
+    }
+    
+    private TraceReader() {
+    }
+    
+    /**
+     * 按顺序读取轨迹中的所有记录
+     * 文件末尾不完整的记录（服务器崩溃时未写完）被忽略
+     * @return 文件头
+     */
+    public static Header read(Path path, TraceHandler handler) throws IOException {
+        try (InputStream file = Files.newInputStream(path)) {
+            DataInputStream headerIn = new DataInputStream(file);
+            int magic = headerIn.readInt();
+            if (magic != MAGIC) {
+                throw new IOException("not a trace file: " + path);
+            }
+            int version = headerIn.readShort();
+            if (version > VERSION) {
+                throw new IOException("unsupported trace version " + version + ": " + path);
+            }
+            Header header = new Header(version, headerIn.readLong(), headerIn.readLong());
+            
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(file)));
+            try {
+                readRecords(in, handler);
+            } catch (EOFException e) {
+                // 最后一块没有写完
+            }
+            return header;
+        }
+    }
+    
+    private static void readRecords(DataInputStream in, TraceHandler handler) throws IOException {
+        int id;
+        while ((id = in.read()) >= 0) {
+            TraceRecordType type = TraceRecordType.byId(id);
+            if (type == null) {
+                throw new IOException("unknown trace record type: " + id);
+            }
+            switch (type) {
+                case TICK:
+                    handler.onTick(in.readInt(), in.readLong(), in.readLong());
+                    break;
+                case PROGRESS: {
+                    int amount = in.readInt();
+                    String source = in.readUTF();
+                    if (in.readBoolean()) {
+                        handler.onProgress(amount, source, readUuid(in), in.readUTF());
+                    } else {
+                        handler.onProgress(amount, source, null, null);
+                    }
+                    break;
+                }
+                case PLAYER_JOIN:
+                    handler.onPlayerJoin(readUuid(in), in.readUTF());
+                    break;
+                case PLAYER_LEAVE:
+                    handler.onPlayerLeave(readUuid(in));
+                    break;
+                case PLAYER_STATE: {
+                    UUID playerId = readUuid(in);
+                    float x = in.readFloat();
+                    float y = in.readFloat();
+                    float z = in.readFloat();
+                    int flags = in.readUnsignedByte();
+                    handler.onPlayerState(playerId, x, y, z, (flags & FLAG_SKY_VISIBLE) != 0,
+                        (flags & FLAG_SUBMERGED) != 0, (flags & FLAG_RAINING) != 0);
+                    break;
+                }
+                case WORLD_STATE:
+                    handler.onWorldState(in.readUTF(), in.readBoolean());
+                    break;
+                default:
+                    throw new IOException("unhandled trace record type: " + type);
+            }
+        }
+    }
+    
+    private static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+}
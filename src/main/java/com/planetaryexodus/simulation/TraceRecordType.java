@@ -0,0 +1,55 @@
+package com.planetaryexodus.simulation;
+
+/**
+ * 输入轨迹记录类型
+ * 类型编号写入轨迹文件，已发布的编号不能修改或复用
+ */
+public enum TraceRecordType {
+    
+    /** tick开始：tick数、模组时间、上一tick的耗时 */
+    TICK(1),
+    
+    /** 文明进度增加 */
+    PROGRESS(2),
+    
+    /** 玩家加入 */
+    PLAYER_JOIN(3),
+    
+    /** 玩家离开 */
+    PLAYER_LEAVE(4),
+    
+    /** 玩家位置和暴露状态 */
+    PLAYER_STATE(5),
+    
+    /** 世界天气 */
+    WORLD_STATE(6);
+    
+    private static final TraceRecordType[] BY_ID = new TraceRecordType[256];
+    
+    static {
+        for (TraceRecordType type : values()) {
+            BY_ID[type.id] = type;
+        }
+    }
+    
+    private final int id;
+    
+    TraceRecordType(int id) {
+        this.id = id;
+    }
+    
+    /**
+     * 获取写入文件的类型编号
+     */
+    public int getId() {
+        return id;
+    }
+    
+    /**
+     * 根据类型编号查找记录类型
+     * @return 未知编号返回null
+     */
+    public static TraceRecordType byId(int id) {
+        return id >= 0 && id < BY_ID.length ? BY_ID[id] : null;
+    }
+}
@@ -0,0 +1,323 @@
+package com.planetaryexodus.simulation;
+
+import com.planetaryexodus.api.annotations.Subscribe;
+import com.planetaryexodus.api.events.CivilizationProgressEvent;
+import com.planetaryexodus.api.interfaces.IPlayerView;
+import com.planetaryexodus.api.interfaces.IServerPort;
+import com.planetaryexodus.api.interfaces.IWorldView;
+import com.planetaryexodus.core.ModClock;
+import com.planetaryexodus.core.ModExecutors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 输入轨迹记录器
+ * 记录模组在生产环境中收到的输入：每个tick的开始时间和上一tick的耗时、文明进度增加、
+ * 玩家加入和离开，以及按采样间隔记录发生变化的玩家位置、暴露状态和世界天气，
+ * 之后可以由 TraceReplayer 离线重放，用真实负载验证优化效果
+ *
+ * 所有记录方法都在服务器线程上调用，只编码到内存缓冲区；缓冲区满后交给I/O线程压缩写入，
+ * 写入按提交顺序串行进行。某一块写入失败后压缩流已不完整，之后写入的内容无法读取，
+ * 因此停止记录，轨迹在最后一块成功写入的记录处结束
+ *
+ * 通过 EventBus.register(recorder) 注册，进度事件在批处理模式下也会逐个记录
+ */
+public class TraceRecorder implements AutoCloseable {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger("PlanetaryExodus/Trace");
+    
+    // 缓冲区达到该大小后交给I/O线程写入
+    private static final int CHUNK_SIZE = 64 * 1024;
+    // 移动超过1格才记录新位置
+    private static final double MOVE_THRESHOLD_SQ = 1.0;
+    
+    private final Path path;
+    private final int sampleIntervalTicks;
+    private final OutputStream output;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(CHUNK_SIZE * 2);
+    private final DataOutputStream data = new DataOutputStream(buffer);
+    
+    // 上次记录的玩家状态和世界天气，用于只记录变化
+    private final Map<UUID, PlayerSample> playerSamples = new HashMap<>();
+    private final Map<String, Boolean> worldRaining = new HashMap<>();
+    
+    // 写入链，保证块按顺序写入
+    private CompletableFuture<Void> pendingWrite = CompletableFuture.completedFuture(null);
+    private long ticksRecorded;
+    private boolean closed;
+    // 写入失败后停止记录，由I/O线程设置
+    private volatile boolean failed;
+    
+    private TraceRecorder(Path path, int sampleIntervalTicks, OutputStream output) {
+        this.path = path;
+        this.sampleIntervalTicks = sampleIntervalTicks;
+        this.output = output;
+    }
+    
+    /**
+     * 创建轨迹文件并写入文件头
+     * @param path 轨迹文件
+     * @param sampleIntervalTicks 玩家和世界状态的采样间隔（tick）
+     * @param seed 重放时使用的随机数种子
+     */
+    public static TraceRecorder open(Path path, int sampleIntervalTicks, long seed) throws IOException {
+        Files.createDirectories(path.getParent());
+        OutputStream file = new BufferedOutputStream(Files.newOutputStream(path));
+        try {
+            DataOutputStream header = new DataOutputStream(file);
+            header.writeInt(TraceReader.MAGIC);
+            header.writeShort(TraceReader.VERSION);
+            header.writeLong(seed);
+            header.writeLong(ModClock.currentTimeMillis());
+            header.flush();
+            TraceRecorder recorder = new TraceRecorder(path, Math.max(1, sampleIntervalTicks),
+                new GZIPOutputStream(file, CHUNK_SIZE, true));
+            LOGGER.info("开始记录输入轨迹: {}", path);
+            return recorder;
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * tick开始时调用（在推进模组时钟之后）
+     * @param lastTickNanos 上一个tick的耗时
+     */
+    public void onTickStart(IServerPort server, long lastTickNanos) {
+        if (closed || failed) {
+            return;
+        }
+        int tick = server.getTicks();
+        try {
+            data.writeByte(TraceRecordType.TICK.getId());
+            data.writeInt(tick);
+            data.writeLong(ModClock.currentTimeMillis());
+            data.writeLong(lastTickNanos);
+            if (ticksRecorded++ % sampleIntervalTicks == 0) {
+                samplePlayers(server);
+                sampleWorlds(server);
+            }
+        } catch (IOException e) {
+            // 写入内存缓冲区不会失败
+            throw new IllegalStateException(e);
+        }
+        flushIfFull();
+    }
+    
+    @Subscribe(receiveEveryEvent = true)
+    private void onCivilizationProgress(CivilizationProgressEvent event) {
+        if (closed || failed) {
+            return;
+        }
+        try {
+            data.writeByte(TraceRecordType.PROGRESS.getId());
+            data.writeInt(event.getProgressChange());
+            data.writeUTF(event.getSource() != null ? event.getSource() : "");
+            if (event.getContributorId() != null) {
+                data.writeBoolean(true);
+                writeUuid(event.getContributorId());
+                data.writeUTF(event.getContributorName());
+            } else {
+                data.writeBoolean(false);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * 玩家加入时调用
+     */
+    public void onPlayerJoin(UUID playerId, String playerName) {
+        if (closed || failed) {
+            return;
+        }
+        try {
+            data.writeByte(TraceRecordType.PLAYER_JOIN.getId());
+            writeUuid(playerId);
+            data.writeUTF(playerName);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * 玩家离开时调用
+     */
+    public void onPlayerLeave(UUID playerId) {
+        if (closed || failed) {
+            return;
+        }
+        try {
+            data.writeByte(TraceRecordType.PLAYER_LEAVE.getId());
+            writeUuid(playerId);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        playerSamples.remove(playerId);
+    }
+    
+    private void samplePlayers(IServerPort server) throws IOException {
+        for (IPlayerView player : server.getPlayers()) {
+            int flags = (player.isSkyVisible() ? TraceReader.FLAG_SKY_VISIBLE : 0)
+                | (player.isSubmergedInWater() ? TraceReader.FLAG_SUBMERGED : 0)
+                | (player.isRaining() ? TraceReader.FLAG_RAINING : 0);
+            double x = player.getX();
+            double y = player.getY();
+            double z = player.getZ();
+            
+            PlayerSample last = playerSamples.get(player.getId());
+            if (last != null && last.flags == flags && last.distanceSq(x, y, z) < MOVE_THRESHOLD_SQ) {
+                continue;
+            }
+            if (last == null) {
+                last = new PlayerSample();
+                playerSamples.put(player.getId(), last);
+            }
+            last.x = x;
+            last.y = y;
+            last.z = z;
+            last.flags = flags;
+            
+            data.writeByte(TraceRecordType.PLAYER_STATE.getId());
+            writeUuid(player.getId());
+            data.writeFloat((float) x);
+            data.writeFloat((float) y);
+            data.writeFloat((float) z);
+            data.writeByte(flags);
+        }
+    }
+    
+    private void sampleWorlds(IServerPort server) throws IOException {
+        for (IWorldView world : server.getWorlds()) {
+            boolean raining = world.isRaining();
+            Boolean last = worldRaining.put(world.getName(), raining);
+            if (last == null || last != raining) {
+                data.writeByte(TraceRecordType.WORLD_STATE.getId());
+                data.writeUTF(world.getName());
+                data.writeBoolean(raining);
+            }
+        }
+    }
+    
+    private void writeUuid(UUID id) throws IOException {
+        data.writeLong(id.getMostSignificantBits());
+        data.writeLong(id.getLeastSignificantBits());
+    }
+    
+    private void flushIfFull() {
+        if (buffer.size() >= CHUNK_SIZE) {
+            submitChunk();
+        }
+    }
+    
+    /**
+     * 把缓冲区中的记录交给I/O线程写入
+     */
+    private void submitChunk() {
+        if (buffer.size() == 0) {
+            return;
+        }
+        byte[] chunk = buffer.toByteArray();
+        buffer.reset();
+        pendingWrite = pendingWrite.thenRunAsync(() -> writeChunk(chunk), ModExecutors.io());
+    }
+    
+    private void writeChunk(byte[] chunk) {
+        if (failed) {
+            return;
+        }
+        try {
+            output.write(chunk);
+            output.flush();
+        } catch (IOException e) {
+            failed = true;
+            LOGGER.error("写入输入轨迹失败，停止记录，轨迹在此之前的记录处结束: {}", path, e);
+        }
+    }
+    
+    /**
+     * 判断是否因写入失败而停止了记录
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+    
+    /**
+     * 获取轨迹文件
+     */
+    public Path getPath() {
+        return path;
+    }
+    
+    /**
+     * 获取已记录的tick数
+     */
+    public long getTicksRecorded() {
+        return ticksRecorded;
+    }
+    
+    /**
+     * 写完缓冲区中的记录后关闭文件（应在后台执行服务关闭之前调用）
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (ModExecutors.isRunning()) {
+                submitChunk();
+                pendingWrite.get(10, TimeUnit.SECONDS);
+            } else {
+                pendingWrite.get(10, TimeUnit.SECONDS);
+                writeChunk(buffer.toByteArray());
+            }
+        } catch (Exception e) {
+            LOGGER.warn("等待输入轨迹写入完成时出错: {}", path, e);
+        }
+        try {
+            output.close();
+        } catch (IOException e) {
+            LOGGER.error("关闭输入轨迹失败: {}", path, e);
+        }
+        if (failed) {
+            LOGGER.warn("输入轨迹已关闭: {}，写入失败前记录了不到 {} 个tick", path, ticksRecorded);
+        } else {
+            LOGGER.info("输入轨迹已关闭: {}，共 {} 个tick", path, ticksRecorded);
+        }
+    }
+    
+    /**
+     * 上次记录的玩家状态
+     */
+    private static final class PlayerSample {
+        double x;
+        double y;
+        double z;
+        int flags;
+        
+        double distanceSq(double x, double y, double z) {
+            double dx = this.x - x;
+            double dy = this.y - y;
+            double dz = this.z - z;
+            return dx * dx + dy * dy + dz * dz;
+        }
+    }
+}
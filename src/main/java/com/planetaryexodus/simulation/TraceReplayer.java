@@ -0,0 +1,431 @@
+package com.planetaryexodus.simulation;
+
+import com.planetaryexodus.PlanetaryExodusMod;
+import com.planetaryexodus.civilization.CivilizationManager;
+import com.planetaryexodus.core.EventBus;
+import com.planetaryexodus.core.ModClock;
+import com.planetaryexodus.core.ModConfig;
+import com.planetaryexodus.core.ModRandom;
+import com.planetaryexodus.core.ServerThreadBridge;
+import com.planetaryexodus.disaster.DisasterManager;
+import com.planetaryexodus.planet.PlanetStatusManager;
+import com.planetaryexodus.server.AdaptiveQualityController;
+import com.planetaryexodus.server.ServerModInitializer;
+import com.planetaryexodus.server.TickScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 输入轨迹重放器
+ * 把 TraceRecorder 记录的输入逐tick重新交给一组新的管理器，调度方式与服务器相同，
+ * 用于在离线环境中以真实负载测量吞吐量和每tick延迟的分位数
+ *
+ * 重放是确定性的：模组时钟按记录的时间推进，随机数使用轨迹中的种子，灾难决策在重放线程上同步计算，
+ * 默认每个子系统每tick只执行一片（不按真实耗时切片），同一轨迹每次重放的结果完全相同。
+ * 生产环境中的随机数序列无法重现，因此重放结果与记录时的服务器状态只在统计上一致
+ *
+ * 用法：先以无头模式初始化模组，再 load → start → step/replayAll → finish
+ */
+public final class TraceReplayer {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger("PlanetaryExodus/Trace");
+    
+    // 与服务器保存的tick耗时历史长度相同
+    private static final int TICK_HISTORY = 100;
+    
+    /**
+     * 重放的一条输入
+     */
+    @FunctionalInterface
+    private interface Input {
+        void apply(TraceReplayer replayer);
+    }
+    
+    /**
+     * 一个tick的输入
+     */
+    private static final class Frame {
+        final int tick;
+        final long millis;
+        final long lastTickNanos;
+        final List<Input> inputs = new ArrayList<>(2);
+        
+        Frame(int tick, long millis, long lastTickNanos) {
+            this.tick = tick;
+            this.millis = millis;
+            this.lastTickNanos = lastTickNanos;
+        }
+    }
+    
+    private final TraceReader.Header header;
+    private final Frame[] frames;
+    private final int progressInputs;
+    
+    private boolean useTickBudgets;
+    
+    // 以下状态由 start() 重新创建
+    private InMemoryServerPort port;
+    private TickScheduler scheduler;
+    private ModClock.ManualSource clock;
+    private CivilizationManager civilizationManager;
+    private PlanetStatusManager planetStatusManager;
+    private DisasterManager disasterManager;
+    private long[] tickTimes;
+    private int position;
+    
+    private TraceReplayer(TraceReader.Header header, Frame[] frames, int progressInputs) {
+        this.header = header;
+        this.frames = frames;
+        this.progressInputs = progressInputs;
+    }
+    
+    /**
+     * 读取整个轨迹到内存，重放时不再读文件
+     */
+    public static TraceReplayer load(Path path) throws IOException {
+        FrameCollector collector = new FrameCollector();
+        TraceReader.Header header = TraceReader.read(path, collector);
+        LOGGER.info("已读取输入轨迹 {}：{} 个tick，{} 次进度增加", path, collector.frames.size(), collector.progressInputs);
+        return new TraceReplayer(header, collector.frames.toArray(new Frame[0]), collector.progressInputs);
+    }
+    
+    /**
+     * 按配置的时间片运行子系统（默认每tick只执行一片）
+     * 时间片按真实耗时截断，启用后重放结果可能随机器负载变化
+     */
+    public void setUseTickBudgets(boolean useTickBudgets) {
+        this.useTickBudgets = useTickBudgets;
+    }
+    
+    /**
+     * 创建新的管理器和模拟服务器，回到轨迹开头
+     */
+    public void start() {
+        PlanetaryExodusMod mod = PlanetaryExodusMod.getInstance();
+        if (mod == null) {
+            throw new IllegalStateException("PlanetaryExodusMod is not initialized, call initHeadless first");
+        }
+        ModConfig.PerformanceConfig config = mod.getConfig().getPerformance();
+        
+        clock = new ModClock.ManualSource(frames.length > 0 ? frames[0].millis : header.startMillis);
+        ModClock.setSource(clock);
+        ModRandom.setSeed(header.seed);
+        AdaptiveQualityController.getInstance().configure(config);
+        AdaptiveQualityController.getInstance().reset();
+        
+        port = new InMemoryServerPort();
+        civilizationManager = new CivilizationManager();
+        planetStatusManager = new PlanetStatusManager();
+        disasterManager = new DisasterManager();
+        // 在重放线程上同步计算，决策在下一次更新时应用，与调度顺序无关
+        disasterManager.setEvaluationExecutor(Runnable::run);
+        
+        scheduler = new TickScheduler();
+        ServerModInitializer.scheduleSubsystems(scheduler, config, civilizationManager, planetStatusManager, disasterManager);
+        if (useTickBudgets) {
+            ServerModInitializer.applyTickBudgets(scheduler, config);
+        }
+        scheduler.setAllocationTracking(false);
+        
+        tickTimes = new long[TICK_HISTORY];
+        position = 0;
+    }
+    
+    /**
+     * 重放下一个tick
+     * @return 轨迹已经结束时返回false
+     */
+    public boolean step() {
+        if (position >= frames.length) {
+            return false;
+        }
+        Frame frame = frames[position++];
+        
+        long now = clock.currentTimeMillis();
+        if (frame.millis > now) {
+            clock.advance(frame.millis - now);
+        }
+        tickTimes[frame.tick % TICK_HISTORY] = frame.lastTickNanos;
+        port.setTicks(frame.tick);
+        
+        // 与服务器相同：tick开始时打开批处理，输入发生在tick中，tick结束时运行子系统再投递事件
+        EventBus.getInstance().beginTickBatch();
+        ServerThreadBridge.getInstance().drain();
+        try {
+            for (Input input : frame.inputs) {
+                input.apply(this);
+            }
+            port.setTicks(frame.tick + 1);
+            AdaptiveQualityController.getInstance().update(frame.tick + 1, tickTimes);
+            scheduler.tick(port);
+        } finally {
+            EventBus.getInstance().flushTickBatch();
+        }
+        return true;
+    }
+    
+    /**
+     * 从头重放整个轨迹并统计每tick的耗时
+     */
+    public Result replayAll() {
+        start();
+        long[] latencies = new long[frames.length];
+        long begin = System.nanoTime();
+        for (int i = 0; i < frames.length; i++) {
+            long tickStart = System.nanoTime();
+            step();
+            latencies[i] = System.nanoTime() - tickStart;
+        }
+        long elapsed = System.nanoTime() - begin;
+        return new Result(latencies, elapsed, fingerprint());
+    }
+    
+    /**
+     * 恢复系统时钟和默认随机数来源
+     */
+    public void finish() {
+        if (disasterManager != null) {
+            disasterManager.cleanup();
+        }
+        ModClock.useSystemTime();
+        ModRandom.useDefault();
+        AdaptiveQualityController.getInstance().reset();
+    }
+    
+    /**
+     * 计算重放结束时的状态摘要，同一轨迹每次重放应得到相同的值
+     */
+    public String fingerprint() {
+        return String.format("progress=%d, status=%s, disasters=%d, milestones=%d, players=%d, broadcasts=%d, quality=%s",
+            civilizationManager.getProgress(), planetStatusManager.getCurrentStatus(),
+            disasterManager.getDisasterCount(), civilizationManager.getAchievedMilestones().size(),
+            port.getPlayers().size(), port.getBroadcasts().size(), AdaptiveQualityController.getInstance().getCurrentTier().name);
+    }
+    
+    /**
+     * 获取轨迹中的tick数
+     */
+    public int getFrameCount() {
+        return frames.length;
+    }
+    
+    /**
+     * 获取轨迹中的进度增加次数
+     */
+    public int getProgressInputCount() {
+        return progressInputs;
+    }
+    
+    /**
+     * 获取已重放的tick数
+     */
+    public int getPosition() {
+        return position;
+    }
+    
+    /**
+     * 获取重放用的模拟服务器
+     */
+    public InMemoryServerPort getPort() {
+        return port;
+    }
+    
+    /**
+     * 获取重放用的调度器
+     */
+    public TickScheduler getScheduler() {
+        return scheduler;
+    }
+    
+    /**
+     * 获取重放用的文明进度管理器
+     */
+    public CivilizationManager getCivilizationManager() {
+        return civilizationManager;
+    }
+    
+    /**
+     * 获取重放用的行星状态管理器
+     */
+    public PlanetStatusManager getPlanetStatusManager() {
+        return planetStatusManager;
+    }
+    
+    /**
+     * 获取重放用的灾难管理器
+     */
+    public DisasterManager getDisasterManager() {
+        return disasterManager;
+    }
+    
+    private InMemoryServerPort.SimulatedPlayer getOrAddPlayer(UUID id, String name) {
+        InMemoryServerPort.SimulatedPlayer player = port.getSimulatedPlayer(id);
+        return player != null ? player : port.addPlayer(id, name != null ? name : id.toString());
+    }
+    
+    /**
+     * 重放结果
+     */
+    public static final class Result {
+        public final int ticks;
+        public final long elapsedNanos;
+        public final long p50Nanos;
+        public final long p90Nanos;
+        public final long p99Nanos;
+        public final long p999Nanos;
+        public final long maxNanos;
+        public final String fingerprint;
+        
+        Result(long[] latencies, long elapsedNanos, String fingerprint) {
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            this.ticks = sorted.length;
+            this.elapsedNanos = elapsedNanos;
+            this.p50Nanos = percentile(sorted, 0.50);
+            this.p90Nanos = percentile(sorted, 0.90);
+            this.p99Nanos = percentile(sorted, 0.99);
+            this.p999Nanos = percentile(sorted, 0.999);
+            this.maxNanos = sorted.length == 0 ? 0 : sorted[sorted.length - 1];
+            this.fingerprint = fingerprint;
+        }
+        
+        private static long percentile(long[] sorted, double fraction) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(fraction * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+        
+        /**
+         * 每秒重放的tick数
+         */
+        public double getTicksPerSecond() {
+            return elapsedNanos == 0 ? 0 : ticks * 1_000_000_000.0 / elapsedNanos;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("重放 %d 个tick，用时 %.1fms（%.0f tick/s），每tick p50=%.1fμs p90=%.1fμs p99=%.1fμs p99.9=%.1fμs max=%.1fμs，结束状态: %s",
+                ticks, elapsedNanos / 1_000_000.0, getTicksPerSecond(), p50Nanos / 1000.0, p90Nanos / 1000.0,
+                p99Nanos / 1000.0, p999Nanos / 1000.0, maxNanos / 1000.0, fingerprint);
+        }
+    }
+    
+    /**
+     * 读取轨迹时把记录按tick分组
+     */
+    private static final class FrameCollector implements TraceHandler {
+        final List<Frame> frames = new ArrayList<>();
+        // 第一个tick之前的记录并入第一个tick
+        final List<Input> leading = new ArrayList<>();
+        int progressInputs;
+        
+        private void add(Input input) {
+            if (frames.isEmpty()) {
+                leading.add(input);
+            } else {
+                frames.get(frames.size() - 1).inputs.add(input);
+            }
+        }
+        
+        @Override
+        public void onTick(int tick, long millis, long lastTickNanos) {
+            Frame frame = new Frame(tick, millis, lastTickNanos);
+            if (frames.isEmpty()) {
+                frame.inputs.addAll(leading);
+                leading.clear();
+            }
+            frames.add(frame);
+        }
+        
+        @Override
+        public void onProgress(int amount, String source, UUID playerId, String playerName) {
+            progressInputs++;
+            add(replayer -> replayer.civilizationManager.addProgress(amount, playerId, playerName, source));
+        }
+        
+        @Override
+        public void onPlayerJoin(UUID playerId, String playerName) {
+            add(replayer -> replayer.getOrAddPlayer(playerId, playerName));
+        }
+        
+        @Override
+        public void onPlayerLeave(UUID playerId) {
+            add(replayer -> replayer.port.removePlayer(playerId));
+        }
+        
+        @Override
+        public void onPlayerState(UUID playerId, double x, double y, double z,
+                                  boolean skyVisible, boolean submergedInWater, boolean raining) {
+            add(replayer -> replayer.getOrAddPlayer(playerId, null)
+                .setPosition(x, y, z)
+                .setSkyVisible(skyVisible)
+                .setSubmergedInWater(submergedInWater)
+                .setRaining(raining));
+        }
+        
+        @Override
+        public void onWorldState(String worldName, boolean raining) {
+            add(replayer -> {
+                InMemoryServerPort.SimulatedWorld world = replayer.port.getSimulatedWorld(worldName);
+                if (world == null) {
+                    world = replayer.port.addWorld(worldName);
+                }
+                world.setRaining(raining);
+            });
+        }
+    }
+    
+    /**
+     * 命令行入口：重放指定的轨迹文件若干次并输出统计
+     * 参数：轨迹文件 [重放次数] [--budgets]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: TraceReplayer <trace-file> [runs] [--budgets]");
+            System.exit(2);
+        }
+        Path path = Paths.get(args[0]);
+        if (!Files.isRegularFile(path)) {
+            System.err.println("trace file not found: " + path);
+            System.exit(2);
+        }
+        int runs = 3;
+        boolean budgets = false;
+        for (int i = 1; i < args.length; i++) {
+            if ("--budgets".equals(args[i])) {
+                budgets = true;
+            } else {
+                runs = Math.max(1, Integer.parseInt(args[i]));
+            }
+        }
+        
+        PlanetaryExodusMod.initHeadless(ModConfig.defaults());
+        TraceReplayer replayer = TraceReplayer.load(path);
+        replayer.setUseTickBudgets(budgets);
+        try {
+            String first = null;
+            for (int run = 1; run <= runs; run++) {
+                Result result = replayer.replayAll();
+                System.out.println("#" + run + " " + result);
+                if (first == null) {
+                    first = result.fingerprint;
+                } else if (!budgets && !first.equals(result.fingerprint)) {
+                    System.out.println("警告：重放结果与第一次不同，存在不确定的输入");
+                }
+            }
+        } finally {
+            replayer.finish();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.planetaryexodus.server;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.planetaryexodus.PlanetaryExodusMod;
+import com.planetaryexodus.civilization.CivilizationManager;
+import com.planetaryexodus.core.AllocationCounter;
+import com.planetaryexodus.core.ModClock;
+import com.planetaryexodus.core.ModConfig;
+import com.planetaryexodus.core.ModRandom;
+import com.planetaryexodus.disaster.DisasterManager;
+import com.planetaryexodus.disaster.DisasterType;
+import com.planetaryexodus.planet.PlanetStatusManager;
+import com.planetaryexodus.simulation.InMemoryServerPort;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 各子系统稳态下平均每个服务器tick的分配量不超过预算
+ * 与 SubsystemTickBenchmark 一样把子系统交给调度器按配置的周期和时间片运行，先预热到JIT编译完成，
+ * 再用 AllocationCounter 测量固定数量tick内服务器线程上的分配，平均到每tick后与
+ * src/test/allocation-budgets.json 中的预算比较
+ *
+ * 灾难计算在测试线程上同步执行，它的分配也计入灾难子系统。
+ * 运行 ./gradlew test -PrecordAllocationBudgets 时不检查，而是按实测值重新生成预算文件
+ */
+class SubsystemAllocationTest {
+    
+    private static final long MILLIS_PER_TICK = 50;
+    // 预热的tick数，足够让每个子系统的更新方法被JIT编译
+    private static final int WARMUP_TICKS = 200_000;
+    // 测量的tick数，分成若干段，段与段之间清空广播记录（不计入测量）
+    private static final int MEASURED_TICKS = 20_000;
+    private static final int TICKS_PER_SEGMENT = 1_000;
+    private static final int PLAYERS = 20;
+    
+    private static final String BUDGETS_PROPERTY = "planetaryexodus.allocationBudgets";
+    private static final String RECORD_PROPERTY = "planetaryexodus.recordAllocationBudgets";
+    
+    private static Path budgetsFile;
+    private static JsonObject budgets;
+    // 记录模式下各条目的实测值（字节/tick）
+    private static final Map<String, Double> recorded = new LinkedHashMap<>();
+    
+    private InMemoryServerPort port;
+    private TickScheduler scheduler;
+    private ModClock.ManualSource clock;
+    private boolean advanceClock;
+    private CivilizationManager civilizationManager;
+    private PlanetStatusManager planetStatusManager;
+    private DisasterManager disasterManager;
+    
+    @BeforeAll
+    static void loadBudgets() throws IOException {
+        budgetsFile = Paths.get(System.getProperty(BUDGETS_PROPERTY, "src/test/allocation-budgets.json"));
+        budgets = JsonParser.parseString(Files.readString(budgetsFile, StandardCharsets.UTF_8)).getAsJsonObject();
+        if (PlanetaryExodusMod.getInstance() == null) {
+            PlanetaryExodusMod.initHeadless(ModConfig.defaults());
+        }
+    }
+    
+    static Stream<Arguments> subsystems() {
+        return Stream.of("civilization", "planet", "disaster", "milestones")
+            .flatMap(subsystem -> Stream.of(Arguments.of(subsystem, 10), Arguments.of(subsystem, 80)));
+    }
+    
+    @ParameterizedTest(name = "{0} (progress {1})")
+    @MethodSource("subsystems")
+    void steadyStateAllocationWithinBudget(String subsystem, int progress) {
+        assumeTrue(AllocationCounter.isSupported(), "JVM does not support thread allocation counting");
+        setUp(subsystem, progress);
+        
+        for (int i = 0; i < WARMUP_TICKS; i++) {
+            tick();
+            if (i % TICKS_PER_SEGMENT == 0) {
+                port.clearBroadcasts();
+            }
+        }
+        
+        long allocated = 0;
+        for (int segment = 0; segment < MEASURED_TICKS / TICKS_PER_SEGMENT; segment++) {
+            port.clearBroadcasts();
+            long before = AllocationCounter.currentThreadAllocatedBytes();
+            for (int i = 0; i < TICKS_PER_SEGMENT; i++) {
+                tick();
+            }
+            allocated += AllocationCounter.currentThreadAllocatedBytes() - before;
+        }
+        double bytesPerTick = (double) allocated / MEASURED_TICKS;
+        
+        String key = budgetKey(subsystem, progress);
+        if (Boolean.getBoolean(RECORD_PROPERTY)) {
+            recorded.put(key, bytesPerTick);
+            return;
+        }
+        long budget = findBudget(subsystem, progress);
+        assertTrue(budget >= 0, "no allocation budget for " + key + " in " + budgetsFile);
+        boolean measured = budgets.has("measured") && budgets.get("measured").getAsBoolean();
+        assertTrue(bytesPerTick <= budget, String.format(
+            "%s allocates %.1f bytes per tick in steady state, budget is %d%s; if the increase is intended, "
+                + "re-baseline with ./gradlew test -PrecordAllocationBudgets", key, bytesPerTick, budget,
+            measured ? "" : " (an unmeasured estimate)"));
+    }
+    
+    @AfterEach
+    void tearDown() {
+        if (disasterManager != null) {
+            disasterManager.cleanup();
+        }
+        ModClock.useSystemTime();
+        ModRandom.useDefault();
+    }
+    
+    /**
+     * 记录模式下按实测值重写预算文件：取实测值的125%（至少多64字节），按16字节取整
+     */
+    @AfterAll
+    static void writeRecordedBudgets() throws IOException {
+        if (!Boolean.getBoolean(RECORD_PROPERTY) || recorded.isEmpty()) {
+            return;
+        }
+        JsonArray entries = budgets.getAsJsonArray("budgets");
+        int updated = 0;
+        for (JsonElement element : entries) {
+            JsonObject entry = element.getAsJsonObject();
+            Double bytes = recorded.get(budgetKey(entry.get("subsystem").getAsString(), entry.get("progress").getAsInt()));
+            if (bytes != null) {
+                long limit = (long) Math.ceil(Math.max(bytes * 1.25, bytes + 64) / 16) * 16;
+                entry.addProperty("maxBytesPerTick", limit);
+                updated++;
+            }
+        }
+        budgets.addProperty("measured", updated == entries.size());
+        Files.writeString(budgetsFile,
+            new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create().toJson(budgets) + "\n",
+            StandardCharsets.UTF_8);
+    }
+    
+    private void setUp(String subsystem, int progress) {
+        ModConfig.PerformanceConfig performance = PlanetaryExodusMod.getInstance().getConfig().getPerformance();
+        ModRandom.setSeed(42);
+        clock = new ModClock.ManualSource(System.currentTimeMillis());
+        ModClock.setSource(clock);
+        
+        port = new InMemoryServerPort();
+        port.addWorld("minecraft:overworld").setRaining(true);
+        port.addWorld("minecraft:the_nether");
+        for (int i = 0; i < PLAYERS; i++) {
+            port.addPlayer("Player" + i).setRaining(true).setSkyVisible(i % 2 == 0);
+        }
+        
+        civilizationManager = new CivilizationManager();
+        planetStatusManager = new PlanetStatusManager();
+        disasterManager = new DisasterManager();
+        // 在测试线程上同步计算，分配计入本子系统
+        disasterManager.setEvaluationExecutor(Runnable::run);
+        civilizationManager.addProgress(progress, null, "test");
+        
+        scheduler = new TickScheduler();
+        int period = performance.getTickPeriod(subsystem, 20);
+        advanceClock = true;
+        switch (subsystem) {
+            case "civilization":
+                scheduler.schedule(subsystem, period, (server, slice) -> {
+                    civilizationManager.update(server);
+                    return false;
+                });
+                break;
+            case "planet":
+                scheduler.schedule(subsystem, period, (server, slice) ->
+                    planetStatusManager.update(server, civilizationManager.getProgress(), slice));
+                break;
+            case "disaster":
+                // 时钟固定不动，预先触发的灾难在整个测试期间保持活动
+                advanceClock = false;
+                planetStatusManager.update(port, civilizationManager.getProgress());
+                for (DisasterType type : DisasterType.values()) {
+                    disasterManager.forceDisaster(port, type);
+                }
+                scheduler.schedule(subsystem, period, (server, slice) ->
+                    disasterManager.update(server, planetStatusManager.getCurrentStatus(), slice));
+                break;
+            case "milestones":
+                scheduler.schedule(subsystem, period, (server, slice) ->
+                    civilizationManager.checkMilestones(server, slice));
+                break;
+            default:
+                throw new IllegalArgumentException("unknown subsystem: " + subsystem);
+        }
+        scheduler.setBudget(subsystem, performance.getSubsystemBudgetMicros(subsystem, 0) * 1000);
+        // 只测量子系统本身，不让调度器的分配统计参与
+        scheduler.setAllocationTracking(false);
+    }
+    
+    private void tick() {
+        if (advanceClock) {
+            clock.advance(MILLIS_PER_TICK);
+        }
+        port.tick();
+        scheduler.tick(port);
+    }
+    
+    private static long findBudget(String subsystem, int progress) {
+        for (JsonElement element : budgets.getAsJsonArray("budgets")) {
+            JsonObject entry = element.getAsJsonObject();
+            if (entry.get("subsystem").getAsString().equals(subsystem) && entry.get("progress").getAsInt() == progress) {
+                return entry.get("maxBytesPerTick").getAsLong();
+            }
+        }
+        return -1;
+    }
+    
+    private static String budgetKey(String subsystem, int progress) {
+        return subsystem + "@" + progress;
+    }
+}